@@ -1,3 +1,5 @@
+import metrics.RepositoryGauges;
+import metrics.ServiceMetrics;
 import model.*;
 import model.enums.CurrencyCode;
 import model.enums.TransactionType;
@@ -7,11 +9,19 @@ import repository.interfaces.AccountRepository;
 import repository.interfaces.CurrencyRepository;
 import repository.interfaces.TransactionRepository;
 import repository.interfaces.UserRepository;
+import repository.journal.Durability;
+import repository.journal.Journal;
+import repository.journal.Snapshotter;
+import server.ExchangeServer;
 import service.*;
 import service.interfaces.MainService;
 import view.*;
 
+import javax.management.JMException;
+import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.math.BigDecimal;
+import java.nio.file.Path;
 
 /**
  * ExchangeApp
@@ -20,25 +30,128 @@ import java.math.BigDecimal;
  */
 public class ExchangeApp {
 
+    // Каталог журнала; если свойство не задано, данные хранятся только в памяти.
+    private static final String JOURNAL_PATH = System.getProperty("exchange.journal");
+
+    // Режим долговечности журнала: SYNC или PERIODIC (по умолчанию SYNC, для однопоточного исполнителя -
+    // PERIODIC; режим SYNC с ним несовместим).
+    private static final String JOURNAL_DURABILITY = System.getProperty("exchange.journal.durability");
+
+    // Интервал сброса журнала на диск в режиме PERIODIC (в миллисекундах).
+    private static final long JOURNAL_SYNC_MILLIS = Long.getLong("exchange.journal.syncMillis", 10);
+
+    // Период снимков состояния (в миллисекундах).
+    private static final long SNAPSHOT_PERIOD_MILLIS = Long.getLong("exchange.snapshot.periodMillis", 60_000);
+
+    // Порт HTTP-сервера (если не задан, сервер не запускается).
+    private static final Integer HTTP_PORT = Integer.getInteger("exchange.http.port");
+
+    // Количество потоков HTTP-сервера (если виртуальные потоки недоступны).
+    private static final int HTTP_THREADS = Integer.getInteger("exchange.http.threads", 200);
+
+    // Файл периодического отчета метрик (если не задан, отчет не пишется).
+    private static final String METRICS_FILE = System.getProperty("exchange.metrics.file");
+
+    // Период отчета метрик (в миллисекундах).
+    private static final long METRICS_PERIOD_MILLIS = Long.getLong("exchange.metrics.periodMillis", 10_000);
+
+    // Исполнение операций со счетами: locks (блокировки счетов) или sequenced (однопоточный исполнитель).
+    private static final String ENGINE = System.getProperty("exchange.engine", "locks");
+
+    // Размер буфера однопоточного исполнителя (степень двойки).
+    private static final int ENGINE_CAPACITY = Integer.getInteger("exchange.engine.capacity", LedgerEngine.DEFAULT_CAPACITY);
+
+
     public static void main(String[] args)
-            throws InterruptedException {
-        UserRepository userRep = new UserRepositoryImpl();
-        AccountRepository accountRepo = new AccountRepositoryImpl();
-        CurrencyRepository currencyRepo = new CurrencyRepositoryImpl();
-        TransactionRepository transactionRepo = new TransactionRepositoryImpl();
+            throws InterruptedException, IOException, JMException {
+        Journal journal = openJournal();
+
+        UserRepositoryImpl userRep = new UserRepositoryImpl(journal);
+        AccountRepositoryImpl accountRepo = new AccountRepositoryImpl(journal);
+        CurrencyRepositoryImpl currencyRepo = new CurrencyRepositoryImpl(journal);
+        TransactionRepositoryImpl transactionRepo = new TransactionRepositoryImpl(journal);
+
+        Snapshotter snapshotter = null;
+        long restored = 0;
+        if (journal != null) {
+            snapshotter = new Snapshotter(journal, userRep, accountRepo, currencyRepo, transactionRepo);
+            restored = snapshotter.restore();
+        }
+
+        if (restored == 0) {
+            // Устанавливаем стандартных пользователей
+            setDefaultUsers(userRep);
+
+            // Устанавливаем демо пользователей
+            setDemoUsers(userRep);
 
-        // Устанавливаем стандартных пользователей
-        setDefaultUsers(userRep);
+            // Устанавливаем стандартные счета
+            setDefaultAccounts(accountRepo, transactionRepo);
+        }
 
-        // Устанавливаем демо пользователей
-        setDemoUsers(userRep);
+        MainServiceImpl service;
+
+        if (isSequenced()) {
+            SequencedMainService sequenced = new SequencedMainService(
+                    userRep,
+                    accountRepo,
+                    currencyRepo,
+                    transactionRepo,
+                    journal,
+                    ENGINE_CAPACITY
+            );
+            sequenced.start();
+            service = sequenced;
+        } else {
+            service = new MainServiceImpl(userRep, accountRepo, currencyRepo, transactionRepo, journal);
+        }
+
+        // Периодически зачисляем накопленные комиссии на системные счета.
+        service.startCommissionFlush(1_000);
+
+        // Периодически удаляем сессии, к которым давно не обращались.
+        service.getSessions().start(60_000);
+
+        // Метрики вызовов сервиса и размеров хранилищ (JMX, домен exchange).
+        ServiceMetrics metrics = new ServiceMetrics(
+                new RepositoryGauges(transactionRepo, accountRepo, currencyRepo, service.getSessions())
+        );
+        MainService instrumented = metrics.instrument(service);
+        metrics.registerMBeans();
 
-        // Устанавливаем стандартные счета
-        setDefaultAccounts(accountRepo, transactionRepo);
+        if (METRICS_FILE != null) {
+            metrics.start(METRICS_PERIOD_MILLIS, Path.of(METRICS_FILE));
+        }
 
-        MainService service = new MainServiceImpl(userRep, accountRepo, currencyRepo, transactionRepo);
+        if (HTTP_PORT != null) {
+            ExchangeServer server = new ExchangeServer(instrumented, HTTP_PORT, HTTP_THREADS);
+            server.start();
 
-        Menu menu = new Menu(service);
+            Runtime.getRuntime().addShutdownHook(new Thread(() -> server.stop(1), "http-stop"));
+        }
+
+        if (journal != null) {
+            Snapshotter snapshots = snapshotter;
+            snapshots.start(SNAPSHOT_PERIOD_MILLIS);
+
+            Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+                snapshots.stop();
+
+                if (service instanceof SequencedMainService) {
+                    ((SequencedMainService) service).shutdown();
+                }
+
+                service.stopCommissionFlush();
+
+                try {
+                    journal.close();
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            }, "journal-close"));
+        }
+
+        Menu menu = new Menu(instrumented);
 
         autoLogin(service, "admin@example.com");
         //        autoLogin(service, "max@example.com");
@@ -82,6 +195,7 @@ public class ExchangeApp {
                 new BigDecimal(1_000)
         );
         account1.setBalance(transaction1.getAmount());
+        accountRepo.updateBalance(account1);
 
 
         Account account2 = accountRepo.createSystemAccount(
@@ -101,6 +215,7 @@ public class ExchangeApp {
                 new BigDecimal(10_000)
         );
         account2.setBalance(transaction2.getAmount());
+        accountRepo.updateBalance(account2);
     }
 
 
@@ -148,6 +263,38 @@ public class ExchangeApp {
     }
 
 
+    /**
+     * Открывает журнал, если задано свойство {@code exchange.journal}.
+     *
+     * @return Журнал или {@code null}.
+     */
+    private static Journal openJournal() throws IOException {
+        if (JOURNAL_PATH == null || JOURNAL_PATH.isBlank()) {
+            return null;
+        }
+
+        Durability durability = JOURNAL_DURABILITY == null
+                ? (isSequenced() ? Durability.PERIODIC : Durability.SYNC)
+                : Durability.valueOf(JOURNAL_DURABILITY.toUpperCase());
+
+        if (isSequenced() && durability != Durability.PERIODIC) {
+            throw new IllegalArgumentException(
+                    "Однопоточный исполнитель (exchange.engine=sequenced) работает только с журналом в режиме PERIODIC!"
+            );
+        }
+
+        return new Journal(Path.of(JOURNAL_PATH), durability, JOURNAL_SYNC_MILLIS);
+    }
+
+
+    /**
+     * Проверяет, выбран ли однопоточный исполнитель операций.
+     */
+    private static boolean isSequenced() {
+        return "sequenced".equalsIgnoreCase(ENGINE);
+    }
+
+
     /**
      * Временный метод для тестирования
      */
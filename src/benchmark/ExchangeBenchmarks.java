@@ -0,0 +1,494 @@
+package benchmark;
+
+import model.Account;
+import model.BatchCommand;
+import model.Transaction;
+import model.enums.CurrencyCode;
+import model.enums.TransactionType;
+import model.enums.UserRole;
+import repository.AccountRepositoryImpl;
+import repository.CurrencyRepositoryImpl;
+import repository.TransactionRepositoryImpl;
+import repository.UserRepositoryImpl;
+import service.IdempotencyCache;
+import service.LedgerEngine;
+import service.LedgerReconciler;
+import service.MainServiceImpl;
+import service.SequencedMainService;
+import utils.EmailValidator;
+import utils.PasswordValidator;
+import utils.exceptions.EmailValidateException;
+import utils.exceptions.PasswordValidateException;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Бенчмарки репозиториев, операций {@link MainServiceImpl} и валидаторов.
+ *
+ * <p>Запуск: {@code java -Xmx8g benchmark.ExchangeBenchmarks [-wi 3] [-i 5] [-r 1000] [-t 8]
+ * [-o results.json] [регулярное выражение]}. Флаги повторяют JMH: прогревочные итерации, измерительные
+ * итерации, длительность итерации в миллисекундах, количество потоков многопоточных бенчмарков, файл
+ * результатов. Размеры журнала транзакций задаются свойством {@code bench.ledgers} (по умолчанию
+ * {@code 10000,1000000,10000000}), количество счетов - {@code bench.accounts}, глубина истории курсов -
+ * {@code bench.rateHistory}, количество ключей идемпотентности - {@code bench.idempotencyKeys}, размеры
+ * журнала для сверки балансов - {@code bench.reconcileLedgers}.</p>
+ */
+public class ExchangeBenchmarks {
+
+    // Количество счетов и пользователей в журнале транзакций.
+    private static final int LEDGER_ACCOUNTS = 1_000;
+    private static final int LEDGER_USERS = 100;
+
+    // Количество счетов в бенчмарках сервиса.
+    private static final int SERVICE_ACCOUNTS = 64;
+
+    // Количество операций в пакете бенчмарка executeBatch.
+    private static final int BATCH_SIZE = 64;
+
+    private static final String USER = "bench@example.com";
+    private static final String PASSWORD = "123_Pass!0";
+
+
+    public static void main(String[] args) throws IOException {
+        int warmup = 3;
+        int iterations = 5;
+        long millis = 1_000;
+        int threads = Runtime.getRuntime().availableProcessors();
+        String output = "benchmark-results.json";
+        String filter = null;
+
+        for (int i = 0; i < args.length; i++) {
+            switch (args[i]) {
+                case "-wi":
+                    warmup = Integer.parseInt(args[++i]);
+                    break;
+
+                case "-i":
+                    iterations = Integer.parseInt(args[++i]);
+                    break;
+
+                case "-r":
+                    millis = Long.parseLong(args[++i]);
+                    break;
+
+                case "-t":
+                    threads = Integer.parseInt(args[++i]);
+                    break;
+
+                case "-o":
+                    output = args[++i];
+                    break;
+
+                default:
+                    filter = args[i];
+            }
+        }
+
+        Harness harness = new Harness(warmup, iterations, millis, filter);
+
+        for (String size : System.getProperty("bench.ledgers", "10000,1000000,10000000").split(",")) {
+            transactions(harness, Integer.parseInt(size.trim()));
+        }
+
+        for (String size : System.getProperty("bench.accounts", "10000,1000000").split(",")) {
+            accounts(harness, Integer.parseInt(size.trim()));
+        }
+
+        for (String depth : System.getProperty("bench.rateHistory", "1000,100000").split(",")) {
+            rates(harness, Integer.parseInt(depth.trim()));
+        }
+
+        for (String size : System.getProperty("bench.idempotencyKeys", "10000,1000000").split(",")) {
+            idempotency(harness, Integer.parseInt(size.trim()));
+        }
+
+        for (String size : System.getProperty("bench.reconcileLedgers", "1000000,10000000").split(",")) {
+            reconcile(harness, Integer.parseInt(size.trim()));
+        }
+
+        service(harness, 1);
+        if (threads > 1) {
+            service(harness, threads);
+        }
+
+        engine(harness, 1);
+        if (threads > 1) {
+            engine(harness, threads);
+        }
+
+        validators(harness);
+
+        harness.writeJson(Path.of(output));
+        System.out.println("Результаты сохранены в " + output);
+    }
+
+
+    /**
+     * Поиск транзакций в журнале заданного размера.
+     */
+    private static void transactions(Harness harness, int size) {
+        if (!harness.isSelected(
+                "transactions.getTransactionById",
+                "transactions.getTransactionsByAccountId",
+                "transactions.getTransactionsByUserFrom",
+                "transactions.getDailyVolume"
+        )) {
+            return;
+        }
+
+        TransactionRepositoryImpl repository = new TransactionRepositoryImpl();
+        BigDecimal amount = new BigDecimal("10.50");
+
+        for (int i = 0; i < size; i++) {
+            int account = i % LEDGER_ACCOUNTS;
+            String email = "user" + account % LEDGER_USERS + "@example.com";
+
+            repository.createTransaction(
+                    TransactionType.DEPOSIT,
+                    email,
+                    account,
+                    "USD",
+                    email,
+                    account,
+                    "USD",
+                    amount
+            );
+        }
+
+        Map<String, String> params = Map.of("ledgerSize", String.valueOf(size));
+
+        harness.run("transactions.getTransactionById", params, 1, thread ->
+                repository.getTransactionById(ThreadLocalRandom.current().nextInt(size))
+        );
+
+        harness.run("transactions.getTransactionsByAccountId", params, 1, thread ->
+                repository.getTransactionsByAccountId(ThreadLocalRandom.current().nextInt(LEDGER_ACCOUNTS))
+        );
+
+        harness.run("transactions.getTransactionsByUserFrom", params, 1, thread -> {
+            int account = ThreadLocalRandom.current().nextInt(LEDGER_ACCOUNTS);
+            return repository.getTransactionsByUserFrom("user" + account % LEDGER_USERS + "@example.com", account);
+        });
+
+        LocalDate today = LocalDate.now();
+        harness.run("transactions.getDailyVolume", params, 1, thread ->
+                repository.getDailyVolume(today, "USD", "USD", TransactionType.DEPOSIT)
+        );
+    }
+
+
+    /**
+     * Поиск счета по id среди заданного количества счетов.
+     */
+    private static void accounts(Harness harness, int size) {
+        if (!harness.isSelected("accounts.getAccountById")) {
+            return;
+        }
+
+        AccountRepositoryImpl repository = new AccountRepositoryImpl();
+
+        for (int i = 0; i < size; i++) {
+            repository.createAccount("user" + i % LEDGER_USERS + "@example.com", "USD");
+        }
+
+        Map<String, String> params = Map.of("accounts", String.valueOf(size));
+
+        harness.run("accounts.getAccountById", params, 1, thread ->
+                repository.getAccountById(ThreadLocalRandom.current().nextInt(size))
+        );
+    }
+
+
+    /**
+     * Проверка повторного ключа идемпотентности среди заданного количества ключей.
+     */
+    private static void idempotency(Harness harness, int size) {
+        if (!harness.isSelected("idempotency.hit")) {
+            return;
+        }
+
+        IdempotencyCache cache = new IdempotencyCache(size, 24 * 60 * 60 * 1000);
+        Transaction transaction = new Transaction(0, TransactionType.DEPOSIT, USER, 1, "USD", USER, 1, "USD", BigDecimal.ONE);
+        String request = "DEPOSIT:1:1:1";
+
+        String[] keys = new String[size];
+        for (int i = 0; i < size; i++) {
+            keys[i] = "request-" + i;
+            cache.execute(USER, keys[i], request, () -> transaction);
+        }
+
+        Map<String, String> params = Map.of("keys", String.valueOf(size));
+
+        harness.run("idempotency.hit", params, 1, thread ->
+                cache.execute(USER, keys[ThreadLocalRandom.current().nextInt(size)], request, () -> transaction)
+        );
+    }
+
+
+    /**
+     * Сверка балансов счетов с журналом транзакций заданного размера (депозиты и обмены между счетами).
+     */
+    private static void reconcile(Harness harness, int size) {
+        if (!harness.isSelected("ledger.reconcile")) {
+            return;
+        }
+
+        AccountRepositoryImpl accounts = new AccountRepositoryImpl();
+        TransactionRepositoryImpl repository = new TransactionRepositoryImpl();
+        List<Account> pool = new ArrayList<>();
+
+        for (int i = 0; i < LEDGER_ACCOUNTS; i++) {
+            pool.add(accounts.createAccount("user" + i % LEDGER_USERS + "@example.com", "USD"));
+        }
+
+        long[] balances = new long[LEDGER_ACCOUNTS];
+        BigDecimal deposit = new BigDecimal("100");
+        BigDecimal credit = new BigDecimal("9.80");
+        BigDecimal debit = new BigDecimal("10");
+        BigDecimal fee = new BigDecimal("0.20");
+
+        for (int i = 0; i < size; i++) {
+            int to = i % LEDGER_ACCOUNTS;
+            String email = "user" + to % LEDGER_USERS + "@example.com";
+
+            if (i < LEDGER_ACCOUNTS) {
+                repository.createTransaction(TransactionType.DEPOSIT, email, to, "USD", email, to, "USD", deposit);
+                balances[to] += 100_00;
+                continue;
+            }
+
+            int from = (to + 1) % LEDGER_ACCOUNTS;
+            repository.createTransaction(
+                    TransactionType.TRANSFER,
+                    email,
+                    from,
+                    "USD",
+                    email,
+                    to,
+                    "USD",
+                    credit,
+                    debit,
+                    fee,
+                    BigDecimal.ONE,
+                    0
+            );
+            balances[from] -= 10_00;
+            balances[to] += 9_80;
+        }
+
+        for (Account account : pool) {
+            account.setBalance(BigDecimal.valueOf(balances[account.getId()], 2));
+        }
+
+        LedgerReconciler reconciler = new LedgerReconciler(accounts, repository);
+        Map<String, String> params = Map.of("ledgerSize", String.valueOf(size));
+
+        harness.run("ledger.reconcile", params, 1, thread -> reconciler.reconcile());
+    }
+
+
+    /**
+     * Получение курса валюты при заданной глубине истории.
+     */
+    private static void rates(Harness harness, int depth) {
+        if (!harness.isSelected("rates.getActualRate", "rates.getRateAt")) {
+            return;
+        }
+
+        CurrencyRepositoryImpl repository = new CurrencyRepositoryImpl();
+        LocalDateTime start = LocalDateTime.of(2020, 1, 1, 0, 0);
+
+        for (int i = 0; i < depth; i++) {
+            repository.addRate("EUR", BigDecimal.valueOf(100_000 + i, 5), start.plusMinutes(i));
+        }
+
+        Map<String, String> params = Map.of("historyDepth", String.valueOf(depth));
+
+        harness.run("rates.getActualRate", params, 1, thread ->
+                repository.getActualRate(CurrencyCode.EUR)
+        );
+
+        harness.run("rates.getRateAt", params, 1, thread ->
+                repository.getRateAt(CurrencyCode.EUR, start.plusMinutes(ThreadLocalRandom.current().nextInt(depth)))
+        );
+    }
+
+
+    /**
+     * Операции сервиса: пополнение, снятие и обмен на случайных счетах.
+     */
+    private static void service(Harness harness, int threads) {
+        if (!harness.isSelected(
+                "service.deposit",
+                "service.deposit.idempotent",
+                "service.withdrawal",
+                "service.exchange",
+                "service.exchange.batch"
+        )) {
+            return;
+        }
+
+        UserRepositoryImpl users = new UserRepositoryImpl();
+        CurrencyRepositoryImpl currencies = new CurrencyRepositoryImpl();
+        AccountRepositoryImpl accounts = new AccountRepositoryImpl();
+
+        users.addUser(USER, PASSWORD, UserRole.USER);
+        currencies.addRate("USD", BigDecimal.ONE, LocalDateTime.now());
+        currencies.addRate("EUR", new BigDecimal("1.08"), LocalDateTime.now());
+        accounts.createSystemAccount("admin@example.com", "USD", "SYSTEM_USD");
+        accounts.createSystemAccount("admin@example.com", "EUR", "SYSTEM_EUR");
+
+        MainServiceImpl service = new MainServiceImpl(users, accounts, currencies, new TransactionRepositoryImpl());
+        service.setActiveUser(USER);
+
+        // Каждый поток работает в своей сессии, как отдельный клиент.
+        String[] tokens = new String[threads];
+        for (int i = 0; i < threads; i++) {
+            tokens[i] = service.openSession(USER, PASSWORD).getToken();
+        }
+
+        // Большие начальные балансы, чтобы снятия и обмены не упирались в нехватку средств.
+        List<Account> pool = new ArrayList<>();
+        for (int i = 0; i < SERVICE_ACCOUNTS; i++) {
+            Account account = service.creatAccount("Bench " + i, i % 2 == 0 ? "USD" : "EUR");
+            service.deposit(account.getId(), new BigDecimal("1000000000"));
+            pool.add(account);
+        }
+
+        BigDecimal amount = new BigDecimal("1.25");
+        Map<String, String> params = Map.of("accounts", String.valueOf(SERVICE_ACCOUNTS));
+
+        harness.run("service.deposit", params, threads, thread ->
+                service.deposit(tokens[thread], random(pool).getId(), amount)
+        );
+
+        // Каждый вызов с новым ключом: проверка и добавление ключа на каждой операции.
+        AtomicLong requests = new AtomicLong();
+        harness.run("service.deposit.idempotent", params, threads, thread ->
+                service.deposit(tokens[thread], random(pool).getId(), amount, Long.toString(requests.incrementAndGet()))
+        );
+
+        harness.run("service.withdrawal", params, threads, thread ->
+                service.withdrawal(tokens[thread], random(pool).getId(), amount)
+        );
+
+        harness.run("service.exchange", params, threads, thread ->
+                service.exchange(tokens[thread], random(pool).getId(), random(pool).getId(), amount)
+        );
+
+        // Пакет из BATCH_SIZE обменов за один вызов; одна операция бенчмарка - один пакет.
+        Map<String, String> batchParams = Map.of(
+                "accounts", String.valueOf(SERVICE_ACCOUNTS),
+                "batch", String.valueOf(BATCH_SIZE)
+        );
+
+        harness.run("service.exchange.batch", batchParams, threads, thread -> {
+            List<BatchCommand> commands = new ArrayList<>(BATCH_SIZE);
+            for (int i = 0; i < BATCH_SIZE; i++) {
+                commands.add(BatchCommand.exchange(random(pool).getId(), random(pool).getId(), amount));
+            }
+            return service.executeBatch(tokens[thread], commands, false);
+        });
+
+        service.flushCommissions();
+    }
+
+
+    /**
+     * Пополнения через однопоточный исполнитель: синхронные вызовы сервиса и асинхронная публикация без
+     * ожидания ответа (пропускная способность самого исполнителя).
+     */
+    private static void engine(Harness harness, int threads) {
+        if (!harness.isSelected("engine.deposit", "engine.deposit.async")) {
+            return;
+        }
+
+        UserRepositoryImpl users = new UserRepositoryImpl();
+        CurrencyRepositoryImpl currencies = new CurrencyRepositoryImpl();
+        AccountRepositoryImpl accounts = new AccountRepositoryImpl();
+
+        users.addUser(USER, PASSWORD, UserRole.USER);
+        currencies.addRate("USD", BigDecimal.ONE, LocalDateTime.now());
+        accounts.createSystemAccount("admin@example.com", "USD", "SYSTEM_USD");
+
+        SequencedMainService service = new SequencedMainService(
+                users,
+                accounts,
+                currencies,
+                new TransactionRepositoryImpl(),
+                null,
+                LedgerEngine.DEFAULT_CAPACITY
+        );
+        service.start();
+        service.setActiveUser(USER);
+
+        String[] tokens = new String[threads];
+        for (int i = 0; i < threads; i++) {
+            tokens[i] = service.openSession(USER, PASSWORD).getToken();
+        }
+
+        List<Account> pool = new ArrayList<>();
+        for (int i = 0; i < SERVICE_ACCOUNTS; i++) {
+            pool.add(service.creatAccount("Bench " + i, "USD"));
+        }
+
+        LedgerEngine engine = service.getEngine();
+        BigDecimal amount = new BigDecimal("1.25");
+        Map<String, String> params = Map.of("accounts", String.valueOf(SERVICE_ACCOUNTS));
+
+        harness.run("engine.deposit", params, threads, thread ->
+                service.deposit(tokens[thread], random(pool).getId(), amount)
+        );
+
+        harness.run("engine.deposit.async", params, threads, thread ->
+                engine.deposit(USER, random(pool).getId(), amount)
+        );
+
+        service.shutdown();
+    }
+
+
+    /**
+     * Проверка email и пароля: валидные значения и значения с ошибкой (через исключение).
+     */
+    private static void validators(Harness harness) {
+        harness.run("validators.email.valid", Map.of(), 1, thread ->
+                EmailValidator.isValidEmail("max.stoianov@example.com")
+        );
+
+        harness.run("validators.email.invalid", Map.of(), 1, thread -> {
+            try {
+                return EmailValidator.isValidEmail("max@stoianov@example.com");
+            } catch (EmailValidateException e) {
+                return e.getMessage();
+            }
+        });
+
+        harness.run("validators.password.valid", Map.of(), 1, thread ->
+                PasswordValidator.isValidPassword("123_Pass!5")
+        );
+
+        harness.run("validators.password.invalid", Map.of(), 1, thread -> {
+            try {
+                return PasswordValidator.isValidPassword("password");
+            } catch (PasswordValidateException e) {
+                return e.getMessage();
+            }
+        });
+    }
+
+
+    private static Account random(List<Account> pool) {
+        return pool.get(ThreadLocalRandom.current().nextInt(pool.size()));
+    }
+
+}
@@ -0,0 +1,449 @@
+package benchmark;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.BrokenBarrierException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.CyclicBarrier;
+import java.util.regex.Pattern;
+
+/**
+ * Простой измеритель пропускной способности по образцу JMH (режим {@code thrpt}): прогревочные и
+ * измерительные итерации фиксированной длительности, несколько потоков, результат в формате JSON JMH
+ * ({@code -rf json}), чтобы результаты разных коммитов можно было сравнивать теми же инструментами.
+ *
+ * <p>Кроме пропускной способности измеряется выделение памяти на операцию ({@code gc.alloc.rate.norm} профайлера
+ * {@code -prof gc}) по счетчику выделенных байтов каждого потока. Если JVM не поддерживает этот счетчик, значение
+ * равно {@code NaN}.</p>
+ *
+ * <p>В отличие от JMH, бенчмарки выполняются в одной JVM без форков, поэтому сравнивать имеет смысл только
+ * прогоны с одинаковыми настройками JVM.</p>
+ */
+public class Harness {
+
+    /**
+     * Измеряемая операция.
+     */
+    public interface Operation {
+
+        /**
+         * Выполняет операцию один раз.
+         *
+         * @param thread Номер потока (от 0).
+         * @return Результат операции (поглощается, чтобы JIT не удалил вызов).
+         * @throws Exception Ошибка операции прерывает бенчмарк.
+         */
+        Object run(int thread) throws Exception;
+
+    }
+
+    // Квантиль нормального распределения для доверительного интервала 99.9% (как scoreError в JMH).
+    private static final double Z_999 = 3.29;
+
+    // Счетчик выделенной потоками памяти или null, если JVM его не поддерживает.
+    private static final com.sun.management.ThreadMXBean ALLOCATION = allocationCounter();
+
+    private final int warmupIterations;
+    private final int measurementIterations;
+    private final long iterationMillis;
+
+    // Фильтр имен бенчмарков (null - все).
+    private final Pattern filter;
+
+    // Результаты в порядке выполнения.
+    private final List<Result> results;
+
+    // Поглотитель результатов операций.
+    private volatile long sink;
+
+    // Признак окончания текущей итерации.
+    private volatile boolean stop;
+
+
+    /**
+     * @param warmupIterations      Количество прогревочных итераций.
+     * @param measurementIterations Количество измерительных итераций.
+     * @param iterationMillis       Длительность итерации в миллисекундах.
+     * @param filter                Регулярное выражение для отбора бенчмарков по имени или {@code null}.
+     */
+    public Harness(int warmupIterations, int measurementIterations, long iterationMillis, String filter) {
+        if (measurementIterations < 1 || iterationMillis < 1) {
+            throw new IllegalArgumentException("Количество итераций и их длительность должны быть больше нуля!");
+        }
+
+        this.warmupIterations = Math.max(0, warmupIterations);
+        this.measurementIterations = measurementIterations;
+        this.iterationMillis = iterationMillis;
+        this.filter = filter == null ? null : Pattern.compile(filter);
+        this.results = new ArrayList<>();
+    }
+
+
+    /**
+     * Проверяет, будет ли выполнен хотя бы один из бенчмарков (чтобы не готовить данные для пропущенных).
+     *
+     * @param names Имена бенчмарков.
+     * @return {@code true}, если хотя бы одно имя проходит фильтр.
+     */
+    public boolean isSelected(String... names) {
+        if (this.filter == null) {
+            return true;
+        }
+
+        for (String name : names) {
+            if (this.filter.matcher(name).find()) {
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+
+    /**
+     * Измеряет пропускную способность операции.
+     *
+     * @param name      Имя бенчмарка.
+     * @param params    Параметры бенчмарка (попадают в результат).
+     * @param threads   Количество потоков.
+     * @param operation Операция.
+     * @return Результат или {@code null}, если бенчмарк не прошел фильтр.
+     */
+    public Result run(String name, Map<String, String> params, int threads, Operation operation) {
+        if (!this.isSelected(name)) {
+            return null;
+        }
+
+        System.out.printf("# %s %s, потоков: %d%n", name, params, threads);
+
+        for (int i = 0; i < this.warmupIterations; i++) {
+            System.out.printf("Прогрев %d: %s%n", i + 1, format(this.iteration(threads, operation)[0]));
+        }
+
+        double[] scores = new double[this.measurementIterations];
+        double[] allocations = new double[this.measurementIterations];
+        for (int i = 0; i < this.measurementIterations; i++) {
+            double[] iteration = this.iteration(threads, operation);
+            scores[i] = iteration[0];
+            allocations[i] = iteration[1];
+            System.out.printf("Итерация %d: %s, %s%n", i + 1, format(scores[i]), formatAllocation(allocations[i]));
+        }
+
+        Result result = new Result(name, new LinkedHashMap<>(params), threads, scores, allocations);
+        System.out.printf(
+                "Результат: %s ± %s, %s%n%n",
+                format(result.getScore()),
+                format(result.getScoreError()),
+                formatAllocation(result.getAllocation())
+        );
+        this.results.add(result);
+
+        return result;
+    }
+
+
+    /**
+     * Возвращает результаты выполненных бенчмарков.
+     *
+     * @return Список результатов.
+     */
+    public List<Result> getResults() {
+        return this.results;
+    }
+
+
+    /**
+     * Сохраняет результаты в формате JSON JMH.
+     *
+     * @param file Файл.
+     * @throws IOException Ошибка записи.
+     */
+    public void writeJson(Path file) throws IOException {
+        StringBuilder json = new StringBuilder("[\n");
+
+        for (int i = 0; i < this.results.size(); i++) {
+            json.append(this.results.get(i).toJson(this));
+            json.append(i + 1 < this.results.size() ? ",\n" : "\n");
+        }
+
+        json.append("]\n");
+        Files.write(file, json.toString().getBytes(StandardCharsets.UTF_8));
+    }
+
+
+    /**
+     * Выполняет одну итерацию: все потоки стартуют одновременно и выполняют операцию до сигнала остановки.
+     *
+     * @return Операций в секунду (по всем потокам) и байтов памяти, выделенных на операцию.
+     */
+    private double[] iteration(int threads, Operation operation) {
+        long[] counts = new long[threads];
+        long[] allocated = new long[threads];
+        Throwable[] errors = new Throwable[1];
+        CyclicBarrier start = new CyclicBarrier(threads + 1);
+        CountDownLatch done = new CountDownLatch(threads);
+
+        this.stop = false;
+
+        for (int t = 0; t < threads; t++) {
+            int thread = t;
+
+            Thread worker = new Thread(() -> {
+                long count = 0;
+                long hash = 0;
+                long allocatedBefore = 0;
+
+                try {
+                    start.await();
+                    allocatedBefore = allocatedBytes();
+
+                    while (!this.stop) {
+                        Object value = operation.run(thread);
+                        // identityHashCode, а не hashCode: hashCode результата может выделять память.
+                        hash += System.identityHashCode(value);
+                        count++;
+                    }
+                } catch (Throwable e) {
+                    synchronized (errors) {
+                        errors[0] = e;
+                    }
+                    this.stop = true;
+                } finally {
+                    counts[thread] = count;
+                    allocated[thread] = allocatedBytes() - allocatedBefore;
+                    this.sink += hash;
+                    done.countDown();
+                }
+            }, "bench-" + t);
+
+            worker.setDaemon(true);
+            worker.start();
+        }
+
+        try {
+            start.await();
+            long begin = System.nanoTime();
+            Thread.sleep(this.iterationMillis);
+            this.stop = true;
+            done.await();
+            long elapsed = System.nanoTime() - begin;
+
+            synchronized (errors) {
+                if (errors[0] != null) {
+                    throw new IllegalStateException("Ошибка в бенчмарке: " + errors[0], errors[0]);
+                }
+            }
+
+            long total = 0;
+            long bytes = 0;
+            for (int t = 0; t < threads; t++) {
+                total += counts[t];
+                bytes += allocated[t];
+            }
+
+            double allocation = ALLOCATION == null || total == 0 ? Double.NaN : (double) bytes / total;
+
+            return new double[]{total * 1e9 / elapsed, allocation};
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Бенчмарк прерван!", e);
+        } catch (BrokenBarrierException e) {
+            throw new IllegalStateException("Бенчмарк прерван!", e);
+        }
+    }
+
+
+    private static String format(double score) {
+        return String.format(Locale.ROOT, "%,.1f ops/s", score);
+    }
+
+
+    private static String formatAllocation(double bytes) {
+        return String.format(Locale.ROOT, "%.1f B/op", bytes);
+    }
+
+
+    /**
+     * Возвращает количество байтов, выделенных текущим потоком, или 0, если счетчик не поддерживается.
+     */
+    private static long allocatedBytes() {
+        return ALLOCATION == null ? 0 : ALLOCATION.getThreadAllocatedBytes(Thread.currentThread().getId());
+    }
+
+
+    private static com.sun.management.ThreadMXBean allocationCounter() {
+        if (!(ManagementFactory.getThreadMXBean() instanceof com.sun.management.ThreadMXBean)) {
+            return null;
+        }
+
+        com.sun.management.ThreadMXBean bean = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+
+        if (!bean.isThreadAllocatedMemorySupported()) {
+            return null;
+        }
+
+        bean.setThreadAllocatedMemoryEnabled(true);
+
+        return bean;
+    }
+
+
+    /**
+     * Результат бенчмарка.
+     */
+    public static class Result {
+
+        private final String name;
+        private final Map<String, String> params;
+        private final int threads;
+        private final double[] scores;
+        private final double[] allocations;
+
+
+        private Result(String name, Map<String, String> params, int threads, double[] scores, double[] allocations) {
+            this.name = name;
+            this.params = params;
+            this.threads = threads;
+            this.scores = scores;
+            this.allocations = allocations;
+        }
+
+
+        public String getName() {
+            return this.name;
+        }
+
+
+        public Map<String, String> getParams() {
+            return this.params;
+        }
+
+
+        public int getThreads() {
+            return this.threads;
+        }
+
+
+        /**
+         * Возвращает среднюю пропускную способность по измерительным итерациям.
+         *
+         * @return Операций в секунду.
+         */
+        public double getScore() {
+            double sum = 0;
+            for (double score : this.scores) {
+                sum += score;
+            }
+
+            return sum / this.scores.length;
+        }
+
+
+        /**
+         * Возвращает полуширину доверительного интервала 99.9% для средней пропускной способности.
+         *
+         * @return Операций в секунду ({@code NaN} для одной итерации).
+         */
+        public double getScoreError() {
+            if (this.scores.length < 2) {
+                return Double.NaN;
+            }
+
+            double mean = this.getScore();
+            double squares = 0;
+            for (double score : this.scores) {
+                squares += (score - mean) * (score - mean);
+            }
+
+            return Z_999 * Math.sqrt(squares / (this.scores.length - 1)) / Math.sqrt(this.scores.length);
+        }
+
+
+        /**
+         * Возвращает среднее выделение памяти на операцию по измерительным итерациям.
+         *
+         * @return Байтов на операцию ({@code NaN}, если не измерялось).
+         */
+        public double getAllocation() {
+            double sum = 0;
+            for (double allocation : this.allocations) {
+                sum += allocation;
+            }
+
+            return sum / this.allocations.length;
+        }
+
+
+        private String toJson(Harness harness) {
+            StringBuilder json = new StringBuilder()
+                    .append("  {\n")
+                    .append("    \"jmhVersion\" : \"harness\",\n")
+                    .append("    \"benchmark\" : \"").append(escape(this.name)).append("\",\n")
+                    .append("    \"mode\" : \"thrpt\",\n")
+                    .append("    \"threads\" : ").append(this.threads).append(",\n")
+                    .append("    \"forks\" : 0,\n")
+                    .append("    \"jvm\" : \"").append(escape(System.getProperty("java.home"))).append("\",\n")
+                    .append("    \"jdkVersion\" : \"").append(escape(System.getProperty("java.version"))).append("\",\n")
+                    .append("    \"warmupIterations\" : ").append(harness.warmupIterations).append(",\n")
+                    .append("    \"warmupTime\" : \"").append(harness.iterationMillis).append(" ms\",\n")
+                    .append("    \"measurementIterations\" : ").append(harness.measurementIterations).append(",\n")
+                    .append("    \"measurementTime\" : \"").append(harness.iterationMillis).append(" ms\",\n");
+
+            if (!this.params.isEmpty()) {
+                json.append("    \"params\" : {\n");
+
+                int i = 0;
+                for (Map.Entry<String, String> param : this.params.entrySet()) {
+                    json.append("      \"").append(escape(param.getKey())).append("\" : \"")
+                            .append(escape(param.getValue())).append("\"")
+                            .append(++i < this.params.size() ? ",\n" : "\n");
+                }
+
+                json.append("    },\n");
+            }
+
+            json.append("    \"primaryMetric\" : {\n")
+                    .append("      \"score\" : ").append(number(this.getScore())).append(",\n")
+                    .append("      \"scoreError\" : ").append(number(this.getScoreError())).append(",\n")
+                    .append("      \"scoreUnit\" : \"ops/s\",\n")
+                    .append("      \"rawData\" : [ [ ");
+
+            for (int i = 0; i < this.scores.length; i++) {
+                json.append(number(this.scores[i])).append(i + 1 < this.scores.length ? ", " : " ");
+            }
+
+            json.append("] ]\n    },\n")
+                    .append("    \"secondaryMetrics\" : {\n")
+                    .append("      \"·gc.alloc.rate.norm\" : {\n")
+                    .append("        \"score\" : ").append(number(this.getAllocation())).append(",\n")
+                    .append("        \"scoreUnit\" : \"B/op\",\n")
+                    .append("        \"rawData\" : [ [ ");
+
+            for (int i = 0; i < this.allocations.length; i++) {
+                json.append(number(this.allocations[i])).append(i + 1 < this.allocations.length ? ", " : " ");
+            }
+
+            return json.append("] ]\n      }\n    }\n  }").toString();
+        }
+
+
+        private static String number(double value) {
+            return Double.isNaN(value) ? "\"NaN\"" : String.format(Locale.ROOT, "%.3f", value);
+        }
+
+
+        private static String escape(String value) {
+            return value.replace("\\", "\\\\").replace("\"", "\\\"");
+        }
+
+    }
+
+}
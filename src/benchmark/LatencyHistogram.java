@@ -0,0 +1,146 @@
+package benchmark;
+
+/**
+ * Гистограмма задержек в наносекундах с логарифмически-линейными интервалами (по схеме HdrHistogram): значения
+ * до 128 хранятся точно, большие - с относительной погрешностью не больше 1/64 (~1.6%). Диапазон - весь
+ * {@code long}, память - около 30 КБ независимо от количества значений.
+ *
+ * <p>Не потокобезопасна: каждый поток пишет в свою гистограмму, результаты объединяются через
+ * {@link #add(LatencyHistogram)}.</p>
+ */
+public class LatencyHistogram {
+
+    // Количество бит точности внутри интервала.
+    private static final int SUB_BUCKET_BITS = 7;
+
+    // Половина интервала: значения [64, 128) << shift.
+    private static final int SUB_BUCKET_HALF = 1 << (SUB_BUCKET_BITS - 1);
+
+    // Количество счетчиков: точные значения [0, 128) и по 64 на каждый сдвиг от 1 до 57.
+    private static final int BUCKETS = (64 - SUB_BUCKET_BITS + 2) * SUB_BUCKET_HALF;
+
+    private final long[] counts;
+
+    private long count;
+    private long total;
+    private long min;
+    private long max;
+
+
+    public LatencyHistogram() {
+        this.counts = new long[BUCKETS];
+        this.min = Long.MAX_VALUE;
+    }
+
+
+    /**
+     * Записывает значение.
+     *
+     * @param value Значение (отрицательные значения считаются нулем).
+     */
+    public void record(long value) {
+        if (value < 0) {
+            value = 0;
+        }
+
+        this.counts[index(value)]++;
+        this.count++;
+        this.total += value;
+
+        if (value < this.min) {
+            this.min = value;
+        }
+
+        if (value > this.max) {
+            this.max = value;
+        }
+    }
+
+
+    /**
+     * Добавляет значения другой гистограммы.
+     *
+     * @param other Гистограмма.
+     */
+    public void add(LatencyHistogram other) {
+        for (int i = 0; i < BUCKETS; i++) {
+            this.counts[i] += other.counts[i];
+        }
+
+        this.count += other.count;
+        this.total += other.total;
+        this.min = Math.min(this.min, other.min);
+        this.max = Math.max(this.max, other.max);
+    }
+
+
+    /**
+     * Возвращает значение перцентиля: верхнюю границу интервала, до которого (включительно) попадает заданная доля
+     * значений.
+     *
+     * @param percentile Перцентиль от 0 до 100.
+     * @return Значение или {@code 0}, если значений нет.
+     */
+    public long getValueAtPercentile(double percentile) {
+        if (this.count == 0) {
+            return 0;
+        }
+
+        long rank = Math.max(1, (long) Math.ceil(Math.min(percentile, 100.0) / 100.0 * this.count));
+        long seen = 0;
+
+        for (int i = 0; i < BUCKETS; i++) {
+            seen += this.counts[i];
+
+            if (seen >= rank) {
+                return Math.min(highestValue(i), this.max);
+            }
+        }
+
+        return this.max;
+    }
+
+
+    public long getCount() {
+        return this.count;
+    }
+
+
+    public double getMean() {
+        return this.count == 0 ? 0 : (double) this.total / this.count;
+    }
+
+
+    public long getMin() {
+        return this.count == 0 ? 0 : this.min;
+    }
+
+
+    public long getMax() {
+        return this.max;
+    }
+
+
+    private static int index(long value) {
+        if (value < 1 << SUB_BUCKET_BITS) {
+            return (int) value;
+        }
+
+        int shift = 64 - Long.numberOfLeadingZeros(value) - SUB_BUCKET_BITS;
+
+        return shift * SUB_BUCKET_HALF + (int) (value >>> shift);
+    }
+
+
+    private static long highestValue(int index) {
+        if (index < 1 << SUB_BUCKET_BITS) {
+            return index;
+        }
+
+        int shift = index / SUB_BUCKET_HALF - 1;
+        long sub = index - (long) shift * SUB_BUCKET_HALF;
+
+        return ((sub + 1) << shift) - 1;
+    }
+
+}
@@ -0,0 +1,447 @@
+package benchmark;
+
+import model.Account;
+import model.enums.CurrencyCode;
+import model.enums.UserRole;
+import repository.AccountRepositoryImpl;
+import repository.CurrencyRepositoryImpl;
+import repository.TransactionRepositoryImpl;
+import repository.UserRepositoryImpl;
+import service.MainServiceImpl;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.time.LocalDateTime;
+import java.util.Locale;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Генератор нагрузки на {@link MainServiceImpl}: создает синтетических пользователей со счетами во всех валютах
+ * {@link CurrencyCode} и выполняет смесь пополнений, снятий, обменов и чтений истории с заданной частотой.
+ *
+ * <p>Нагрузка открытая (open-loop): операция {@code i} запланирована на момент {@code start + i / rate} независимо
+ * от того, успели ли завершиться предыдущие. Задержка отсчитывается от запланированного момента, а не от
+ * фактического начала, поэтому время ожидания в очереди, когда сервис не успевает, попадает в перцентили
+ * (поправка на coordinated omission). Отдельно выводится время выполнения самой операции.</p>
+ *
+ * <p>Запуск: {@code java benchmark.LoadGenerator [-u 1000] [-a 3] [-r 5000] [-d 30] [-w 5] [-c 16]
+ * [-m deposit=40,withdrawal=25,exchange=20,history=15]}: пользователи, счета на пользователя, операций в
+ * секунду, длительность измерения и прогрева в секундах, количество клиентских потоков, доли операций.</p>
+ */
+public class LoadGenerator {
+
+    /**
+     * Тип операции.
+     */
+    private enum Operation {
+        DEPOSIT,
+        WITHDRAWAL,
+        EXCHANGE,
+        HISTORY
+    }
+
+    private static final String PASSWORD = "123_Pass!0";
+
+    // Начальный баланс счетов в USD, чтобы снятия и обмены не упирались в нехватку средств.
+    private static final BigDecimal INITIAL_BALANCE_USD = new BigDecimal("1000000");
+
+    // Перцентили отчета.
+    private static final double[] PERCENTILES = {50, 90, 99, 99.9, 99.99};
+
+    private final MainServiceImpl service;
+
+    // Токены сессий пользователей.
+    private final String[] tokens;
+
+    // Счета пользователей (по индексу пользователя).
+    private final int[][] accounts;
+
+    // Валюты счетов пользователей (по индексу пользователя).
+    private final CurrencyCode[][] currencies;
+
+    // Доли операций (сумма - 100).
+    private final int[] mix;
+
+
+    /**
+     * @param users           Количество пользователей.
+     * @param accountsPerUser Количество счетов у пользователя (не меньше 2, чтобы были возможны обмены).
+     * @param mix             Доли операций в порядке {@link Operation}.
+     */
+    public LoadGenerator(int users, int accountsPerUser, int[] mix) {
+        if (users < 1 || accountsPerUser < 2) {
+            throw new IllegalArgumentException("Нужен хотя бы один пользователь с двумя счетами!");
+        }
+
+        UserRepositoryImpl userRepository = new UserRepositoryImpl();
+        AccountRepositoryImpl accountRepository = new AccountRepositoryImpl();
+        CurrencyRepositoryImpl currencyRepository = new CurrencyRepositoryImpl();
+        CurrencyCode[] codes = CurrencyCode.values();
+
+        for (CurrencyCode code : codes) {
+            currencyRepository.addRate(code.name(), course(code), LocalDateTime.now());
+            accountRepository.createSystemAccount("admin@example.com", code.name(), "SYSTEM_" + code.name());
+        }
+
+        this.service = new MainServiceImpl(
+                userRepository,
+                accountRepository,
+                currencyRepository,
+                new TransactionRepositoryImpl()
+        );
+        this.tokens = new String[users];
+        this.accounts = new int[users][accountsPerUser];
+        this.currencies = new CurrencyCode[users][accountsPerUser];
+        this.mix = mix.clone();
+
+        for (int i = 0; i < users; i++) {
+            String email = "load" + i + "@example.com";
+            userRepository.addUser(email, PASSWORD, UserRole.USER);
+            this.tokens[i] = this.service.openSession(email, PASSWORD).getToken();
+
+            for (int j = 0; j < accountsPerUser; j++) {
+                CurrencyCode code = codes[(i + j) % codes.length];
+                Account account = this.service.creatAccount(this.tokens[i], "Load " + j, code.name());
+
+                this.service.deposit(this.tokens[i], account.getId(), inCurrency(INITIAL_BALANCE_USD, code));
+                this.accounts[i][j] = account.getId();
+                this.currencies[i][j] = code;
+            }
+        }
+    }
+
+
+    public static void main(String[] args) throws InterruptedException {
+        int users = 1_000;
+        int accountsPerUser = 3;
+        double rate = 5_000;
+        long seconds = 30;
+        long warmupSeconds = 5;
+        int clients = 16;
+        int[] mix = {40, 25, 20, 15};
+
+        for (int i = 0; i < args.length; i++) {
+            switch (args[i]) {
+                case "-u":
+                    users = Integer.parseInt(args[++i]);
+                    break;
+
+                case "-a":
+                    accountsPerUser = Integer.parseInt(args[++i]);
+                    break;
+
+                case "-r":
+                    rate = Double.parseDouble(args[++i]);
+                    break;
+
+                case "-d":
+                    seconds = Long.parseLong(args[++i]);
+                    break;
+
+                case "-w":
+                    warmupSeconds = Long.parseLong(args[++i]);
+                    break;
+
+                case "-c":
+                    clients = Integer.parseInt(args[++i]);
+                    break;
+
+                case "-m":
+                    mix = parseMix(args[++i]);
+                    break;
+
+                default:
+                    throw new IllegalArgumentException("Неизвестный аргумент: " + args[i]);
+            }
+        }
+
+        System.out.printf("Подготовка: %d пользователей, %d счетов у каждого...%n", users, accountsPerUser);
+        LoadGenerator generator = new LoadGenerator(users, accountsPerUser, mix);
+
+        System.out.printf(
+                "Нагрузка: %.0f оп/с, %d с (прогрев %d с), %d клиентских потоков%n",
+                rate,
+                seconds,
+                warmupSeconds,
+                clients
+        );
+        generator.run(rate, seconds, warmupSeconds, clients);
+    }
+
+
+    /**
+     * Выполняет нагрузку и выводит отчет.
+     *
+     * @param rate          Операций в секунду.
+     * @param seconds       Длительность измерения в секундах.
+     * @param warmupSeconds Длительность прогрева в секундах (результаты не учитываются).
+     * @param clients       Количество клиентских потоков.
+     */
+    public void run(double rate, long seconds, long warmupSeconds, int clients) throws InterruptedException {
+        if (rate <= 0 || seconds <= 0 || clients < 1) {
+            throw new IllegalArgumentException("Частота, длительность и количество потоков должны быть больше нуля!");
+        }
+
+        int operations = Operation.values().length;
+        double intervalNanos = TimeUnit.SECONDS.toNanos(1) / rate;
+
+        long start = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(100);
+        long measureFrom = start + TimeUnit.SECONDS.toNanos(warmupSeconds);
+        long end = measureFrom + TimeUnit.SECONDS.toNanos(seconds);
+
+        AtomicLong sequence = new AtomicLong();
+        LatencyHistogram[][] response = new LatencyHistogram[clients][operations];
+        LatencyHistogram[][] service = new LatencyHistogram[clients][operations];
+        long[][] errors = new long[clients][operations];
+        CountDownLatch done = new CountDownLatch(clients);
+
+        for (int c = 0; c < clients; c++) {
+            for (int op = 0; op < operations; op++) {
+                response[c][op] = new LatencyHistogram();
+                service[c][op] = new LatencyHistogram();
+            }
+
+            int client = c;
+            Thread thread = new Thread(() -> {
+                try {
+                    while (true) {
+                        long intended = start + (long) (sequence.getAndIncrement() * intervalNanos);
+                        if (intended >= end) {
+                            break;
+                        }
+
+                        long now;
+                        while ((now = System.nanoTime()) < intended) {
+                            LockSupport.parkNanos(intended - now);
+                        }
+
+                        Operation operation = this.pick();
+                        boolean ok;
+
+                        try {
+                            ok = this.execute(operation);
+                        } catch (RuntimeException e) {
+                            ok = false;
+                        }
+
+                        long finished = System.nanoTime();
+
+                        if (intended >= measureFrom) {
+                            response[client][operation.ordinal()].record(finished - intended);
+                            service[client][operation.ordinal()].record(finished - now);
+
+                            if (!ok) {
+                                errors[client][operation.ordinal()]++;
+                            }
+                        }
+                    }
+                } finally {
+                    done.countDown();
+                }
+            }, "load-client-" + c);
+
+            thread.setDaemon(true);
+            thread.start();
+        }
+
+        done.await();
+        this.service.flushCommissions();
+
+        double measuredSeconds = (double) (end - measureFrom) / TimeUnit.SECONDS.toNanos(1);
+
+        System.out.printf(Locale.ROOT, "%nЗадержка от запланированного момента (мкс), цель %.0f оп/с:%n", rate);
+        report(merge(response), errors, measuredSeconds);
+
+        System.out.printf(Locale.ROOT, "%nВремя выполнения операции (мкс):%n");
+        report(merge(service), errors, measuredSeconds);
+    }
+
+
+    /**
+     * Выбирает тип операции согласно долям.
+     */
+    private Operation pick() {
+        int roll = ThreadLocalRandom.current().nextInt(100);
+
+        for (Operation operation : Operation.values()) {
+            roll -= this.mix[operation.ordinal()];
+
+            if (roll < 0) {
+                return operation;
+            }
+        }
+
+        return Operation.HISTORY;
+    }
+
+
+    /**
+     * Выполняет операцию от имени случайного пользователя.
+     *
+     * @return {@code true}, если операция выполнена.
+     */
+    private boolean execute(Operation operation) {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        int user = random.nextInt(this.tokens.length);
+        int[] own = this.accounts[user];
+        int index = random.nextInt(own.length);
+        int account = own[index];
+
+        // Суммы от 0.01 до 100 USD в валюте счета.
+        BigDecimal amount = inCurrency(BigDecimal.valueOf(random.nextInt(1, 10_001), 2), this.currencies[user][index]);
+
+        switch (operation) {
+            case DEPOSIT:
+                return this.service.deposit(this.tokens[user], account, amount);
+
+            case WITHDRAWAL:
+                return this.service.withdrawal(this.tokens[user], account, amount);
+
+            case EXCHANGE:
+                int to = own[(index + 1 + random.nextInt(own.length - 1)) % own.length];
+                return this.service.exchange(this.tokens[user], account, to, amount);
+
+            default:
+                return this.service.getTransactionsByAccountId(this.tokens[user], account) != null;
+        }
+    }
+
+
+    private static void report(LatencyHistogram[] histograms, long[][] errors, double seconds) {
+        System.out.printf(
+                Locale.ROOT,
+                "%-12s %10s %10s %8s %10s %10s %10s %10s %10s %10s %10s%n",
+                "operation",
+                "count",
+                "ops/s",
+                "errors",
+                "mean",
+                "p50",
+                "p90",
+                "p99",
+                "p99.9",
+                "p99.99",
+                "max"
+        );
+
+        LatencyHistogram total = new LatencyHistogram();
+        long totalErrors = 0;
+
+        for (Operation operation : Operation.values()) {
+            long operationErrors = 0;
+            for (long[] client : errors) {
+                operationErrors += client[operation.ordinal()];
+            }
+
+            row(operation.name().toLowerCase(), histograms[operation.ordinal()], operationErrors, seconds);
+            total.add(histograms[operation.ordinal()]);
+            totalErrors += operationErrors;
+        }
+
+        row("total", total, totalErrors, seconds);
+    }
+
+
+    private static void row(String name, LatencyHistogram histogram, long errors, double seconds) {
+        StringBuilder line = new StringBuilder(String.format(
+                Locale.ROOT,
+                "%-12s %10d %10.0f %8d %10.1f",
+                name,
+                histogram.getCount(),
+                histogram.getCount() / seconds,
+                errors,
+                histogram.getMean() / 1_000
+        ));
+
+        for (double percentile : PERCENTILES) {
+            line.append(String.format(Locale.ROOT, " %10.1f", histogram.getValueAtPercentile(percentile) / 1_000.0));
+        }
+
+        line.append(String.format(Locale.ROOT, " %10.1f", histogram.getMax() / 1_000.0));
+        System.out.println(line);
+    }
+
+
+    private static LatencyHistogram[] merge(LatencyHistogram[][] histograms) {
+        LatencyHistogram[] merged = new LatencyHistogram[Operation.values().length];
+
+        for (int op = 0; op < merged.length; op++) {
+            merged[op] = new LatencyHistogram();
+
+            for (LatencyHistogram[] client : histograms) {
+                merged[op].add(client[op]);
+            }
+        }
+
+        return merged;
+    }
+
+
+    /**
+     * Разбирает доли операций: {@code deposit=40,withdrawal=25,exchange=20,history=15}.
+     */
+    private static int[] parseMix(String value) {
+        int[] mix = new int[Operation.values().length];
+        int sum = 0;
+
+        for (String part : value.split(",")) {
+            String[] pair = part.split("=");
+
+            if (pair.length != 2) {
+                throw new IllegalArgumentException("Неверный формат долей операций: " + value);
+            }
+
+            int share = Integer.parseInt(pair[1].trim());
+            mix[Operation.valueOf(pair[0].trim().toUpperCase()).ordinal()] = share;
+            sum += share;
+        }
+
+        if (sum != 100) {
+            throw new IllegalArgumentException("Сумма долей операций должна быть равна 100!");
+        }
+
+        return mix;
+    }
+
+
+    /**
+     * Курс валюты к USD для синтетических данных.
+     */
+    private static BigDecimal course(CurrencyCode code) {
+        switch (code) {
+            case EUR:
+                return new BigDecimal("1.08");
+
+            case GBP:
+            case FKP:
+                return new BigDecimal("1.27");
+
+            case CHF:
+                return new BigDecimal("1.12");
+
+            case BTC:
+                return new BigDecimal("65000");
+
+            case XMR:
+                return new BigDecimal("150");
+
+            default:
+                return BigDecimal.ONE;
+        }
+    }
+
+
+    /**
+     * Переводит сумму в USD в валюту с округлением до ее точности (не меньше минимальной единицы).
+     */
+    private static BigDecimal inCurrency(BigDecimal usd, CurrencyCode code) {
+        BigDecimal amount = usd.divide(course(code), code.getScale(), RoundingMode.HALF_EVEN);
+
+        return amount.signum() > 0 ? amount : BigDecimal.ONE.movePointLeft(code.getScale());
+    }
+
+}
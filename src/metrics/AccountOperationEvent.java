@@ -0,0 +1,105 @@
+package metrics;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Timespan;
+
+import java.math.BigDecimal;
+
+/**
+ * Событие JFR: пополнение, снятие или обмен. Длительность события - от начала операции до ее завершения, время
+ * ожидания блокировок счетов записывается отдельно.
+ *
+ * <p>Поля заполняются, только если событие будет записано ({@link #shouldCommit()}), поэтому без записи JFR
+ * стоимость события - создание объекта, который JIT обычно устраняет.</p>
+ */
+@Name("exchange.AccountOperation")
+@Label("Account Operation")
+@Category({"Exchange", "Service"})
+@Description("Пополнение, снятие или обмен между счетами")
+@StackTrace(false)
+public class AccountOperationEvent extends Event {
+
+    @Label("Operation")
+    private String operation;
+
+    @Label("Account From")
+    private int accountFrom;
+
+    @Label("Account To")
+    private int accountTo;
+
+    @Label("Currency Pair")
+    private String currencyPair;
+
+    @Label("Amount Bucket")
+    @Description("Порядок суммы в валюте списания")
+    private String amountBucket;
+
+    @Label("Lock Wait")
+    @Timespan(Timespan.NANOSECONDS)
+    private long lockWait;
+
+
+    /**
+     * Завершает событие и записывает его, если запись JFR включена.
+     *
+     * @param operation     Операция.
+     * @param accountFrom   Id счета списания.
+     * @param accountTo     Id счета зачисления.
+     * @param currencyFrom  Валюта списания.
+     * @param currencyTo    Валюта зачисления.
+     * @param amount        Сумма.
+     * @param lockWaitNanos Время ожидания блокировок в наносекундах.
+     */
+    public void record(
+            String operation,
+            int accountFrom,
+            int accountTo,
+            String currencyFrom,
+            String currencyTo,
+            BigDecimal amount,
+            long lockWaitNanos
+    ) {
+        this.end();
+
+        if (this.shouldCommit()) {
+            this.operation = operation;
+            this.accountFrom = accountFrom;
+            this.accountTo = accountTo;
+            this.currencyPair = currencyFrom + "/" + currencyTo;
+            this.amountBucket = amountBucket(amount);
+            this.lockWait = lockWaitNanos;
+            this.commit();
+        }
+    }
+
+
+    /**
+     * Возвращает порядок суммы: {@code <1}, {@code 1-10}, {@code 10-100} и т.д.
+     *
+     * @param amount Сумма.
+     * @return Интервал суммы.
+     */
+    public static String amountBucket(BigDecimal amount) {
+        if (amount == null) {
+            return null;
+        }
+
+        // Количество цифр целой части.
+        int digits = amount.precision() - amount.scale();
+
+        if (amount.signum() == 0 || digits <= 0) {
+            return "<1";
+        }
+
+        return BigDecimal.ONE.movePointRight(digits - 1).toPlainString()
+               + "-"
+               + BigDecimal.ONE.movePointRight(digits).toPlainString();
+    }
+
+}
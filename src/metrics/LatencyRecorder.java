@@ -0,0 +1,150 @@
+package metrics;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Потокобезопасная гистограмма задержек в наносекундах без блокировок: запись - инкремент счетчика интервала и
+ * {@link LongAdder}. Интервалы логарифмически-линейные: значения до 64 хранятся точно, большие - с
+ * относительной погрешностью не больше 1/32 (~3%).
+ *
+ * <p>Чтение перцентилей не останавливает запись, поэтому значения, записанные во время чтения, могут быть учтены
+ * частично.</p>
+ */
+public class LatencyRecorder {
+
+    // Количество бит точности внутри интервала.
+    private static final int SUB_BUCKET_BITS = 6;
+
+    // Половина интервала: значения [32, 64) << shift.
+    private static final int SUB_BUCKET_HALF = 1 << (SUB_BUCKET_BITS - 1);
+
+    // Количество счетчиков: точные значения [0, 64) и по 32 на каждый сдвиг от 1 до 58.
+    private static final int BUCKETS = (64 - SUB_BUCKET_BITS + 2) * SUB_BUCKET_HALF;
+
+    private final AtomicLongArray counts;
+    private final LongAdder count;
+    private final LongAdder total;
+    private final AtomicLong max;
+
+
+    public LatencyRecorder() {
+        this.counts = new AtomicLongArray(BUCKETS);
+        this.count = new LongAdder();
+        this.total = new LongAdder();
+        this.max = new AtomicLong();
+    }
+
+
+    /**
+     * Записывает значение.
+     *
+     * @param nanos Задержка в наносекундах (отрицательные значения считаются нулем).
+     */
+    public void record(long nanos) {
+        if (nanos < 0) {
+            nanos = 0;
+        }
+
+        this.counts.incrementAndGet(index(nanos));
+        this.count.increment();
+        this.total.add(nanos);
+
+        long current = this.max.get();
+        while (nanos > current && !this.max.compareAndSet(current, nanos)) {
+            current = this.max.get();
+        }
+    }
+
+
+    /**
+     * Возвращает значения перцентилей.
+     *
+     * @param percentiles Перцентили от 0 до 100 в порядке возрастания.
+     * @return Значения в наносекундах (верхние границы интервалов) в том же порядке.
+     */
+    public long[] getValuesAtPercentiles(double... percentiles) {
+        long[] snapshot = new long[BUCKETS];
+        long recorded = 0;
+
+        for (int i = 0; i < BUCKETS; i++) {
+            snapshot[i] = this.counts.get(i);
+            recorded += snapshot[i];
+        }
+
+        long[] values = new long[percentiles.length];
+        if (recorded == 0) {
+            return values;
+        }
+
+        long max = this.max.get();
+        long seen = 0;
+        int bucket = -1;
+
+        for (int p = 0; p < percentiles.length; p++) {
+            long rank = Math.max(1, (long) Math.ceil(Math.min(percentiles[p], 100.0) / 100.0 * recorded));
+
+            while (seen < rank && bucket < BUCKETS - 1) {
+                seen += snapshot[++bucket];
+            }
+
+            values[p] = Math.min(highestValue(bucket), max);
+        }
+
+        return values;
+    }
+
+
+    public long getCount() {
+        return this.count.sum();
+    }
+
+
+    public long getTotal() {
+        return this.total.sum();
+    }
+
+
+    public long getMax() {
+        return this.max.get();
+    }
+
+
+    /**
+     * Обнуляет гистограмму.
+     */
+    public void reset() {
+        for (int i = 0; i < BUCKETS; i++) {
+            this.counts.set(i, 0);
+        }
+
+        this.count.reset();
+        this.total.reset();
+        this.max.set(0);
+    }
+
+
+    private static int index(long value) {
+        if (value < 1 << SUB_BUCKET_BITS) {
+            return (int) value;
+        }
+
+        int shift = 64 - Long.numberOfLeadingZeros(value) - SUB_BUCKET_BITS;
+
+        return shift * SUB_BUCKET_HALF + (int) (value >>> shift);
+    }
+
+
+    private static long highestValue(int index) {
+        if (index < 1 << SUB_BUCKET_BITS) {
+            return index;
+        }
+
+        int shift = index / SUB_BUCKET_HALF - 1;
+        long sub = index - (long) shift * SUB_BUCKET_HALF;
+
+        return ((sub + 1) << shift) - 1;
+    }
+
+}
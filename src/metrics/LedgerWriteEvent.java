@@ -0,0 +1,65 @@
+package metrics;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import model.Transaction;
+
+/**
+ * Событие JFR: запись транзакции в журнал операций (вместе с записью в журнал изменений, если он есть).
+ */
+@Name("exchange.LedgerWrite")
+@Label("Ledger Write")
+@Category({"Exchange", "Repository"})
+@Description("Запись транзакции в журнал операций")
+@StackTrace(false)
+public class LedgerWriteEvent extends Event {
+
+    @Label("Transaction Id")
+    private int transactionId;
+
+    @Label("Type")
+    private String type;
+
+    @Label("Account From")
+    private int accountFrom;
+
+    @Label("Account To")
+    private int accountTo;
+
+    @Label("Currency Pair")
+    private String currencyPair;
+
+    @Label("Amount Bucket")
+    private String amountBucket;
+
+    @Label("Journaled")
+    @Description("Транзакция записана в журнал изменений на диске")
+    private boolean journaled;
+
+
+    /**
+     * Завершает событие и записывает его, если запись JFR включена.
+     *
+     * @param transaction Транзакция.
+     * @param journaled   {@code true}, если транзакция записана в журнал изменений.
+     */
+    public void record(Transaction transaction, boolean journaled) {
+        this.end();
+
+        if (this.shouldCommit()) {
+            this.transactionId = transaction.getId();
+            this.type = String.valueOf(transaction.getType());
+            this.accountFrom = transaction.getAccountIdFrom();
+            this.accountTo = transaction.getAccountIdTo();
+            this.currencyPair = transaction.getCurrencyFrom() + "/" + transaction.getCurrencyTo();
+            this.amountBucket = AccountOperationEvent.amountBucket(transaction.getAmount());
+            this.journaled = journaled;
+            this.commit();
+        }
+    }
+
+}
@@ -0,0 +1,118 @@
+package metrics;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Метрики одной операции сервиса: количество вызовов, количество ошибок и гистограмма задержек.
+ */
+public class OperationMetrics implements OperationMetricsMBean {
+
+    // Имя операции (имя метода сервиса).
+    private final String name;
+
+    private final LatencyRecorder latency;
+    private final LongAdder errors;
+
+
+    /**
+     * @param name Имя операции.
+     */
+    public OperationMetrics(String name) {
+        if (name == null) {
+            throw new IllegalArgumentException("Аргумент name не может быть null!");
+        }
+
+        this.name = name;
+        this.latency = new LatencyRecorder();
+        this.errors = new LongAdder();
+    }
+
+
+    /**
+     * Записывает вызов операции.
+     *
+     * @param nanos Длительность вызова в наносекундах.
+     * @param error {@code true}, если вызов завершился исключением.
+     */
+    public void record(long nanos, boolean error) {
+        this.latency.record(nanos);
+
+        if (error) {
+            this.errors.increment();
+        }
+    }
+
+
+    public String getName() {
+        return this.name;
+    }
+
+
+    /**
+     * Возвращает значения перцентилей задержки в наносекундах.
+     *
+     * @param percentiles Перцентили от 0 до 100 в порядке возрастания.
+     * @return Значения в том же порядке.
+     */
+    public long[] getLatencyNanos(double... percentiles) {
+        return this.latency.getValuesAtPercentiles(percentiles);
+    }
+
+
+    @Override
+    public long getCount() {
+        return this.latency.getCount();
+    }
+
+
+    @Override
+    public long getErrorCount() {
+        return this.errors.sum();
+    }
+
+
+    @Override
+    public double getMeanMicros() {
+        long count = this.latency.getCount();
+
+        return count == 0 ? 0 : this.latency.getTotal() / 1_000.0 / count;
+    }
+
+
+    @Override
+    public double getP50Micros() {
+        return this.latency.getValuesAtPercentiles(50)[0] / 1_000.0;
+    }
+
+
+    @Override
+    public double getP90Micros() {
+        return this.latency.getValuesAtPercentiles(90)[0] / 1_000.0;
+    }
+
+
+    @Override
+    public double getP99Micros() {
+        return this.latency.getValuesAtPercentiles(99)[0] / 1_000.0;
+    }
+
+
+    @Override
+    public double getP999Micros() {
+        return this.latency.getValuesAtPercentiles(99.9)[0] / 1_000.0;
+    }
+
+
+    @Override
+    public double getMaxMicros() {
+        return this.latency.getMax() / 1_000.0;
+    }
+
+
+    @Override
+    public void reset() {
+        this.latency.reset();
+        this.errors.reset();
+    }
+
+}
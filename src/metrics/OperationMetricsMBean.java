@@ -0,0 +1,29 @@
+package metrics;
+
+/**
+ * JMX-интерфейс метрик операции сервиса. Задержки - в микросекундах.
+ */
+public interface OperationMetricsMBean {
+
+    long getCount();
+
+    long getErrorCount();
+
+    double getMeanMicros();
+
+    double getP50Micros();
+
+    double getP90Micros();
+
+    double getP99Micros();
+
+    double getP999Micros();
+
+    double getMaxMicros();
+
+    /**
+     * Обнуляет метрики операции.
+     */
+    void reset();
+
+}
@@ -0,0 +1,60 @@
+package metrics;
+
+import repository.interfaces.AccountRepository;
+import repository.interfaces.CurrencyRepository;
+import repository.interfaces.TransactionRepository;
+import service.SessionManager;
+
+/**
+ * Показатели размера хранилищ: журнал транзакций, счета, история курсов и открытые сессии. Значения читаются при
+ * каждом обращении и не требуют обхода хранилищ.
+ */
+public class RepositoryGauges implements RepositoryGaugesMBean {
+
+    private final TransactionRepository transactions;
+    private final AccountRepository accounts;
+    private final CurrencyRepository currencies;
+    private final SessionManager sessions;
+
+
+    public RepositoryGauges(
+            TransactionRepository transactions,
+            AccountRepository accounts,
+            CurrencyRepository currencies,
+            SessionManager sessions
+    ) {
+        if (transactions == null || accounts == null || currencies == null || sessions == null) {
+            throw new IllegalArgumentException("Аргументы transactions, accounts, currencies и sessions не могут быть null!");
+        }
+
+        this.transactions = transactions;
+        this.accounts = accounts;
+        this.currencies = currencies;
+        this.sessions = sessions;
+    }
+
+
+    @Override
+    public int getTransactionCount() {
+        return this.transactions.getTransactionCount();
+    }
+
+
+    @Override
+    public int getAccountCount() {
+        return this.accounts.getAccountCount();
+    }
+
+
+    @Override
+    public int getRateCount() {
+        return this.currencies.getRateCount();
+    }
+
+
+    @Override
+    public int getSessionCount() {
+        return this.sessions.size();
+    }
+
+}
@@ -0,0 +1,16 @@
+package metrics;
+
+/**
+ * JMX-интерфейс показателей размера хранилищ.
+ */
+public interface RepositoryGaugesMBean {
+
+    int getTransactionCount();
+
+    int getAccountCount();
+
+    int getRateCount();
+
+    int getSessionCount();
+
+}
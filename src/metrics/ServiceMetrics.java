@@ -0,0 +1,297 @@
+package metrics;
+
+import service.interfaces.MainService;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.lang.reflect.Proxy;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Метрики {@link MainService}: количество вызовов, ошибок и задержки каждого метода, а также показатели размера
+ * хранилищ.
+ *
+ * <p>Метрики собирает обертка сервиса ({@link #instrument(MainService)}): каждый метод интерфейса записывается под
+ * своим именем (перегрузки объединяются), ошибкой считается вызов, завершившийся исключением. Метрики доступны
+ * через JMX (домен {@code exchange}) и в виде текстового отчета, который можно периодически дописывать в файл
+ * ({@link #start(long, Path)}).</p>
+ */
+public class ServiceMetrics {
+
+    // Домен JMX.
+    private static final String DOMAIN = "exchange";
+
+    // Перцентили текстового отчета.
+    private static final double[] PERCENTILES = {50, 90, 99, 99.9};
+
+    /**
+     * Метрики операций.
+     * <p>key - Имя метода сервиса</p>
+     * <p>value - Метрики</p>
+     */
+    private final Map<String, OperationMetrics> operations;
+
+    // Показатели хранилищ или null.
+    private final RepositoryGaugesMBean gauges;
+
+    // Имена зарегистрированных MBean.
+    private final List<ObjectName> registered;
+
+    // Планировщик текстового отчета (null, если не запущен).
+    private ScheduledExecutorService dumper;
+
+
+    /**
+     * @param gauges Показатели хранилищ или {@code null}.
+     */
+    public ServiceMetrics(RepositoryGaugesMBean gauges) {
+        this.operations = new ConcurrentHashMap<>();
+        this.gauges = gauges;
+        this.registered = new ArrayList<>();
+    }
+
+
+    /**
+     * Возвращает сервис, записывающий метрики каждого вызова и передающий вызовы исходному сервису. Внутренние
+     * вызовы сервиса (например, {@code crossCourse} из {@code exchange}) не учитываются.
+     *
+     * @param service Сервис.
+     * @return Сервис с метриками.
+     */
+    public MainService instrument(MainService service) {
+        if (service == null) {
+            throw new IllegalArgumentException("Аргумент service не может быть null!");
+        }
+
+        Map<Method, OperationMetrics> byMethod = new HashMap<>();
+
+        for (Method method : MainService.class.getMethods()) {
+            if (!Modifier.isStatic(method.getModifiers())) {
+                byMethod.put(method, this.operations.computeIfAbsent(method.getName(), OperationMetrics::new));
+            }
+        }
+
+        InvocationHandler handler = (proxy, method, args) -> {
+            OperationMetrics metrics = byMethod.get(method);
+
+            if (metrics == null) {
+                // Методы Object (equals, hashCode, toString).
+                return invoke(service, method, args);
+            }
+
+            long start = System.nanoTime();
+            boolean error = true;
+
+            try {
+                Object result = invoke(service, method, args);
+                error = false;
+                return result;
+            } finally {
+                metrics.record(System.nanoTime() - start, error);
+            }
+        };
+
+        return (MainService) Proxy.newProxyInstance(
+                MainService.class.getClassLoader(),
+                new Class<?>[]{MainService.class},
+                handler
+        );
+    }
+
+
+    /**
+     * Возвращает метрики операции.
+     *
+     * @param name Имя метода сервиса.
+     * @return Метрики или {@code null}, если операция не найдена.
+     */
+    public OperationMetrics getOperation(String name) {
+        return this.operations.get(name);
+    }
+
+
+    /**
+     * Регистрирует метрики в JMX: {@code exchange:type=Operation,name=<метод>} и
+     * {@code exchange:type=Repository}. Уже зарегистрированные под этими именами MBean заменяются.
+     *
+     * @throws JMException Ошибка регистрации.
+     */
+    public synchronized void registerMBeans() throws JMException {
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+
+        for (OperationMetrics metrics : this.operations.values()) {
+            this.register(server, new ObjectName(DOMAIN + ":type=Operation,name=" + metrics.getName()), metrics);
+        }
+
+        if (this.gauges != null) {
+            this.register(server, new ObjectName(DOMAIN + ":type=Repository"), this.gauges);
+        }
+    }
+
+
+    /**
+     * Снимает регистрацию метрик в JMX.
+     */
+    public synchronized void unregisterMBeans() {
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+
+        for (ObjectName name : this.registered) {
+            try {
+                server.unregisterMBean(name);
+            } catch (JMException e) {
+                // MBean уже снят.
+            }
+        }
+
+        this.registered.clear();
+    }
+
+
+    /**
+     * Возвращает текстовый отчет: операции, которые вызывались, по убыванию количества вызовов, и показатели
+     * хранилищ. Задержки - в микросекундах.
+     *
+     * @return Отчет.
+     */
+    public String dump() {
+        StringBuilder report = new StringBuilder();
+        report.append("=== ").append(LocalDateTime.now()).append(" ===\n");
+        report.append(String.format(
+                Locale.ROOT,
+                "%-28s %10s %8s %10s %10s %10s %10s %10s %10s%n",
+                "operation",
+                "count",
+                "errors",
+                "mean",
+                "p50",
+                "p90",
+                "p99",
+                "p99.9",
+                "max"
+        ));
+
+        List<OperationMetrics> called = new ArrayList<>();
+        for (OperationMetrics metrics : this.operations.values()) {
+            if (metrics.getCount() > 0) {
+                called.add(metrics);
+            }
+        }
+        called.sort(Comparator.comparingLong(OperationMetrics::getCount).reversed());
+
+        for (OperationMetrics metrics : called) {
+            long[] latency = metrics.getLatencyNanos(PERCENTILES);
+
+            report.append(String.format(
+                    Locale.ROOT,
+                    "%-28s %10d %8d %10.1f",
+                    metrics.getName(),
+                    metrics.getCount(),
+                    metrics.getErrorCount(),
+                    metrics.getMeanMicros()
+            ));
+
+            for (long value : latency) {
+                report.append(String.format(Locale.ROOT, " %10.1f", value / 1_000.0));
+            }
+
+            report.append(String.format(Locale.ROOT, " %10.1f%n", metrics.getMaxMicros()));
+        }
+
+        if (this.gauges != null) {
+            report.append(String.format(
+                    "transactions=%d accounts=%d rates=%d sessions=%d%n",
+                    this.gauges.getTransactionCount(),
+                    this.gauges.getAccountCount(),
+                    this.gauges.getRateCount(),
+                    this.gauges.getSessionCount()
+            ));
+        }
+
+        return report.toString();
+    }
+
+
+    /**
+     * Запускает периодическую запись текстового отчета в конец файла в фоновом потоке.
+     *
+     * @param periodMillis Период в миллисекундах.
+     * @param file         Файл отчета.
+     */
+    public synchronized void start(long periodMillis, Path file) {
+        if (file == null) {
+            throw new IllegalArgumentException("Аргумент file не может быть null!");
+        }
+
+        if (this.dumper != null) {
+            return;
+        }
+
+        this.dumper = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "metrics-dump");
+            thread.setDaemon(true);
+            return thread;
+        });
+
+        this.dumper.scheduleAtFixedRate(() -> {
+            try {
+                Files.writeString(
+                        file,
+                        this.dump(),
+                        StandardCharsets.UTF_8,
+                        StandardOpenOption.CREATE,
+                        StandardOpenOption.APPEND
+                );
+            } catch (IOException e) {
+                // Исключение остановило бы периодическую запись, поэтому ошибка только выводится.
+                System.err.println("Ошибка записи метрик в " + file + ": " + e.getMessage());
+            }
+        }, periodMillis, periodMillis, TimeUnit.MILLISECONDS);
+    }
+
+
+    /**
+     * Останавливает периодическую запись отчета.
+     */
+    public synchronized void stop() {
+        if (this.dumper != null) {
+            this.dumper.shutdown();
+            this.dumper = null;
+        }
+    }
+
+
+    private void register(MBeanServer server, ObjectName name, Object mbean) throws JMException {
+        if (server.isRegistered(name)) {
+            server.unregisterMBean(name);
+        }
+
+        server.registerMBean(mbean, name);
+        this.registered.add(name);
+    }
+
+
+    private static Object invoke(MainService service, Method method, Object[] args) throws Throwable {
+        try {
+            return method.invoke(service, args);
+        } catch (InvocationTargetException e) {
+            throw e.getCause();
+        }
+    }
+
+}
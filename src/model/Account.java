@@ -1,6 +1,7 @@
 package model;
 
 import model.enums.AccountStatus;
+import model.enums.CurrencyCode;
 
 import java.math.BigDecimal;
 import java.time.LocalDateTime;
@@ -28,8 +29,12 @@ public class Account {
     // Валюта счета.
     private final String currency;
 
-    // Баланс счета.
-    private BigDecimal balance;
+    // Код валюты счета.
+    private final CurrencyCode currencyCode;
+
+    // Баланс счета в минимальных единицах валюты (изменяется только под блокировкой счета,
+    // см. {@code service.AccountLocks}).
+    private volatile long balance;
 
     // Email владельца счета.
     private final String userEmail;
@@ -49,7 +54,8 @@ public class Account {
         this.status = AccountStatus.ACTIVE;
         this.title = null;
         this.currency = currency;
-        this.balance = (balance != null ? balance : BigDecimal.ZERO);
+        this.currencyCode = CurrencyCode.valueOf(currency.toUpperCase());
+        this.balance = (balance != null ? Money.toMinor(balance, this.currencyCode.getScale()) : 0);
         this.userEmail = userEmail;
     }
 
@@ -69,7 +75,39 @@ public class Account {
         this.status = AccountStatus.ACTIVE;
         this.title = title;
         this.currency = currency;
-        this.balance = (balance != null ? balance : BigDecimal.ZERO);
+        this.currencyCode = CurrencyCode.valueOf(currency.toUpperCase());
+        this.balance = (balance != null ? Money.toMinor(balance, this.currencyCode.getScale()) : 0);
+        this.userEmail = userEmail;
+    }
+
+
+    /**
+     * Конструктор для восстановления сохраненного счета (например, из журнала).
+     *
+     * @param id           Уникальный идентификатор счета.
+     * @param creationDate Дата создания счета.
+     * @param status       Статус счета.
+     * @param currency     Код валюты счета.
+     * @param balance      Баланс счета в минимальных единицах валюты.
+     * @param userEmail    Email владельца счета.
+     * @param title        Название счета.
+     */
+    public Account(
+            int id,
+            LocalDateTime creationDate,
+            AccountStatus status,
+            String currency,
+            long balance,
+            String userEmail,
+            String title
+    ) {
+        this.id = id;
+        this.creationDate = creationDate;
+        this.status = status;
+        this.title = title;
+        this.currency = currency;
+        this.currencyCode = CurrencyCode.valueOf(currency.toUpperCase());
+        this.balance = balance;
         this.userEmail = userEmail;
     }
 
@@ -150,17 +188,51 @@ public class Account {
      * @return Баланс счета.
      */
     public BigDecimal getBalance() {
-        return this.balance;
+        return Money.toBigDecimal(this.balance, this.currencyCode.getScale());
     }
 
 
     /**
-     * Обновляет баланс счета.
+     * Обновляет баланс счета (с банковским округлением до точности валюты).
      *
      * @param balance Новый баланс.
      */
     public void setBalance(BigDecimal balance) {
-        this.balance = balance;
+        this.balance = Money.toMinor(balance, this.currencyCode.getScale());
+    }
+
+
+    /**
+     * Возвращает код валюты счета.
+     *
+     * @return Код валюты счета.
+     */
+    public CurrencyCode getCurrencyCode() {
+        return this.currencyCode;
+    }
+
+
+    /**
+     * Возвращает баланс счета как {@link Money}.
+     *
+     * @return Баланс счета.
+     */
+    public Money getBalanceMoney() {
+        return Money.ofMinor(this.currencyCode, this.balance);
+    }
+
+
+    /**
+     * Обновляет баланс счета.
+     *
+     * @param balance Новый баланс в валюте счета.
+     */
+    public void setBalanceMoney(Money balance) {
+        if (balance.getCurrency() != this.currencyCode) {
+            throw new IllegalArgumentException("Валюта баланса не совпадает с валютой счета!");
+        }
+
+        this.balance = balance.getMinor();
     }
 
 
@@ -178,9 +250,9 @@ public class Account {
     public boolean equals(Object o) {
         if (o == null || getClass() != o.getClass()) return false;
         Account account = (Account) o;
-        return id == account.id && Objects.equals(creationDate, account.creationDate) && status == account.status &&
-               Objects.equals(title, account.title) && Objects.equals(currency, account.currency) &&
-               Objects.equals(balance, account.balance) && Objects.equals(userEmail, account.userEmail);
+        return id == account.id && balance == account.balance && Objects.equals(creationDate, account.creationDate) &&
+               status == account.status && Objects.equals(title, account.title) &&
+               Objects.equals(currency, account.currency) && Objects.equals(userEmail, account.userEmail);
     }
 
 
@@ -198,7 +270,7 @@ public class Account {
                ", status=" + status +
                ", title='" + title + '\'' +
                ", currency='" + currency + '\'' +
-               ", balance=" + balance +
+               ", balance=" + getBalance() +
                ", userEmail='" + userEmail + '\'' +
                '}';
     }
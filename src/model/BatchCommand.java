@@ -0,0 +1,112 @@
+package model;
+
+import model.enums.TransactionType;
+
+import java.math.BigDecimal;
+
+/**
+ * Класс представляет одну операцию пакета ({@code MainService.executeBatch}): пополнение, снятие или обмен.
+ */
+public class BatchCommand {
+
+    // Тип операции.
+    private final TransactionType type;
+
+    // Id счета списания (для пополнения и снятия - id счета операции).
+    private final int accountIdFrom;
+
+    // Id счета зачисления (для пополнения и снятия - id счета операции).
+    private final int accountIdTo;
+
+    // Сумма в валюте счета списания.
+    private final BigDecimal amount;
+
+
+    /**
+     * Конструктор для создания объекта {@code BatchCommand}.
+     *
+     * @param type          Тип операции.
+     * @param accountIdFrom Id счета списания.
+     * @param accountIdTo   Id счета зачисления.
+     * @param amount        Сумма в валюте счета списания.
+     */
+    public BatchCommand(TransactionType type, int accountIdFrom, int accountIdTo, BigDecimal amount) {
+        if (type == null) {
+            throw new IllegalArgumentException("Аргумент type не может быть null!");
+        }
+
+        this.type = type;
+        this.accountIdFrom = accountIdFrom;
+        this.accountIdTo = accountIdTo;
+        this.amount = amount;
+    }
+
+
+    /**
+     * Создает операцию пополнения.
+     *
+     * @param accountId Id счета.
+     * @param amount    Сумма.
+     * @return Операция.
+     */
+    public static BatchCommand deposit(int accountId, BigDecimal amount) {
+        return new BatchCommand(TransactionType.DEPOSIT, accountId, accountId, amount);
+    }
+
+
+    /**
+     * Создает операцию снятия.
+     *
+     * @param accountId Id счета.
+     * @param amount    Сумма.
+     * @return Операция.
+     */
+    public static BatchCommand withdrawal(int accountId, BigDecimal amount) {
+        return new BatchCommand(TransactionType.WITHDRAW, accountId, accountId, amount);
+    }
+
+
+    /**
+     * Создает операцию обмена между счетами.
+     *
+     * @param accountIdFrom Id счета списания.
+     * @param accountIdTo   Id счета зачисления.
+     * @param amount        Сумма в валюте счета списания.
+     * @return Операция.
+     */
+    public static BatchCommand exchange(int accountIdFrom, int accountIdTo, BigDecimal amount) {
+        return new BatchCommand(TransactionType.TRANSFER, accountIdFrom, accountIdTo, amount);
+    }
+
+
+    public TransactionType getType() {
+        return this.type;
+    }
+
+
+    public int getAccountIdFrom() {
+        return this.accountIdFrom;
+    }
+
+
+    public int getAccountIdTo() {
+        return this.accountIdTo;
+    }
+
+
+    public BigDecimal getAmount() {
+        return this.amount;
+    }
+
+
+    @Override
+    public String toString() {
+        return "BatchCommand{" +
+               "type=" + type +
+               ", accountIdFrom=" + accountIdFrom +
+               ", accountIdTo=" + accountIdTo +
+               ", amount=" + amount +
+               '}';
+    }
+
+}
@@ -0,0 +1,125 @@
+package model;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Класс представляет итог пакета операций: транзакцию или ошибку для каждой операции в порядке пакета.
+ */
+public class BatchResult {
+
+    // Транзакции выполненных операций (null - операция не выполнена).
+    private final Transaction[] transactions;
+
+    // Ошибки невыполненных операций (null - операция выполнена).
+    private final String[] errors;
+
+
+    /**
+     * Конструктор для создания объекта {@code BatchResult}.
+     *
+     * @param transactions Транзакции выполненных операций ({@code null} - операция не выполнена).
+     * @param errors       Ошибки невыполненных операций ({@code null} - операция выполнена).
+     */
+    public BatchResult(Transaction[] transactions, String[] errors) {
+        if (transactions == null || errors == null || transactions.length != errors.length) {
+            throw new IllegalArgumentException("Аргументы transactions и errors должны быть одной длины!");
+        }
+
+        this.transactions = transactions;
+        this.errors = errors;
+    }
+
+
+    /**
+     * Возвращает количество операций в пакете.
+     *
+     * @return Количество операций.
+     */
+    public int size() {
+        return this.errors.length;
+    }
+
+
+    /**
+     * Проверяет, выполнена ли операция.
+     *
+     * @param index Номер операции в пакете.
+     * @return {@code true}, если операция выполнена.
+     */
+    public boolean isApplied(int index) {
+        return this.errors[index] == null;
+    }
+
+
+    /**
+     * Возвращает транзакцию операции.
+     *
+     * @param index Номер операции в пакете.
+     * @return Транзакция или {@code null}, если операция не выполнена.
+     */
+    public Transaction getTransaction(int index) {
+        return this.transactions[index];
+    }
+
+
+    /**
+     * Возвращает ошибку операции.
+     *
+     * @param index Номер операции в пакете.
+     * @return Текст ошибки или {@code null}, если операция выполнена.
+     */
+    public String getError(int index) {
+        return this.errors[index];
+    }
+
+
+    /**
+     * Возвращает количество выполненных операций.
+     *
+     * @return Количество операций.
+     */
+    public int getAppliedCount() {
+        int count = 0;
+
+        for (String error : this.errors) {
+            if (error == null) {
+                count++;
+            }
+        }
+
+        return count;
+    }
+
+
+    /**
+     * Проверяет, выполнены ли все операции пакета.
+     *
+     * @return {@code true}, если все операции выполнены.
+     */
+    public boolean isAllApplied() {
+        return this.getAppliedCount() == this.size();
+    }
+
+
+    /**
+     * Возвращает ошибки операций в порядке пакета.
+     *
+     * @return Список ошибок ({@code null} - операция выполнена).
+     */
+    public List<String> getErrors() {
+        return Collections.unmodifiableList(Arrays.asList(this.errors));
+    }
+
+
+    @Override
+    public String toString() {
+        return "BatchResult{" +
+               "size=" + size() +
+               ", applied=" + getAppliedCount() +
+               ", errors=" + Arrays.toString(errors) +
+               '}';
+    }
+
+}
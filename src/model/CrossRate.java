@@ -0,0 +1,57 @@
+package model;
+
+import java.math.BigDecimal;
+
+/**
+ * Класс представляет кросс-курс между двумя валютами с версией, на которой он был рассчитан.
+ */
+public class CrossRate {
+
+    // Кросс-курс.
+    private final BigDecimal course;
+
+    // Версия матрицы кросс-курсов, на которой был рассчитан курс.
+    private final long version;
+
+
+    /**
+     * Конструктор для создания объекта {@code CrossRate}.
+     *
+     * @param course  Кросс-курс.
+     * @param version Версия матрицы кросс-курсов.
+     */
+    public CrossRate(BigDecimal course, long version) {
+        this.course = course;
+        this.version = version;
+    }
+
+
+    /**
+     * Возвращает кросс-курс.
+     *
+     * @return Кросс-курс.
+     */
+    public BigDecimal getCourse() {
+        return this.course;
+    }
+
+
+    /**
+     * Возвращает версию матрицы кросс-курсов, на которой был рассчитан курс.
+     *
+     * @return Версия.
+     */
+    public long getVersion() {
+        return this.version;
+    }
+
+
+    @Override
+    public String toString() {
+        return "CrossRate{" +
+               "course=" + course +
+               ", version=" + version +
+               '}';
+    }
+
+}
@@ -0,0 +1,160 @@
+package model;
+
+import model.enums.CurrencyCode;
+import model.enums.TransactionType;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+
+/**
+ * Класс представляет оборот за день по валютной паре и типу транзакции: количество транзакций, сумму, комиссии и
+ * диапазон курсов.
+ */
+public class DailyVolume {
+
+    // День.
+    private final LocalDate day;
+
+    // Тип транзакций.
+    private final TransactionType type;
+
+    // Валюта "из" и валюта "в".
+    private final String currencyFrom;
+    private final String currencyTo;
+
+    // Количество транзакций.
+    private final long count;
+
+    // Сумма транзакций в минимальных единицах валюты "в".
+    private final long amount;
+
+    // Сумма комиссий в минимальных единицах валюты "в".
+    private final long fees;
+
+    // Минимальный и максимальный курс (null - курс не применялся).
+    private final BigDecimal minCourse;
+    private final BigDecimal maxCourse;
+
+
+    /**
+     * Конструктор для создания объекта {@code DailyVolume}.
+     *
+     * @param day          День.
+     * @param type         Тип транзакций.
+     * @param currencyFrom Валюта "из".
+     * @param currencyTo   Валюта "в".
+     * @param count        Количество транзакций.
+     * @param amount       Сумма транзакций в минимальных единицах валюты "в".
+     * @param fees         Сумма комиссий в минимальных единицах валюты "в".
+     * @param minCourse    Минимальный курс или {@code null}.
+     * @param maxCourse    Максимальный курс или {@code null}.
+     */
+    public DailyVolume(
+            LocalDate day,
+            TransactionType type,
+            String currencyFrom,
+            String currencyTo,
+            long count,
+            long amount,
+            long fees,
+            BigDecimal minCourse,
+            BigDecimal maxCourse
+    ) {
+        this.day = day;
+        this.type = type;
+        this.currencyFrom = currencyFrom;
+        this.currencyTo = currencyTo;
+        this.count = count;
+        this.amount = amount;
+        this.fees = fees;
+        this.minCourse = minCourse;
+        this.maxCourse = maxCourse;
+    }
+
+
+    public LocalDate getDay() {
+        return this.day;
+    }
+
+
+    public TransactionType getType() {
+        return this.type;
+    }
+
+
+    public String getCurrencyFrom() {
+        return this.currencyFrom;
+    }
+
+
+    public String getCurrencyTo() {
+        return this.currencyTo;
+    }
+
+
+    /**
+     * Возвращает количество транзакций.
+     *
+     * @return Количество транзакций.
+     */
+    public long getCount() {
+        return this.count;
+    }
+
+
+    /**
+     * Возвращает сумму транзакций (в валюте "в").
+     *
+     * @return Сумма.
+     */
+    public BigDecimal getAmount() {
+        return Money.toBigDecimal(this.amount, CurrencyCode.scaleOf(this.currencyTo));
+    }
+
+
+    /**
+     * Возвращает сумму комиссий (в валюте "в").
+     *
+     * @return Сумма комиссий.
+     */
+    public BigDecimal getFees() {
+        return Money.toBigDecimal(this.fees, CurrencyCode.scaleOf(this.currencyTo));
+    }
+
+
+    /**
+     * Возвращает минимальный курс обмена за день.
+     *
+     * @return Курс или {@code null}, если курс не применялся.
+     */
+    public BigDecimal getMinCourse() {
+        return this.minCourse;
+    }
+
+
+    /**
+     * Возвращает максимальный курс обмена за день.
+     *
+     * @return Курс или {@code null}, если курс не применялся.
+     */
+    public BigDecimal getMaxCourse() {
+        return this.maxCourse;
+    }
+
+
+    @Override
+    public String toString() {
+        return "DailyVolume{" +
+               "day=" + day +
+               ", type=" + type +
+               ", currencyFrom='" + currencyFrom + '\'' +
+               ", currencyTo='" + currencyTo + '\'' +
+               ", count=" + count +
+               ", amount=" + getAmount() +
+               ", fees=" + getFees() +
+               ", minCourse=" + minCourse +
+               ", maxCourse=" + maxCourse +
+               '}';
+    }
+
+}
@@ -0,0 +1,84 @@
+package model;
+
+import java.nio.file.Path;
+
+/**
+ * Класс представляет итог экспорта: файл, количество строк и время выполнения.
+ */
+public class ExportReport {
+
+    // Файл экспорта.
+    private final Path file;
+
+    // Количество экспортированных строк.
+    private final long rows;
+
+    // Время экспорта в наносекундах.
+    private final long elapsedNanos;
+
+
+    /**
+     * Конструктор для создания объекта {@code ExportReport}.
+     *
+     * @param file         Файл экспорта.
+     * @param rows         Количество экспортированных строк.
+     * @param elapsedNanos Время экспорта в наносекундах.
+     */
+    public ExportReport(Path file, long rows, long elapsedNanos) {
+        this.file = file;
+        this.rows = rows;
+        this.elapsedNanos = elapsedNanos;
+    }
+
+
+    /**
+     * Возвращает файл экспорта.
+     *
+     * @return Файл.
+     */
+    public Path getFile() {
+        return this.file;
+    }
+
+
+    /**
+     * Возвращает количество экспортированных строк.
+     *
+     * @return Количество строк.
+     */
+    public long getRows() {
+        return this.rows;
+    }
+
+
+    /**
+     * Возвращает время экспорта в миллисекундах.
+     *
+     * @return Миллисекунды.
+     */
+    public long getElapsedMillis() {
+        return this.elapsedNanos / 1_000_000;
+    }
+
+
+    /**
+     * Возвращает скорость экспорта.
+     *
+     * @return Строк в секунду.
+     */
+    public long getRowsPerSecond() {
+        return this.elapsedNanos == 0 ? this.rows : this.rows * 1_000_000_000L / this.elapsedNanos;
+    }
+
+
+    @Override
+    public String toString() {
+        return "ExportReport{" +
+               "file=" + file +
+               ", rows=" + rows +
+               ", elapsedMillis=" + getElapsedMillis() +
+               ", rowsPerSecond=" + getRowsPerSecond() +
+               '}';
+    }
+
+}
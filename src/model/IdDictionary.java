@@ -0,0 +1,147 @@
+package model;
+
+import model.enums.CurrencyCode;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Словарь строк с плотными целочисленными идентификаторами (0, 1, 2, ...). Идентификатор строки не меняется до
+ * конца работы программы, строка по идентификатору возвращается без выделения памяти.
+ *
+ * <p>Транзакции хранят идентификаторы пользователей ({@link #EMAILS}) и валют ({@link #CURRENCIES}) вместо
+ * строк: одинаковые строки не дублируются в каждой транзакции, а сравнение и фильтрация - целочисленные.
+ * Идентификаторы действуют только в пределах процесса: на диск записываются сами строки.</p>
+ */
+public final class IdDictionary {
+
+    // Идентификатор отсутствующей строки (null).
+    public static final int NONE = -1;
+
+    // Email пользователей.
+    public static final IdDictionary EMAILS = new IdDictionary();
+
+    // Коды валют: идентификатор известной валюты совпадает с ее CurrencyCode.ordinal().
+    public static final IdDictionary CURRENCIES = new IdDictionary(currencyNames());
+
+    /**
+     * Идентификаторы строк.
+     * <p>key - Строка</p>
+     * <p>value - Идентификатор</p>
+     */
+    private final Map<String, Integer> ids;
+
+    // Строки по идентификатору (заполнено первые size элементов).
+    private volatile String[] values;
+
+    // Количество строк.
+    private int size;
+
+
+    /**
+     * @param initial Строки, которые получают идентификаторы 0, 1, 2, ... в указанном порядке.
+     */
+    public IdDictionary(String... initial) {
+        this.ids = new ConcurrentHashMap<>();
+        this.values = new String[Math.max(16, initial.length)];
+
+        for (String value : initial) {
+            this.intern(value);
+        }
+    }
+
+
+    /**
+     * Возвращает идентификатор строки, добавляя ее в словарь при первом обращении.
+     *
+     * @param value Строка или {@code null}.
+     * @return Идентификатор или {@link #NONE} для {@code null}.
+     */
+    public int intern(String value) {
+        if (value == null) {
+            return NONE;
+        }
+
+        Integer id = this.ids.get(value);
+
+        return id != null ? id : this.add(value);
+    }
+
+
+    /**
+     * Возвращает идентификатор строки, не добавляя ее в словарь.
+     *
+     * @param value Строка или {@code null}.
+     * @return Идентификатор или {@link #NONE}, если строки нет в словаре.
+     */
+    public int idOf(String value) {
+        if (value == null) {
+            return NONE;
+        }
+
+        Integer id = this.ids.get(value);
+
+        return id == null ? NONE : id;
+    }
+
+
+    /**
+     * Возвращает строку по идентификатору.
+     *
+     * @param id Идентификатор.
+     * @return Строка или {@code null} для {@link #NONE}.
+     */
+    public String valueOf(int id) {
+        return id == NONE ? null : this.values[id];
+    }
+
+
+    /**
+     * Возвращает количество строк в словаре.
+     *
+     * @return Количество строк.
+     */
+    public synchronized int size() {
+        return this.size;
+    }
+
+
+    /**
+     * Добавляет строку. Строка записывается в массив до публикации идентификатора, поэтому тот, кто получил
+     * идентификатор, видит и строку.
+     */
+    private synchronized int add(String value) {
+        Integer existing = this.ids.get(value);
+        if (existing != null) {
+            return existing;
+        }
+
+        String[] values = this.values;
+        if (this.size == values.length) {
+            values = Arrays.copyOf(values, values.length * 2);
+        }
+
+        int id = this.size;
+        values[id] = value;
+        this.values = values;
+        this.size++;
+
+        this.ids.put(value, id);
+
+        return id;
+    }
+
+
+    private static String[] currencyNames() {
+        CurrencyCode[] codes = CurrencyCode.values();
+        String[] names = new String[codes.length];
+
+        for (CurrencyCode code : codes) {
+            names[code.ordinal()] = code.name();
+        }
+
+        return names;
+    }
+
+}
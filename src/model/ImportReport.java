@@ -0,0 +1,102 @@
+package model;
+
+import java.nio.file.Path;
+
+/**
+ * Класс представляет итог импорта: файл, количество принятых и отклоненных строк и время выполнения.
+ */
+public class ImportReport {
+
+    // Файл импорта.
+    private final Path file;
+
+    // Количество импортированных строк.
+    private final long imported;
+
+    // Количество отклоненных (некорректных) строк.
+    private final long rejected;
+
+    // Время импорта в наносекундах.
+    private final long elapsedNanos;
+
+
+    /**
+     * Конструктор для создания объекта {@code ImportReport}.
+     *
+     * @param file         Файл импорта.
+     * @param imported     Количество импортированных строк.
+     * @param rejected     Количество отклоненных строк.
+     * @param elapsedNanos Время импорта в наносекундах.
+     */
+    public ImportReport(Path file, long imported, long rejected, long elapsedNanos) {
+        this.file = file;
+        this.imported = imported;
+        this.rejected = rejected;
+        this.elapsedNanos = elapsedNanos;
+    }
+
+
+    /**
+     * Возвращает файл импорта.
+     *
+     * @return Файл.
+     */
+    public Path getFile() {
+        return this.file;
+    }
+
+
+    /**
+     * Возвращает количество импортированных строк.
+     *
+     * @return Количество строк.
+     */
+    public long getImported() {
+        return this.imported;
+    }
+
+
+    /**
+     * Возвращает количество отклоненных строк.
+     *
+     * @return Количество строк.
+     */
+    public long getRejected() {
+        return this.rejected;
+    }
+
+
+    /**
+     * Возвращает время импорта в миллисекундах.
+     *
+     * @return Миллисекунды.
+     */
+    public long getElapsedMillis() {
+        return this.elapsedNanos / 1_000_000;
+    }
+
+
+    /**
+     * Возвращает скорость импорта (по всем прочитанным строкам).
+     *
+     * @return Строк в секунду.
+     */
+    public long getRowsPerSecond() {
+        long rows = this.imported + this.rejected;
+
+        return this.elapsedNanos == 0 ? rows : rows * 1_000_000_000L / this.elapsedNanos;
+    }
+
+
+    @Override
+    public String toString() {
+        return "ImportReport{" +
+               "file=" + file +
+               ", imported=" + imported +
+               ", rejected=" + rejected +
+               ", elapsedMillis=" + getElapsedMillis() +
+               ", rowsPerSecond=" + getRowsPerSecond() +
+               '}';
+    }
+
+}
@@ -0,0 +1,263 @@
+package model;
+
+import model.enums.CurrencyCode;
+
+import java.math.BigDecimal;
+import java.math.MathContext;
+import java.math.RoundingMode;
+import java.util.Objects;
+
+/**
+ * Неизменяемая денежная сумма в минимальных единицах валюты (центы, сатоши, пиконеро).
+ *
+ * <p>Количество знаков после запятой определяется валютой, см. {@link CurrencyCode#getScale()}. Арифметика
+ * выполняется над {@code long} с проверкой переполнения ({@link ArithmeticException}); при округлении
+ * используется банковское округление ({@link RoundingMode#HALF_EVEN}). {@link BigDecimal} используется только
+ * на границе API.</p>
+ */
+public final class Money implements Comparable<Money> {
+
+    // Количество базисных пунктов в единице (100% = 10 000 б.п.).
+    private static final long BASIS_POINTS = 10_000;
+
+    // Валюта.
+    private final CurrencyCode currency;
+
+    // Сумма в минимальных единицах валюты.
+    private final long minor;
+
+
+    private Money(CurrencyCode currency, long minor) {
+        this.currency = currency;
+        this.minor = minor;
+    }
+
+
+    /**
+     * Создает сумму из минимальных единиц валюты.
+     *
+     * @param currency Валюта.
+     * @param minor    Сумма в минимальных единицах.
+     * @return Сумма.
+     */
+    public static Money ofMinor(CurrencyCode currency, long minor) {
+        if (currency == null) {
+            throw new IllegalArgumentException("Аргумент currency не может быть null!");
+        }
+
+        return new Money(currency, minor);
+    }
+
+
+    /**
+     * Создает сумму из {@link BigDecimal}, округляя до точности валюты.
+     *
+     * @param currency Валюта.
+     * @param amount   Сумма.
+     * @return Сумма.
+     * @throws ArithmeticException Если сумма не помещается в {@code long}.
+     */
+    public static Money of(CurrencyCode currency, BigDecimal amount) {
+        if (currency == null || amount == null) {
+            throw new IllegalArgumentException("Аргументы currency и amount не могут быть null!");
+        }
+
+        return new Money(currency, toMinor(amount, currency.getScale()));
+    }
+
+
+    /**
+     * Возвращает нулевую сумму в валюте.
+     *
+     * @param currency Валюта.
+     * @return Нулевая сумма.
+     */
+    public static Money zero(CurrencyCode currency) {
+        return ofMinor(currency, 0);
+    }
+
+
+    /**
+     * Переводит {@link BigDecimal} в минимальные единицы с указанной точностью.
+     *
+     * @param amount Сумма.
+     * @param scale  Количество знаков после запятой.
+     * @return Сумма в минимальных единицах.
+     * @throws ArithmeticException Если сумма не помещается в {@code long}.
+     */
+    public static long toMinor(BigDecimal amount, int scale) {
+        return amount.setScale(scale, RoundingMode.HALF_EVEN).unscaledValue().longValueExact();
+    }
+
+
+    /**
+     * Переводит минимальные единицы в {@link BigDecimal} без незначащих нулей.
+     *
+     * @param minor Сумма в минимальных единицах.
+     * @param scale Количество знаков после запятой.
+     * @return Сумма.
+     */
+    public static BigDecimal toBigDecimal(long minor, int scale) {
+        BigDecimal value = BigDecimal.valueOf(minor, scale).stripTrailingZeros();
+
+        return value.scale() < 0 ? value.setScale(0) : value;
+    }
+
+
+    /**
+     * Возвращает валюту.
+     *
+     * @return Валюта.
+     */
+    public CurrencyCode getCurrency() {
+        return this.currency;
+    }
+
+
+    /**
+     * Возвращает сумму в минимальных единицах валюты.
+     *
+     * @return Сумма в минимальных единицах.
+     */
+    public long getMinor() {
+        return this.minor;
+    }
+
+
+    /**
+     * Возвращает сумму как {@link BigDecimal}.
+     *
+     * @return Сумма.
+     */
+    public BigDecimal toBigDecimal() {
+        return toBigDecimal(this.minor, this.currency.getScale());
+    }
+
+
+    /**
+     * Складывает суммы одной валюты.
+     *
+     * @param other Сумма.
+     * @return Результат.
+     * @throws ArithmeticException При переполнении.
+     */
+    public Money plus(Money other) {
+        this.checkCurrency(other);
+
+        return new Money(this.currency, Math.addExact(this.minor, other.minor));
+    }
+
+
+    /**
+     * Вычитает сумму той же валюты.
+     *
+     * @param other Сумма.
+     * @return Результат.
+     * @throws ArithmeticException При переполнении.
+     */
+    public Money minus(Money other) {
+        this.checkCurrency(other);
+
+        return new Money(this.currency, Math.subtractExact(this.minor, other.minor));
+    }
+
+
+    /**
+     * Возвращает долю суммы, заданную в базисных пунктах (200 б.п. = 2%), с банковским округлением.
+     *
+     * @param basisPoints Доля в базисных пунктах.
+     * @return Доля суммы.
+     * @throws ArithmeticException При переполнении.
+     */
+    public Money percentage(long basisPoints) {
+        return new Money(this.currency, divideHalfEven(Math.multiplyExact(this.minor, basisPoints), BASIS_POINTS));
+    }
+
+
+    /**
+     * Конвертирует сумму в другую валюту по курсу с банковским округлением до точности целевой валюты.
+     *
+     * @param target Целевая валюта.
+     * @param course Курс (количество единиц целевой валюты за единицу текущей).
+     * @return Сумма в целевой валюте.
+     * @throws ArithmeticException Если результат не помещается в {@code long}.
+     */
+    public Money convert(CurrencyCode target, BigDecimal course) {
+        if (target == this.currency && course.compareTo(BigDecimal.ONE) == 0) {
+            return this;
+        }
+
+        BigDecimal amount = BigDecimal.valueOf(this.minor, this.currency.getScale())
+                .multiply(course, MathContext.DECIMAL128);
+
+        return new Money(target, toMinor(amount, target.getScale()));
+    }
+
+
+    /**
+     * Возвращает знак суммы.
+     *
+     * @return -1, 0 или 1.
+     */
+    public int signum() {
+        return Long.signum(this.minor);
+    }
+
+
+    @Override
+    public int compareTo(Money other) {
+        this.checkCurrency(other);
+
+        return Long.compare(this.minor, other.minor);
+    }
+
+
+    @Override
+    public boolean equals(Object o) {
+        if (o == null || getClass() != o.getClass()) return false;
+        Money money = (Money) o;
+        return minor == money.minor && currency == money.currency;
+    }
+
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(currency, minor);
+    }
+
+
+    @Override
+    public String toString() {
+        return BigDecimal.valueOf(this.minor, this.currency.getScale()).toPlainString() + " " + this.currency;
+    }
+
+
+    private void checkCurrency(Money other) {
+        if (other.currency != this.currency) {
+            throw new IllegalArgumentException("Валюты сумм не совпадают: " + this.currency + " и " + other.currency);
+        }
+    }
+
+
+    /**
+     * Делит с банковским округлением.
+     */
+    private static long divideHalfEven(long dividend, long divisor) {
+        long quotient = dividend / divisor;
+        long remainder = dividend % divisor;
+
+        if (remainder == 0) {
+            return quotient;
+        }
+
+        long twice = Math.abs(remainder) * 2;
+        long sign = (dividend < 0) == (divisor < 0) ? 1 : -1;
+
+        if (twice > Math.abs(divisor) || (twice == Math.abs(divisor) && (quotient & 1) != 0)) {
+            quotient += sign;
+        }
+
+        return quotient;
+    }
+
+}
@@ -0,0 +1,235 @@
+package model;
+
+import model.enums.CurrencyCode;
+
+import java.math.BigDecimal;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Класс представляет итог сверки балансов счетов с журналом транзакций: расхождения, счета, которые нельзя
+ * проверить, и время выполнения.
+ */
+public class ReconciliationReport {
+
+    // Количество проигранных транзакций.
+    private final long transactions;
+
+    // Количество проверенных счетов.
+    private final long accounts;
+
+    // Счета, баланс которых не равен сумме проводок.
+    private final List<Mismatch> mismatches;
+
+    // Id счетов с обменами без суммы списания (записанными до ее появления в журнале).
+    private final List<Integer> unverified;
+
+    // Время сверки в наносекундах.
+    private final long elapsedNanos;
+
+
+    /**
+     * Конструктор для создания объекта {@code ReconciliationReport}.
+     *
+     * @param transactions Количество проигранных транзакций.
+     * @param accounts     Количество проверенных счетов.
+     * @param mismatches   Расхождения.
+     * @param unverified   Id счетов, которые нельзя проверить.
+     * @param elapsedNanos Время сверки в наносекундах.
+     */
+    public ReconciliationReport(
+            long transactions,
+            long accounts,
+            List<Mismatch> mismatches,
+            List<Integer> unverified,
+            long elapsedNanos
+    ) {
+        if (mismatches == null || unverified == null) {
+            throw new IllegalArgumentException("Аргументы mismatches и unverified не могут быть null!");
+        }
+
+        this.transactions = transactions;
+        this.accounts = accounts;
+        this.mismatches = Collections.unmodifiableList(mismatches);
+        this.unverified = Collections.unmodifiableList(unverified);
+        this.elapsedNanos = elapsedNanos;
+    }
+
+
+    /**
+     * Проверяет, сошлись ли все проверенные счета.
+     *
+     * @return {@code true}, если расхождений нет.
+     */
+    public boolean isConsistent() {
+        return this.mismatches.isEmpty();
+    }
+
+
+    /**
+     * Возвращает количество проигранных транзакций.
+     *
+     * @return Количество транзакций.
+     */
+    public long getTransactions() {
+        return this.transactions;
+    }
+
+
+    /**
+     * Возвращает количество проверенных счетов.
+     *
+     * @return Количество счетов.
+     */
+    public long getAccounts() {
+        return this.accounts;
+    }
+
+
+    /**
+     * Возвращает расхождения в порядке id счетов.
+     *
+     * @return Список расхождений.
+     */
+    public List<Mismatch> getMismatches() {
+        return this.mismatches;
+    }
+
+
+    /**
+     * Возвращает id счетов, которые нельзя проверить: в журнале есть обмены с них без суммы списания.
+     *
+     * @return Список id счетов.
+     */
+    public List<Integer> getUnverified() {
+        return this.unverified;
+    }
+
+
+    /**
+     * Возвращает время сверки в миллисекундах.
+     *
+     * @return Миллисекунды.
+     */
+    public long getElapsedMillis() {
+        return this.elapsedNanos / 1_000_000;
+    }
+
+
+    /**
+     * Возвращает скорость проигрывания журнала.
+     *
+     * @return Транзакций в секунду.
+     */
+    public long getTransactionsPerSecond() {
+        return this.elapsedNanos == 0
+                ? this.transactions
+                : (long) (this.transactions * 1_000_000_000.0 / this.elapsedNanos);
+    }
+
+
+    @Override
+    public String toString() {
+        return "ReconciliationReport{" +
+               "transactions=" + transactions +
+               ", accounts=" + accounts +
+               ", mismatches=" + mismatches.size() +
+               ", unverified=" + unverified.size() +
+               ", elapsedMillis=" + getElapsedMillis() +
+               ", transactionsPerSecond=" + getTransactionsPerSecond() +
+               '}';
+    }
+
+
+    /**
+     * Расхождение: баланс счета не равен сумме его проводок в журнале.
+     */
+    public static class Mismatch {
+
+        // Id счета.
+        private final int accountId;
+
+        // Валюта счета (null - счет удален).
+        private final String currency;
+
+        // Сумма проводок в минимальных единицах валюты.
+        private final long expected;
+
+        // Баланс счета в минимальных единицах валюты (0 - счет удален).
+        private final long actual;
+
+
+        /**
+         * Конструктор для создания объекта {@code Mismatch}.
+         *
+         * @param accountId Id счета.
+         * @param currency  Валюта счета или {@code null}, если счет удален.
+         * @param expected  Сумма проводок в минимальных единицах валюты.
+         * @param actual    Баланс счета в минимальных единицах валюты.
+         */
+        public Mismatch(int accountId, String currency, long expected, long actual) {
+            this.accountId = accountId;
+            this.currency = currency;
+            this.expected = expected;
+            this.actual = actual;
+        }
+
+
+        public int getAccountId() {
+            return this.accountId;
+        }
+
+
+        /**
+         * Возвращает валюту счета.
+         *
+         * @return Код валюты или {@code null}, если счет удален.
+         */
+        public String getCurrency() {
+            return this.currency;
+        }
+
+
+        /**
+         * Возвращает баланс, рассчитанный по журналу транзакций.
+         *
+         * @return Сумма проводок.
+         */
+        public BigDecimal getExpected() {
+            return Money.toBigDecimal(this.expected, CurrencyCode.scaleOf(this.currency));
+        }
+
+
+        /**
+         * Возвращает баланс счета.
+         *
+         * @return Баланс.
+         */
+        public BigDecimal getActual() {
+            return Money.toBigDecimal(this.actual, CurrencyCode.scaleOf(this.currency));
+        }
+
+
+        /**
+         * Возвращает расхождение: баланс счета минус сумма проводок.
+         *
+         * @return Расхождение.
+         */
+        public BigDecimal getDifference() {
+            return Money.toBigDecimal(this.actual - this.expected, CurrencyCode.scaleOf(this.currency));
+        }
+
+
+        @Override
+        public String toString() {
+            return "Mismatch{" +
+                   "accountId=" + accountId +
+                   ", currency=" + currency +
+                   ", expected=" + getExpected() +
+                   ", actual=" + getActual() +
+                   '}';
+        }
+
+    }
+
+}
@@ -0,0 +1,93 @@
+package model;
+
+/**
+ * Класс представляет сессию пользователя: токен, пользователь и время последнего обращения.
+ */
+public class Session {
+
+    // Токен сессии.
+    private final String token;
+
+    // Пользователь сессии.
+    private final User user;
+
+    // Время создания (System.nanoTime()).
+    private final long createdAt;
+
+    // Время последнего обращения (System.nanoTime()).
+    private volatile long lastAccess;
+
+
+    /**
+     * Конструктор для создания объекта {@code Session}.
+     *
+     * @param token Токен сессии.
+     * @param user  Пользователь.
+     * @param now   Текущее время ({@link System#nanoTime()}).
+     */
+    public Session(String token, User user, long now) {
+        this.token = token;
+        this.user = user;
+        this.createdAt = now;
+        this.lastAccess = now;
+    }
+
+
+    /**
+     * Возвращает токен сессии.
+     *
+     * @return Токен.
+     */
+    public String getToken() {
+        return this.token;
+    }
+
+
+    /**
+     * Возвращает пользователя сессии.
+     *
+     * @return Пользователь.
+     */
+    public User getUser() {
+        return this.user;
+    }
+
+
+    /**
+     * Возвращает время создания сессии.
+     *
+     * @return Время ({@link System#nanoTime()}).
+     */
+    public long getCreatedAt() {
+        return this.createdAt;
+    }
+
+
+    /**
+     * Возвращает время последнего обращения к сессии.
+     *
+     * @return Время ({@link System#nanoTime()}).
+     */
+    public long getLastAccess() {
+        return this.lastAccess;
+    }
+
+
+    /**
+     * Отмечает обращение к сессии.
+     *
+     * @param now Текущее время ({@link System#nanoTime()}).
+     */
+    public void touch(long now) {
+        this.lastAccess = now;
+    }
+
+
+    @Override
+    public String toString() {
+        return "Session{" +
+               "user=" + user.getEmail() +
+               '}';
+    }
+
+}
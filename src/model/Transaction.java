@@ -1,5 +1,6 @@
 package model;
 
+import model.enums.CurrencyCode;
 import model.enums.TransactionType;
 
 import java.math.BigDecimal;
@@ -11,6 +12,15 @@ import java.util.Objects;
  */
 public class Transaction {
 
+    // Количество знаков после запятой, с которым хранится курс обмена.
+    public static final int COURSE_SCALE = 12;
+
+    // Признак отсутствия курса обмена.
+    private static final long NO_COURSE = Long.MIN_VALUE;
+
+    // Признак отсутствия суммы списания.
+    private static final long NO_AMOUNT = Long.MIN_VALUE;
+
     // Уникальный идентификатор.
     private final int id;
 
@@ -20,11 +30,11 @@ public class Transaction {
     // Тип транзакции.
     private final TransactionType type;
 
-    // Email пользователя "из".
-    private final String userEmailFrom;
+    // Пользователь "из": идентификатор email в IdDictionary.EMAILS.
+    private final int userFrom;
 
-    // Email пользователя "в".
-    private final String userEmailTo;
+    // Пользователь "в": идентификатор email в IdDictionary.EMAILS.
+    private final int userTo;
 
     // Счет "из".
     private final int accountIdFrom;
@@ -32,21 +42,33 @@ public class Transaction {
     // Счет "в".
     private final int accountIdTo;
 
-    // Символ валюты "из".
-    private final String currencyFrom;
+    // Валюта "из": идентификатор кода в IdDictionary.CURRENCIES (для известных валют - CurrencyCode.ordinal()).
+    private final int currencyFrom;
+
+    // Валюта "в": идентификатор кода в IdDictionary.CURRENCIES.
+    private final int currencyTo;
 
-    // Символ валюты "в".
-    private final String currencyTo;
+    // Курс обмена с точностью COURSE_SCALE знаков или NO_COURSE.
+    private final long course;
 
-    // Курс обмена.
-    private final BigDecimal course;
+    // Сумма в минимальных единицах валюты "в".
+    private final long amount;
 
-    // Сумма.
-    private final BigDecimal amount;
+    // Количество знаков после запятой в сумме (по валюте "в").
+    private final int amountScale;
+
+    // Сумма списания со счета "из" в минимальных единицах валюты "из" (для обмена) или NO_AMOUNT.
+    private final long amountFrom;
+
+    // Комиссия в минимальных единицах валюты "в" (0 - без комиссии или не записана).
+    private final long fee;
 
     // Комментарий к транзакции.
     private final String comment;
 
+    // Версия матрицы кросс-курсов, по которой рассчитан курс обмена (0, если курс не применялся).
+    private final long rateVersion;
+
 
     /**
      * Конструктор для создания объекта {@code Transaction}.
@@ -76,17 +98,21 @@ public class Transaction {
         this.date = LocalDateTime.now();
         this.type = type;
 
-        this.userEmailFrom = userEmailFrom;
+        this.userFrom = IdDictionary.EMAILS.intern(userEmailFrom);
         this.accountIdFrom = accountIdFrom;
-        this.currencyFrom = currencyFrom;
+        this.currencyFrom = IdDictionary.CURRENCIES.intern(currencyFrom);
 
-        this.userEmailTo = userEmailTo;
+        this.userTo = IdDictionary.EMAILS.intern(userEmailTo);
         this.accountIdTo = accountIdTo;
-        this.currencyTo = currencyTo;
+        this.currencyTo = IdDictionary.CURRENCIES.intern(currencyTo);
 
-        this.amount = amount;
-        this.course = null;
+        this.amountScale = CurrencyCode.scaleOf(currencyTo);
+        this.amount = Money.toMinor(amount, this.amountScale);
+        this.amountFrom = NO_AMOUNT;
+        this.fee = 0;
+        this.course = NO_COURSE;
         this.comment = null;
+        this.rateVersion = 0;
     }
 
 
@@ -120,17 +146,21 @@ public class Transaction {
         this.date = LocalDateTime.now();
         this.type = type;
 
-        this.userEmailFrom = userEmailFrom;
+        this.userFrom = IdDictionary.EMAILS.intern(userEmailFrom);
         this.accountIdFrom = accountIdFrom;
-        this.currencyFrom = currencyFrom;
+        this.currencyFrom = IdDictionary.CURRENCIES.intern(currencyFrom);
 
-        this.userEmailTo = userEmailTo;
+        this.userTo = IdDictionary.EMAILS.intern(userEmailTo);
         this.accountIdTo = accountIdTo;
-        this.currencyTo = currencyTo;
+        this.currencyTo = IdDictionary.CURRENCIES.intern(currencyTo);
 
-        this.amount = amount;
-        this.course = course;
+        this.amountScale = CurrencyCode.scaleOf(currencyTo);
+        this.amount = Money.toMinor(amount, this.amountScale);
+        this.amountFrom = NO_AMOUNT;
+        this.fee = 0;
+        this.course = (course == null ? NO_COURSE : Money.toMinor(course, COURSE_SCALE));
         this.comment = null;
+        this.rateVersion = 0;
     }
 
     /**
@@ -165,20 +195,232 @@ public class Transaction {
         this.date = LocalDateTime.now();
         this.type = type;
 
-        this.userEmailFrom = userEmailFrom;
+        this.userFrom = IdDictionary.EMAILS.intern(userEmailFrom);
         this.accountIdFrom = accountIdFrom;
-        this.currencyFrom = currencyFrom;
+        this.currencyFrom = IdDictionary.CURRENCIES.intern(currencyFrom);
 
-        this.userEmailTo = userEmailTo;
+        this.userTo = IdDictionary.EMAILS.intern(userEmailTo);
         this.accountIdTo = accountIdTo;
-        this.currencyTo = currencyTo;
+        this.currencyTo = IdDictionary.CURRENCIES.intern(currencyTo);
 
-        this.amount = amount;
-        this.course = course;
+        this.amountScale = CurrencyCode.scaleOf(currencyTo);
+        this.amount = Money.toMinor(amount, this.amountScale);
+        this.amountFrom = NO_AMOUNT;
+        this.fee = 0;
+        this.course = (course == null ? NO_COURSE : Money.toMinor(course, COURSE_SCALE));
         this.comment = comment;
+        this.rateVersion = 0;
+    }
+
+
+    /**
+     * Конструктор для создания объекта {@code Transaction}.
+     *
+     * @param id
+     * @param type
+     * @param userEmailFrom
+     * @param accountIdFrom
+     * @param currencyFrom
+     * @param userEmailTo
+     * @param accountIdTo
+     * @param currencyTo
+     * @param amount
+     * @param course
+     * @param rateVersion
+     */
+    public Transaction(
+            int id,
+            TransactionType type,
+            String userEmailFrom,
+            int accountIdFrom,
+            String currencyFrom,
+            String userEmailTo,
+            int accountIdTo,
+            String currencyTo,
+            BigDecimal amount,
+            BigDecimal course,
+            long rateVersion
+    ) {
+        this(
+                id,
+                type,
+                userEmailFrom,
+                accountIdFrom,
+                currencyFrom,
+                userEmailTo,
+                accountIdTo,
+                currencyTo,
+                amount,
+                null,
+                null,
+                course,
+                rateVersion
+        );
+    }
+
+
+    /**
+     * Конструктор для создания транзакции с суммой списания и комиссией.
+     *
+     * @param id
+     * @param type
+     * @param userEmailFrom
+     * @param accountIdFrom
+     * @param currencyFrom
+     * @param userEmailTo
+     * @param accountIdTo
+     * @param currencyTo
+     * @param amount        Сумма зачисления (в валюте "в").
+     * @param amountFrom    Сумма списания (в валюте "из") или {@code null}.
+     * @param fee           Комиссия (в валюте "в") или {@code null}.
+     * @param course
+     * @param rateVersion
+     */
+    public Transaction(
+            int id,
+            TransactionType type,
+            String userEmailFrom,
+            int accountIdFrom,
+            String currencyFrom,
+            String userEmailTo,
+            int accountIdTo,
+            String currencyTo,
+            BigDecimal amount,
+            BigDecimal amountFrom,
+            BigDecimal fee,
+            BigDecimal course,
+            long rateVersion
+    ) {
+        this(
+                id,
+                LocalDateTime.now(),
+                type,
+                userEmailFrom,
+                accountIdFrom,
+                currencyFrom,
+                userEmailTo,
+                accountIdTo,
+                currencyTo,
+                amount,
+                amountFrom,
+                fee,
+                course,
+                null,
+                rateVersion
+        );
+    }
+
+
+    /**
+     * Конструктор для восстановления сохраненной транзакции (например, из журнала).
+     *
+     * @param id
+     * @param date
+     * @param type
+     * @param userEmailFrom
+     * @param accountIdFrom
+     * @param currencyFrom
+     * @param userEmailTo
+     * @param accountIdTo
+     * @param currencyTo
+     * @param amount
+     * @param course
+     * @param comment
+     * @param rateVersion
+     */
+    public Transaction(
+            int id,
+            LocalDateTime date,
+            TransactionType type,
+            String userEmailFrom,
+            int accountIdFrom,
+            String currencyFrom,
+            String userEmailTo,
+            int accountIdTo,
+            String currencyTo,
+            BigDecimal amount,
+            BigDecimal course,
+            String comment,
+            long rateVersion
+    ) {
+        this(
+                id,
+                date,
+                type,
+                userEmailFrom,
+                accountIdFrom,
+                currencyFrom,
+                userEmailTo,
+                accountIdTo,
+                currencyTo,
+                amount,
+                null,
+                null,
+                course,
+                comment,
+                rateVersion
+        );
     }
 
 
+    /**
+     * Конструктор для восстановления сохраненной транзакции с суммой списания и комиссией.
+     *
+     * @param id
+     * @param date
+     * @param type
+     * @param userEmailFrom
+     * @param accountIdFrom
+     * @param currencyFrom
+     * @param userEmailTo
+     * @param accountIdTo
+     * @param currencyTo
+     * @param amount        Сумма зачисления (в валюте "в").
+     * @param amountFrom    Сумма списания (в валюте "из") или {@code null}.
+     * @param fee           Комиссия (в валюте "в") или {@code null}.
+     * @param course
+     * @param comment
+     * @param rateVersion
+     */
+    public Transaction(
+            int id,
+            LocalDateTime date,
+            TransactionType type,
+            String userEmailFrom,
+            int accountIdFrom,
+            String currencyFrom,
+            String userEmailTo,
+            int accountIdTo,
+            String currencyTo,
+            BigDecimal amount,
+            BigDecimal amountFrom,
+            BigDecimal fee,
+            BigDecimal course,
+            String comment,
+            long rateVersion
+    ) {
+        this.id = id;
+        this.date = date;
+        this.type = type;
+
+        this.userFrom = IdDictionary.EMAILS.intern(userEmailFrom);
+        this.accountIdFrom = accountIdFrom;
+        this.currencyFrom = IdDictionary.CURRENCIES.intern(currencyFrom);
+
+        this.userTo = IdDictionary.EMAILS.intern(userEmailTo);
+        this.accountIdTo = accountIdTo;
+        this.currencyTo = IdDictionary.CURRENCIES.intern(currencyTo);
+
+        this.amountScale = CurrencyCode.scaleOf(currencyTo);
+        this.amount = Money.toMinor(amount, this.amountScale);
+        this.amountFrom = (amountFrom == null
+                ? NO_AMOUNT
+                : Money.toMinor(amountFrom, CurrencyCode.scaleOf(currencyFrom)));
+        this.fee = (fee == null ? 0 : Money.toMinor(fee, this.amountScale));
+        this.course = (course == null ? NO_COURSE : Money.toMinor(course, COURSE_SCALE));
+        this.comment = comment;
+        this.rateVersion = rateVersion;
+    }
 
 
     /**
@@ -217,7 +459,17 @@ public class Transaction {
      * @return Email пользователя "из".
      */
     public String getUserEmailFrom() {
-        return this.userEmailFrom;
+        return IdDictionary.EMAILS.valueOf(this.userFrom);
+    }
+
+
+    /**
+     * Возвращает идентификатор пользователя "из" в {@link IdDictionary#EMAILS}.
+     *
+     * @return Идентификатор или {@link IdDictionary#NONE}.
+     */
+    public int getUserIdFrom() {
+        return this.userFrom;
     }
 
 
@@ -237,6 +489,16 @@ public class Transaction {
      * @return Код валюты счета "из".
      */
     public String getCurrencyFrom() {
+        return IdDictionary.CURRENCIES.valueOf(this.currencyFrom);
+    }
+
+
+    /**
+     * Возвращает идентификатор валюты "из" в {@link IdDictionary#CURRENCIES}.
+     *
+     * @return Идентификатор или {@link IdDictionary#NONE}.
+     */
+    public int getCurrencyIdFrom() {
         return this.currencyFrom;
     }
 
@@ -247,7 +509,17 @@ public class Transaction {
      * @return Email пользователя "в".
      */
     public String getUserEmailTo() {
-        return this.userEmailTo;
+        return IdDictionary.EMAILS.valueOf(this.userTo);
+    }
+
+
+    /**
+     * Возвращает идентификатор пользователя "в" в {@link IdDictionary#EMAILS}.
+     *
+     * @return Идентификатор или {@link IdDictionary#NONE}.
+     */
+    public int getUserIdTo() {
+        return this.userTo;
     }
 
 
@@ -267,6 +539,16 @@ public class Transaction {
      * @return Код валюты счета "в".
      */
     public String getCurrencyTo() {
+        return IdDictionary.CURRENCIES.valueOf(this.currencyTo);
+    }
+
+
+    /**
+     * Возвращает идентификатор валюты "в" в {@link IdDictionary#CURRENCIES}.
+     *
+     * @return Идентификатор или {@link IdDictionary#NONE}.
+     */
+    public int getCurrencyIdTo() {
         return this.currencyTo;
     }
 
@@ -277,16 +559,99 @@ public class Transaction {
      * @return Сумма транзакции.
      */
     public BigDecimal getAmount() {
+        return Money.toBigDecimal(this.amount, this.amountScale);
+    }
+
+
+    /**
+     * Возвращает сумму транзакции в минимальных единицах валюты "в".
+     *
+     * @return Сумма транзакции.
+     */
+    public long getAmountMinor() {
         return this.amount;
     }
 
 
+    /**
+     * Возвращает сумму списания со счета "из" (для обмена) или {@code null}, если она не записана.
+     *
+     * @return Сумма списания или {@code null}.
+     */
+    public BigDecimal getAmountFrom() {
+        return this.amountFrom == NO_AMOUNT
+                ? null
+                : Money.toBigDecimal(this.amountFrom, CurrencyCode.scaleOf(this.getCurrencyFrom()));
+    }
+
+
+    /**
+     * Проверяет, записана ли сумма списания.
+     *
+     * @return {@code true}, если сумма списания записана.
+     */
+    public boolean hasAmountFrom() {
+        return this.amountFrom != NO_AMOUNT;
+    }
+
+
+    /**
+     * Возвращает сумму списания в минимальных единицах валюты "из".
+     *
+     * @return Сумма списания (значение не определено, если {@link #hasAmountFrom()} - {@code false}).
+     */
+    public long getAmountFromMinor() {
+        return this.amountFrom;
+    }
+
+
+    /**
+     * Возвращает комиссию, удержанную с операции (в валюте "в").
+     *
+     * @return Комиссия ({@code 0}, если комиссии не было или она не записана).
+     */
+    public BigDecimal getFee() {
+        return Money.toBigDecimal(this.fee, this.amountScale);
+    }
+
+
+    /**
+     * Возвращает комиссию в минимальных единицах валюты "в".
+     *
+     * @return Комиссия.
+     */
+    public long getFeeMinor() {
+        return this.fee;
+    }
+
+
     /**
      * Возвращает курс перевода или {@code null}.
      *
      * @return Курс перевода или {@code null}.
      */
     public BigDecimal getCourse() {
+        return this.course == NO_COURSE ? null : Money.toBigDecimal(this.course, COURSE_SCALE);
+    }
+
+
+    /**
+     * Проверяет, записан ли курс обмена.
+     *
+     * @return {@code true}, если курс записан.
+     */
+    public boolean hasCourse() {
+        return this.course != NO_COURSE;
+    }
+
+
+    /**
+     * Возвращает курс обмена с точностью {@link #COURSE_SCALE} знаков как целое число (без создания объектов).
+     *
+     * @return Курс, умноженный на 10^{@link #COURSE_SCALE} (значение не определено, если {@link #hasCourse()} -
+     * {@code false}).
+     */
+    public long getCourseMinor() {
         return this.course;
     }
 
@@ -301,35 +666,35 @@ public class Transaction {
     }
 
 
+    /**
+     * Возвращает версию матрицы кросс-курсов, по которой рассчитан курс обмена.
+     *
+     * @return Версия матрицы кросс-курсов или {@code 0}, если курс не применялся.
+     */
+    public long getRateVersion() {
+        return this.rateVersion;
+    }
+
+
     @Override
     public boolean equals(Object o) {
         if (o == null || getClass() != o.getClass()) return false;
         Transaction that = (Transaction) o;
         return id == that.id && accountIdFrom == that.accountIdFrom && accountIdTo == that.accountIdTo &&
-               Objects.equals(date, that.date) && type == that.type &&
-               Objects.equals(userEmailFrom, that.userEmailFrom) &&
-               Objects.equals(userEmailTo, that.userEmailTo) &&
-               Objects.equals(currencyFrom, that.currencyFrom) &&
-               Objects.equals(currencyTo, that.currencyTo) && Objects.equals(course, that.course) &&
-               Objects.equals(amount, that.amount);
+               userFrom == that.userFrom && userTo == that.userTo &&
+               currencyFrom == that.currencyFrom && currencyTo == that.currencyTo &&
+               course == that.course && amount == that.amount && amountScale == that.amountScale &&
+               amountFrom == that.amountFrom && fee == that.fee &&
+               type == that.type && Objects.equals(date, that.date);
     }
 
 
+    /**
+     * Хеш по идентификатору: равные транзакции имеют один идентификатор, а идентификаторы уникальны.
+     */
     @Override
     public int hashCode() {
-        return Objects.hash(
-                id,
-                date,
-                type,
-                userEmailFrom,
-                userEmailTo,
-                accountIdFrom,
-                accountIdTo,
-                currencyFrom,
-                currencyTo,
-                course,
-                amount
-        );
+        return Integer.hashCode(id);
     }
 
 
@@ -339,15 +704,18 @@ public class Transaction {
                "id=" + id +
                ", date=" + date +
                ", type=" + type +
-               ", userEmailFrom='" + userEmailFrom + '\'' +
-               ", userEmailTo='" + userEmailTo + '\'' +
+               ", userEmailFrom='" + getUserEmailFrom() + '\'' +
+               ", userEmailTo='" + getUserEmailTo() + '\'' +
                ", accountIdFrom=" + accountIdFrom +
                ", accountIdTo=" + accountIdTo +
-               ", currencyFrom='" + currencyFrom + '\'' +
-               ", currencyTo='" + currencyTo + '\'' +
-               ", course=" + course +
-               ", amount=" + amount +
+               ", currencyFrom='" + getCurrencyFrom() + '\'' +
+               ", currencyTo='" + getCurrencyTo() + '\'' +
+               ", course=" + getCourse() +
+               ", amount=" + getAmount() +
+               ", amountFrom=" + getAmountFrom() +
+               ", fee=" + getFee() +
                ", comment='" + comment + '\'' +
+               ", rateVersion=" + rateVersion +
                '}';
     }
 
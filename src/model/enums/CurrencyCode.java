@@ -1,11 +1,54 @@
 package model.enums;
 
 public enum CurrencyCode {
-    USD,
-    EUR,
-    GBP,
-    CHF,
-    FKP,
-    BTC,
-    XMR
+    USD(2),
+    EUR(2),
+    GBP(2),
+    CHF(2),
+    FKP(2),
+    BTC(8),
+    XMR(12);
+
+
+    // Количество знаков после запятой по умолчанию (для неизвестных кодов валют).
+    public static final int DEFAULT_SCALE = 2;
+
+    // Количество знаков после запятой в минимальной единице валюты.
+    private final int scale;
+
+
+    CurrencyCode(int scale) {
+        this.scale = scale;
+    }
+
+
+    /**
+     * Возвращает количество знаков после запятой в минимальной единице валюты.
+     *
+     * @return Количество знаков после запятой.
+     */
+    public int getScale() {
+        return this.scale;
+    }
+
+
+    /**
+     * Возвращает количество знаков после запятой для кода валюты.
+     *
+     * @param currencyCode Код валюты (регистр не важен).
+     * @return Количество знаков после запятой или {@link #DEFAULT_SCALE}, если код неизвестен.
+     */
+    public static int scaleOf(String currencyCode) {
+        if (currencyCode == null) {
+            return DEFAULT_SCALE;
+        }
+
+        for (CurrencyCode code : values()) {
+            if (code.name().equalsIgnoreCase(currencyCode)) {
+                return code.scale;
+            }
+        }
+
+        return DEFAULT_SCALE;
+    }
 }
@@ -3,11 +3,15 @@ package repository;
 import model.Account;
 import model.enums.AccountStatus;
 import repository.interfaces.AccountRepository;
+import repository.journal.Journal;
+import repository.journal.RecordType;
+import repository.journal.Records;
 
 import java.math.BigDecimal;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListSet;
 import java.util.concurrent.atomic.AtomicInteger;
-import java.util.stream.Collectors;
 
 /**
  * Реализация репозитория для управления счетами пользователей.
@@ -15,15 +19,45 @@ import java.util.stream.Collectors;
 public class AccountRepositoryImpl implements AccountRepository {
 
     // Хранилище всех счетов.
-    private final Map<Integer, Account> accounts;
+    private final IdTable<Account> accounts;
+
+    /**
+     * Индекс счетов по пользователю и валюте.
+     * <p>key - Email пользователя</p>
+     * <p>value - Id счетов пользователя по коду валюты, в порядке возрастания</p>
+     */
+    private final Map<String, Map<String, Set<Integer>>> accountsByUser;
+
+    /**
+     * Системные счета.
+     * <p>key - Код валюты в верхнем регистре</p>
+     * <p>value - Id системного счета</p>
+     */
+    private final Map<String, Integer> systemAccounts;
 
     // Счетчик для генерации уникальных ID счетов.
     private final AtomicInteger accountIdCounter;
 
+    // Журнал изменений или null, если репозиторий хранится только в памяти.
+    private final Journal journal;
+
 
     public AccountRepositoryImpl() {
-        this.accounts = new HashMap<>();
+        this(null);
+    }
+
+
+    /**
+     * Конструктор для создания репозитория, записывающего изменения в журнал.
+     *
+     * @param journal Журнал изменений или {@code null}.
+     */
+    public AccountRepositoryImpl(Journal journal) {
+        this.accounts = new IdTable<>();
+        this.accountsByUser = new ConcurrentHashMap<>();
+        this.systemAccounts = new ConcurrentHashMap<>();
         this.accountIdCounter = new AtomicInteger(0);
+        this.journal = journal;
     }
 
 
@@ -44,7 +78,7 @@ public class AccountRepositoryImpl implements AccountRepository {
                 userEmail
         );
 
-        this.accounts.put(accountId, account);
+        this.add(account);
 
         return account;
     }
@@ -70,7 +104,7 @@ public class AccountRepositoryImpl implements AccountRepository {
                 title
         );
 
-        this.accounts.put(accountId, account);
+        this.add(account);
 
         return account;
     }
@@ -98,7 +132,7 @@ public class AccountRepositoryImpl implements AccountRepository {
 
         account.setStatus(AccountStatus.SYSTEM);
 
-        this.accounts.put(accountId, account);
+        this.add(account);
 
         return account;
     }
@@ -116,6 +150,24 @@ public class AccountRepositoryImpl implements AccountRepository {
     }
 
 
+    /**
+     * Возвращает системный счет в указанной валюте.
+     *
+     * @param currencyCode Код валюты.
+     * @return Системный счет или {@code null}, если такого счета нет.
+     */
+    @Override
+    public Account getSystemAccount(String currencyCode) {
+        if (currencyCode == null) {
+            throw new IllegalArgumentException("Аргумент currencyCode не может быть null!");
+        }
+
+        Integer id = this.systemAccounts.get(currencyCode.toUpperCase());
+
+        return id == null ? null : this.accounts.get(id);
+    }
+
+
     /**
      * Возвращает список всех счетов.
      *
@@ -123,7 +175,7 @@ public class AccountRepositoryImpl implements AccountRepository {
      */
     @Override
     public List<Account> getAllAccounts() {
-        return new ArrayList<>(this.accounts.values());
+        return this.accounts.values();
     }
 
 
@@ -138,11 +190,18 @@ public class AccountRepositoryImpl implements AccountRepository {
             throw new IllegalArgumentException("Аргумент userEmail не может быть null!");
         }
 
-        return this
-                .getAllAccounts()
-                .stream()
-                .filter(item -> item.getUserEmail().equals(userEmail))
-                .collect(Collectors.toList());
+        List<Account> result = new ArrayList<>();
+        Map<String, Set<Integer>> byCurrency = this.accountsByUser.get(userEmail);
+
+        if (byCurrency != null) {
+            for (Set<Integer> ids : byCurrency.values()) {
+                this.collect(ids, result);
+            }
+
+            result.sort(Comparator.comparingInt(Account::getId));
+        }
+
+        return result;
     }
 
 
@@ -161,12 +220,14 @@ public class AccountRepositoryImpl implements AccountRepository {
             throw new IllegalArgumentException("Аргумент currencyCode не может быть null!");
         }
 
-        return this
-                .getAllAccounts()
-                .stream()
-                .filter(item -> item.getUserEmail().equals(userEmail))
-                .filter(item -> item.getCurrency().equals(currencyCode))
-                .collect(Collectors.toList());
+        List<Account> result = new ArrayList<>();
+        Map<String, Set<Integer>> byCurrency = this.accountsByUser.get(userEmail);
+
+        if (byCurrency != null) {
+            this.collect(byCurrency.get(currencyCode), result);
+        }
+
+        return result;
     }
 
 
@@ -177,11 +238,17 @@ public class AccountRepositoryImpl implements AccountRepository {
      */
     @Override
     public void removeAccount(int id) throws Exception {
-        if (!this.accounts.containsKey(id)) {
+        Account removed = this.accounts.remove(id);
+
+        if (removed == null) {
             throw new Exception("Счета с указанным id не найден!");
         }
 
-        this.accounts.remove(id);
+        this.unindex(removed);
+
+        if (this.journal != null) {
+            this.journal.append(RecordType.ACCOUNT_REMOVED, out -> out.writeInt(id));
+        }
     }
 
 
@@ -197,12 +264,177 @@ public class AccountRepositoryImpl implements AccountRepository {
         }
 
         int id = account.getId();
+        Account removed = this.accounts.remove(id);
 
-        if (!this.accounts.containsKey(id)) {
+        if (removed == null) {
             throw new Exception("Счета с указанным id не найден!");
         }
 
-        this.accounts.remove(id);
+        this.unindex(removed);
+
+        if (this.journal != null) {
+            this.journal.append(RecordType.ACCOUNT_REMOVED, out -> out.writeInt(id));
+        }
+    }
+
+
+    /**
+     * Сохраняет текущий баланс счета. Вызывается под блокировкой счета после каждого изменения баланса.
+     *
+     * @param account Счет.
+     */
+    @Override
+    public void updateBalance(Account account) {
+        if (account == null) {
+            throw new IllegalArgumentException("Аргумент account не может быть null!");
+        }
+
+        if (this.journal != null) {
+            this.journal.append(RecordType.BALANCE, out -> Records.writeBalance(out, account));
+        }
+    }
+
+
+    /**
+     * Возвращает количество счетов (включая системные).
+     *
+     * @return Количество счетов.
+     */
+    @Override
+    public int getAccountCount() {
+        return this.accounts.size();
+    }
+
+
+    /**
+     * Восстанавливает счет (например, из журнала) без записи в журнал.
+     *
+     * @param account Счет.
+     */
+    public void restoreAccount(Account account) {
+        this.store(account);
+        this.accountIdCounter.accumulateAndGet(account.getId() + 1, Math::max);
+    }
+
+
+    /**
+     * Возвращает идентификатор, который получит следующий созданный счет.
+     *
+     * @return Следующий идентификатор счета.
+     */
+    public int getNextAccountId() {
+        return this.accountIdCounter.get();
+    }
+
+
+    /**
+     * Восстанавливает счетчик идентификаторов счетов, чтобы не выдавать повторно идентификаторы удаленных
+     * счетов.
+     *
+     * @param nextId Следующий идентификатор счета.
+     */
+    public void restoreNextAccountId(int nextId) {
+        this.accountIdCounter.accumulateAndGet(nextId, Math::max);
+    }
+
+
+    /**
+     * Удаляет восстановленный счет (например, при проигрывании журнала) без записи в журнал.
+     *
+     * @param id Идентификатор счета.
+     */
+    public void restoreRemoval(int id) {
+        Account removed = this.accounts.remove(id);
+
+        if (removed != null) {
+            this.unindex(removed);
+        }
+    }
+
+
+    /**
+     * Добавляет счет в хранилище (и в журнал, если он есть).
+     *
+     * @param account Счет.
+     */
+    private void add(Account account) {
+        if (this.journal == null) {
+            this.store(account);
+            return;
+        }
+
+        this.journal.append(
+                RecordType.ACCOUNT,
+                out -> Records.writeAccount(out, account),
+                () -> this.store(account)
+        );
+    }
+
+
+    /**
+     * Добавляет счет в хранилище и в индексы.
+     *
+     * @param account Счет.
+     */
+    private void store(Account account) {
+        Account previous = this.accounts.put(account.getId(), account);
+
+        if (previous != null) {
+            this.unindex(previous);
+        }
+
+        if (account.getUserEmail() != null) {
+            this.accountsByUser
+                    .computeIfAbsent(account.getUserEmail(), k -> new ConcurrentHashMap<>())
+                    .computeIfAbsent(account.getCurrency(), k -> new ConcurrentSkipListSet<>())
+                    .add(account.getId());
+        }
+
+        if (account.getStatus() == AccountStatus.SYSTEM) {
+            this.systemAccounts.putIfAbsent(account.getCurrency().toUpperCase(), account.getId());
+        }
+    }
+
+
+    /**
+     * Удаляет счет из индексов.
+     *
+     * @param account Удаленный счет.
+     */
+    private void unindex(Account account) {
+        Map<String, Set<Integer>> byCurrency =
+                account.getUserEmail() == null ? null : this.accountsByUser.get(account.getUserEmail());
+
+        if (byCurrency != null) {
+            Set<Integer> ids = byCurrency.get(account.getCurrency());
+
+            if (ids != null) {
+                ids.remove(account.getId());
+            }
+        }
+
+        this.systemAccounts.remove(account.getCurrency().toUpperCase(), account.getId());
+    }
+
+
+    /**
+     * Добавляет в список счета по их id (счета, удаленные после чтения индекса, пропускаются).
+     *
+     * @param ids    Id счетов или {@code null}.
+     * @param result Список счетов.
+     */
+    private void collect(Set<Integer> ids, List<Account> result) {
+        if (ids == null) {
+            return;
+        }
+
+        for (Integer id : ids) {
+            Account account = this.accounts.get(id);
+
+            if (account != null) {
+                result.add(account);
+            }
+        }
     }
 
-}
\ No newline at end of file
+}
@@ -4,10 +4,19 @@ import model.Account;
 import model.Rate;
 import model.enums.CurrencyCode;
 import repository.interfaces.CurrencyRepository;
+import repository.interfaces.RateListener;
+import repository.journal.Journal;
+import repository.journal.RecordType;
+import repository.journal.RecordWriter;
+import repository.journal.Records;
 
 import java.math.BigDecimal;
 import java.time.LocalDateTime;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.stream.Collectors;
 
 /**
@@ -18,13 +27,43 @@ public class CurrencyRepositoryImpl implements CurrencyRepository {
     /**
      * Хранилище курсов валюты.
      * <p>key - Код валюты</p>
-     * <p>value - Список курсов (key - отметка времени, value - курс)</p>
+     * <p>value - Список курсов, упорядоченный по времени (key - отметка времени, value - курс)</p>
      */
-    private final Map<CurrencyCode, Map<LocalDateTime, Rate>> rates;
+    private final Map<CurrencyCode, NavigableMap<LocalDateTime, Rate>> rates;
+
+    /**
+     * Последний (актуальный) курс каждой валюты.
+     * <p>key - Код валюты</p>
+     * <p>value - Курс с последней отметкой времени</p>
+     */
+    private final Map<CurrencyCode, Rate> actualRates;
+
+    // Слушатели публикации актуальных курсов.
+    private final List<RateListener> listeners;
+
+    // Количество курсов в истории (размер ConcurrentSkipListMap вычисляется обходом).
+    private final AtomicInteger rateCount;
+
+    // Журнал изменений или null, если репозиторий хранится только в памяти.
+    private final Journal journal;
 
 
     public CurrencyRepositoryImpl() {
-        this.rates = new HashMap<>();
+        this(null);
+    }
+
+
+    /**
+     * Конструктор для создания репозитория, записывающего изменения в журнал.
+     *
+     * @param journal Журнал изменений или {@code null}.
+     */
+    public CurrencyRepositoryImpl(Journal journal) {
+        this.rates = new ConcurrentHashMap<>();
+        this.actualRates = new ConcurrentHashMap<>();
+        this.listeners = new CopyOnWriteArrayList<>();
+        this.rateCount = new AtomicInteger();
+        this.journal = journal;
     }
 
 
@@ -37,13 +76,134 @@ public class CurrencyRepositoryImpl implements CurrencyRepository {
      * @return Возвращает объект {@code Rate}.
      */
     @Override
-    public Rate addRate(String currencyCode, BigDecimal course, LocalDateTime time) {
-        Rate rate = new Rate(currencyCode, course, time);
-        rates.computeIfAbsent(CurrencyCode.valueOf(currencyCode), k -> new HashMap<>()).put(time, rate);
+    public synchronized Rate addRate(String currencyCode, BigDecimal course, LocalDateTime time) {
+        Rate rate = new Rate(CurrencyCode.valueOf(currencyCode).name(), course, time);
+
+        if (this.journal == null) {
+            this.put(rate);
+        } else {
+            this.journal.append(RecordType.RATE, out -> Records.writeRate(out, rate), () -> this.put(rate));
+        }
+
         return rate;
     }
 
 
+    /**
+     * Добавляет пачку курсов за один захват блокировки (и одну запись пачки в журнал). Курсы удобнее
+     * передавать упорядоченными по валюте и времени: вставка в историю идет по возрастанию, а слушатели
+     * оповещаются один раз на валюту - о самом позднем курсе пачки, если он стал актуальным.
+     *
+     * @param batch Курсы.
+     * @return Количество добавленных курсов.
+     */
+    @Override
+    public synchronized int addRates(List<Rate> batch) {
+        if (batch == null) {
+            throw new IllegalArgumentException("Аргумент batch не может быть null!");
+        }
+
+        if (this.journal == null) {
+            this.putAll(batch);
+        } else {
+            List<RecordWriter> writers = new ArrayList<>(batch.size());
+            for (Rate rate : batch) {
+                writers.add(out -> Records.writeRate(out, rate));
+            }
+
+            this.journal.appendAll(RecordType.RATE, writers, () -> this.putAll(batch));
+        }
+
+        return batch.size();
+    }
+
+
+    /**
+     * Восстанавливает курс валюты (например, из журнала) без записи в журнал.
+     *
+     * @param rate Курс.
+     */
+    public synchronized void restoreRate(Rate rate) {
+        this.put(rate);
+    }
+
+
+    /**
+     * Добавляет курс в историю и, если он самый поздний, делает его актуальным и оповещает слушателей.
+     *
+     * @param rate Курс.
+     */
+    private void put(Rate rate) {
+        CurrencyCode code = CurrencyCode.valueOf(rate.getCurrencyCode());
+
+        if (rates.computeIfAbsent(code, k -> new ConcurrentSkipListMap<>()).put(rate.getTime(), rate) == null) {
+            this.rateCount.incrementAndGet();
+        }
+
+        this.publish(code, rate);
+    }
+
+
+    /**
+     * Добавляет пачку курсов в историю и публикует самый поздний курс каждой валюты.
+     *
+     * @param batch Курсы.
+     */
+    private void putAll(List<Rate> batch) {
+        Map<CurrencyCode, Rate> latest = new EnumMap<>(CurrencyCode.class);
+
+        for (Rate rate : batch) {
+            CurrencyCode code = CurrencyCode.valueOf(rate.getCurrencyCode());
+
+            if (rates.computeIfAbsent(code, k -> new ConcurrentSkipListMap<>()).put(rate.getTime(), rate) == null) {
+                this.rateCount.incrementAndGet();
+            }
+
+            Rate last = latest.get(code);
+            if (last == null || !rate.getTime().isBefore(last.getTime())) {
+                latest.put(code, rate);
+            }
+        }
+
+        for (Map.Entry<CurrencyCode, Rate> entry : latest.entrySet()) {
+            this.publish(entry.getKey(), entry.getValue());
+        }
+    }
+
+
+    /**
+     * Делает курс актуальным и оповещает слушателей, если он не раньше текущего актуального.
+     *
+     * @param code Код валюты.
+     * @param rate Курс.
+     */
+    private void publish(CurrencyCode code, Rate rate) {
+        Rate actual = actualRates.get(code);
+        if (actual == null || !rate.getTime().isBefore(actual.getTime())) {
+            actualRates.put(code, rate);
+
+            for (RateListener listener : listeners) {
+                listener.onRate(rate);
+            }
+        }
+    }
+
+
+    /**
+     * Подписывает слушателя на публикацию актуальных курсов.
+     *
+     * @param listener Слушатель.
+     */
+    @Override
+    public void addRateListener(RateListener listener) {
+        if (listener == null) {
+            throw new IllegalArgumentException("Аргумент listener не может быть null!");
+        }
+
+        listeners.add(listener);
+    }
+
+
     /**
      * Возвращает список всех курсов валют.
      *
@@ -73,7 +233,7 @@ public class CurrencyRepositoryImpl implements CurrencyRepository {
             return List.of(); // Если код валюты неверный
         }
 
-        Map<LocalDateTime, Rate> currencyRates = rates.get(code);
+        NavigableMap<LocalDateTime, Rate> currencyRates = rates.get(code);
         if (currencyRates == null) {
             return List.of();
         }
@@ -90,23 +250,56 @@ public class CurrencyRepositoryImpl implements CurrencyRepository {
      */
     @Override
     public BigDecimal getActualRate(CurrencyCode currencyCode) {
-        Map<LocalDateTime, Rate> currencyRates = rates.get(currencyCode);
-        if (currencyRates == null || currencyRates.isEmpty()) {
+        Rate actual = actualRates.get(currencyCode);
+        if (actual == null) {
             return null; // Если курсы отсутствуют
         }
 
-        Rate latestRate = null;
-        LocalDateTime latestTime = null;
+        return actual.getCourse();
+    }
 
-        for (Map.Entry<LocalDateTime, Rate> entry : currencyRates.entrySet()) {
-            if (latestTime == null || entry.getKey().isAfter(latestTime)) {
-                latestTime = entry.getKey();
-                latestRate = entry.getValue();
-            }
+
+    /**
+     * Возвращает курс валюты, действовавший в указанный момент времени
+     * (последний курс с отметкой времени не позже {@code time}).
+     *
+     * @param currencyCode Код валюты.
+     * @param time         Момент времени.
+     * @return Курс валюты или {@code null}, если на этот момент курса еще не было.
+     */
+    @Override
+    public Rate getRateAt(CurrencyCode currencyCode, LocalDateTime time) {
+        NavigableMap<LocalDateTime, Rate> currencyRates = rates.get(currencyCode);
+        if (currencyRates == null || time == null) {
+            return null;
+        }
+
+        Map.Entry<LocalDateTime, Rate> entry = currencyRates.floorEntry(time);
+
+        return entry == null ? null : entry.getValue();
+    }
+
+
+    /**
+     * Возвращает список курсов валюты за период (включительно), упорядоченный по времени.
+     *
+     * @param currencyCode Код валюты.
+     * @param from         Начало периода.
+     * @param to           Конец периода.
+     * @return Список курсов валюты.
+     */
+    @Override
+    public List<Rate> getRatesBetween(CurrencyCode currencyCode, LocalDateTime from, LocalDateTime to) {
+        if (from == null || to == null) {
+            throw new IllegalArgumentException("Аргументы from и to не могут быть null!");
         }
 
-        return latestRate.getCourse();
+        NavigableMap<LocalDateTime, Rate> currencyRates = rates.get(currencyCode);
+        if (currencyRates == null || from.isAfter(to)) {
+            return List.of();
+        }
 
+        return new ArrayList<>(currencyRates.subMap(from, true, to, true).values());
     }
 
 
@@ -130,4 +323,15 @@ public class CurrencyRepositoryImpl implements CurrencyRepository {
     public boolean currencyExists(String currencyCode) {
         return rates.containsKey(currencyCode);
     }
+
+
+    /**
+     * Возвращает количество курсов в истории всех валют.
+     *
+     * @return Количество курсов.
+     */
+    @Override
+    public int getRateCount() {
+        return this.rateCount.get();
+    }
 }
\ No newline at end of file
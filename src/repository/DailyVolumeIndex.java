@@ -0,0 +1,250 @@
+package repository;
+
+import model.DailyVolume;
+import model.Money;
+import model.Transaction;
+import model.enums.TransactionType;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Обороты по дням, обновляемые при добавлении каждой транзакции: для ключа (день, валюта "из", валюта "в", тип
+ * транзакции) хранятся количество транзакций, сумма, сумма комиссий и минимальный и максимальный курс.
+ *
+ * <p>Запрос оборота по ключу - два поиска в хеш-таблицах без просмотра транзакций. Счетчики ключа -
+ * {@link LongAdder}, а курсы обновляются сравнением с обменом ({@link AtomicLong}), поэтому одновременные
+ * транзакции одной валютной пары не блокируют друг друга. Показатели оборота читаются по отдельности, поэтому
+ * оборот, прочитанный во время добавления транзакций, может учитывать транзакцию не во всех показателях.</p>
+ */
+public class DailyVolumeIndex {
+
+    // Порядок оборотов дня: тип транзакции, валюта "из", валюта "в".
+    private static final Comparator<DailyVolume> ORDER = Comparator
+            .comparing(DailyVolume::getType)
+            .thenComparing(DailyVolume::getCurrencyFrom, Comparator.nullsFirst(Comparator.naturalOrder()))
+            .thenComparing(DailyVolume::getCurrencyTo, Comparator.nullsFirst(Comparator.naturalOrder()));
+
+    /**
+     * Обороты.
+     * <p>key - День</p>
+     * <p>value - Обороты дня по валютной паре и типу транзакции</p>
+     */
+    private final Map<LocalDate, Map<Key, Volume>> days;
+
+
+    public DailyVolumeIndex() {
+        this.days = new ConcurrentHashMap<>();
+    }
+
+
+    /**
+     * Учитывает транзакцию в обороте ее дня.
+     *
+     * @param transaction Транзакция.
+     */
+    public void add(Transaction transaction) {
+        this.add(
+                transaction.getDate().toLocalDate(),
+                transaction.getType(),
+                transaction.getCurrencyFrom(),
+                transaction.getCurrencyTo(),
+                transaction.getAmountMinor(),
+                transaction.getFeeMinor(),
+                transaction.hasCourse(),
+                transaction.getCourseMinor()
+        );
+    }
+
+
+    /**
+     * Учитывает транзакцию в обороте дня по отдельным полям (для хранилищ, читающих записи без создания
+     * {@link Transaction}).
+     *
+     * @param day          День транзакции.
+     * @param type         Тип транзакции.
+     * @param currencyFrom Валюта "из".
+     * @param currencyTo   Валюта "в".
+     * @param amount       Сумма в минимальных единицах валюты "в".
+     * @param fee          Комиссия в минимальных единицах валюты "в".
+     * @param hasCourse    Записан ли курс.
+     * @param course       Курс с точностью {@link Transaction#COURSE_SCALE} знаков как целое число.
+     */
+    public void add(
+            LocalDate day,
+            TransactionType type,
+            String currencyFrom,
+            String currencyTo,
+            long amount,
+            long fee,
+            boolean hasCourse,
+            long course
+    ) {
+        // Сначала обычный поиск: computeIfAbsent может блокировать ячейку таблицы и для существующего ключа.
+        Map<Key, Volume> volumes = this.days.get(day);
+
+        if (volumes == null) {
+            volumes = this.days.computeIfAbsent(day, d -> new ConcurrentHashMap<>());
+        }
+
+        Key key = new Key(type, currencyFrom, currencyTo);
+        Volume volume = volumes.get(key);
+
+        if (volume == null) {
+            volume = volumes.computeIfAbsent(key, k -> new Volume());
+        }
+
+        volume.add(amount, fee, hasCourse, course);
+    }
+
+
+    /**
+     * Возвращает оборот за день по валютной паре и типу транзакции.
+     *
+     * @param day          День.
+     * @param currencyFrom Валюта "из".
+     * @param currencyTo   Валюта "в".
+     * @param type         Тип транзакции.
+     * @return Оборот или {@code null}, если таких транзакций за день не было.
+     */
+    public DailyVolume get(LocalDate day, String currencyFrom, String currencyTo, TransactionType type) {
+        Map<Key, Volume> volumes = this.days.get(day);
+        Volume volume = volumes == null ? null : volumes.get(new Key(type, currencyFrom, currencyTo));
+
+        return volume == null ? null : volume.snapshot(day, type, currencyFrom, currencyTo);
+    }
+
+
+    /**
+     * Возвращает обороты за день по всем валютным парам и типам транзакций.
+     *
+     * @param day День.
+     * @return Обороты, упорядоченные по типу транзакции и валютам.
+     */
+    public List<DailyVolume> get(LocalDate day) {
+        Map<Key, Volume> volumes = this.days.get(day);
+
+        if (volumes == null) {
+            return Collections.emptyList();
+        }
+
+        List<DailyVolume> result = new ArrayList<>(volumes.size());
+
+        for (Map.Entry<Key, Volume> entry : volumes.entrySet()) {
+            Key key = entry.getKey();
+            result.add(entry.getValue().snapshot(day, key.type, key.currencyFrom, key.currencyTo));
+        }
+
+        result.sort(ORDER);
+
+        return result;
+    }
+
+
+    /**
+     * Ключ оборота дня.
+     */
+    private static final class Key {
+
+        private final TransactionType type;
+        private final String currencyFrom;
+        private final String currencyTo;
+        private final int hash;
+
+
+        private Key(TransactionType type, String currencyFrom, String currencyTo) {
+            this.type = type;
+            this.currencyFrom = currencyFrom;
+            this.currencyTo = currencyTo;
+            this.hash = (31 * type.hashCode() + Objects.hashCode(currencyFrom)) * 31 + Objects.hashCode(currencyTo);
+        }
+
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof Key)) return false;
+            Key that = (Key) o;
+            return type == that.type &&
+                   Objects.equals(currencyFrom, that.currencyFrom) &&
+                   Objects.equals(currencyTo, that.currencyTo);
+        }
+
+
+        @Override
+        public int hashCode() {
+            return this.hash;
+        }
+
+    }
+
+
+    /**
+     * Накопленные показатели оборота.
+     */
+    private static final class Volume {
+
+        private final LongAdder count = new LongAdder();
+        private final LongAdder amount = new LongAdder();
+        private final LongAdder fees = new LongAdder();
+
+        // Курсы с точностью Transaction.COURSE_SCALE знаков (MAX_VALUE и MIN_VALUE - курс не применялся).
+        private final AtomicLong minCourse = new AtomicLong(Long.MAX_VALUE);
+        private final AtomicLong maxCourse = new AtomicLong(Long.MIN_VALUE);
+
+
+        private void add(long amount, long fee, boolean hasCourse, long course) {
+            this.count.increment();
+            this.amount.add(amount);
+
+            if (fee != 0) {
+                this.fees.add(fee);
+            }
+
+            if (hasCourse) {
+                long current;
+
+                while (course < (current = this.minCourse.get()) && !this.minCourse.compareAndSet(current, course)) {
+                    // Повтор: другой поток изменил минимум.
+                }
+
+                while (course > (current = this.maxCourse.get()) && !this.maxCourse.compareAndSet(current, course)) {
+                    // Повтор: другой поток изменил максимум.
+                }
+            }
+        }
+
+
+        private DailyVolume snapshot(LocalDate day, TransactionType type, String currencyFrom, String currencyTo) {
+            long min = this.minCourse.get();
+            long max = this.maxCourse.get();
+
+            return new DailyVolume(
+                    day,
+                    type,
+                    currencyFrom,
+                    currencyTo,
+                    this.count.sum(),
+                    this.amount.sum(),
+                    this.fees.sum(),
+                    min == Long.MAX_VALUE ? null : course(min),
+                    max == Long.MIN_VALUE ? null : course(max)
+            );
+        }
+
+
+        private static BigDecimal course(long value) {
+            return Money.toBigDecimal(value, Transaction.COURSE_SCALE);
+        }
+
+    }
+
+}
@@ -0,0 +1,229 @@
+package repository;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Потокобезопасная таблица значений по неотрицательному целочисленному идентификатору.
+ *
+ * <p>Идентификаторы счетов и транзакций выдаются подряд счетчиком, поэтому вместо хеш-таблицы значения хранятся в
+ * блоках по {@value #CHUNK_SIZE} элементов, а блок и позиция в нем вычисляются из идентификатора. Поиск не
+ * упаковывает идентификатор в {@link Integer}, не вычисляет хеш и не создает объектов-записей; чтение выполняется
+ * без блокировок. Блокировка берется только при добавлении нового блока.</p>
+ *
+ * @param <V> Тип значения.
+ */
+public class IdTable<V> {
+
+    // Количество бит позиции внутри блока.
+    private static final int CHUNK_BITS = 10;
+
+    // Размер блока.
+    private static final int CHUNK_SIZE = 1 << CHUNK_BITS;
+
+    // Маска позиции внутри блока.
+    private static final int CHUNK_MASK = CHUNK_SIZE - 1;
+
+    // Блоки значений (элемент null - блок еще не создан).
+    private volatile AtomicReferenceArray<V>[] chunks;
+
+    // Количество значений.
+    private final AtomicInteger size;
+
+
+    public IdTable() {
+        this.chunks = newChunks(16);
+        this.size = new AtomicInteger();
+    }
+
+
+    /**
+     * Возвращает значение по идентификатору.
+     *
+     * @param id Идентификатор.
+     * @return Значение или {@code null}, если значения нет.
+     */
+    public V get(int id) {
+        AtomicReferenceArray<V> chunk = this.chunk(id);
+
+        return chunk == null ? null : chunk.get(id & CHUNK_MASK);
+    }
+
+
+    /**
+     * Проверяет наличие значения.
+     *
+     * @param id Идентификатор.
+     * @return {@code true}, если значение есть.
+     */
+    public boolean containsKey(int id) {
+        return this.get(id) != null;
+    }
+
+
+    /**
+     * Сохраняет значение.
+     *
+     * @param id    Идентификатор (не меньше нуля).
+     * @param value Значение.
+     * @return Предыдущее значение или {@code null}.
+     */
+    public V put(int id, V value) {
+        if (value == null) {
+            throw new IllegalArgumentException("Аргумент value не может быть null!");
+        }
+
+        V previous = this.chunkForWrite(id).getAndSet(id & CHUNK_MASK, value);
+
+        if (previous == null) {
+            this.size.incrementAndGet();
+        }
+
+        return previous;
+    }
+
+
+    /**
+     * Сохраняет значение, если по идентификатору еще нет значения.
+     *
+     * @param id    Идентификатор (не меньше нуля).
+     * @param value Значение.
+     * @return Текущее значение или {@code null}, если значение сохранено.
+     */
+    public V putIfAbsent(int id, V value) {
+        if (value == null) {
+            throw new IllegalArgumentException("Аргумент value не может быть null!");
+        }
+
+        AtomicReferenceArray<V> chunk = this.chunkForWrite(id);
+        int index = id & CHUNK_MASK;
+
+        if (chunk.compareAndSet(index, null, value)) {
+            this.size.incrementAndGet();
+            return null;
+        }
+
+        return chunk.get(index);
+    }
+
+
+    /**
+     * Удаляет значение.
+     *
+     * @param id Идентификатор.
+     * @return Удаленное значение или {@code null}, если значения не было.
+     */
+    public V remove(int id) {
+        AtomicReferenceArray<V> chunk = this.chunk(id);
+
+        if (chunk == null) {
+            return null;
+        }
+
+        V previous = chunk.getAndSet(id & CHUNK_MASK, null);
+
+        if (previous != null) {
+            this.size.decrementAndGet();
+        }
+
+        return previous;
+    }
+
+
+    /**
+     * Возвращает количество значений.
+     *
+     * @return Количество значений.
+     */
+    public int size() {
+        return this.size.get();
+    }
+
+
+    /**
+     * Возвращает значения в порядке возрастания идентификаторов. Значения, добавленные или удаленные во время
+     * обхода, могут быть как учтены, так и нет.
+     *
+     * @return Список значений.
+     */
+    public List<V> values() {
+        List<V> result = new ArrayList<>(this.size());
+
+        for (AtomicReferenceArray<V> chunk : this.chunks) {
+            if (chunk == null) {
+                continue;
+            }
+
+            for (int i = 0; i < CHUNK_SIZE; i++) {
+                V value = chunk.get(i);
+
+                if (value != null) {
+                    result.add(value);
+                }
+            }
+        }
+
+        return result;
+    }
+
+
+    private AtomicReferenceArray<V> chunk(int id) {
+        if (id < 0) {
+            return null;
+        }
+
+        AtomicReferenceArray<V>[] chunks = this.chunks;
+        int number = id >>> CHUNK_BITS;
+
+        return number < chunks.length ? chunks[number] : null;
+    }
+
+
+    private AtomicReferenceArray<V> chunkForWrite(int id) {
+        if (id < 0) {
+            throw new IllegalArgumentException("Идентификатор не может быть отрицательным: " + id);
+        }
+
+        AtomicReferenceArray<V> chunk = this.chunk(id);
+
+        return chunk != null ? chunk : this.addChunk(id >>> CHUNK_BITS);
+    }
+
+
+    /**
+     * Создает массив блоков: массив параметризованного типа нельзя создать без непроверяемого приведения.
+     */
+    @SuppressWarnings({"rawtypes", "unchecked"})
+    private static <V> AtomicReferenceArray<V>[] newChunks(int length) {
+        return new AtomicReferenceArray[length];
+    }
+
+
+    /**
+     * Создает блок. Новый массив блоков публикуется через volatile-поле после заполнения, поэтому читатели видят
+     * либо старый массив, либо полностью готовый новый.
+     */
+    private synchronized AtomicReferenceArray<V> addChunk(int number) {
+        AtomicReferenceArray<V>[] chunks = this.chunks;
+
+        if (number < chunks.length && chunks[number] != null) {
+            return chunks[number];
+        }
+
+        if (number >= chunks.length) {
+            chunks = Arrays.copyOf(chunks, Math.max(chunks.length * 2, number + 1));
+        } else {
+            chunks = chunks.clone();
+        }
+
+        AtomicReferenceArray<V> chunk = new AtomicReferenceArray<>(CHUNK_SIZE);
+        chunks[number] = chunk;
+        this.chunks = chunks;
+
+        return chunk;
+    }
+
+}
@@ -0,0 +1,1092 @@
+package repository;
+
+import model.DailyVolume;
+import model.Money;
+import model.Transaction;
+import model.enums.CurrencyCode;
+import model.enums.TransactionType;
+import repository.interfaces.TransactionRepository;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+
+/**
+ * Реализация репозитория транзакций, хранящая транзакции вне кучи: в файлах сегментов, отображенных в память
+ * ({@link MappedByteBuffer}).
+ *
+ * <p>Каждая транзакция - запись фиксированной длины {@link #RECORD_SIZE}; идентификатор транзакции - номер
+ * записи. Строки (email и коды валют) хранятся в словаре и занимают в записи 4 байта, комментарии - в отдельном
+ * файле. Индексы по счету и по дню тоже хранятся в записях: каждая запись ссылается на предыдущую транзакцию
+ * того же счета и того же дня, а в куче лежат только головы этих цепочек. Поэтому объем кучи зависит от
+ * количества пользователей, счетов и дней, но не от длины журнала транзакций.</p>
+ *
+ * <p>Объекты {@link Transaction} создаются только при чтении и нигде не удерживаются. Для последовательного
+ * чтения без создания объектов есть {@link #cursor(int)}.</p>
+ *
+ * <p>Записи попадают в страничный кэш ОС сразу, поэтому переживают падение процесса; на диск они гарантированно
+ * сбрасываются методами {@link #flush()} и {@link #close()}.</p>
+ */
+public class MappedTransactionRepository implements TransactionRepository, Closeable {
+
+    // Размер записи транзакции в байтах.
+    public static final int RECORD_SIZE = 96;
+
+    // Количество записей в одном сегменте.
+    private static final int RECORDS_PER_SEGMENT = 1 << 20;
+
+    // Сигнатура файла метаданных.
+    private static final int MAGIC = 0x54584D50;
+
+    // Нет ссылки (на строку, комментарий или предыдущую запись).
+    private static final int NONE = -1;
+
+    // Признак отсутствия курса обмена.
+    private static final long NO_COURSE = Long.MIN_VALUE;
+
+    // Признак отсутствия суммы списания.
+    private static final long NO_AMOUNT = Long.MIN_VALUE;
+
+    // Смещения полей записи.
+    private static final int EPOCH_SECOND = 0;
+    private static final int NANO = 8;
+    private static final int TYPE = 12;
+    private static final int ACCOUNT_FROM = 16;
+    private static final int ACCOUNT_TO = 20;
+    private static final int USER_FROM = 24;
+    private static final int USER_TO = 28;
+    private static final int CURRENCY_FROM = 32;
+    private static final int CURRENCY_TO = 36;
+    private static final int PREVIOUS_BY_ACCOUNT = 40;
+    private static final int PREVIOUS_BY_DATE = 44;
+    private static final int AMOUNT = 48;
+    private static final int COURSE = 56;
+    private static final int RATE_VERSION = 64;
+    private static final int COMMENT = 72;
+    private static final int AMOUNT_FROM = 80;
+    private static final int FEE = 88;
+
+    // Смещения полей файла метаданных.
+    private static final int META_MAGIC = 0;
+    private static final int META_RECORD_SIZE = 4;
+    private static final int META_COUNT = 8;
+
+    private static final TransactionType[] TYPES = TransactionType.values();
+
+    // Каталог хранилища.
+    private final Path directory;
+
+    // Метаданные: сигнатура, размер записи и количество записей.
+    private final MappedByteBuffer meta;
+
+    // Словарь строк: файл, строка -> номер и номер -> строка (номера выдаются подряд, чтение без блокировок).
+    private final FileChannel stringsFile;
+    private final Map<String, Integer> stringIds;
+    private final IdTable<String> strings;
+
+    // Файл комментариев.
+    private final FileChannel commentsFile;
+
+    /**
+     * Голова цепочки транзакций по счету "в".
+     * <p>key - Id счета</p>
+     * <p>value - Id последней транзакции</p>
+     */
+    private final Map<Integer, Integer> headsByAccount;
+
+    /**
+     * Голова цепочки транзакций по календарному дню.
+     * <p>key - Дата</p>
+     * <p>value - Id последней транзакции</p>
+     */
+    private final Map<LocalDate, Integer> headsByDate;
+
+    // Обороты по дням, валютным парам и типам транзакций (восстанавливаются при открытии хранилища).
+    private final DailyVolumeIndex volumes;
+
+    // Блокировка записи (транзакции добавляются по одной).
+    private final ReentrantLock writeLock;
+
+    // Отображенные сегменты записей.
+    private volatile MappedByteBuffer[] segments;
+
+    // Количество записанных транзакций (публикуется после записи).
+    private volatile int count;
+
+
+    /**
+     * Конструктор для открытия (или создания) хранилища в каталоге.
+     *
+     * @param directory Каталог хранилища.
+     * @throws IOException Ошибка открытия файлов или несовместимый формат.
+     */
+    public MappedTransactionRepository(Path directory) throws IOException {
+        if (directory == null) {
+            throw new IllegalArgumentException("Аргумент directory не может быть null!");
+        }
+
+        this.directory = Files.createDirectories(directory);
+        this.writeLock = new ReentrantLock();
+        this.stringIds = new ConcurrentHashMap<>();
+        this.strings = new IdTable<>();
+        this.headsByAccount = new ConcurrentHashMap<>();
+        this.headsByDate = new ConcurrentHashMap<>();
+        this.volumes = new DailyVolumeIndex();
+
+        try (FileChannel channel = open(directory.resolve("meta.bin"))) {
+            this.meta = channel.map(FileChannel.MapMode.READ_WRITE, 0, 16);
+        }
+
+        if (this.meta.getInt(META_MAGIC) == 0) {
+            this.meta.putInt(META_MAGIC, MAGIC);
+            this.meta.putInt(META_RECORD_SIZE, RECORD_SIZE);
+        } else if (this.meta.getInt(META_MAGIC) != MAGIC || this.meta.getInt(META_RECORD_SIZE) != RECORD_SIZE) {
+            throw new IOException("Каталог " + directory + " не является хранилищем транзакций этого формата!");
+        }
+
+        this.stringsFile = open(directory.resolve("strings.bin"));
+        this.commentsFile = open(directory.resolve("comments.bin"));
+        this.loadStrings();
+
+        int stored = this.meta.getInt(META_COUNT);
+        this.segments = new MappedByteBuffer[0];
+        for (int i = 0; i * (long) RECORDS_PER_SEGMENT < stored; i++) {
+            this.mapSegment(i);
+        }
+
+        this.count = stored;
+        this.rebuildHeads();
+    }
+
+
+    /**
+     * Создает новую транзакцию и добавляет ее в хранилище.
+     *
+     * @param type          Тип транзакции (например, перевод, обмен валют).
+     * @param userEmailFrom Электронная почта отправителя.
+     * @param accountIdFrom Идентификатор счета отправителя.
+     * @param currencyFrom  Валюта счета отправителя.
+     * @param userEmailTo   Электронная почта получателя.
+     * @param accountIdTo   Идентификатор счета получателя.
+     * @param currencyTo    Валюта счета получателя.
+     * @param amount        Сумма транзакции.
+     * @return Созданная транзакция.
+     */
+    @Override
+    public Transaction createTransaction(
+            TransactionType type,
+            String userEmailFrom,
+            int accountIdFrom,
+            String currencyFrom,
+            String userEmailTo,
+            int accountIdTo,
+            String currencyTo,
+            BigDecimal amount
+    ) {
+        return this.append(
+                type,
+                userEmailFrom,
+                accountIdFrom,
+                currencyFrom,
+                userEmailTo,
+                accountIdTo,
+                currencyTo,
+                amount,
+                null,
+                null,
+                null,
+                null,
+                0
+        );
+    }
+
+
+    /**
+     * Создает новую транзакцию и добавляет ее в хранилище.
+     *
+     * @param type          Тип транзакции (например, перевод, обмен валют).
+     * @param userEmailFrom Электронная почта отправителя.
+     * @param accountIdFrom Идентификатор счета отправителя.
+     * @param currencyFrom  Валюта счета отправителя.
+     * @param userEmailTo   Электронная почта получателя.
+     * @param accountIdTo   Идентификатор счета получателя.
+     * @param currencyTo    Валюта счета получателя.
+     * @param amount        Сумма транзакции.
+     * @param course        Курс обмена (если есть).
+     * @return Созданная транзакция.
+     */
+    @Override
+    public Transaction createTransaction(
+            TransactionType type,
+            String userEmailFrom,
+            int accountIdFrom,
+            String currencyFrom,
+            String userEmailTo,
+            int accountIdTo,
+            String currencyTo,
+            BigDecimal amount,
+            BigDecimal course
+    ) {
+        return this.append(
+                type,
+                userEmailFrom,
+                accountIdFrom,
+                currencyFrom,
+                userEmailTo,
+                accountIdTo,
+                currencyTo,
+                amount,
+                null,
+                null,
+                course,
+                null,
+                0
+        );
+    }
+
+
+    /**
+     * Создает новую транзакцию и добавляет ее в хранилище.
+     *
+     * @param type          Тип транзакции (например, перевод, обмен валют).
+     * @param userEmailFrom Электронная почта отправителя.
+     * @param accountIdFrom Идентификатор счета отправителя.
+     * @param currencyFrom  Валюта счета отправителя.
+     * @param userEmailTo   Электронная почта получателя.
+     * @param accountIdTo   Идентификатор счета получателя.
+     * @param currencyTo    Валюта счета получателя.
+     * @param amount        Сумма транзакции.
+     * @param course        Курс обмена (если есть).
+     * @param comment       Комментарий к транзакции (если есть).
+     * @return Созданная транзакция.
+     */
+    @Override
+    public Transaction createTransaction(
+            TransactionType type,
+            String userEmailFrom,
+            int accountIdFrom,
+            String currencyFrom,
+            String userEmailTo,
+            int accountIdTo,
+            String currencyTo,
+            BigDecimal amount,
+            BigDecimal course,
+            String comment
+    ) {
+        return this.append(
+                type,
+                userEmailFrom,
+                accountIdFrom,
+                currencyFrom,
+                userEmailTo,
+                accountIdTo,
+                currencyTo,
+                amount,
+                null,
+                null,
+                course,
+                comment,
+                0
+        );
+    }
+
+
+    /**
+     * Создает новую транзакцию с суммой списания, комиссией и версией кросс-курса и добавляет ее в хранилище.
+     *
+     * @param type          Тип транзакции (например, перевод, обмен валют).
+     * @param userEmailFrom Электронная почта отправителя.
+     * @param accountIdFrom Идентификатор счета отправителя.
+     * @param currencyFrom  Валюта счета отправителя.
+     * @param userEmailTo   Электронная почта получателя.
+     * @param accountIdTo   Идентификатор счета получателя.
+     * @param currencyTo    Валюта счета получателя.
+     * @param amount        Сумма транзакции (зачисление в валюте получателя).
+     * @param amountFrom    Сумма списания в валюте отправителя или {@code null}.
+     * @param fee           Комиссия в валюте получателя или {@code null}.
+     * @param course        Курс обмена или {@code null}.
+     * @param rateVersion   Версия матрицы кросс-курсов, по которой рассчитан курс.
+     * @return Созданная транзакция.
+     */
+    @Override
+    public Transaction createTransaction(
+            TransactionType type,
+            String userEmailFrom,
+            int accountIdFrom,
+            String currencyFrom,
+            String userEmailTo,
+            int accountIdTo,
+            String currencyTo,
+            BigDecimal amount,
+            BigDecimal amountFrom,
+            BigDecimal fee,
+            BigDecimal course,
+            long rateVersion
+    ) {
+        return this.append(
+                type,
+                userEmailFrom,
+                accountIdFrom,
+                currencyFrom,
+                userEmailTo,
+                accountIdTo,
+                currencyTo,
+                amount,
+                amountFrom,
+                fee,
+                course,
+                null,
+                rateVersion
+        );
+    }
+
+
+    /**
+     * Возвращает транзакцию по ее ID.
+     *
+     * @param id Уникальный идентификатор транзакции.
+     * @return Транзакция с указанным ID или null, если транзакция не найдена.
+     */
+    @Override
+    public Transaction getTransactionById(int id) {
+        if (id < 0 || id >= this.count) {
+            return null;
+        }
+
+        return this.read(id);
+    }
+
+
+    /**
+     * Возвращает список всех транзакций.
+     *
+     * @return Список всех транзакций.
+     */
+    @Override
+    public List<Transaction> getAllTransactions() {
+        List<Transaction> result = new ArrayList<>();
+
+        for (Cursor cursor = this.cursor(0); cursor.next(); ) {
+            result.add(cursor.toTransaction());
+        }
+
+        return result;
+    }
+
+
+    /**
+     * Возвращает список всех транзакций за день в порядке создания.
+     *
+     * @param date Дата.
+     * @return Список транзакций.
+     */
+    @Override
+    public List<Transaction> getTransactionsByDate(LocalDate date) {
+        if (date == null) {
+            return new ArrayList<>();
+        }
+
+        return this.chain(this.headsByDate.get(date), PREVIOUS_BY_DATE);
+    }
+
+
+    /**
+     * Возвращает список транзакций по счету "в" в порядке создания.
+     *
+     * @param accountId Идентификатор счета.
+     * @return Список транзакций.
+     */
+    @Override
+    public List<Transaction> getTransactionsByAccountId(int accountId) {
+        return this.chain(this.headsByAccount.get(accountId), PREVIOUS_BY_ACCOUNT);
+    }
+
+
+    /**
+     * Передает транзакции за период в порядке дат. Транзакции записываются в порядке времени создания, поэтому
+     * начало периода находится двоичным поиском, а дальше записи читаются подряд до конца периода.
+     *
+     * @param from   Первый день периода (включительно).
+     * @param to     Последний день периода (включительно).
+     * @param action Обработчик транзакции.
+     */
+    @Override
+    public void forEachTransaction(LocalDate from, LocalDate to, Consumer<Transaction> action) {
+        if (from == null || to == null || action == null) {
+            throw new IllegalArgumentException("Аргументы from, to и action не могут быть null!");
+        }
+
+        long end = to.plusDays(1).atStartOfDay().toEpochSecond(ZoneOffset.UTC);
+
+        for (Cursor cursor = this.cursor(this.firstAt(from)); cursor.next(); ) {
+            if (cursor.getEpochSecond() >= end) {
+                break;
+            }
+
+            action.accept(cursor.toTransaction());
+        }
+    }
+
+
+    /**
+     * Возвращает количество транзакций в хранилище.
+     *
+     * @return Количество транзакций.
+     */
+    @Override
+    public int getTransactionCount() {
+        return this.count;
+    }
+
+
+    /**
+     * Возвращает оборот за день по валютной паре и типу транзакции (см. {@link DailyVolumeIndex}).
+     *
+     * @param day          День.
+     * @param currencyFrom Валюта "из".
+     * @param currencyTo   Валюта "в".
+     * @param type         Тип транзакции.
+     * @return Оборот или {@code null}, если таких транзакций за день не было.
+     */
+    @Override
+    public DailyVolume getDailyVolume(LocalDate day, String currencyFrom, String currencyTo, TransactionType type) {
+        return this.volumes.get(day, currencyFrom, currencyTo, type);
+    }
+
+
+    /**
+     * Возвращает обороты за день по всем валютным парам и типам транзакций.
+     *
+     * @param day День.
+     * @return Обороты, упорядоченные по типу транзакции и валютам.
+     */
+    @Override
+    public List<DailyVolume> getDailyVolumes(LocalDate day) {
+        return this.volumes.get(day);
+    }
+
+
+    /**
+     * Возвращает курсор для последовательного чтения транзакций, начиная с указанной. Курсор видит
+     * транзакции, записанные до его создания.
+     *
+     * @param fromId Идентификатор первой транзакции.
+     * @return Курсор.
+     */
+    public Cursor cursor(int fromId) {
+        return new Cursor(Math.max(0, fromId), this.count);
+    }
+
+
+    /**
+     * Сбрасывает записанные транзакции на диск.
+     *
+     * @throws IOException Ошибка записи.
+     */
+    public void flush() throws IOException {
+        this.writeLock.lock();
+        try {
+            for (MappedByteBuffer segment : this.segments) {
+                segment.force();
+            }
+
+            this.meta.force();
+            this.stringsFile.force(false);
+            this.commentsFile.force(false);
+        } finally {
+            this.writeLock.unlock();
+        }
+    }
+
+
+    /**
+     * Сбрасывает записанные транзакции на диск и закрывает файлы.
+     *
+     * @throws IOException Ошибка записи или закрытия.
+     */
+    @Override
+    public void close() throws IOException {
+        this.flush();
+        this.stringsFile.close();
+        this.commentsFile.close();
+    }
+
+
+    /**
+     * Возвращает Id первой транзакции, созданной не раньше начала указанного дня.
+     *
+     * @param date День.
+     * @return Id транзакции или количество транзакций, если таких нет.
+     */
+    private int firstAt(LocalDate date) {
+        long start = date.atStartOfDay().toEpochSecond(ZoneOffset.UTC);
+        int low = 0;
+        int high = this.count;
+
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+
+            if (this.segment(middle).getLong(offset(middle) + EPOCH_SECOND) < start) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+
+        return low;
+    }
+
+
+    /**
+     * Записывает транзакцию и добавляет ее в цепочки счета и дня.
+     *
+     * @return Созданная транзакция.
+     */
+    private Transaction append(
+            TransactionType type,
+            String userEmailFrom,
+            int accountIdFrom,
+            String currencyFrom,
+            String userEmailTo,
+            int accountIdTo,
+            String currencyTo,
+            BigDecimal amount,
+            BigDecimal amountFrom,
+            BigDecimal fee,
+            BigDecimal course,
+            String comment,
+            long rateVersion
+    ) {
+        if (type == null || amount == null) {
+            throw new IllegalArgumentException("Аргументы type и amount не могут быть null!");
+        }
+
+        this.writeLock.lock();
+        try {
+            int id = this.count;
+
+            if (id == Integer.MAX_VALUE) {
+                throw new IllegalStateException("Хранилище транзакций заполнено!");
+            }
+
+            Transaction transaction = new Transaction(
+                    id,
+                    LocalDateTime.now(),
+                    type,
+                    userEmailFrom,
+                    accountIdFrom,
+                    currencyFrom,
+                    userEmailTo,
+                    accountIdTo,
+                    currencyTo,
+                    amount,
+                    amountFrom,
+                    fee,
+                    course,
+                    comment,
+                    rateVersion
+            );
+
+            ByteBuffer segment = this.segmentFor(id);
+            int offset = offset(id);
+            LocalDateTime date = transaction.getDate();
+            Integer previousByAccount = this.headsByAccount.get(accountIdTo);
+            Integer previousByDate = this.headsByDate.get(date.toLocalDate());
+
+            segment.putLong(offset + EPOCH_SECOND, date.toEpochSecond(ZoneOffset.UTC));
+            segment.putInt(offset + NANO, date.getNano());
+            segment.put(offset + TYPE, (byte) type.ordinal());
+            segment.putInt(offset + ACCOUNT_FROM, accountIdFrom);
+            segment.putInt(offset + ACCOUNT_TO, accountIdTo);
+            segment.putInt(offset + USER_FROM, this.intern(userEmailFrom));
+            segment.putInt(offset + USER_TO, this.intern(userEmailTo));
+            segment.putInt(offset + CURRENCY_FROM, this.intern(currencyFrom));
+            segment.putInt(offset + CURRENCY_TO, this.intern(currencyTo));
+            segment.putInt(offset + PREVIOUS_BY_ACCOUNT, previousByAccount == null ? NONE : previousByAccount);
+            segment.putInt(offset + PREVIOUS_BY_DATE, previousByDate == null ? NONE : previousByDate);
+            segment.putLong(offset + AMOUNT, Money.toMinor(transaction.getAmount(), CurrencyCode.scaleOf(currencyTo)));
+            segment.putLong(offset + COURSE, course == null ? NO_COURSE : Money.toMinor(course, Transaction.COURSE_SCALE));
+            segment.putLong(offset + RATE_VERSION, rateVersion);
+            segment.putLong(offset + COMMENT, this.writeComment(comment));
+            segment.putLong(offset + AMOUNT_FROM, transaction.hasAmountFrom() ? transaction.getAmountFromMinor() : NO_AMOUNT);
+            segment.putLong(offset + FEE, transaction.getFeeMinor());
+
+            this.meta.putInt(META_COUNT, id + 1);
+            this.count = id + 1;
+
+            this.headsByAccount.put(accountIdTo, id);
+            this.headsByDate.put(date.toLocalDate(), id);
+            this.volumes.add(transaction);
+
+            return transaction;
+        } catch (IOException e) {
+            throw new UncheckedIOException("Ошибка записи хранилища транзакций " + this.directory, e);
+        } finally {
+            this.writeLock.unlock();
+        }
+    }
+
+
+    /**
+     * Собирает транзакции цепочки от головы к началу и возвращает их в порядке создания.
+     *
+     * @param head     Id последней транзакции цепочки или {@code null}.
+     * @param previous Смещение поля ссылки на предыдущую транзакцию.
+     * @return Список транзакций.
+     */
+    private List<Transaction> chain(Integer head, int previous) {
+        List<Transaction> result = new ArrayList<>();
+
+        for (int id = head == null ? NONE : head; id != NONE; id = this.segment(id).getInt(offset(id) + previous)) {
+            result.add(this.read(id));
+        }
+
+        Collections.reverse(result);
+
+        return result;
+    }
+
+
+    /**
+     * Читает транзакцию из записи.
+     *
+     * @param id Id транзакции (номер записи).
+     * @return Транзакция.
+     */
+    private Transaction read(int id) {
+        ByteBuffer segment = this.segment(id);
+        int offset = offset(id);
+
+        String currencyFrom = this.string(segment.getInt(offset + CURRENCY_FROM));
+        String currencyTo = this.string(segment.getInt(offset + CURRENCY_TO));
+        long amountFrom = segment.getLong(offset + AMOUNT_FROM);
+        long course = segment.getLong(offset + COURSE);
+
+        return new Transaction(
+                id,
+                LocalDateTime.ofEpochSecond(segment.getLong(offset + EPOCH_SECOND), segment.getInt(offset + NANO), ZoneOffset.UTC),
+                TYPES[segment.get(offset + TYPE)],
+                this.string(segment.getInt(offset + USER_FROM)),
+                segment.getInt(offset + ACCOUNT_FROM),
+                currencyFrom,
+                this.string(segment.getInt(offset + USER_TO)),
+                segment.getInt(offset + ACCOUNT_TO),
+                currencyTo,
+                Money.toBigDecimal(segment.getLong(offset + AMOUNT), CurrencyCode.scaleOf(currencyTo)),
+                amountFrom == NO_AMOUNT ? null : Money.toBigDecimal(amountFrom, CurrencyCode.scaleOf(currencyFrom)),
+                Money.toBigDecimal(segment.getLong(offset + FEE), CurrencyCode.scaleOf(currencyTo)),
+                course == NO_COURSE ? null : Money.toBigDecimal(course, Transaction.COURSE_SCALE),
+                this.readComment(segment.getLong(offset + COMMENT)),
+                segment.getLong(offset + RATE_VERSION)
+        );
+    }
+
+
+    /**
+     * Возвращает номер строки в словаре, добавляя ее при необходимости. Вызывается под блокировкой записи.
+     *
+     * @param value Строка или {@code null}.
+     * @return Номер строки или {@link #NONE}.
+     */
+    private int intern(String value) throws IOException {
+        if (value == null) {
+            return NONE;
+        }
+
+        Integer id = this.stringIds.get(value);
+        if (id != null) {
+            return id;
+        }
+
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        ByteBuffer record = ByteBuffer.allocate(Integer.BYTES + bytes.length).putInt(bytes.length).put(bytes).flip();
+        writeFully(this.stringsFile, record, this.stringsFile.size());
+
+        id = this.strings.size();
+        this.strings.put(id, value);
+        this.stringIds.put(value, id);
+
+        return id;
+    }
+
+
+    /**
+     * Возвращает строку словаря по номеру.
+     *
+     * @param id Номер строки или {@link #NONE}.
+     * @return Строка или {@code null}.
+     */
+    private String string(int id) {
+        return id == NONE ? null : this.strings.get(id);
+    }
+
+
+    /**
+     * Загружает словарь строк из файла.
+     */
+    private void loadStrings() throws IOException {
+        long size = this.stringsFile.size();
+        long position = 0;
+        ByteBuffer length = ByteBuffer.allocate(Integer.BYTES);
+
+        while (position + Integer.BYTES <= size) {
+            length.clear();
+            readFully(this.stringsFile, length, position);
+
+            int bytes = length.flip().getInt();
+            if (position + Integer.BYTES + bytes > size) {
+                break;
+            }
+
+            ByteBuffer value = ByteBuffer.allocate(bytes);
+            readFully(this.stringsFile, value, position + Integer.BYTES);
+
+            String string = new String(value.array(), StandardCharsets.UTF_8);
+            int id = this.strings.size();
+            this.strings.put(id, string);
+            this.stringIds.put(string, id);
+
+            position += Integer.BYTES + bytes;
+        }
+
+        // Недописанная строка (после сбоя) отбрасывается: на нее не ссылается ни одна опубликованная запись.
+        this.stringsFile.truncate(position);
+    }
+
+
+    /**
+     * Записывает комментарий в файл комментариев. Вызывается под блокировкой записи.
+     *
+     * @param comment Комментарий или {@code null}.
+     * @return Позиция комментария в файле или {@link #NONE}.
+     */
+    private long writeComment(String comment) throws IOException {
+        if (comment == null) {
+            return NONE;
+        }
+
+        byte[] bytes = comment.getBytes(StandardCharsets.UTF_8);
+        long position = this.commentsFile.size();
+        ByteBuffer record = ByteBuffer.allocate(Integer.BYTES + bytes.length).putInt(bytes.length).put(bytes).flip();
+        writeFully(this.commentsFile, record, position);
+
+        return position;
+    }
+
+
+    /**
+     * Читает комментарий из файла комментариев.
+     *
+     * @param position Позиция комментария или {@link #NONE}.
+     * @return Комментарий или {@code null}.
+     */
+    private String readComment(long position) {
+        if (position == NONE) {
+            return null;
+        }
+
+        try {
+            ByteBuffer length = ByteBuffer.allocate(Integer.BYTES);
+            readFully(this.commentsFile, length, position);
+
+            ByteBuffer value = ByteBuffer.allocate(length.flip().getInt());
+            readFully(this.commentsFile, value, position + Integer.BYTES);
+
+            return new String(value.array(), StandardCharsets.UTF_8);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Ошибка чтения хранилища транзакций " + this.directory, e);
+        }
+    }
+
+
+    /**
+     * Восстанавливает головы цепочек по счету и по дню и обороты по дням проходом по всем записям.
+     */
+    private void rebuildHeads() {
+        for (int id = 0; id < this.count; id++) {
+            ByteBuffer segment = this.segment(id);
+            int offset = offset(id);
+            LocalDate date = LocalDateTime
+                    .ofEpochSecond(segment.getLong(offset + EPOCH_SECOND), 0, ZoneOffset.UTC)
+                    .toLocalDate();
+
+            this.headsByAccount.put(segment.getInt(offset + ACCOUNT_TO), id);
+            this.headsByDate.put(date, id);
+
+            long course = segment.getLong(offset + COURSE);
+            this.volumes.add(
+                    date,
+                    TYPES[segment.get(offset + TYPE)],
+                    this.string(segment.getInt(offset + CURRENCY_FROM)),
+                    this.string(segment.getInt(offset + CURRENCY_TO)),
+                    segment.getLong(offset + AMOUNT),
+                    segment.getLong(offset + FEE),
+                    course != NO_COURSE,
+                    course
+            );
+        }
+    }
+
+
+    /**
+     * Возвращает сегмент записи для чтения.
+     *
+     * @param id Номер записи.
+     * @return Сегмент.
+     */
+    private ByteBuffer segment(int id) {
+        return this.segments[id / RECORDS_PER_SEGMENT];
+    }
+
+
+    /**
+     * Возвращает сегмент для новой записи, отображая новый сегмент при необходимости. Вызывается под
+     * блокировкой записи.
+     *
+     * @param id Номер записи.
+     * @return Сегмент.
+     */
+    private ByteBuffer segmentFor(int id) throws IOException {
+        int index = id / RECORDS_PER_SEGMENT;
+
+        if (index >= this.segments.length) {
+            this.mapSegment(index);
+        }
+
+        return this.segments[index];
+    }
+
+
+    /**
+     * Отображает сегмент в память (создавая файл при необходимости).
+     *
+     * @param index Номер сегмента.
+     */
+    private void mapSegment(int index) throws IOException {
+        Path file = this.directory.resolve(String.format("transactions-%08d.seg", index));
+
+        try (FileChannel channel = open(file)) {
+            MappedByteBuffer segment = channel.map(
+                    FileChannel.MapMode.READ_WRITE,
+                    0,
+                    (long) RECORDS_PER_SEGMENT * RECORD_SIZE
+            );
+
+            MappedByteBuffer[] segments = Arrays.copyOf(this.segments, index + 1);
+            segments[index] = segment;
+            this.segments = segments;
+        }
+    }
+
+
+    /**
+     * Возвращает смещение записи в сегменте.
+     */
+    private static int offset(int id) {
+        return (id % RECORDS_PER_SEGMENT) * RECORD_SIZE;
+    }
+
+
+    private static FileChannel open(Path file) throws IOException {
+        return FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+    }
+
+
+    private static void writeFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            position += channel.write(buffer, position);
+        }
+    }
+
+
+    private static void readFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            int read = channel.read(buffer, position);
+
+            if (read < 0) {
+                throw new IOException("Неожиданный конец файла хранилища транзакций!");
+            }
+
+            position += read;
+        }
+    }
+
+
+    /**
+     * Курсор для последовательного чтения транзакций (flyweight): один объект на весь проход, поля читаются
+     * прямо из отображенной памяти текущей записи.
+     */
+    public final class Cursor {
+
+        // Id текущей транзакции.
+        private int id;
+
+        // Id, на котором проход заканчивается (не включительно).
+        private final int end;
+
+        // Сегмент и смещение текущей записи.
+        private ByteBuffer segment;
+        private int offset;
+
+
+        private Cursor(int from, int end) {
+            this.id = from - 1;
+            this.end = end;
+        }
+
+
+        /**
+         * Переходит к следующей транзакции.
+         *
+         * @return {@code false}, если транзакций больше нет.
+         */
+        public boolean next() {
+            if (this.id + 1 >= this.end) {
+                return false;
+            }
+
+            this.id++;
+            this.segment = MappedTransactionRepository.this.segment(this.id);
+            this.offset = offset(this.id);
+
+            return true;
+        }
+
+
+        public int getId() {
+            return this.id;
+        }
+
+
+        /**
+         * Возвращает время создания в секундах (без создания объектов).
+         *
+         * @return Секунды от 1970-01-01T00:00.
+         */
+        public long getEpochSecond() {
+            return this.segment.getLong(this.offset + EPOCH_SECOND);
+        }
+
+
+        public LocalDateTime getDate() {
+            return LocalDateTime.ofEpochSecond(
+                    this.segment.getLong(this.offset + EPOCH_SECOND),
+                    this.segment.getInt(this.offset + NANO),
+                    ZoneOffset.UTC
+            );
+        }
+
+
+        public TransactionType getType() {
+            return TYPES[this.segment.get(this.offset + TYPE)];
+        }
+
+
+        public String getUserEmailFrom() {
+            return MappedTransactionRepository.this.string(this.segment.getInt(this.offset + USER_FROM));
+        }
+
+
+        public int getAccountIdFrom() {
+            return this.segment.getInt(this.offset + ACCOUNT_FROM);
+        }
+
+
+        public String getCurrencyFrom() {
+            return MappedTransactionRepository.this.string(this.segment.getInt(this.offset + CURRENCY_FROM));
+        }
+
+
+        public String getUserEmailTo() {
+            return MappedTransactionRepository.this.string(this.segment.getInt(this.offset + USER_TO));
+        }
+
+
+        public int getAccountIdTo() {
+            return this.segment.getInt(this.offset + ACCOUNT_TO);
+        }
+
+
+        public String getCurrencyTo() {
+            return MappedTransactionRepository.this.string(this.segment.getInt(this.offset + CURRENCY_TO));
+        }
+
+
+        /**
+         * Возвращает сумму в минимальных единицах валюты "в" (без создания объектов).
+         *
+         * @return Сумма в минимальных единицах.
+         */
+        public long getAmountMinor() {
+            return this.segment.getLong(this.offset + AMOUNT);
+        }
+
+
+        public BigDecimal getAmount() {
+            return Money.toBigDecimal(this.getAmountMinor(), CurrencyCode.scaleOf(this.getCurrencyTo()));
+        }
+
+
+        /**
+         * Проверяет, записана ли сумма списания (без создания объектов).
+         *
+         * @return {@code true}, если сумма списания записана.
+         */
+        public boolean hasAmountFrom() {
+            return this.segment.getLong(this.offset + AMOUNT_FROM) != NO_AMOUNT;
+        }
+
+
+        /**
+         * Возвращает сумму списания в минимальных единицах валюты "из" (без создания объектов).
+         *
+         * @return Сумма в минимальных единицах (значение не определено, если {@link #hasAmountFrom()} -
+         * {@code false}).
+         */
+        public long getAmountFromMinor() {
+            return this.segment.getLong(this.offset + AMOUNT_FROM);
+        }
+
+
+        /**
+         * Возвращает комиссию в минимальных единицах валюты "в" (без создания объектов).
+         *
+         * @return Комиссия в минимальных единицах.
+         */
+        public long getFeeMinor() {
+            return this.segment.getLong(this.offset + FEE);
+        }
+
+
+        public long getRateVersion() {
+            return this.segment.getLong(this.offset + RATE_VERSION);
+        }
+
+
+        /**
+         * Создает объект транзакции из текущей записи.
+         *
+         * @return Транзакция.
+         */
+        public Transaction toTransaction() {
+            return MappedTransactionRepository.this.read(this.id);
+        }
+
+    }
+
+}
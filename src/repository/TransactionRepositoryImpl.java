@@ -1,13 +1,22 @@
 package repository;
 
+import metrics.LedgerWriteEvent;
+import model.DailyVolume;
+import model.IdDictionary;
 import model.Transaction;
 import model.enums.TransactionType;
 import repository.interfaces.TransactionRepository;
+import repository.journal.Journal;
+import repository.journal.RecordType;
+import repository.journal.RecordWriter;
+import repository.journal.Records;
 
 import java.math.BigDecimal;
 import java.time.LocalDate;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
 
 /**
  * Реализация репозитория для управления транзакциями.
@@ -15,15 +24,73 @@ import java.util.concurrent.atomic.AtomicInteger;
 public class TransactionRepositoryImpl implements TransactionRepository {
 
     // Хранение списка всех транзакций.
-    private final Map<Integer, Transaction> transactions;
+    private final IdTable<Transaction> transactions;
 
     // Счетчик для генерации уникальных ID.
     private final AtomicInteger transactionIdCounter;
 
+    /**
+     * Индекс транзакций по счету "из".
+     * <p>key - Id счета</p>
+     * <p>value - Список транзакций в порядке создания</p>
+     */
+    private final Map<Integer, List<Transaction>> transactionsByAccountFrom;
+
+    /**
+     * Индекс транзакций по счету "в".
+     * <p>key - Id счета</p>
+     * <p>value - Список транзакций в порядке создания</p>
+     */
+    private final Map<Integer, List<Transaction>> transactionsByAccountTo;
+
+    /**
+     * Индекс транзакций по пользователю "из".
+     * <p>key - Идентификатор email пользователя в {@link IdDictionary#EMAILS}</p>
+     * <p>value - Список транзакций в порядке создания</p>
+     */
+    private final Map<Integer, List<Transaction>> transactionsByUserFrom;
+
+    /**
+     * Индекс транзакций по пользователю "в".
+     * <p>key - Идентификатор email пользователя в {@link IdDictionary#EMAILS}</p>
+     * <p>value - Список транзакций в порядке создания</p>
+     */
+    private final Map<Integer, List<Transaction>> transactionsByUserTo;
+
+    /**
+     * Индекс транзакций по календарному дню.
+     * <p>key - Дата</p>
+     * <p>value - Список транзакций в порядке создания</p>
+     */
+    private final Map<LocalDate, List<Transaction>> transactionsByDate;
+
+    // Обороты по дням, валютным парам и типам транзакций.
+    private final DailyVolumeIndex volumes;
+
+    // Журнал изменений или null, если репозиторий хранится только в памяти.
+    private final Journal journal;
+
 
     public TransactionRepositoryImpl() {
-        this.transactions = new LinkedHashMap<>();
+        this(null);
+    }
+
+
+    /**
+     * Конструктор для создания репозитория, записывающего транзакции в журнал.
+     *
+     * @param journal Журнал изменений или {@code null}.
+     */
+    public TransactionRepositoryImpl(Journal journal) {
+        this.transactions = new IdTable<>();
         this.transactionIdCounter = new AtomicInteger(0);
+        this.transactionsByAccountFrom = new ConcurrentHashMap<>();
+        this.transactionsByAccountTo = new ConcurrentHashMap<>();
+        this.transactionsByUserFrom = new ConcurrentHashMap<>();
+        this.transactionsByUserTo = new ConcurrentHashMap<>();
+        this.transactionsByDate = new ConcurrentHashMap<>();
+        this.volumes = new DailyVolumeIndex();
+        this.journal = journal;
     }
 
 
@@ -65,7 +132,7 @@ public class TransactionRepositoryImpl implements TransactionRepository {
                 amount
         );
 
-        transactions.put(id, transaction);
+        this.save(transaction);
 
         return transaction;
     }
@@ -112,7 +179,7 @@ public class TransactionRepositoryImpl implements TransactionRepository {
                 course
         );
 
-        transactions.put(id, transaction);
+        this.save(transaction);
 
         return transaction;
     }
@@ -162,12 +229,126 @@ public class TransactionRepositoryImpl implements TransactionRepository {
                 comment
         );
 
-        transactions.put(id, transaction);
+        this.save(transaction);
 
         return transaction;
     }
 
 
+    /**
+     * Создает новую транзакцию с суммой списания, комиссией и версией кросс-курса и добавляет ее в хранилище.
+     *
+     * @param type          Тип транзакции (например, перевод, обмен валют).
+     * @param userEmailFrom Электронная почта отправителя.
+     * @param accountIdFrom Идентификатор счета отправителя.
+     * @param currencyFrom  Валюта счета отправителя.
+     * @param userEmailTo   Электронная почта получателя.
+     * @param accountIdTo   Идентификатор счета получателя.
+     * @param currencyTo    Валюта счета получателя.
+     * @param amount        Сумма транзакции (зачисление в валюте получателя).
+     * @param amountFrom    Сумма списания в валюте отправителя или {@code null}.
+     * @param fee           Комиссия в валюте получателя или {@code null}.
+     * @param course        Курс обмена или {@code null}.
+     * @param rateVersion   Версия матрицы кросс-курсов, по которой рассчитан курс.
+     * @return Созданная транзакция.
+     */
+    @Override
+    public Transaction createTransaction(
+            TransactionType type,
+            String userEmailFrom,
+            int accountIdFrom,
+            String currencyFrom,
+            String userEmailTo,
+            int accountIdTo,
+            String currencyTo,
+            BigDecimal amount,
+            BigDecimal amountFrom,
+            BigDecimal fee,
+            BigDecimal course,
+            long rateVersion
+    ) {
+        int id = this.transactionIdCounter.getAndIncrement();
+
+        Transaction transaction = new Transaction(
+                id,
+                type,
+                userEmailFrom,
+                accountIdFrom,
+                currencyFrom,
+                userEmailTo,
+                accountIdTo,
+                currencyTo,
+                amount,
+                amountFrom,
+                fee,
+                course,
+                rateVersion
+        );
+
+        this.save(transaction);
+
+        return transaction;
+    }
+
+
+    /**
+     * Создает несколько транзакций с идущими подряд идентификаторами и записывает их в журнал одной пачкой
+     * ({@link Journal#appendAll}): в режиме SYNC - с одним ожиданием сброса на диск.
+     *
+     * @param drafts Шаблоны транзакций: идентификатор шаблона не используется, транзакции получают новые.
+     * @return Созданные транзакции в порядке шаблонов.
+     */
+    @Override
+    public List<Transaction> createTransactions(List<Transaction> drafts) {
+        if (drafts == null) {
+            throw new IllegalArgumentException("Аргумент drafts не может быть null!");
+        }
+
+        if (drafts.isEmpty()) {
+            return new ArrayList<>();
+        }
+
+        int first = this.transactionIdCounter.getAndAdd(drafts.size());
+        List<Transaction> created = new ArrayList<>(drafts.size());
+
+        for (int i = 0; i < drafts.size(); i++) {
+            Transaction draft = drafts.get(i);
+
+            created.add(new Transaction(
+                    first + i,
+                    draft.getDate(),
+                    draft.getType(),
+                    draft.getUserEmailFrom(),
+                    draft.getAccountIdFrom(),
+                    draft.getCurrencyFrom(),
+                    draft.getUserEmailTo(),
+                    draft.getAccountIdTo(),
+                    draft.getCurrencyTo(),
+                    draft.getAmount(),
+                    draft.getAmountFrom(),
+                    draft.getFee(),
+                    draft.getCourse(),
+                    draft.getComment(),
+                    draft.getRateVersion()
+            ));
+        }
+
+        if (this.journal == null) {
+            created.forEach(this::store);
+        } else {
+            List<RecordWriter> writers = new ArrayList<>(created.size());
+
+            for (Transaction transaction : created) {
+                writers.add(out -> Records.writeTransaction(out, transaction));
+            }
+
+            this.journal.appendAll(RecordType.TRANSACTION, writers, () -> created.forEach(this::store));
+        }
+
+        return created;
+    }
+
+
     /**
      * Возвращает транзакцию по ее ID.
      *
@@ -176,7 +357,7 @@ public class TransactionRepositoryImpl implements TransactionRepository {
      */
     @Override
     public Transaction getTransactionById(int id) {
-        return this.transactions.getOrDefault(id, null);
+        return this.transactions.get(id);
     }
 
 
@@ -187,7 +368,7 @@ public class TransactionRepositoryImpl implements TransactionRepository {
      */
     @Override
     public List<Transaction> getAllTransactions() {
-        return new ArrayList<>(this.transactions.values());
+        return this.transactions.values();
     }
 
 
@@ -199,37 +380,88 @@ public class TransactionRepositoryImpl implements TransactionRepository {
      */
     @Override
     public List<Transaction> getTransactionsByDate(LocalDate date) {
-        List<Transaction> result = new ArrayList<>();
-
-        for (Transaction transaction : this.getAllTransactions()) {
-            if (!transaction.getDate().toLocalDate().equals(date)) {
-                continue;
-            }
+        return this.snapshot(this.transactionsByDate, date);
+    }
 
-            result.add(transaction);
-        }
 
-        return result;
+    /**
+     * Возвращает список всех транзакций, в которых счет является счетом "в".
+     *
+     * @param accountId Id счета.
+     * @return Список транзакций.
+     */
+    @Override
+    public List<Transaction> getTransactionsByAccountId(int accountId) {
+        return this.snapshot(this.transactionsByAccountTo, accountId);
     }
 
 
     /**
-     * @param accountId
-     * @return
+     * Передает транзакции за период в порядке дат: дни перебираются по возрастанию, транзакции дня - в порядке
+     * создания. Списки индекса по дням не копируются; транзакции, добавленные во время обхода, могут не попасть
+     * в него.
+     *
+     * @param from   Первый день периода (включительно).
+     * @param to     Последний день периода (включительно).
+     * @param action Обработчик транзакции.
      */
     @Override
-    public List<Transaction> getTransactionsByAccountId(int accountId) {
-        List<Transaction> result = new ArrayList<>();
+    public void forEachTransaction(LocalDate from, LocalDate to, Consumer<Transaction> action) {
+        if (from == null || to == null || action == null) {
+            throw new IllegalArgumentException("Аргументы from, to и action не могут быть null!");
+        }
 
-        for (Transaction transaction : this.getAllTransactions()) {
-            if (transaction.getAccountIdTo() != accountId) {
+        for (LocalDate date = from; !date.isAfter(to); date = date.plusDays(1)) {
+            List<Transaction> day = this.live(this.transactionsByDate, date);
+
+            if (day == null) {
                 continue;
             }
 
-            result.add(transaction);
+            // Обход по индексу: список только растет, а блокировка берется на каждое чтение, а не на весь день.
+            int size = day.size();
+            for (int i = 0; i < size; i++) {
+                action.accept(day.get(i));
+            }
         }
+    }
 
-        return result;
+
+    /**
+     * Возвращает количество транзакций (по выданным идентификаторам, без обхода хранилища).
+     *
+     * @return Количество транзакций.
+     */
+    @Override
+    public int getTransactionCount() {
+        return this.transactionIdCounter.get();
+    }
+
+
+    /**
+     * Возвращает оборот за день по валютной паре и типу транзакции (см. {@link DailyVolumeIndex}).
+     *
+     * @param day          День.
+     * @param currencyFrom Валюта "из".
+     * @param currencyTo   Валюта "в".
+     * @param type         Тип транзакции.
+     * @return Оборот или {@code null}, если таких транзакций за день не было.
+     */
+    @Override
+    public DailyVolume getDailyVolume(LocalDate day, String currencyFrom, String currencyTo, TransactionType type) {
+        return this.volumes.get(day, currencyFrom, currencyTo, type);
+    }
+
+
+    /**
+     * Возвращает обороты за день по всем валютным парам и типам транзакций.
+     *
+     * @param day День.
+     * @return Обороты, упорядоченные по типу транзакции и валютам.
+     */
+    @Override
+    public List<DailyVolume> getDailyVolumes(LocalDate day) {
+        return this.volumes.get(day);
     }
 
 
@@ -240,17 +472,7 @@ public class TransactionRepositoryImpl implements TransactionRepository {
      * @return Список транзакций пользователя.
      */
     public List<Transaction> getTransactionsByUserFrom(String userEmail) {
-        List<Transaction> result = new ArrayList<>();
-
-        for (Transaction transaction : this.getAllTransactions()) {
-            if (!transaction.getUserEmailFrom().equals(userEmail)) {
-                continue;
-            }
-
-            result.add(transaction);
-        }
-
-        return result;
+        return this.snapshot(this.transactionsByUserFrom, userKey(userEmail));
     }
 
 
@@ -262,14 +484,11 @@ public class TransactionRepositoryImpl implements TransactionRepository {
      * @return Список транзакций пользователя.
      */
     public List<Transaction> getTransactionsByUserFrom(String userEmail, int accountId) {
+        int userId = IdDictionary.EMAILS.idOf(userEmail);
         List<Transaction> result = new ArrayList<>();
 
-        for (Transaction transaction : this.getAllTransactions()) {
-            if (!transaction.getUserEmailFrom().equals(userEmail)) {
-                continue;
-            }
-
-            if (transaction.getAccountIdFrom() != accountId) {
+        for (Transaction transaction : this.snapshot(this.transactionsByAccountFrom, accountId)) {
+            if (transaction.getUserIdFrom() != userId) {
                 continue;
             }
 
@@ -289,10 +508,16 @@ public class TransactionRepositoryImpl implements TransactionRepository {
      * @return Список транзакций пользователя.
      */
     public List<Transaction> getTransactionsByUserFrom(String userEmail, int accountId, LocalDate date) {
+        int userId = IdDictionary.EMAILS.idOf(userEmail);
         List<Transaction> result = new ArrayList<>();
 
-        for (Transaction transaction : this.getAllTransactions()) {
-            if (!transaction.getUserEmailFrom().equals(userEmail)) {
+        List<Transaction> candidates = this.smallest(
+                this.live(this.transactionsByAccountFrom, accountId),
+                this.live(this.transactionsByDate, date)
+        );
+
+        for (Transaction transaction : candidates) {
+            if (transaction.getUserIdFrom() != userId) {
                 continue;
             }
 
@@ -319,10 +544,16 @@ public class TransactionRepositoryImpl implements TransactionRepository {
      * @return Список транзакций пользователя.
      */
     public List<Transaction> getTransactionsByUserFrom(String userEmail, LocalDate date) {
+        int userId = IdDictionary.EMAILS.idOf(userEmail);
         List<Transaction> result = new ArrayList<>();
 
-        for (Transaction transaction : this.getAllTransactions()) {
-            if (!transaction.getUserEmailFrom().equals(userEmail)) {
+        List<Transaction> candidates = this.smallest(
+                this.live(this.transactionsByUserFrom, userKey(userEmail)),
+                this.live(this.transactionsByDate, date)
+        );
+
+        for (Transaction transaction : candidates) {
+            if (transaction.getUserIdFrom() != userId) {
                 continue;
             }
 
@@ -344,17 +575,7 @@ public class TransactionRepositoryImpl implements TransactionRepository {
      * @return Список транзакций пользователя.
      */
     public List<Transaction> getTransactionsByUserTo(String userEmail) {
-        List<Transaction> result = new ArrayList<>();
-
-        for (Transaction transaction : this.getAllTransactions()) {
-            if (!transaction.getUserEmailTo().equals(userEmail)) {
-                continue;
-            }
-
-            result.add(transaction);
-        }
-
-        return result;
+        return this.snapshot(this.transactionsByUserTo, userKey(userEmail));
     }
 
 
@@ -366,14 +587,11 @@ public class TransactionRepositoryImpl implements TransactionRepository {
      * @return Список транзакций пользователя.
      */
     public List<Transaction> getTransactionsByUserTo(String userEmail, int accountId) {
+        int userId = IdDictionary.EMAILS.idOf(userEmail);
         List<Transaction> result = new ArrayList<>();
 
-        for (Transaction transaction : this.getAllTransactions()) {
-            if (!transaction.getUserEmailTo().equals(userEmail)) {
-                continue;
-            }
-
-            if (transaction.getAccountIdTo() != accountId) {
+        for (Transaction transaction : this.snapshot(this.transactionsByAccountTo, accountId)) {
+            if (transaction.getUserIdTo() != userId) {
                 continue;
             }
 
@@ -393,10 +611,16 @@ public class TransactionRepositoryImpl implements TransactionRepository {
      * @return Список транзакций пользователя.
      */
     public List<Transaction> getTransactionsByUserTo(String userEmail, int accountId, LocalDate date) {
+        int userId = IdDictionary.EMAILS.idOf(userEmail);
         List<Transaction> result = new ArrayList<>();
 
-        for (Transaction transaction : this.getAllTransactions()) {
-            if (!transaction.getUserEmailTo().equals(userEmail)) {
+        List<Transaction> candidates = this.smallest(
+                this.live(this.transactionsByAccountTo, accountId),
+                this.live(this.transactionsByDate, date)
+        );
+
+        for (Transaction transaction : candidates) {
+            if (transaction.getUserIdTo() != userId) {
                 continue;
             }
 
@@ -423,10 +647,16 @@ public class TransactionRepositoryImpl implements TransactionRepository {
      * @return Список транзакций пользователя.
      */
     public List<Transaction> getTransactionsByUserTo(String userEmail, LocalDate date) {
+        int userId = IdDictionary.EMAILS.idOf(userEmail);
         List<Transaction> result = new ArrayList<>();
 
-        for (Transaction transaction : this.getAllTransactions()) {
-            if (!transaction.getUserEmailTo().equals(userEmail)) {
+        List<Transaction> candidates = this.smallest(
+                this.live(this.transactionsByUserTo, userKey(userEmail)),
+                this.live(this.transactionsByDate, date)
+        );
+
+        for (Transaction transaction : candidates) {
+            if (transaction.getUserIdTo() != userId) {
                 continue;
             }
 
@@ -440,4 +670,157 @@ public class TransactionRepositoryImpl implements TransactionRepository {
         return result;
     }
 
+
+    /**
+     * Записывает транзакцию в журнал (если он есть), сохраняет ее в хранилище и обновляет все индексы.
+     *
+     * @param transaction Транзакция.
+     */
+    private void save(Transaction transaction) {
+        LedgerWriteEvent event = new LedgerWriteEvent();
+        event.begin();
+
+        if (this.journal == null) {
+            this.store(transaction);
+        } else {
+            this.journal.append(
+                    RecordType.TRANSACTION,
+                    out -> Records.writeTransaction(out, transaction),
+                    () -> this.store(transaction)
+            );
+        }
+
+        event.record(transaction, this.journal != null);
+    }
+
+
+    /**
+     * Восстанавливает транзакцию (например, из журнала) без записи в журнал.
+     *
+     * @param transaction Транзакция.
+     */
+    public void restoreTransaction(Transaction transaction) {
+        // Транзакция может быть и в снимке состояния, и в хвосте журнала после него.
+        if (this.transactions.containsKey(transaction.getId())) {
+            return;
+        }
+
+        this.store(transaction);
+        this.transactionIdCounter.accumulateAndGet(transaction.getId() + 1, Math::max);
+    }
+
+
+    /**
+     * Добавляет транзакцию в хранилище и во все индексы.
+     *
+     * @param transaction Транзакция.
+     */
+    private void store(Transaction transaction) {
+        this.transactions.put(transaction.getId(), transaction);
+
+        this.index(this.transactionsByAccountFrom, transaction.getAccountIdFrom(), transaction);
+        this.index(this.transactionsByAccountTo, transaction.getAccountIdTo(), transaction);
+        this.index(this.transactionsByUserFrom, key(transaction.getUserIdFrom()), transaction);
+        this.index(this.transactionsByUserTo, key(transaction.getUserIdTo()), transaction);
+        this.index(this.transactionsByDate, transaction.getDate().toLocalDate(), transaction);
+        this.volumes.add(transaction);
+    }
+
+
+    /**
+     * Добавляет транзакцию в индекс по ключу.
+     *
+     * @param index       Индекс.
+     * @param key         Ключ или {@code null} (не индексируется).
+     * @param transaction Транзакция.
+     */
+    private <K> void index(Map<K, List<Transaction>> index, K key, Transaction transaction) {
+        if (key == null) {
+            return;
+        }
+
+        index
+                .computeIfAbsent(key, k -> Collections.synchronizedList(new ArrayList<>()))
+                .add(transaction);
+    }
+
+
+    /**
+     * Возвращает ключ индекса по пользователю.
+     *
+     * @param userEmail Email пользователя.
+     * @return Идентификатор email или {@code null}, если по пользователю нет транзакций.
+     */
+    private static Integer userKey(String userEmail) {
+        return key(IdDictionary.EMAILS.idOf(userEmail));
+    }
+
+
+    /**
+     * Возвращает ключ индекса по идентификатору из словаря.
+     *
+     * @param id Идентификатор.
+     * @return Идентификатор или {@code null} для {@link IdDictionary#NONE}.
+     */
+    private static Integer key(int id) {
+        return id == IdDictionary.NONE ? null : id;
+    }
+
+
+    /**
+     * Возвращает список индекса по ключу без копирования.
+     *
+     * @param index Индекс.
+     * @param key   Ключ.
+     * @return Список индекса или {@code null}, если по ключу нет транзакций.
+     */
+    private <K> List<Transaction> live(Map<K, List<Transaction>> index, K key) {
+        return key == null ? null : index.get(key);
+    }
+
+
+    /**
+     * Возвращает копию списка индекса по ключу.
+     *
+     * @param index Индекс.
+     * @param key   Ключ.
+     * @return Копия списка индекса.
+     */
+    private <K> List<Transaction> snapshot(Map<K, List<Transaction>> index, K key) {
+        return this.copy(this.live(index, key));
+    }
+
+
+    /**
+     * Возвращает копию меньшего из двух списков индекса (для последующей фильтрации).
+     *
+     * @param first  Первый список или {@code null}.
+     * @param second Второй список или {@code null}.
+     * @return Копия меньшего списка; пустой список, если хотя бы один из них отсутствует.
+     */
+    private List<Transaction> smallest(List<Transaction> first, List<Transaction> second) {
+        if (first == null || second == null) {
+            return new ArrayList<>();
+        }
+
+        return this.copy(first.size() <= second.size() ? first : second);
+    }
+
+
+    /**
+     * Копирует список индекса под его блокировкой.
+     *
+     * @param list Список индекса или {@code null}.
+     * @return Копия списка.
+     */
+    private List<Transaction> copy(List<Transaction> list) {
+        if (list == null) {
+            return new ArrayList<>();
+        }
+
+        synchronized (list) {
+            return new ArrayList<>(list);
+        }
+    }
+
 }
\ No newline at end of file
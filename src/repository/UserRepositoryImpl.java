@@ -3,8 +3,12 @@ package repository;
 import model.User;
 import model.enums.UserRole;
 import repository.interfaces.UserRepository;
+import repository.journal.Journal;
+import repository.journal.RecordType;
+import repository.journal.Records;
 
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.stream.Collectors;
 
 /**
@@ -19,7 +23,25 @@ public class UserRepositoryImpl implements UserRepository {
      * <p>{@code key} - email пользователя;</p>
      * <p>{@code value} - объект пользователя.</p>
      */
-    private final Map<String, User> users = new HashMap<>();
+    private final Map<String, User> users = new ConcurrentHashMap<>();
+
+    // Журнал изменений или null, если репозиторий хранится только в памяти.
+    private final Journal journal;
+
+
+    public UserRepositoryImpl() {
+        this(null);
+    }
+
+
+    /**
+     * Конструктор для создания репозитория, записывающего изменения в журнал.
+     *
+     * @param journal Журнал изменений или {@code null}.
+     */
+    public UserRepositoryImpl(Journal journal) {
+        this.journal = journal;
+    }
 
 
     /**
@@ -44,7 +66,7 @@ public class UserRepositoryImpl implements UserRepository {
 
         User user = new User(email, password);
 
-        this.users.put(email, user);
+        this.add(user);
 
         return user;
     }
@@ -73,7 +95,7 @@ public class UserRepositoryImpl implements UserRepository {
 
         User user = new User(email, password, role);
 
-        this.users.put(email, user);
+        this.add(user);
 
         return user;
     }
@@ -103,7 +125,7 @@ public class UserRepositoryImpl implements UserRepository {
 
         User user = new User(email, password, role, firstName, lastName);
 
-        this.users.put(email, user);
+        this.add(user);
 
         return user;
     }
@@ -193,4 +215,66 @@ public class UserRepositoryImpl implements UserRepository {
         return this.users.containsKey(email.toLowerCase());
     }
 
+
+    /**
+     * Сохраняет изменения пользователя (роль, пароль, имя), сделанные после его добавления.
+     *
+     * @param user Пользователь.
+     */
+    @Override
+    public void updateUser(User user) {
+        if (user == null) {
+            throw new IllegalArgumentException("Аргумент user не может быть null!");
+        }
+
+        if (this.users.get(user.getEmail()) != user) {
+            throw new IllegalArgumentException("Пользователь " + user.getEmail() + " не найден!");
+        }
+
+        this.journal(user);
+    }
+
+
+    /**
+     * Восстанавливает пользователя (например, из журнала) без записи в журнал.
+     *
+     * @param user Пользователь.
+     */
+    public void restoreUser(User user) {
+        this.users.put(user.getEmail(), user);
+    }
+
+
+    /**
+     * Добавляет пользователя в хранилище (и в журнал, если он есть).
+     *
+     * @param user Пользователь.
+     * @throws IllegalArgumentException Если пользователь с таким email уже существует.
+     */
+    private void add(User user) {
+        Runnable put = () -> {
+            if (this.users.putIfAbsent(user.getEmail(), user) != null) {
+                throw new IllegalArgumentException("Пользователь с таким email уже существует!");
+            }
+        };
+
+        if (this.journal == null) {
+            put.run();
+        } else {
+            this.journal.append(RecordType.USER, out -> Records.writeUser(out, user), put);
+        }
+    }
+
+
+    /**
+     * Записывает текущее состояние пользователя в журнал.
+     *
+     * @param user Пользователь.
+     */
+    private void journal(User user) {
+        if (this.journal != null) {
+            this.journal.append(RecordType.USER, out -> Records.writeUser(out, user));
+        }
+    }
+
 }
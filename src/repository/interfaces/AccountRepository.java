@@ -19,11 +19,11 @@ public interface AccountRepository {
      * Создает новый счет для пользователя.
      *
      * @param userEmail    Идентификатор пользователя.
-     * @param currencyCode Код валюты.
      * @param title        Название счет.
+     * @param currencyCode Код валюты.
      * @return Созданный счет.
      */
-    Account createAccount(String userEmail, String currencyCode, String title);
+    Account createAccount(String userEmail, String title, String currencyCode);
 
 
     /**
@@ -46,6 +46,15 @@ public interface AccountRepository {
     Account getAccountById(int id);
 
 
+    /**
+     * Возвращает системный счет в указанной валюте.
+     *
+     * @param currencyCode Код валюты.
+     * @return Системный счет или {@code null}, если такого счета нет.
+     */
+    Account getSystemAccount(String currencyCode);
+
+
     /**
      * Получает все счета пользователя.
      *
@@ -88,4 +97,19 @@ public interface AccountRepository {
     void removeAccount(Account account) throws Exception ;
 
 
+    /**
+     * Сохраняет текущий баланс счета после его изменения.
+     *
+     * @param account Счет.
+     */
+    void updateBalance(Account account);
+
+
+    /**
+     * Возвращает количество счетов (включая системные) без копирования списка.
+     *
+     * @return Количество счетов.
+     */
+    int getAccountCount();
+
 }
@@ -30,6 +30,24 @@ public interface CurrencyRepository {
   Rate addRate(String currencyCode, BigDecimal course, LocalDateTime time);
 
 
+  /**
+   * Добавляет пачку курсов валют (например, при импорте истории).
+   *
+   * @param batch Курсы.
+   * @return Количество добавленных курсов.
+   */
+  int addRates(List<Rate> batch);
+
+
+  /**
+   * Подписывает слушателя на публикацию актуальных курсов.
+   * <p>Слушатель вызывается из {@link #addRate}, если добавленный курс стал актуальным для своей валюты.</p>
+   *
+   * @param listener Слушатель.
+   */
+  void addRateListener(RateListener listener);
+
+
   /**
    * Возвращает список всех курсов валют.
    *
@@ -57,6 +75,27 @@ public interface CurrencyRepository {
   BigDecimal getActualRate(CurrencyCode currencyCode);
 
 
+  /**
+   * Возвращает курс валюты, действовавший в указанный момент времени.
+   *
+   * @param currencyCode Код валюты.
+   * @param time Момент времени.
+   * @return Курс валюты или {@code null}, если на этот момент курса еще не было.
+   */
+  Rate getRateAt(CurrencyCode currencyCode, LocalDateTime time);
+
+
+  /**
+   * Возвращает список курсов валюты за период (включительно), упорядоченный по времени.
+   *
+   * @param currencyCode Код валюты.
+   * @param from Начало периода.
+   * @param to Конец периода.
+   * @return Список курсов валюты.
+   */
+  List<Rate> getRatesBetween(CurrencyCode currencyCode, LocalDateTime from, LocalDateTime to);
+
+
   /**
    * Проверяет, существует ли валюта.
    *
@@ -65,4 +104,12 @@ public interface CurrencyRepository {
    */
   boolean currencyExists(String currencyCode);
 
+
+  /**
+   * Возвращает количество курсов в истории всех валют без обхода истории.
+   *
+   * @return Количество курсов.
+   */
+  int getRateCount();
+
 }
@@ -0,0 +1,17 @@
+package repository.interfaces;
+
+import model.Rate;
+
+/**
+ * Слушатель публикации нового актуального курса валюты.
+ */
+public interface RateListener {
+
+    /**
+     * Вызывается, когда курс становится актуальным (с последней датой) для своей валюты.
+     *
+     * @param rate Новый актуальный курс.
+     */
+    void onRate(Rate rate);
+
+}
@@ -1,14 +1,17 @@
 package repository.interfaces;
 
 import model.Account;
+import model.DailyVolume;
 import model.Transaction;
 import model.enums.TransactionType;
 
 import java.math.BigDecimal;
 import java.time.LocalDate;
+import java.util.ArrayList;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.function.Consumer;
 
 public interface TransactionRepository {
 
@@ -97,6 +100,87 @@ public interface TransactionRepository {
     );
 
 
+    /**
+     * Создает новую транзакцию с суммой списания, комиссией и версией кросс-курса и добавляет ее в хранилище.
+     *
+     * @param type          Тип транзакции (например, перевод, обмен валют).
+     * @param userEmailFrom Электронная почта отправителя.
+     * @param accountIdFrom Идентификатор счета отправителя.
+     * @param currencyFrom  Валюта счета отправителя.
+     * @param userEmailTo   Электронная почта получателя.
+     * @param accountIdTo   Идентификатор счета получателя.
+     * @param currencyTo    Валюта счета получателя.
+     * @param amount        Сумма транзакции (зачисление в валюте получателя).
+     * @param amountFrom    Сумма списания в валюте отправителя или {@code null} (не обмен).
+     * @param fee           Комиссия в валюте получателя или {@code null}.
+     * @param course        Курс обмена или {@code null}.
+     * @param rateVersion   Версия матрицы кросс-курсов, по которой рассчитан курс ({@code 0} - курс не применялся).
+     * @return Созданная транзакция.
+     */
+    Transaction createTransaction(
+            TransactionType type,
+            String userEmailFrom,
+            int accountIdFrom,
+            String currencyFrom,
+            String userEmailTo,
+            int accountIdTo,
+            String currencyTo,
+            BigDecimal amount,
+            BigDecimal amountFrom,
+            BigDecimal fee,
+            BigDecimal course,
+            long rateVersion
+    );
+
+
+    /**
+     * Создает несколько транзакций. Реализация по умолчанию создает их по одной; реализации с журналом могут
+     * записать их одной записью.
+     *
+     * @param drafts Шаблоны транзакций: идентификатор шаблона не используется, транзакции получают новые.
+     * @return Созданные транзакции в порядке шаблонов.
+     */
+    default List<Transaction> createTransactions(List<Transaction> drafts) {
+        if (drafts == null) {
+            throw new IllegalArgumentException("Аргумент drafts не может быть null!");
+        }
+
+        List<Transaction> result = new ArrayList<>(drafts.size());
+
+        for (Transaction draft : drafts) {
+            result.add(draft.getComment() != null
+                    ? this.createTransaction(
+                            draft.getType(),
+                            draft.getUserEmailFrom(),
+                            draft.getAccountIdFrom(),
+                            draft.getCurrencyFrom(),
+                            draft.getUserEmailTo(),
+                            draft.getAccountIdTo(),
+                            draft.getCurrencyTo(),
+                            draft.getAmount(),
+                            draft.getCourse(),
+                            draft.getComment()
+                    )
+                    : this.createTransaction(
+                            draft.getType(),
+                            draft.getUserEmailFrom(),
+                            draft.getAccountIdFrom(),
+                            draft.getCurrencyFrom(),
+                            draft.getUserEmailTo(),
+                            draft.getAccountIdTo(),
+                            draft.getCurrencyTo(),
+                            draft.getAmount(),
+                            draft.getAmountFrom(),
+                            draft.getFee(),
+                            draft.getCourse(),
+                            draft.getRateVersion()
+                    ));
+        }
+
+        return result;
+    }
+
+
     /**
      * Возвращает транзакцию по ее ID.
      *
@@ -123,4 +207,45 @@ public interface TransactionRepository {
 
 
     List<Transaction> getTransactionsByAccountId(int accountId);
+
+
+    /**
+     * Передает транзакции за период в порядке дат, не собирая их в список (для потоковой обработки больших
+     * журналов).
+     *
+     * @param from   Первый день периода (включительно).
+     * @param to     Последний день периода (включительно).
+     * @param action Обработчик транзакции.
+     */
+    void forEachTransaction(LocalDate from, LocalDate to, Consumer<Transaction> action);
+
+
+    /**
+     * Возвращает количество транзакций без копирования журнала.
+     *
+     * @return Количество транзакций.
+     */
+    int getTransactionCount();
+
+
+    /**
+     * Возвращает оборот за день по валютной паре и типу транзакции. Обороты обновляются при добавлении
+     * транзакций, поэтому запрос не просматривает транзакции.
+     *
+     * @param day          День.
+     * @param currencyFrom Валюта "из".
+     * @param currencyTo   Валюта "в".
+     * @param type         Тип транзакции.
+     * @return Оборот или {@code null}, если таких транзакций за день не было.
+     */
+    DailyVolume getDailyVolume(LocalDate day, String currencyFrom, String currencyTo, TransactionType type);
+
+
+    /**
+     * Возвращает обороты за день по всем валютным парам и типам транзакций.
+     *
+     * @param day День.
+     * @return Обороты, упорядоченные по типу транзакции и валютам.
+     */
+    List<DailyVolume> getDailyVolumes(LocalDate day);
 }
@@ -105,4 +105,12 @@ public interface UserRepository {
      */
     boolean isEmailExists(String email);
 
+
+    /**
+     * Сохраняет изменения пользователя (роль, пароль, имя), сделанные после его добавления.
+     *
+     * @param user Пользователь.
+     */
+    void updateUser(User user);
+
 }
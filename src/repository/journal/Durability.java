@@ -0,0 +1,20 @@
+package repository.journal;
+
+/**
+ * Режим долговечности журнала.
+ */
+public enum Durability {
+
+    /**
+     * Операция возвращает управление только после того, как ее запись сброшена на диск ({@code fsync}).
+     * Записи параллельных операций сбрасываются одной общей синхронизацией (group commit).
+     */
+    SYNC,
+
+    /**
+     * Операция возвращает управление сразу после записи в буфер журнала, буфер сбрасывается на диск не реже
+     * заданного интервала. При сбое теряются записи не более чем за этот интервал.
+     */
+    PERIODIC
+
+}
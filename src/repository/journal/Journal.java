@@ -0,0 +1,994 @@
+package repository.journal;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Supplier;
+import java.util.zip.CRC32C;
+
+/**
+ * Журнал упреждающей записи (write-ahead log): записи об изменениях репозиториев дописываются в конец текущего
+ * сегмента журнала. При старте приложения журнал проигрывается методом {@link #replay(RecordHandler)}.
+ *
+ * <p>Журнал хранится в каталоге как последовательность сегментов {@code journal-<номер>.log}. Метод
+ * {@link #rotate()} начинает новый сегмент; после сохранения снимка состояния (см. {@link Snapshotter})
+ * сегменты до него удаляются.</p>
+ *
+ * <p>Формат записи: {@code [int длина][byte тип][содержимое][int CRC32C]}, где длина - это размер типа и
+ * содержимого, а контрольная сумма считается по ним же. Недописанная или поврежденная запись в конце последнего
+ * сегмента (например, после сбоя питания) при проигрывании отбрасывается.</p>
+ *
+ * <p>Записи копятся в общем буфере, который фоновый поток сбрасывает на диск целиком одной синхронизацией
+ * (group commit). В режиме {@link Durability#SYNC} операция ждет сброса своей записи, в режиме
+ * {@link Durability#PERIODIC} - нет.</p>
+ *
+ * <p>Записи, добавленные внутри {@link #atomic(Supplier)}, записываются одной записью {@link RecordType#GROUP}
+ * с общей контрольной суммой: после сбоя группа либо проигрывается целиком, либо отбрасывается целиком.
+ * Формат содержимого группы: последовательность {@code [int длина][byte тип][содержимое]}.</p>
+ */
+public class Journal implements Closeable {
+
+    // Максимальный размер записи; длина больше этой считается повреждением.
+    private static final int MAX_RECORD_SIZE = 16 * 1024 * 1024;
+
+    // Размер заголовка записи (длина).
+    private static final int HEADER_SIZE = Integer.BYTES;
+
+    // Размер контрольной суммы записи.
+    private static final int CHECKSUM_SIZE = Integer.BYTES;
+
+    // Префикс и суффикс имени файла сегмента.
+    private static final String SEGMENT_PREFIX = "journal-";
+    private static final String SEGMENT_SUFFIX = ".log";
+
+    // Каталог журнала.
+    private final Path directory;
+
+    // Режим долговечности.
+    private final Durability durability;
+
+    // Интервал сброса на диск в режиме PERIODIC (в наносекундах).
+    private final long syncIntervalNanos;
+
+    // Блокировка буфера, счетчиков и текущего сегмента.
+    private final ReentrantLock lock;
+
+    // Сигнал фоновому потоку: в буфере есть записи или запрошена смена сегмента.
+    private final Condition appended;
+
+    // Сигнал операциям: записи сброшены на диск.
+    private final Condition synced;
+
+    // Поток, сбрасывающий буфер на диск.
+    private final Thread syncer;
+
+    // Канал текущего сегмента (пишет только фоновый поток).
+    private FileChannel channel;
+
+    // Номер текущего сегмента.
+    private long segment;
+
+    // Буфер записей, ожидающих сброса.
+    private Buffer buffer;
+
+    // Буфер, который сбрасывается на диск в данный момент.
+    private Buffer flushing;
+
+    // Номер последней добавленной записи.
+    private long appendedSequence;
+
+    // Номер последней записи, сброшенной на диск.
+    private long syncedSequence;
+
+    // Запрошен немедленный сброс буфера.
+    private boolean syncRequested;
+
+    // Запрошена смена сегмента.
+    private boolean rotateRequested;
+
+    // Журнал закрыт.
+    private boolean closed;
+
+    // Ошибка фонового потока; после нее журнал недоступен для записи.
+    private IOException failure;
+
+    // Группа записей, собираемая текущим потоком внутри atomic(), или null.
+    private final ThreadLocal<Group> group;
+
+
+    /**
+     * Конструктор для открытия журнала в режиме {@link Durability#SYNC}.
+     *
+     * @param directory Каталог журнала (создается, если не существует).
+     * @throws IOException Ошибка открытия файла.
+     */
+    public Journal(Path directory) throws IOException {
+        this(directory, Durability.SYNC, 0);
+    }
+
+
+    /**
+     * Конструктор для открытия журнала.
+     *
+     * @param directory          Каталог журнала (создается, если не существует).
+     * @param durability         Режим долговечности.
+     * @param syncIntervalMillis Интервал сброса на диск в режиме {@link Durability#PERIODIC} (в миллисекундах).
+     * @throws IOException Ошибка открытия файла.
+     */
+    public Journal(Path directory, Durability durability, long syncIntervalMillis) throws IOException {
+        if (directory == null || durability == null) {
+            throw new IllegalArgumentException("Аргументы directory и durability не могут быть null!");
+        }
+
+        if (durability == Durability.PERIODIC && syncIntervalMillis <= 0) {
+            throw new IllegalArgumentException("Интервал сброса должен быть больше нуля!");
+        }
+
+        this.directory = Files.createDirectories(directory);
+        this.durability = durability;
+        this.syncIntervalNanos = TimeUnit.MILLISECONDS.toNanos(syncIntervalMillis);
+
+        List<Long> segments = this.listSegments();
+        this.segment = segments.isEmpty() ? 1 : segments.get(segments.size() - 1);
+        this.channel = this.openSegment(this.segment);
+        this.channel.position(this.channel.size());
+
+        this.lock = new ReentrantLock();
+        this.appended = this.lock.newCondition();
+        this.synced = this.lock.newCondition();
+        this.buffer = new Buffer();
+        this.flushing = new Buffer();
+        this.group = new ThreadLocal<>();
+
+        this.syncer = new Thread(this::runSyncer, "journal-sync");
+        this.syncer.setDaemon(true);
+        this.syncer.start();
+    }
+
+
+    /**
+     * Возвращает каталог журнала.
+     *
+     * @return Каталог журнала.
+     */
+    public Path getDirectory() {
+        return this.directory;
+    }
+
+
+    /**
+     * Возвращает режим долговечности.
+     *
+     * @return Режим долговечности.
+     */
+    public Durability getDurability() {
+        return this.durability;
+    }
+
+
+    /**
+     * Возвращает номер текущего сегмента.
+     *
+     * @return Номер сегмента.
+     */
+    public long getSegment() {
+        this.lock.lock();
+        try {
+            return this.segment;
+        } finally {
+            this.lock.unlock();
+        }
+    }
+
+
+    /**
+     * Проигрывает все сегменты журнала. Вызывается один раз при старте, до первой записи.
+     *
+     * @param handler Обработчик записей.
+     * @return Количество проигранных записей.
+     * @throws IOException Ошибка чтения файла или обработчика.
+     */
+    public long replay(RecordHandler handler) throws IOException {
+        return this.replay(handler, 0);
+    }
+
+
+    /**
+     * Проигрывает сегменты журнала, начиная с указанного. Вызывается один раз при старте, до первой записи.
+     *
+     * <p>Недописанная или поврежденная запись в конце последнего сегмента отбрасывается вместе со всем, что за
+     * ней следует, и сегмент обрезается до последней целой записи. Повреждение в середине журнала считается
+     * ошибкой.</p>
+     *
+     * @param handler     Обработчик записей.
+     * @param fromSegment Номер первого проигрываемого сегмента.
+     * @return Количество проигранных записей.
+     * @throws IOException           Ошибка чтения файла, повреждение журнала или ошибка обработчика.
+     * @throws IllegalStateException Если в журнал уже что-то записано.
+     */
+    public long replay(RecordHandler handler, long fromSegment) throws IOException {
+        if (handler == null) {
+            throw new IllegalArgumentException("Аргумент handler не может быть null!");
+        }
+
+        this.lock.lock();
+        try {
+            if (this.appendedSequence != 0) {
+                throw new IllegalStateException("Журнал нельзя проигрывать после начала записи!");
+            }
+
+            long records = 0;
+
+            for (long number : this.listSegments()) {
+                if (number < fromSegment) {
+                    continue;
+                }
+
+                if (number == this.segment) {
+                    records += replaySegment(this.channel, handler, true);
+                    continue;
+                }
+
+                try (FileChannel segmentChannel = FileChannel.open(this.segmentPath(number), StandardOpenOption.READ)) {
+                    records += replaySegment(segmentChannel, handler, false);
+                }
+            }
+
+            return records;
+        } finally {
+            this.lock.unlock();
+        }
+    }
+
+
+    /**
+     * Добавляет запись в журнал. В режиме {@link Durability#SYNC} возвращает управление после сброса записи
+     * на диск.
+     *
+     * @param type   Тип записи.
+     * @param writer Содержимое записи.
+     * @throws UncheckedIOException  Ошибка записи журнала.
+     * @throws IllegalStateException Если журнал закрыт.
+     */
+    public void append(RecordType type, RecordWriter writer) {
+        this.append(type, writer, null);
+    }
+
+
+    /**
+     * Добавляет запись в журнал и атомарно относительно {@link #rotate()} применяет изменение в памяти: запись
+     * попадает в тот же сегмент, до начала которого изменение становится видимым. Если {@code apply}
+     * выбрасывает исключение, запись отменяется.
+     *
+     * <p>Изменение применяется под блокировкой журнала, поэтому оно должно быть коротким (например, вставка в
+     * {@code ConcurrentHashMap}).</p>
+     *
+     * @param type   Тип записи.
+     * @param writer Содержимое записи.
+     * @param apply  Изменение в памяти или {@code null}.
+     * @throws UncheckedIOException  Ошибка записи журнала.
+     * @throws IllegalStateException Если журнал закрыт.
+     */
+    public void append(RecordType type, RecordWriter writer, Runnable apply) {
+        Group group = this.group.get();
+
+        if (group != null) {
+            group.add(type, writer, apply);
+            return;
+        }
+
+        this.write(encode(type, writer), apply);
+    }
+
+
+    /**
+     * Добавляет пачку записей одного типа и применяет изменение в памяти так же, как
+     * {@link #append(RecordType, RecordWriter, Runnable)}, но за один захват блокировки и с одним ожиданием
+     * сброса на диск в режиме {@link Durability#SYNC}. Если {@code apply} выбрасывает исключение, отменяется
+     * вся пачка.
+     *
+     * @param type    Тип записей.
+     * @param writers Содержимое записей.
+     * @param apply   Изменение в памяти или {@code null}.
+     * @throws UncheckedIOException  Ошибка записи журнала.
+     * @throws IllegalStateException Если журнал закрыт.
+     */
+    public void appendAll(RecordType type, List<? extends RecordWriter> writers, Runnable apply) {
+        if (writers == null) {
+            throw new IllegalArgumentException("Аргумент writers не может быть null!");
+        }
+
+        Group group = this.group.get();
+
+        if (group != null) {
+            for (RecordWriter writer : writers) {
+                group.add(type, writer, null);
+            }
+
+            group.add(apply);
+            return;
+        }
+
+        ByteArrayOutputStream records = new ByteArrayOutputStream(writers.size() * 64);
+        for (RecordWriter writer : writers) {
+            byte[] record = encode(type, writer);
+            records.write(record, 0, record.length);
+        }
+
+        this.write(records.toByteArray(), apply);
+    }
+
+
+    /**
+     * Выполняет операцию так, что все записи, добавленные ею в этом потоке ({@code append} и
+     * {@code appendAll}), попадают в журнал одной записью {@link RecordType#GROUP}: после сбоя восстанавливается
+     * либо вся операция, либо ничего. Записи добавляются в буфер после завершения операции, изменения в памяти
+     * этих записей применяются тогда же и в том же порядке, а в режиме {@link Durability#SYNC} операция ждет
+     * одного сброса на диск. Вложенный вызов входит во внешнюю группу.
+     *
+     * <p>Если операция выбрасывает исключение, ее записи не добавляются, а их изменения в памяти не
+     * применяются.</p>
+     *
+     * @param operation Операция.
+     * @param <T>       Тип результата операции.
+     * @return Результат операции.
+     * @throws UncheckedIOException  Ошибка записи журнала.
+     * @throws IllegalStateException Если журнал закрыт.
+     */
+    public <T> T atomic(Supplier<T> operation) {
+        if (operation == null) {
+            throw new IllegalArgumentException("Аргумент operation не может быть null!");
+        }
+
+        if (this.group.get() != null) {
+            return operation.get();
+        }
+
+        Group group = new Group();
+        T result;
+
+        this.group.set(group);
+        try {
+            result = operation.get();
+        } finally {
+            this.group.remove();
+        }
+
+        if (!group.isEmpty()) {
+            this.write(encode(RecordType.GROUP, group), group);
+        }
+
+        return result;
+    }
+
+
+    /**
+     * Добавляет закодированные записи в буфер и применяет изменение в памяти.
+     *
+     * @param records Записи.
+     * @param apply   Изменение в памяти или {@code null}.
+     */
+    private void write(byte[] records, Runnable apply) {
+        this.lock.lock();
+        try {
+            this.checkWritable();
+
+            int mark = this.buffer.size();
+            this.buffer.write(records, 0, records.length);
+
+            if (apply != null) {
+                try {
+                    apply.run();
+                } catch (RuntimeException e) {
+                    this.buffer.truncate(mark);
+                    throw e;
+                }
+            }
+
+            long sequence = ++this.appendedSequence;
+            this.appended.signal();
+
+            if (this.durability == Durability.SYNC) {
+                this.awaitSynced(sequence);
+            }
+        } finally {
+            this.lock.unlock();
+        }
+    }
+
+
+    /**
+     * Немедленно сбрасывает на диск все добавленные записи и ждет завершения.
+     *
+     * @throws UncheckedIOException Ошибка записи журнала.
+     */
+    public void sync() {
+        this.lock.lock();
+        try {
+            if (this.syncedSequence >= this.appendedSequence) {
+                this.checkFailure();
+                return;
+            }
+
+            this.syncRequested = true;
+            this.appended.signal();
+            this.awaitSynced(this.appendedSequence);
+        } finally {
+            this.lock.unlock();
+        }
+    }
+
+
+    /**
+     * Сбрасывает на диск текущий сегмент и начинает новый. Все записи, добавленные до вызова, оказываются в
+     * предыдущих сегментах, а их изменения в памяти (см. {@link #append(RecordType, RecordWriter, Runnable)})
+     * видны после возврата из метода.
+     *
+     * @return Номер нового сегмента.
+     * @throws UncheckedIOException  Ошибка записи журнала.
+     * @throws IllegalStateException Если журнал закрыт.
+     */
+    public long rotate() {
+        this.lock.lock();
+        try {
+            this.checkWritable();
+
+            long next = this.segment + 1;
+            this.rotateRequested = true;
+            this.appended.signal();
+
+            boolean interrupted = false;
+            while (this.segment < next && this.failure == null && this.syncer.isAlive()) {
+                try {
+                    this.synced.await();
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                }
+            }
+
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
+
+            this.checkFailure();
+
+            return next;
+        } finally {
+            this.lock.unlock();
+        }
+    }
+
+
+    /**
+     * Удаляет сегменты с номером меньше указанного (например, после сохранения снимка состояния).
+     *
+     * @param segment Номер первого сохраняемого сегмента.
+     * @return Количество удаленных сегментов.
+     * @throws IOException Ошибка удаления файла.
+     */
+    public int deleteSegmentsBefore(long segment) throws IOException {
+        long current = this.getSegment();
+        int deleted = 0;
+
+        for (long number : this.listSegments()) {
+            if (number < segment && number < current) {
+                Files.deleteIfExists(this.segmentPath(number));
+                deleted++;
+            }
+        }
+
+        return deleted;
+    }
+
+
+    /**
+     * Сбрасывает на диск все добавленные записи и закрывает журнал.
+     *
+     * @throws IOException Ошибка записи или закрытия файла.
+     */
+    @Override
+    public void close() throws IOException {
+        this.lock.lock();
+        try {
+            if (this.closed) {
+                return;
+            }
+
+            this.closed = true;
+            this.appended.signal();
+        } finally {
+            this.lock.unlock();
+        }
+
+        try {
+            this.syncer.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+
+        this.channel.close();
+
+        if (this.failure != null) {
+            throw this.failure;
+        }
+    }
+
+
+    /**
+     * Цикл фонового потока: забирает накопленный буфер, сбрасывает его на диск одной синхронизацией и при
+     * необходимости начинает новый сегмент.
+     */
+    private void runSyncer() {
+        while (true) {
+            long target;
+            boolean rotate;
+
+            this.lock.lock();
+            try {
+                try {
+                    this.awaitBatch();
+                } catch (InterruptedException e) {
+                    this.closed = true;
+                }
+
+                rotate = this.rotateRequested;
+
+                if (this.buffer.size() == 0 && !rotate) {
+                    this.synced.signalAll();
+                    return;
+                }
+
+                Buffer batch = this.buffer;
+                this.buffer = this.flushing;
+                this.flushing = batch;
+                this.syncRequested = false;
+                this.rotateRequested = false;
+                target = this.appendedSequence;
+            } finally {
+                this.lock.unlock();
+            }
+
+            IOException error = null;
+            FileChannel next = null;
+            try {
+                if (this.flushing.size() > 0) {
+                    ByteBuffer data = ByteBuffer.wrap(this.flushing.array(), 0, this.flushing.size());
+
+                    while (data.hasRemaining()) {
+                        this.channel.write(data);
+                    }
+
+                    this.channel.force(false);
+                }
+
+                if (rotate) {
+                    next = this.openSegment(this.segment + 1);
+                    this.channel.close();
+                }
+            } catch (IOException e) {
+                error = e;
+            }
+
+            this.flushing.reset();
+
+            this.lock.lock();
+            try {
+                if (error != null) {
+                    this.failure = error;
+                    this.closed = true;
+                    this.synced.signalAll();
+                    return;
+                }
+
+                if (next != null) {
+                    this.channel = next;
+                    this.segment++;
+                }
+
+                this.syncedSequence = target;
+                this.synced.signalAll();
+            } finally {
+                this.lock.unlock();
+            }
+        }
+    }
+
+
+    /**
+     * Ждет, пока появятся записи для сброса или запрос смены сегмента. В режиме {@link Durability#PERIODIC}
+     * дополнительно ждет окончания интервала сброса, чтобы собрать записи в одну синхронизацию. Вызывается под
+     * блокировкой.
+     */
+    private void awaitBatch() throws InterruptedException {
+        while (this.buffer.size() == 0 && !this.rotateRequested && !this.closed) {
+            this.appended.await();
+        }
+
+        if (this.durability == Durability.PERIODIC) {
+            long remaining = this.syncIntervalNanos;
+
+            while (remaining > 0 && !this.closed && !this.syncRequested && !this.rotateRequested) {
+                remaining = this.appended.awaitNanos(remaining);
+            }
+        }
+    }
+
+
+    /**
+     * Ждет, пока запись с указанным номером будет сброшена на диск. Вызывается под блокировкой.
+     *
+     * @param sequence Номер записи.
+     */
+    private void awaitSynced(long sequence) {
+        boolean interrupted = false;
+
+        while (this.syncedSequence < sequence && this.failure == null && this.syncer.isAlive()) {
+            try {
+                this.synced.await();
+            } catch (InterruptedException e) {
+                interrupted = true;
+            }
+        }
+
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+
+        this.checkFailure();
+    }
+
+
+    /**
+     * Проверяет, что в журнал можно писать. Вызывается под блокировкой.
+     */
+    private void checkWritable() {
+        this.checkFailure();
+
+        if (this.closed) {
+            throw new IllegalStateException("Журнал закрыт!");
+        }
+    }
+
+
+    /**
+     * Выбрасывает ошибку фонового потока, если она была.
+     */
+    private void checkFailure() {
+        if (this.failure != null) {
+            throw new UncheckedIOException("Ошибка записи журнала " + this.directory, this.failure);
+        }
+    }
+
+
+    /**
+     * Возвращает номера существующих сегментов по возрастанию.
+     *
+     * @return Номера сегментов.
+     * @throws IOException Ошибка чтения каталога.
+     */
+    private List<Long> listSegments() throws IOException {
+        List<Long> segments = new ArrayList<>();
+
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(this.directory, SEGMENT_PREFIX + "*" + SEGMENT_SUFFIX)) {
+            for (Path file : files) {
+                String name = file.getFileName().toString();
+                String number = name.substring(SEGMENT_PREFIX.length(), name.length() - SEGMENT_SUFFIX.length());
+
+                try {
+                    segments.add(Long.parseLong(number));
+                } catch (NumberFormatException e) {
+                    // Посторонний файл с похожим именем.
+                }
+            }
+        }
+
+        Collections.sort(segments);
+
+        return segments;
+    }
+
+
+    /**
+     * Возвращает путь к файлу сегмента.
+     *
+     * @param number Номер сегмента.
+     * @return Путь к файлу.
+     */
+    private Path segmentPath(long number) {
+        return this.directory.resolve(String.format("%s%016d%s", SEGMENT_PREFIX, number, SEGMENT_SUFFIX));
+    }
+
+
+    /**
+     * Открывает (или создает) сегмент для записи.
+     *
+     * @param number Номер сегмента.
+     * @return Канал сегмента.
+     * @throws IOException Ошибка открытия файла.
+     */
+    private FileChannel openSegment(long number) throws IOException {
+        return FileChannel.open(
+                this.segmentPath(number),
+                StandardOpenOption.CREATE,
+                StandardOpenOption.READ,
+                StandardOpenOption.WRITE
+        );
+    }
+
+
+    /**
+     * Проигрывает один сегмент с начала.
+     *
+     * @param channel Канал сегмента.
+     * @param handler Обработчик записей.
+     * @param last    Сегмент последний: недописанный хвост обрезается, а не считается ошибкой.
+     * @return Количество проигранных записей.
+     * @throws IOException Ошибка чтения, повреждение сегмента или ошибка обработчика.
+     */
+    private static long replaySegment(FileChannel channel, RecordHandler handler, boolean last) throws IOException {
+        long records = 0;
+        long valid = 0;
+        long size = channel.size();
+        CRC32C crc = new CRC32C();
+
+        channel.position(0);
+        DataInputStream in = new DataInputStream(new BufferedInputStream(new ChannelInput(channel), 64 * 1024));
+
+        while (size - valid >= HEADER_SIZE) {
+            int length = in.readInt();
+
+            if (length <= 0 || length > MAX_RECORD_SIZE || size - valid - HEADER_SIZE < length + CHECKSUM_SIZE) {
+                break;
+            }
+
+            byte[] body = new byte[length];
+            in.readFully(body);
+            int checksum = in.readInt();
+
+            crc.reset();
+            crc.update(body, 0, length);
+
+            if ((int) crc.getValue() != checksum) {
+                break;
+            }
+
+            RecordType type = RecordType.of(body[0]);
+
+            if (type == null) {
+                throw new IOException("Неизвестный тип записи журнала " + body[0] + " (позиция " + valid + ")!");
+            }
+
+            if (type == RecordType.GROUP) {
+                records += replayGroup(body, handler, valid);
+            } else {
+                handler.handle(type, new DataInputStream(new ByteArrayInputStream(body, 1, length - 1)));
+                records++;
+            }
+
+            valid += HEADER_SIZE + length + CHECKSUM_SIZE;
+        }
+
+        if (valid < size) {
+            if (!last) {
+                throw new IOException("Сегмент журнала поврежден (позиция " + valid + ")!");
+            }
+
+            channel.truncate(valid);
+            channel.force(true);
+        }
+
+        channel.position(valid);
+
+        return records;
+    }
+
+
+    /**
+     * Проигрывает записи группы.
+     *
+     * @param body     Тип и содержимое записи группы.
+     * @param handler  Обработчик записей.
+     * @param position Позиция группы в сегменте (для сообщения об ошибке).
+     * @return Количество проигранных записей.
+     * @throws IOException Повреждение группы или ошибка обработчика.
+     */
+    private static long replayGroup(byte[] body, RecordHandler handler, long position) throws IOException {
+        long records = 0;
+        int offset = 1;
+
+        while (offset < body.length) {
+            int length = offset + HEADER_SIZE < body.length ? ByteBuffer.wrap(body, offset, HEADER_SIZE).getInt() : -1;
+
+            if (length <= 0 || length > body.length - offset - HEADER_SIZE) {
+                throw new IOException("Группа записей журнала повреждена (позиция " + position + ")!");
+            }
+
+            offset += HEADER_SIZE;
+            RecordType type = RecordType.of(body[offset]);
+
+            if (type == null || type == RecordType.GROUP) {
+                throw new IOException("Недопустимый тип записи группы " + body[offset] + " (позиция " + position + ")!");
+            }
+
+            handler.handle(type, new DataInputStream(new ByteArrayInputStream(body, offset + 1, length - 1)));
+
+            offset += length;
+            records++;
+        }
+
+        return records;
+    }
+
+
+    /**
+     * Кодирует запись вместе с заголовком и контрольной суммой.
+     *
+     * @param type   Тип записи.
+     * @param writer Содержимое записи.
+     * @return Запись.
+     */
+    private static byte[] encode(RecordType type, RecordWriter writer) {
+        if (type == null || writer == null) {
+            throw new IllegalArgumentException("Аргументы type и writer не могут быть null!");
+        }
+
+        try {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream(128);
+            DataOutputStream out = new DataOutputStream(bytes);
+
+            out.writeInt(0);
+            out.writeByte(type.getCode());
+            writer.write(out);
+            out.writeInt(0);
+
+            byte[] record = bytes.toByteArray();
+            int length = record.length - HEADER_SIZE - CHECKSUM_SIZE;
+
+            if (length > MAX_RECORD_SIZE) {
+                throw new IllegalArgumentException("Запись журнала слишком большая: " + length + " байт!");
+            }
+
+            CRC32C crc = new CRC32C();
+            crc.update(record, HEADER_SIZE, length);
+
+            ByteBuffer.wrap(record)
+                    .putInt(0, length)
+                    .putInt(record.length - CHECKSUM_SIZE, (int) crc.getValue());
+
+            return record;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+
+    /**
+     * Записи группы, собранные внутри {@link #atomic(Supplier)}, и их изменения в памяти. Как
+     * {@link RecordWriter} пишет содержимое записи группы, как {@link Runnable} применяет изменения.
+     */
+    private static class Group implements RecordWriter, Runnable {
+
+        // Записи группы: [int длина][byte тип][содержимое].
+        private final ByteArrayOutputStream records = new ByteArrayOutputStream(256);
+        private final DataOutputStream out = new DataOutputStream(this.records);
+
+        // Изменения в памяти в порядке добавления записей.
+        private final List<Runnable> applies = new ArrayList<>(4);
+
+
+        private void add(RecordType type, RecordWriter writer, Runnable apply) {
+            if (type == null || writer == null) {
+                throw new IllegalArgumentException("Аргументы type и writer не могут быть null!");
+            }
+
+            if (type == RecordType.GROUP) {
+                throw new IllegalArgumentException("Группа не может содержать группу!");
+            }
+
+            try {
+                ByteArrayOutputStream record = new ByteArrayOutputStream(128);
+                DataOutputStream content = new DataOutputStream(record);
+
+                content.writeByte(type.getCode());
+                writer.write(content);
+
+                this.out.writeInt(record.size());
+                record.writeTo(this.out);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+
+            this.add(apply);
+        }
+
+
+        private void add(Runnable apply) {
+            if (apply != null) {
+                this.applies.add(apply);
+            }
+        }
+
+
+        private boolean isEmpty() {
+            return this.records.size() == 0;
+        }
+
+
+        @Override
+        public void write(DataOutput out) throws IOException {
+            out.write(this.records.toByteArray());
+        }
+
+
+        @Override
+        public void run() {
+            for (Runnable apply : this.applies) {
+                apply.run();
+            }
+        }
+
+    }
+
+
+    /**
+     * Буфер записей с доступом к массиву и возможностью отменить последние записи.
+     */
+    private static class Buffer extends ByteArrayOutputStream {
+
+        private Buffer() {
+            super(64 * 1024);
+        }
+
+
+        private byte[] array() {
+            return this.buf;
+        }
+
+
+        private void truncate(int size) {
+            this.count = size;
+        }
+
+    }
+
+
+    /**
+     * Поток чтения канала с его текущей позиции.
+     */
+    private static class ChannelInput extends InputStream {
+
+        // Канал.
+        private final FileChannel channel;
+
+
+        private ChannelInput(FileChannel channel) {
+            this.channel = channel;
+        }
+
+
+        @Override
+        public int read() throws IOException {
+            byte[] one = new byte[1];
+
+            return this.read(one, 0, 1) < 0 ? -1 : one[0] & 0xFF;
+        }
+
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            return this.channel.read(ByteBuffer.wrap(b, off, len));
+        }
+
+    }
+
+}
@@ -0,0 +1,96 @@
+package repository.journal;
+
+import model.Account;
+import model.Money;
+import repository.AccountRepositoryImpl;
+import repository.CurrencyRepositoryImpl;
+import repository.TransactionRepositoryImpl;
+import repository.UserRepositoryImpl;
+
+import java.io.DataInput;
+import java.io.IOException;
+
+/**
+ * Восстанавливает состояние репозиториев по записям журнала и снимка состояния.
+ */
+public class JournalReplayer implements RecordHandler {
+
+    private final UserRepositoryImpl users;
+    private final AccountRepositoryImpl accounts;
+    private final CurrencyRepositoryImpl currencies;
+    private final TransactionRepositoryImpl transactions;
+
+
+    public JournalReplayer(
+            UserRepositoryImpl users,
+            AccountRepositoryImpl accounts,
+            CurrencyRepositoryImpl currencies,
+            TransactionRepositoryImpl transactions
+    ) {
+        if (users == null || accounts == null || currencies == null || transactions == null) {
+            throw new IllegalArgumentException("Репозитории не могут быть null!");
+        }
+
+        this.users = users;
+        this.accounts = accounts;
+        this.currencies = currencies;
+        this.transactions = transactions;
+    }
+
+
+    /**
+     * Применяет запись журнала или снимка состояния к соответствующему репозиторию.
+     *
+     * <p>Все записи идемпотентны (содержат итоговое состояние, а не приращение), поэтому хвост журнала можно
+     * проигрывать поверх снимка, сделанного без остановки записи.</p>
+     *
+     * @param type Тип записи.
+     * @param in   Содержимое записи.
+     * @throws IOException Ошибка чтения записи.
+     */
+    @Override
+    public void handle(RecordType type, DataInput in) throws IOException {
+        switch (type) {
+            case USER:
+                this.users.restoreUser(Records.readUser(in));
+                break;
+
+            case ACCOUNT:
+                this.accounts.restoreAccount(Records.readAccount(in));
+                break;
+
+            case ACCOUNT_REMOVED:
+                this.accounts.restoreRemoval(in.readInt());
+                break;
+
+            case BALANCE:
+                int id = in.readInt();
+                long balance = in.readLong();
+                Account account = this.accounts.getAccountById(id);
+
+                // Счета может не быть в снимке состояния, если он удален после начала текущего сегмента.
+                if (account != null) {
+                    account.setBalanceMoney(Money.ofMinor(account.getCurrencyCode(), balance));
+                }
+                break;
+
+            case ACCOUNT_SEQUENCE:
+                this.accounts.restoreNextAccountId(in.readInt());
+                break;
+
+            case TRANSACTION:
+                this.transactions.restoreTransaction(Records.readTransaction(in));
+                break;
+
+            case TRANSACTION_WITHOUT_FEE:
+            case TRANSACTION_WITHOUT_AMOUNT_FROM:
+                this.transactions.restoreTransaction(Records.readTransaction(in, type));
+                break;
+
+            case RATE:
+                this.currencies.restoreRate(Records.readRate(in));
+                break;
+        }
+    }
+
+}
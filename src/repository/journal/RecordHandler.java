@@ -0,0 +1,21 @@
+package repository.journal;
+
+import java.io.DataInput;
+import java.io.IOException;
+
+/**
+ * Обработчик записей журнала при восстановлении.
+ */
+@FunctionalInterface
+public interface RecordHandler {
+
+    /**
+     * Обрабатывает запись журнала.
+     *
+     * @param type Тип записи.
+     * @param in   Содержимое записи.
+     * @throws IOException Ошибка чтения записи.
+     */
+    void handle(RecordType type, DataInput in) throws IOException;
+
+}
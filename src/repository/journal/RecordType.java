@@ -0,0 +1,74 @@
+package repository.journal;
+
+/**
+ * Тип записи журнала.
+ */
+public enum RecordType {
+
+    // Пользователь (добавление или изменение).
+    USER(1),
+
+    // Новый счет.
+    ACCOUNT(2),
+
+    // Удаление счета.
+    ACCOUNT_REMOVED(3),
+
+    // Новый баланс счета.
+    BALANCE(4),
+
+    // Транзакция без суммы списания (журналы и снимки до ее появления; только чтение).
+    TRANSACTION_WITHOUT_AMOUNT_FROM(5),
+
+    // Курс валюты.
+    RATE(6),
+
+    // Следующий идентификатор счета (только в снимке состояния).
+    ACCOUNT_SEQUENCE(7),
+
+    // Транзакция без комиссии (журналы и снимки до ее появления; только чтение).
+    TRANSACTION_WITHOUT_FEE(8),
+
+    // Транзакция.
+    TRANSACTION(9),
+
+    // Группа записей одной операции (см. Journal#atomic): записывается и проигрывается целиком.
+    GROUP(10);
+
+
+    // Код типа в журнале.
+    private final byte code;
+
+
+    RecordType(int code) {
+        this.code = (byte) code;
+    }
+
+
+    /**
+     * Возвращает код типа в журнале.
+     *
+     * @return Код типа.
+     */
+    public byte getCode() {
+        return this.code;
+    }
+
+
+    /**
+     * Возвращает тип записи по коду.
+     *
+     * @param code Код типа.
+     * @return Тип записи или {@code null}, если код неизвестен.
+     */
+    public static RecordType of(byte code) {
+        for (RecordType type : values()) {
+            if (type.code == code) {
+                return type;
+            }
+        }
+
+        return null;
+    }
+
+}
@@ -0,0 +1,20 @@
+package repository.journal;
+
+import java.io.DataOutput;
+import java.io.IOException;
+
+/**
+ * Записывает содержимое записи журнала.
+ */
+@FunctionalInterface
+public interface RecordWriter {
+
+    /**
+     * Записывает содержимое записи.
+     *
+     * @param out Поток записи.
+     * @throws IOException Ошибка записи.
+     */
+    void write(DataOutput out) throws IOException;
+
+}
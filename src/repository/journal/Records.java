@@ -0,0 +1,302 @@
+package repository.journal;
+
+import model.*;
+import model.enums.AccountStatus;
+import model.enums.CurrencyCode;
+import model.enums.TransactionType;
+import model.enums.UserRole;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+
+/**
+ * Двоичное представление сущностей в записях журнала.
+ */
+public final class Records {
+
+    private Records() {
+    }
+
+
+    /**
+     * Записывает пользователя.
+     *
+     * @param out  Поток записи.
+     * @param user Пользователь.
+     * @throws IOException Ошибка записи.
+     */
+    public static void writeUser(DataOutput out, User user) throws IOException {
+        out.writeUTF(user.getEmail());
+        out.writeUTF(user.getPassword());
+        out.writeByte(user.getRole().ordinal());
+        writeString(out, user.getFirstName());
+        writeString(out, user.getLastName());
+    }
+
+
+    /**
+     * Читает пользователя.
+     *
+     * @param in Поток чтения.
+     * @return Пользователь.
+     * @throws IOException Ошибка чтения.
+     */
+    public static User readUser(DataInput in) throws IOException {
+        String email = in.readUTF();
+        String password = in.readUTF();
+        UserRole role = UserRole.values()[in.readUnsignedByte()];
+        String firstName = readString(in);
+        String lastName = readString(in);
+
+        return new User(email, password, role, firstName, lastName);
+    }
+
+
+    /**
+     * Записывает счет.
+     *
+     * @param out     Поток записи.
+     * @param account Счет.
+     * @throws IOException Ошибка записи.
+     */
+    public static void writeAccount(DataOutput out, Account account) throws IOException {
+        out.writeInt(account.getId());
+        writeDateTime(out, account.getCreationDate());
+        out.writeByte(account.getStatus().ordinal());
+        out.writeUTF(account.getCurrency());
+        out.writeLong(account.getBalanceMoney().getMinor());
+        out.writeUTF(account.getUserEmail());
+        writeString(out, account.getTitle());
+    }
+
+
+    /**
+     * Читает счет.
+     *
+     * @param in Поток чтения.
+     * @return Счет.
+     * @throws IOException Ошибка чтения.
+     */
+    public static Account readAccount(DataInput in) throws IOException {
+        int id = in.readInt();
+        LocalDateTime creationDate = readDateTime(in);
+        AccountStatus status = AccountStatus.values()[in.readUnsignedByte()];
+        String currency = in.readUTF();
+        long balance = in.readLong();
+        String userEmail = in.readUTF();
+        String title = readString(in);
+
+        return new Account(id, creationDate, status, currency, balance, userEmail, title);
+    }
+
+
+    /**
+     * Записывает баланс счета.
+     *
+     * @param out     Поток записи.
+     * @param account Счет.
+     * @throws IOException Ошибка записи.
+     */
+    public static void writeBalance(DataOutput out, Account account) throws IOException {
+        out.writeInt(account.getId());
+        out.writeLong(account.getBalanceMoney().getMinor());
+    }
+
+
+    /**
+     * Записывает транзакцию.
+     *
+     * @param out         Поток записи.
+     * @param transaction Транзакция.
+     * @throws IOException Ошибка записи.
+     */
+    public static void writeTransaction(DataOutput out, Transaction transaction) throws IOException {
+        out.writeInt(transaction.getId());
+        writeDateTime(out, transaction.getDate());
+        out.writeByte(transaction.getType().ordinal());
+        writeString(out, transaction.getUserEmailFrom());
+        out.writeInt(transaction.getAccountIdFrom());
+        writeString(out, transaction.getCurrencyFrom());
+        writeString(out, transaction.getUserEmailTo());
+        out.writeInt(transaction.getAccountIdTo());
+        writeString(out, transaction.getCurrencyTo());
+        writeDecimal(out, transaction.getAmount());
+        writeDecimal(out, transaction.getCourse());
+        writeString(out, transaction.getComment());
+        out.writeLong(transaction.getRateVersion());
+        writeDecimal(out, transaction.getAmountFrom());
+        out.writeLong(transaction.getFeeMinor());
+    }
+
+
+    /**
+     * Читает транзакцию.
+     *
+     * @param in Поток чтения.
+     * @return Транзакция.
+     * @throws IOException Ошибка чтения.
+     */
+    public static Transaction readTransaction(DataInput in) throws IOException {
+        return readTransaction(in, RecordType.TRANSACTION);
+    }
+
+
+    /**
+     * Читает транзакцию в текущем или прежнем формате.
+     *
+     * @param in     Поток чтения.
+     * @param format Тип записи: {@link RecordType#TRANSACTION}, {@link RecordType#TRANSACTION_WITHOUT_FEE} (без
+     *               комиссии) или {@link RecordType#TRANSACTION_WITHOUT_AMOUNT_FROM} (без суммы списания и
+     *               комиссии).
+     * @return Транзакция.
+     * @throws IOException Ошибка чтения.
+     */
+    public static Transaction readTransaction(DataInput in, RecordType format) throws IOException {
+        int id = in.readInt();
+        LocalDateTime date = readDateTime(in);
+        TransactionType type = TransactionType.values()[in.readUnsignedByte()];
+        String userEmailFrom = readString(in);
+        int accountIdFrom = in.readInt();
+        String currencyFrom = readString(in);
+        String userEmailTo = readString(in);
+        int accountIdTo = in.readInt();
+        String currencyTo = readString(in);
+        BigDecimal amount = readDecimal(in);
+        BigDecimal course = readDecimal(in);
+        String comment = readString(in);
+        long rateVersion = in.readLong();
+        BigDecimal amountFrom = format == RecordType.TRANSACTION_WITHOUT_AMOUNT_FROM ? null : readDecimal(in);
+        BigDecimal fee = format == RecordType.TRANSACTION
+                ? Money.toBigDecimal(in.readLong(), CurrencyCode.scaleOf(currencyTo))
+                : null;
+
+        return new Transaction(
+                id,
+                date,
+                type,
+                userEmailFrom,
+                accountIdFrom,
+                currencyFrom,
+                userEmailTo,
+                accountIdTo,
+                currencyTo,
+                amount,
+                amountFrom,
+                fee,
+                course,
+                comment,
+                rateVersion
+        );
+    }
+
+
+    /**
+     * Записывает курс валюты.
+     *
+     * @param out  Поток записи.
+     * @param rate Курс.
+     * @throws IOException Ошибка записи.
+     */
+    public static void writeRate(DataOutput out, Rate rate) throws IOException {
+        out.writeByte(CurrencyCode.valueOf(rate.getCurrencyCode()).ordinal());
+        writeDecimal(out, rate.getCourse());
+        writeDateTime(out, rate.getTime());
+    }
+
+
+    /**
+     * Читает курс валюты.
+     *
+     * @param in Поток чтения.
+     * @return Курс.
+     * @throws IOException Ошибка чтения.
+     */
+    public static Rate readRate(DataInput in) throws IOException {
+        CurrencyCode code = CurrencyCode.values()[in.readUnsignedByte()];
+        BigDecimal course = readDecimal(in);
+        LocalDateTime time = readDateTime(in);
+
+        return new Rate(code.name(), course, time);
+    }
+
+
+    /**
+     * Записывает строку, которая может быть {@code null}.
+     */
+    public static void writeString(DataOutput out, String value) throws IOException {
+        out.writeBoolean(value != null);
+
+        if (value != null) {
+            out.writeUTF(value);
+        }
+    }
+
+
+    /**
+     * Читает строку, которая может быть {@code null}.
+     */
+    public static String readString(DataInput in) throws IOException {
+        return in.readBoolean() ? in.readUTF() : null;
+    }
+
+
+    /**
+     * Записывает число, которое может быть {@code null}: масштаб и байты немасштабированного значения.
+     */
+    public static void writeDecimal(DataOutput out, BigDecimal value) throws IOException {
+        if (value == null) {
+            out.writeByte(-1);
+            return;
+        }
+
+        byte[] unscaled = value.unscaledValue().toByteArray();
+
+        out.writeByte(unscaled.length);
+        out.write(unscaled);
+        out.writeInt(value.scale());
+    }
+
+
+    /**
+     * Читает число, которое может быть {@code null}.
+     */
+    public static BigDecimal readDecimal(DataInput in) throws IOException {
+        int length = in.readByte();
+
+        if (length < 0) {
+            return null;
+        }
+
+        byte[] unscaled = new byte[length];
+        in.readFully(unscaled);
+
+        return new BigDecimal(new BigInteger(unscaled), in.readInt());
+    }
+
+
+    /**
+     * Записывает дату и время: день от эпохи и наносекунда дня.
+     */
+    public static void writeDateTime(DataOutput out, LocalDateTime value) throws IOException {
+        out.writeLong(value.toLocalDate().toEpochDay());
+        out.writeLong(value.toLocalTime().toNanoOfDay());
+    }
+
+
+    /**
+     * Читает дату и время.
+     */
+    public static LocalDateTime readDateTime(DataInput in) throws IOException {
+        LocalDate date = LocalDate.ofEpochDay(in.readLong());
+        LocalTime time = LocalTime.ofNanoOfDay(in.readLong());
+
+        return LocalDateTime.of(date, time);
+    }
+
+}
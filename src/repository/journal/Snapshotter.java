@@ -0,0 +1,315 @@
+package repository.journal;
+
+import model.Account;
+import model.Rate;
+import model.Transaction;
+import model.User;
+import repository.AccountRepositoryImpl;
+import repository.CurrencyRepositoryImpl;
+import repository.TransactionRepositoryImpl;
+import repository.UserRepositoryImpl;
+
+import java.io.*;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.CRC32C;
+import java.util.zip.CheckedInputStream;
+import java.util.zip.CheckedOutputStream;
+
+/**
+ * Снимки состояния репозиториев, ограничивающие время старта: при старте загружается последний снимок и
+ * проигрывается только хвост журнала после него.
+ *
+ * <p>Снимок делается без остановки записи. Сначала журнал переходит на новый сегмент
+ * ({@link Journal#rotate()}), затем состояние репозиториев сериализуется в фоне, пока операции продолжают
+ * писать в новый сегмент. Снимок может захватить часть изменений из нового сегмента, но записи журнала
+ * идемпотентны, поэтому проигрывание хвоста поверх снимка дает то же состояние. После того как снимок записан
+ * на диск, сегменты до него удаляются.</p>
+ *
+ * <p>Формат файла: {@code [int MAGIC][int VERSION][long сегмент]}, затем записи {@code [byte тип][содержимое]}
+ * в формате журнала, завершающий байт {@code 0} и {@code [int CRC32C]} всего предыдущего содержимого.</p>
+ */
+public class Snapshotter {
+
+    // Сигнатура файла снимка.
+    private static final int MAGIC = 0x45585353;
+
+    // Версия формата файла снимка.
+    private static final int VERSION = 1;
+
+    // Признак конца записей снимка.
+    private static final byte END = 0;
+
+    // Имя файла снимка в каталоге журнала.
+    private static final String FILE_NAME = "snapshot.bin";
+
+    private final Journal journal;
+    private final UserRepositoryImpl users;
+    private final AccountRepositoryImpl accounts;
+    private final CurrencyRepositoryImpl currencies;
+    private final TransactionRepositoryImpl transactions;
+
+    // Файл снимка.
+    private final Path file;
+
+    // Планировщик периодических снимков (null, если не запущен).
+    private ScheduledExecutorService scheduler;
+
+
+    /**
+     * Конструктор для создания снимков состояния репозиториев, которые пишут в указанный журнал.
+     * Снимок хранится в каталоге журнала.
+     */
+    public Snapshotter(
+            Journal journal,
+            UserRepositoryImpl users,
+            AccountRepositoryImpl accounts,
+            CurrencyRepositoryImpl currencies,
+            TransactionRepositoryImpl transactions
+    ) {
+        if (journal == null) {
+            throw new IllegalArgumentException("Аргумент journal не может быть null!");
+        }
+
+        if (users == null || accounts == null || currencies == null || transactions == null) {
+            throw new IllegalArgumentException("Репозитории не могут быть null!");
+        }
+
+        this.journal = journal;
+        this.users = users;
+        this.accounts = accounts;
+        this.currencies = currencies;
+        this.transactions = transactions;
+        this.file = journal.getDirectory().resolve(FILE_NAME);
+    }
+
+
+    /**
+     * Возвращает файл снимка.
+     *
+     * @return Файл снимка.
+     */
+    public Path getFile() {
+        return this.file;
+    }
+
+
+    /**
+     * Восстанавливает состояние при старте: загружает последний снимок (если он есть) и проигрывает сегменты
+     * журнала, начиная с сегмента снимка.
+     *
+     * @return Количество восстановленных записей (снимка и журнала).
+     * @throws IOException Ошибка чтения или повреждение снимка либо журнала.
+     */
+    public long restore() throws IOException {
+        JournalReplayer replayer = new JournalReplayer(this.users, this.accounts, this.currencies, this.transactions);
+
+        if (!Files.exists(this.file)) {
+            return this.journal.replay(replayer);
+        }
+
+        this.verify();
+
+        long records = 0;
+        long segment;
+
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(this.file), 64 * 1024))) {
+            in.readInt();
+            in.readInt();
+            segment = in.readLong();
+
+            for (byte code = in.readByte(); code != END; code = in.readByte()) {
+                RecordType type = RecordType.of(code);
+
+                if (type == null) {
+                    throw new IOException("Неизвестный тип записи снимка " + code + "!");
+                }
+
+                replayer.handle(type, in);
+                records++;
+            }
+        }
+
+        return records + this.journal.replay(replayer, segment);
+    }
+
+
+    /**
+     * Делает снимок состояния и удаляет сегменты журнала, которые он покрывает. Операции с репозиториями при
+     * этом не останавливаются.
+     *
+     * @return Количество записей в снимке.
+     * @throws IOException Ошибка записи снимка.
+     */
+    public synchronized long snapshot() throws IOException {
+        long segment = this.journal.rotate();
+        long records = 0;
+
+        Path temp = this.file.resolveSibling(FILE_NAME + ".tmp");
+        CRC32C crc = new CRC32C();
+
+        try (FileChannel channel = FileChannel.open(
+                temp,
+                StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING,
+                StandardOpenOption.WRITE
+        )) {
+            DataOutputStream out = new DataOutputStream(new CheckedOutputStream(
+                    new BufferedOutputStream(Channels.newOutputStream(channel), 64 * 1024),
+                    crc
+            ));
+
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeLong(segment);
+
+            for (User user : this.users.getAllUsers()) {
+                out.writeByte(RecordType.USER.getCode());
+                Records.writeUser(out, user);
+                records++;
+            }
+
+            for (Account account : this.accounts.getAllAccounts()) {
+                out.writeByte(RecordType.ACCOUNT.getCode());
+                Records.writeAccount(out, account);
+                records++;
+            }
+
+            // Счетчик читается после счетов, поэтому он не меньше идентификатора любого счета в снимке.
+            out.writeByte(RecordType.ACCOUNT_SEQUENCE.getCode());
+            out.writeInt(this.accounts.getNextAccountId());
+            records++;
+
+            for (Rate rate : this.currencies.getAllRates()) {
+                out.writeByte(RecordType.RATE.getCode());
+                Records.writeRate(out, rate);
+                records++;
+            }
+
+            for (Transaction transaction : this.transactions.getAllTransactions()) {
+                out.writeByte(RecordType.TRANSACTION.getCode());
+                Records.writeTransaction(out, transaction);
+                records++;
+            }
+
+            out.writeByte(END);
+            out.flush();
+
+            new DataOutputStream(Channels.newOutputStream(channel)).writeInt((int) crc.getValue());
+            channel.force(true);
+        }
+
+        Files.move(temp, this.file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        this.journal.deleteSegmentsBefore(segment);
+
+        return records;
+    }
+
+
+    /**
+     * Запускает периодические снимки состояния в фоновом потоке.
+     *
+     * @param periodMillis Период в миллисекундах.
+     */
+    public synchronized void start(long periodMillis) {
+        if (this.scheduler != null) {
+            return;
+        }
+
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "journal-snapshot");
+            thread.setDaemon(true);
+            return thread;
+        });
+
+        this.scheduler.scheduleWithFixedDelay(
+                () -> {
+                    try {
+                        this.snapshot();
+                    } catch (IOException | RuntimeException e) {
+                        // Следующая попытка - через период; журнал при этом продолжает расти. Непроверяемое
+                        // исключение (например, ошибка ротации журнала) иначе отменило бы все следующие снимки.
+                        System.err.println("Не удалось сохранить снимок состояния: " + e.getMessage());
+                    }
+                },
+                periodMillis,
+                periodMillis,
+                TimeUnit.MILLISECONDS
+        );
+    }
+
+
+    /**
+     * Останавливает периодические снимки состояния.
+     */
+    public void stop() {
+        ScheduledExecutorService scheduler;
+
+        synchronized (this) {
+            scheduler = this.scheduler;
+            this.scheduler = null;
+        }
+
+        if (scheduler == null) {
+            return;
+        }
+
+        scheduler.shutdown();
+
+        try {
+            scheduler.awaitTermination(1, TimeUnit.MINUTES);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+
+    /**
+     * Проверяет сигнатуру, версию и контрольную сумму файла снимка.
+     *
+     * @throws IOException Если файл поврежден.
+     */
+    private void verify() throws IOException {
+        long size = Files.size(this.file);
+
+        if (size < Integer.BYTES * 3 + Long.BYTES + 1) {
+            throw new IOException("Снимок состояния " + this.file + " поврежден!");
+        }
+
+        CRC32C crc = new CRC32C();
+
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(this.file), 64 * 1024))) {
+            CheckedInputStream checked = new CheckedInputStream(in, crc);
+            DataInputStream header = new DataInputStream(checked);
+
+            if (header.readInt() != MAGIC || header.readInt() != VERSION) {
+                throw new IOException("Неизвестный формат снимка состояния " + this.file + "!");
+            }
+
+            byte[] chunk = new byte[64 * 1024];
+            long remaining = size - Integer.BYTES * 3;
+
+            while (remaining > 0) {
+                int read = checked.read(chunk, 0, (int) Math.min(chunk.length, remaining));
+
+                if (read < 0) {
+                    throw new EOFException();
+                }
+
+                remaining -= read;
+            }
+
+            if (in.readInt() != (int) crc.getValue()) {
+                throw new IOException("Снимок состояния " + this.file + " поврежден: неверная контрольная сумма!");
+            }
+        }
+    }
+
+}
@@ -0,0 +1,383 @@
+package server;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import model.Account;
+import model.Transaction;
+import model.enums.CurrencyCode;
+import service.interfaces.MainService;
+import utils.exceptions.CurrencyCodeValidateExeption;
+import utils.exceptions.EmailValidateException;
+import utils.exceptions.PasswordValidateException;
+import utils.exceptions.UserIsExistsExeption;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.lang.reflect.Method;
+import java.math.BigDecimal;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * HTTP-интерфейс к {@link MainService}: параметры запроса передаются в строке запроса или телом
+ * {@code application/x-www-form-urlencoded}, ответы - JSON. Операции от имени пользователя требуют токен
+ * сессии ({@code POST /login}) в заголовке {@code Authorization: Bearer <токен>} или в параметре
+ * {@code token}.
+ *
+ * <ul>
+ *     <li>{@code POST /register} - {@code email}, {@code password};</li>
+ *     <li>{@code POST /login} - {@code email}, {@code password}, ответ {@code {"token": ...}};</li>
+ *     <li>{@code POST /logout};</li>
+ *     <li>{@code GET /accounts}, {@code POST /accounts} - {@code title}, {@code currency};</li>
+ *     <li>{@code POST /deposit}, {@code POST /withdrawal} - {@code account}, {@code amount};</li>
+ *     <li>{@code POST /exchange} - {@code from}, {@code to}, {@code amount};</li>
+ *     <li>{@code /deposit}, {@code /withdrawal} и {@code /exchange} отвечают {@code {"ok": true, "transaction": ...}}
+ *     и принимают необязательный ключ идемпотентности (заголовок {@code Idempotency-Key} или параметр
+ *     {@code idempotencyKey}): повтор запроса с тем же ключом возвращает исходную транзакцию;</li>
+ *     <li>{@code GET /history} - {@code account};</li>
+ *     <li>{@code GET /rates} - {@code base} (по умолчанию USD).</li>
+ * </ul>
+ *
+ * <p>Соединения принимает один поток {@link HttpServer}; простаивающие keep-alive соединения потоков не
+ * занимают, а запросы выполняются в пуле обработчиков. На JDK 21+ это поток-на-запрос на виртуальных потоках,
+ * на более ранних JDK - пул платформенных потоков фиксированного размера.</p>
+ */
+public class ExchangeServer {
+
+    // Максимальный размер тела запроса.
+    private static final int MAX_BODY_BYTES = 64 * 1024;
+
+    // Очередь входящих соединений.
+    private static final int BACKLOG = 4096;
+
+    // Параметр ключа идемпотентности (или заголовок Idempotency-Key).
+    private static final String IDEMPOTENCY_KEY = "idempotencyKey";
+
+    private final MainService service;
+    private final HttpServer server;
+    private final ExecutorService executor;
+
+
+    /**
+     * Конструктор для создания сервера (сервер не запускается).
+     *
+     * @param service Сервис.
+     * @param port    Порт ({@code 0} - любой свободный).
+     * @param threads Количество потоков обработки запросов (если виртуальные потоки недоступны).
+     * @throws IOException Ошибка открытия порта.
+     */
+    public ExchangeServer(MainService service, int port, int threads) throws IOException {
+        if (service == null) {
+            throw new IllegalArgumentException("Аргумент service не может быть null!");
+        }
+
+        if (threads <= 0) {
+            throw new IllegalArgumentException("Количество потоков должно быть больше нуля!");
+        }
+
+        this.service = service;
+        this.executor = newExecutor(threads);
+        this.server = HttpServer.create(new InetSocketAddress(port), BACKLOG);
+        this.server.setExecutor(this.executor);
+        this.server.createContext("/", this::handle);
+    }
+
+
+    /**
+     * Запускает сервер.
+     */
+    public void start() {
+        this.server.start();
+    }
+
+
+    /**
+     * Останавливает сервер, давая текущим запросам завершиться.
+     *
+     * @param delaySeconds Максимальное время ожидания в секундах.
+     */
+    public void stop(int delaySeconds) {
+        this.server.stop(delaySeconds);
+        this.executor.shutdown();
+    }
+
+
+    /**
+     * Возвращает порт сервера.
+     *
+     * @return Порт.
+     */
+    public int getPort() {
+        return this.server.getAddress().getPort();
+    }
+
+
+    /**
+     * Обрабатывает запрос и отправляет ответ. Ошибки сервиса переводятся в коды HTTP: нет открытой сессии - 401,
+     * нет доступа - 403, некорректные данные - 400, пользователь уже существует - 409.
+     */
+    private void handle(HttpExchange exchange) throws IOException {
+        int status;
+        String body;
+        String token = null;
+
+        try {
+            Map<String, String> params = this.params(exchange);
+            String route = exchange.getRequestMethod() + " " + exchange.getRequestURI().getPath();
+
+            token = this.token(exchange, params);
+
+            String idempotencyKey = exchange.getRequestHeaders().getFirst("Idempotency-Key");
+            if (idempotencyKey != null) {
+                params.put(IDEMPOTENCY_KEY, idempotencyKey.trim());
+            }
+            status = 200;
+            body = this.route(route, params, token);
+
+            if (body == null) {
+                status = 404;
+                body = error("Неизвестный запрос: " + route);
+            }
+        } catch (SecurityException e) {
+            status = this.service.getSessionUser(token) == null ? 401 : 403;
+            body = error(e.getMessage());
+        } catch (UserIsExistsExeption e) {
+            status = 409;
+            body = error(e.getMessage());
+        } catch (IllegalArgumentException
+                 | EmailValidateException
+                 | PasswordValidateException
+                 | CurrencyCodeValidateExeption e) {
+            status = 400;
+            body = error(e.getMessage());
+        } catch (Exception e) {
+            status = 500;
+            body = error(e.getMessage());
+        }
+
+        byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "application/json; charset=utf-8");
+        exchange.sendResponseHeaders(status, bytes.length);
+
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(bytes);
+        }
+    }
+
+
+    /**
+     * Выполняет операцию по маршруту.
+     *
+     * @return Тело ответа или {@code null}, если маршрут неизвестен.
+     */
+    private String route(String route, Map<String, String> params, String token) throws Exception {
+        Map<String, Object> result = new LinkedHashMap<>();
+
+        switch (route) {
+            case "POST /register":
+                this.service.addUser(required(params, "email"), required(params, "password"));
+                result.put("ok", true);
+                break;
+
+            case "POST /login":
+                result.put("token", this.service.openSession(required(params, "email"), required(params, "password")).getToken());
+                break;
+
+            case "POST /logout":
+                this.service.closeSession(token);
+                result.put("ok", true);
+                break;
+
+            case "GET /accounts":
+                List<String> accounts = new ArrayList<>();
+                for (Account account : this.service.getAllAccountsByActiveUser(token)) {
+                    accounts.add(Json.account(account));
+                }
+                return Json.array(accounts);
+
+            case "POST /accounts":
+                return Json.account(this.service.creatAccount(
+                        token,
+                        params.getOrDefault("title", ""),
+                        required(params, "currency")
+                ));
+
+            case "POST /deposit":
+                return transaction(this.service.deposit(
+                        token,
+                        integer(params, "account"),
+                        decimal(params, "amount"),
+                        params.get(IDEMPOTENCY_KEY)
+                ));
+
+            case "POST /withdrawal":
+                return transaction(this.service.withdrawal(
+                        token,
+                        integer(params, "account"),
+                        decimal(params, "amount"),
+                        params.get(IDEMPOTENCY_KEY)
+                ));
+
+            case "POST /exchange":
+                return transaction(this.service.exchange(
+                        token,
+                        integer(params, "from"),
+                        integer(params, "to"),
+                        decimal(params, "amount"),
+                        params.get(IDEMPOTENCY_KEY)
+                ));
+
+            case "GET /history":
+                List<String> transactions = new ArrayList<>();
+                for (Transaction transaction : this.service.getTransactionsByAccountId(token, integer(params, "account"))) {
+                    transactions.add(Json.transaction(transaction));
+                }
+                return Json.array(transactions);
+
+            case "GET /rates":
+                String base = params.getOrDefault("base", CurrencyCode.USD.name()).toUpperCase();
+                Map<String, Object> rates = new LinkedHashMap<>();
+
+                for (CurrencyCode code : CurrencyCode.values()) {
+                    BigDecimal course = this.service.crossCourse(code.name(), base);
+
+                    if (course != null) {
+                        rates.put(code.name(), course);
+                    }
+                }
+
+                result.put("base", base);
+                result.put("rates", new Json.Raw(Json.object(rates)));
+                break;
+
+            default:
+                return null;
+        }
+
+        return Json.object(result);
+    }
+
+
+    /**
+     * Собирает параметры строки запроса и тела формы.
+     */
+    private Map<String, String> params(HttpExchange exchange) throws IOException {
+        Map<String, String> params = new HashMap<>();
+
+        parseForm(exchange.getRequestURI().getRawQuery(), params);
+
+        try (InputStream in = exchange.getRequestBody()) {
+            byte[] body = in.readNBytes(MAX_BODY_BYTES + 1);
+
+            if (body.length > MAX_BODY_BYTES) {
+                throw new IllegalArgumentException("Слишком большое тело запроса!");
+            }
+
+            parseForm(new String(body, StandardCharsets.UTF_8), params);
+        }
+
+        return params;
+    }
+
+
+    /**
+     * Возвращает токен сессии из заголовка {@code Authorization: Bearer} или параметра {@code token}.
+     */
+    private String token(HttpExchange exchange, Map<String, String> params) {
+        String authorization = exchange.getRequestHeaders().getFirst("Authorization");
+
+        if (authorization != null && authorization.startsWith("Bearer ")) {
+            return authorization.substring("Bearer ".length()).trim();
+        }
+
+        return params.get("token");
+    }
+
+
+    private static void parseForm(String form, Map<String, String> params) {
+        if (form == null || form.isEmpty()) {
+            return;
+        }
+
+        for (String pair : form.split("&")) {
+            int separator = pair.indexOf('=');
+
+            if (separator > 0) {
+                params.put(
+                        URLDecoder.decode(pair.substring(0, separator), StandardCharsets.UTF_8),
+                        URLDecoder.decode(pair.substring(separator + 1), StandardCharsets.UTF_8)
+                );
+            }
+        }
+    }
+
+
+    private static String required(Map<String, String> params, String name) {
+        String value = params.get(name);
+
+        if (value == null || value.isEmpty()) {
+            throw new IllegalArgumentException("Не задан параметр " + name + "!");
+        }
+
+        return value;
+    }
+
+
+    private static int integer(Map<String, String> params, String name) {
+        try {
+            return Integer.parseInt(required(params, name));
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Параметр " + name + " должен быть целым числом!");
+        }
+    }
+
+
+    private static BigDecimal decimal(Map<String, String> params, String name) {
+        try {
+            return new BigDecimal(required(params, name));
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Параметр " + name + " должен быть числом!");
+        }
+    }
+
+
+    private static String error(String message) {
+        return Json.object(Collections.singletonMap("error", message));
+    }
+
+
+    private static String transaction(Transaction transaction) {
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("ok", true);
+        result.put("transaction", new Json.Raw(Json.transaction(transaction)));
+
+        return Json.object(result);
+    }
+
+
+    /**
+     * Создает пул обработчиков: виртуальный поток на запрос, если JDK их поддерживает, иначе пул платформенных
+     * потоков.
+     */
+    private static ExecutorService newExecutor(int threads) {
+        try {
+            Method virtual = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+            return (ExecutorService) virtual.invoke(null);
+        } catch (ReflectiveOperationException e) {
+            AtomicInteger counter = new AtomicInteger();
+
+            return Executors.newFixedThreadPool(threads, runnable -> {
+                Thread thread = new Thread(runnable, "http-worker-" + counter.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+    }
+
+}
@@ -0,0 +1,176 @@
+package server;
+
+import model.Account;
+import model.Transaction;
+
+import java.math.BigDecimal;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Минимальная запись JSON для ответов сервера (без внешних библиотек).
+ */
+public final class Json {
+
+    private Json() {
+    }
+
+
+    /**
+     * Записывает объект из пар ключ-значение. Числа, логические значения, {@code null} и {@link Raw}
+     * записываются как есть, остальные значения - строками.
+     *
+     * @param fields Поля объекта в порядке записи.
+     * @return JSON.
+     */
+    public static String object(Map<String, ?> fields) {
+        StringBuilder json = new StringBuilder("{");
+
+        for (Map.Entry<String, ?> field : fields.entrySet()) {
+            if (json.length() > 1) {
+                json.append(',');
+            }
+
+            string(json, field.getKey()).append(':');
+            value(json, field.getValue());
+        }
+
+        return json.append('}').toString();
+    }
+
+
+    /**
+     * Записывает счет.
+     *
+     * @param account Счет.
+     * @return JSON.
+     */
+    public static String account(Account account) {
+        StringBuilder json = new StringBuilder("{\"id\":").append(account.getId());
+
+        json.append(",\"title\":");
+        string(json, account.getTitle());
+        json.append(",\"currency\":");
+        string(json, account.getCurrency());
+        json.append(",\"balance\":").append(account.getBalance().toPlainString());
+        json.append(",\"status\":");
+        string(json, String.valueOf(account.getStatus()));
+
+        return json.append('}').toString();
+    }
+
+
+    /**
+     * Записывает транзакцию.
+     *
+     * @param transaction Транзакция.
+     * @return JSON.
+     */
+    public static String transaction(Transaction transaction) {
+        StringBuilder json = new StringBuilder("{\"id\":").append(transaction.getId());
+
+        json.append(",\"date\":");
+        string(json, String.valueOf(transaction.getDate()));
+        json.append(",\"type\":");
+        string(json, String.valueOf(transaction.getType()));
+        json.append(",\"accountFrom\":").append(transaction.getAccountIdFrom());
+        json.append(",\"currencyFrom\":");
+        string(json, transaction.getCurrencyFrom());
+        json.append(",\"accountTo\":").append(transaction.getAccountIdTo());
+        json.append(",\"currencyTo\":");
+        string(json, transaction.getCurrencyTo());
+        json.append(",\"amount\":").append(transaction.getAmount().toPlainString());
+        json.append(",\"course\":");
+        value(json, transaction.getCourse());
+        json.append(",\"comment\":");
+        string(json, transaction.getComment());
+
+        return json.append('}').toString();
+    }
+
+
+    /**
+     * Записывает массив из уже готовых JSON-элементов.
+     *
+     * @param items Элементы.
+     * @return JSON.
+     */
+    public static String array(List<String> items) {
+        return "[" + String.join(",", items) + "]";
+    }
+
+
+    /**
+     * Готовый JSON, который записывается в объект без экранирования.
+     */
+    public static final class Raw {
+
+        private final String json;
+
+
+        public Raw(String json) {
+            this.json = json;
+        }
+
+    }
+
+
+    private static void value(StringBuilder json, Object value) {
+        if (value == null) {
+            json.append("null");
+        } else if (value instanceof Raw) {
+            json.append(((Raw) value).json);
+        } else if (value instanceof BigDecimal) {
+            json.append(((BigDecimal) value).toPlainString());
+        } else if (value instanceof Number || value instanceof Boolean) {
+            json.append(value);
+        } else {
+            string(json, value.toString());
+        }
+    }
+
+
+    private static StringBuilder string(StringBuilder json, String value) {
+        if (value == null) {
+            return json.append("null");
+        }
+
+        json.append('"');
+
+        for (int i = 0; i < value.length(); i++) {
+            char ch = value.charAt(i);
+
+            switch (ch) {
+                case '"':
+                    json.append("\\\"");
+                    break;
+
+                case '\\':
+                    json.append("\\\\");
+                    break;
+
+                case '\n':
+                    json.append("\\n");
+                    break;
+
+                case '\r':
+                    json.append("\\r");
+                    break;
+
+                case '\t':
+                    json.append("\\t");
+                    break;
+
+                default:
+                    if (ch < 0x20) {
+                        json.append(String.format("\\u%04x", (int) ch));
+                    } else {
+                        json.append(ch);
+                    }
+            }
+        }
+
+        return json.append('"');
+    }
+
+}
@@ -0,0 +1,179 @@
+package service;
+
+import java.util.Arrays;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Набор блокировок счетов, разделенных на полосы (lock striping).
+ *
+ * <p>Счет с идентификатором {@code id} защищается блокировкой {@code id % stripes}. Несколько блокировок
+ * всегда захватываются в порядке возрастания номера полосы, поэтому взаимная блокировка невозможна.</p>
+ */
+public class AccountLocks {
+
+    // Количество полос по умолчанию.
+    public static final int DEFAULT_STRIPES = 64;
+
+    // Блокировки полос.
+    private final ReentrantLock[] locks;
+
+
+    public AccountLocks() {
+        this(DEFAULT_STRIPES);
+    }
+
+
+    /**
+     * Конструктор для создания набора блокировок с указанным количеством полос.
+     *
+     * @param stripes Количество полос.
+     */
+    public AccountLocks(int stripes) {
+        if (stripes <= 0) {
+            throw new IllegalArgumentException("Количество полос должно быть больше нуля!");
+        }
+
+        this.locks = new ReentrantLock[stripes];
+
+        for (int i = 0; i < stripes; i++) {
+            this.locks[i] = new ReentrantLock();
+        }
+    }
+
+
+    /**
+     * Захватывает блокировку счета.
+     *
+     * @param accountId Идентификатор счета.
+     * @return Время ожидания блокировки в наносекундах ({@code 0}, если блокировка была свободна).
+     */
+    public long lock(int accountId) {
+        return acquire(this.locks[this.stripe(accountId)]);
+    }
+
+
+    /**
+     * Освобождает блокировку счета.
+     *
+     * @param accountId Идентификатор счета.
+     */
+    public void unlock(int accountId) {
+        this.locks[this.stripe(accountId)].unlock();
+    }
+
+
+    /**
+     * Захватывает блокировки двух счетов в порядке возрастания номера полосы.
+     *
+     * @param accountId1 Идентификатор первого счета.
+     * @param accountId2 Идентификатор второго счета.
+     * @return Время ожидания блокировок в наносекундах.
+     */
+    public long lock(int accountId1, int accountId2) {
+        int stripe1 = this.stripe(accountId1);
+        int stripe2 = this.stripe(accountId2);
+
+        long wait = acquire(this.locks[Math.min(stripe1, stripe2)]);
+
+        if (stripe1 != stripe2) {
+            wait += acquire(this.locks[Math.max(stripe1, stripe2)]);
+        }
+
+        return wait;
+    }
+
+
+    /**
+     * Освобождает блокировки двух счетов, захваченные {@link #lock(int, int)}.
+     *
+     * @param accountId1 Идентификатор первого счета.
+     * @param accountId2 Идентификатор второго счета.
+     */
+    public void unlock(int accountId1, int accountId2) {
+        int stripe1 = this.stripe(accountId1);
+        int stripe2 = this.stripe(accountId2);
+
+        if (stripe1 != stripe2) {
+            this.locks[Math.max(stripe1, stripe2)].unlock();
+        }
+
+        this.locks[Math.min(stripe1, stripe2)].unlock();
+    }
+
+
+    /**
+     * Захватывает блокировки нескольких счетов: каждую полосу один раз, в порядке возрастания номера полосы.
+     *
+     * @param accountIds Идентификаторы счетов (в любом порядке, возможны повторы).
+     * @return Время ожидания блокировок в наносекундах.
+     */
+    public long lockAll(int[] accountIds) {
+        int[] stripes = this.stripes(accountIds);
+        long wait = 0;
+        int locked = 0;
+
+        try {
+            for (int stripe : stripes) {
+                wait += acquire(this.locks[stripe]);
+                locked++;
+            }
+        } catch (RuntimeException | Error e) {
+            for (int i = locked - 1; i >= 0; i--) {
+                this.locks[stripes[i]].unlock();
+            }
+
+            throw e;
+        }
+
+        return wait;
+    }
+
+
+    /**
+     * Освобождает блокировки, захваченные {@link #lockAll(int[])} с теми же идентификаторами счетов.
+     *
+     * @param accountIds Идентификаторы счетов.
+     */
+    public void unlockAll(int[] accountIds) {
+        int[] stripes = this.stripes(accountIds);
+
+        for (int i = stripes.length - 1; i >= 0; i--) {
+            this.locks[stripes[i]].unlock();
+        }
+    }
+
+
+    /**
+     * Захватывает блокировку; время отсчитывается, только если блокировка занята.
+     */
+    private static long acquire(ReentrantLock lock) {
+        if (lock.tryLock()) {
+            return 0;
+        }
+
+        long start = System.nanoTime();
+        lock.lock();
+
+        return System.nanoTime() - start;
+    }
+
+
+    /**
+     * Возвращает номера полос счетов без повторов в порядке возрастания.
+     */
+    private int[] stripes(int[] accountIds) {
+        int[] stripes = new int[accountIds.length];
+
+        for (int i = 0; i < accountIds.length; i++) {
+            stripes[i] = this.stripe(accountIds[i]);
+        }
+
+        return Arrays.stream(stripes).sorted().distinct().toArray();
+    }
+
+
+    private int stripe(int accountId) {
+        return Math.floorMod(accountId, this.locks.length);
+    }
+
+}
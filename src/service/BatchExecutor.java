@@ -0,0 +1,554 @@
+package service;
+
+import model.Account;
+import model.BatchCommand;
+import model.BatchResult;
+import model.CrossRate;
+import model.Money;
+import model.Transaction;
+import model.enums.TransactionType;
+import repository.interfaces.AccountRepository;
+import repository.interfaces.TransactionRepository;
+import repository.journal.Journal;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+/**
+ * Выполнение операций со счетами (пополнение, снятие, обмен): одиночных и пакетом за один вызов. Правила
+ * операций (владелец счета, курс обмена, комиссия, проверка средств, транзакция) заданы только здесь, поэтому
+ * исполнение на блокировках счетов ({@link MainServiceImpl}) и однопоточный исполнитель ({@link LedgerEngine})
+ * не расходятся.
+ *
+ * <p>Одиночная операция выполняется так же в два шага: {@link #prepare(String, BatchCommand)} и
+ * {@link #execute(Item)}.</p>
+ *
+ * <p>Пакет выполняется в два шага. {@link #prepare(String, List)} проверяет все операции без изменения
+ * состояния: счета, владельца, курс обмена, суммы и комиссии. {@link #execute(Plan, boolean, Consumer)}
+ * применяет операции по порядку к рабочей копии балансов и только затем записывает новые балансы (по одному
+ * {@code updateBalance} на счет) и все транзакции одним {@link TransactionRepository#createTransactions(List)}.
+ * Вызывающий код отвечает за исключительный доступ к счетам пакета на время {@code execute}: блокировки
+ * {@link AccountLocks#lockAll(int[])} или поток {@link LedgerEngine}.</p>
+ *
+ * <p>Если задан журнал, балансы и транзакции одной операции (или одного пакета) записываются в него одной
+ * группой {@link Journal#atomic(Supplier)}: после сбоя не остается операции, записанной наполовину.</p>
+ */
+class BatchExecutor {
+
+    // Комиссия за операцию в базисных пунктах (200 б.п. = 2%).
+    private static final long FEE_BASIS_POINTS = 200;
+
+    private final AccountRepository repoAccount;
+    private final TransactionRepository repoTransaction;
+    private final CrossRateMatrix crossRates;
+
+    // Журнал репозиториев или null, если репозитории не журналируются.
+    private final Journal journal;
+
+
+    BatchExecutor(
+            AccountRepository repoAccount,
+            TransactionRepository repoTransaction,
+            CrossRateMatrix crossRates,
+            Journal journal
+    ) {
+        this.repoAccount = repoAccount;
+        this.repoTransaction = repoTransaction;
+        this.crossRates = crossRates;
+        this.journal = journal;
+    }
+
+
+    /**
+     * Выполняет запись одной операции одной группой журнала (без журнала - просто выполняет).
+     *
+     * @param write Запись операции.
+     * @param <T>   Тип результата.
+     * @return Результат записи.
+     */
+    <T> T atomic(Supplier<T> write) {
+        return this.journal == null ? write.get() : this.journal.atomic(write);
+    }
+
+
+    /**
+     * Проверяет одиночную операцию и рассчитывает ее суммы и комиссию без изменения состояния.
+     *
+     * @param userEmail Email пользователя.
+     * @param command   Операция.
+     * @return Операция с рассчитанными суммами.
+     * @throws IllegalArgumentException Если счет не найден, сумма некорректна или курс обмена неизвестен.
+     * @throws SecurityException        Если счет списания принадлежит другому пользователю.
+     */
+    Item prepare(String userEmail, BatchCommand command) {
+        Item item = new Item(userEmail, command);
+        this.prepare(item);
+
+        return item;
+    }
+
+
+    /**
+     * Применяет одиночную операцию: проверяет средства, сохраняет новые балансы и создает транзакцию.
+     * Вызывающий код отвечает за исключительный доступ к счетам операции.
+     *
+     * @param item Операция, проверенная {@link #prepare(String, BatchCommand)}.
+     * @return Транзакция операции.
+     * @throws IllegalArgumentException Если счет удален после проверки или средств недостаточно.
+     */
+    Transaction execute(Item item) {
+        int to = item.from == item.to ? 0 : 1;
+        long[] balances = {item.from.getBalanceMoney().getMinor(), item.to.getBalanceMoney().getMinor()};
+
+        this.apply(item, balances, 0, to);
+
+        return this.atomic(() -> this.write(item, balances, to));
+    }
+
+
+    /**
+     * Сохраняет новые балансы одиночной операции и создает ее транзакцию.
+     */
+    private Transaction write(Item item, long[] balances, int to) {
+        item.from.setBalanceMoney(Money.ofMinor(item.from.getCurrencyCode(), balances[0]));
+        this.repoAccount.updateBalance(item.from);
+
+        if (to != 0) {
+            item.to.setBalanceMoney(Money.ofMinor(item.to.getCurrencyCode(), balances[to]));
+            this.repoAccount.updateBalance(item.to);
+        }
+
+        return this.repoTransaction.createTransaction(
+                item.command.getType(),
+                item.userEmail,
+                item.from.getId(),
+                item.from.getCurrency(),
+                item.userEmail,
+                item.to.getId(),
+                item.to.getCurrency(),
+                item.net.toBigDecimal(),
+                item.rate == null ? null : item.debit.toBigDecimal(),
+                item.fee.toBigDecimal(),
+                item.rate == null ? null : item.rate.getCourse(),
+                item.rate == null ? 0 : item.rate.getVersion()
+        );
+    }
+
+
+    /**
+     * Проверяет операции пакета и рассчитывает суммы и комиссии.
+     *
+     * @param userEmail Email пользователя.
+     * @param commands  Операции.
+     * @return План пакета; ошибки проверки записаны в операции плана.
+     */
+    Plan prepare(String userEmail, List<BatchCommand> commands) {
+        if (commands == null) {
+            throw new IllegalArgumentException("Аргумент commands не может быть null!");
+        }
+
+        Item[] items = new Item[commands.size()];
+
+        for (int i = 0; i < items.length; i++) {
+            Item item = new Item(userEmail, commands.get(i));
+
+            try {
+                this.prepare(item);
+            } catch (IllegalArgumentException | SecurityException | ArithmeticException e) {
+                item.error = e.getMessage();
+            }
+
+            items[i] = item;
+        }
+
+        return new Plan(items);
+    }
+
+
+    /**
+     * Применяет операции плана. В режиме «все или ничего» при первой ошибке пакет отменяется целиком, иначе
+     * ошибочные операции пропускаются.
+     *
+     * @param plan   План пакета.
+     * @param atomic {@code true} - все или ничего, {@code false} - по отдельности.
+     * @param fees   Получатель комиссий выполненных операций.
+     * @return Итог пакета.
+     */
+    BatchResult execute(Plan plan, boolean atomic, Consumer<Money> fees) {
+        if (atomic && plan.hasErrors()) {
+            return plan.reject();
+        }
+
+        Account[] accounts = plan.accounts;
+        long[] balances = new long[accounts.length];
+
+        for (int i = 0; i < accounts.length; i++) {
+            balances[i] = accounts[i].getBalanceMoney().getMinor();
+        }
+
+        for (Item item : plan.items) {
+            if (item.error != null) {
+                continue;
+            }
+
+            try {
+                this.apply(item, balances, plan.indexOf(item.from), plan.indexOf(item.to));
+            } catch (IllegalArgumentException | ArithmeticException e) {
+                item.error = e.getMessage();
+
+                if (atomic) {
+                    return plan.reject();
+                }
+            }
+        }
+
+        List<Transaction> drafts = new ArrayList<>(plan.items.length);
+        for (Item item : plan.items) {
+            if (item.error == null) {
+                drafts.add(item.draft());
+            }
+        }
+
+        List<Transaction> created = this.atomic(() -> {
+            for (int i = 0; i < accounts.length; i++) {
+                if (balances[i] != accounts[i].getBalanceMoney().getMinor()) {
+                    accounts[i].setBalanceMoney(Money.ofMinor(accounts[i].getCurrencyCode(), balances[i]));
+                    this.repoAccount.updateBalance(accounts[i]);
+                }
+            }
+
+            return this.repoTransaction.createTransactions(drafts);
+        });
+
+        Transaction[] transactions = new Transaction[plan.items.length];
+        String[] errors = new String[plan.items.length];
+
+        for (int i = 0, next = 0; i < plan.items.length; i++) {
+            Item item = plan.items[i];
+
+            if (item.error != null) {
+                errors[i] = item.error;
+                continue;
+            }
+
+            transactions[i] = created.get(next++);
+
+            if (item.fee.signum() > 0) {
+                fees.accept(item.fee);
+            }
+        }
+
+        return new BatchResult(transactions, errors);
+    }
+
+
+    /**
+     * Проверяет операцию и рассчитывает ее суммы.
+     */
+    private void prepare(Item item) {
+        BatchCommand command = item.command;
+
+        if (command == null) {
+            throw new IllegalArgumentException("Операция не может быть null!");
+        }
+
+        if (command.getAmount() == null || command.getAmount().compareTo(BigDecimal.ZERO) <= 0) {
+            throw new IllegalArgumentException("Сумма операции должна быть больше нуля!");
+        }
+
+        item.from = this.ownAccount(item.userEmail, command.getAccountIdFrom());
+        item.debit = toMoney(item.from, command.getAmount());
+
+        switch (command.getType()) {
+            case DEPOSIT:
+            case WITHDRAW:
+                item.to = item.from;
+                item.fee = this.fee(command.getAccountIdFrom(), item.debit);
+                item.net = item.debit.minus(item.fee);
+                break;
+
+            case TRANSFER:
+                item.to = this.repoAccount.getAccountById(command.getAccountIdTo());
+
+                if (item.to == null) {
+                    throw new IllegalArgumentException("Один или оба счета не найдены!");
+                }
+
+                item.rate = this.crossRates.get(item.from.getCurrencyCode(), item.to.getCurrencyCode());
+
+                if (item.rate == null) {
+                    throw new IllegalArgumentException("Не удалось найти курс для обмена!");
+                }
+
+                Money credit = item.debit.convert(item.to.getCurrencyCode(), item.rate.getCourse());
+                item.fee = this.fee(command.getAccountIdFrom(), credit);
+                item.net = credit.minus(item.fee);
+                break;
+
+            default:
+                throw new IllegalArgumentException("Неизвестный тип операции: " + command.getType());
+        }
+    }
+
+
+    /**
+     * Применяет операцию к рабочей копии балансов.
+     *
+     * @param from Индекс баланса счета списания.
+     * @param to   Индекс баланса счета зачисления.
+     */
+    private void apply(Item item, long[] balances, int from, int to) {
+        // Счет мог быть удален после проверки пакета.
+        if (this.repoAccount.getAccountById(item.from.getId()) != item.from
+                || this.repoAccount.getAccountById(item.to.getId()) != item.to) {
+            throw new IllegalArgumentException("Счет с таким ID не найден!");
+        }
+
+        switch (item.command.getType()) {
+            case DEPOSIT:
+                balances[from] = Math.addExact(balances[from], item.net.getMinor());
+                break;
+
+            case WITHDRAW:
+                if (balances[from] < item.debit.getMinor()) {
+                    throw new IllegalArgumentException("Недостаточно средств на счете!");
+                }
+
+                balances[from] -= item.net.getMinor();
+                break;
+
+            case TRANSFER:
+                if (balances[from] < item.debit.getMinor()) {
+                    throw new IllegalArgumentException("Недостаточно средств на счете для обмена!");
+                }
+
+                // Зачисление считается до записи списания, чтобы переполнение не оставило списание без зачисления.
+                long debited = balances[from] - item.debit.getMinor();
+                long credited = Math.addExact(from == to ? debited : balances[to], item.net.getMinor());
+
+                balances[from] = debited;
+                balances[to] = credited;
+                break;
+
+            default:
+                throw new IllegalArgumentException("Неизвестный тип операции: " + item.command.getType());
+        }
+    }
+
+
+    private Account ownAccount(String userEmail, int accountId) {
+        Account account = this.repoAccount.getAccountById(accountId);
+
+        if (account == null) {
+            throw new IllegalArgumentException("Счет с таким ID не найден!");
+        }
+
+        if (!account.getUserEmail().equals(userEmail)) {
+            throw new SecurityException("Этот счет не принадлежит текущему пользователю!");
+        }
+
+        return account;
+    }
+
+
+    private Money fee(int accountId, Money amount) {
+        return accountId > 0 ? amount.percentage(FEE_BASIS_POINTS) : Money.zero(amount.getCurrency());
+    }
+
+
+    private static Money toMoney(Account account, BigDecimal money) {
+        Money amount = Money.of(account.getCurrencyCode(), money);
+
+        if (amount.signum() <= 0) {
+            throw new IllegalArgumentException(
+                    "Сумма меньше минимальной единицы валюты " + account.getCurrencyCode() + "!"
+            );
+        }
+
+        return amount;
+    }
+
+
+    /**
+     * Проверенный пакет: операции с рассчитанными суммами и счета пакета.
+     */
+    static class Plan {
+
+        private final Item[] items;
+
+        // Счета пакета без повторов в порядке возрастания id.
+        private final Account[] accounts;
+
+        // Id счетов пакета в порядке возрастания.
+        private final int[] accountIds;
+
+
+        private Plan(Item[] items) {
+            List<Account> accounts = new ArrayList<>();
+
+            for (Item item : items) {
+                if (item.error == null) {
+                    accounts.add(item.from);
+                    accounts.add(item.to);
+                }
+            }
+
+            accounts.sort((a, b) -> Integer.compare(a.getId(), b.getId()));
+
+            List<Account> distinct = new ArrayList<>(accounts.size());
+            for (Account account : accounts) {
+                if (distinct.isEmpty() || distinct.get(distinct.size() - 1).getId() != account.getId()) {
+                    distinct.add(account);
+                }
+            }
+
+            this.items = items;
+            this.accounts = distinct.toArray(new Account[0]);
+            this.accountIds = new int[this.accounts.length];
+
+            for (int i = 0; i < this.accounts.length; i++) {
+                this.accountIds[i] = this.accounts[i].getId();
+            }
+        }
+
+
+        /**
+         * Возвращает id счетов пакета в порядке возрастания (для блокировки).
+         *
+         * @return Id счетов.
+         */
+        int[] getAccountIds() {
+            return this.accountIds;
+        }
+
+
+        /**
+         * Проверяет, есть ли в пакете операции с ошибкой.
+         *
+         * @return {@code true}, если есть хотя бы одна ошибка.
+         */
+        boolean hasErrors() {
+            for (Item item : this.items) {
+                if (item.error != null) {
+                    return true;
+                }
+            }
+
+            return false;
+        }
+
+
+        /**
+         * Возвращает итог отмененного пакета: ошибочные операции со своими ошибками, остальные - со ссылкой на
+         * первую ошибку.
+         *
+         * @return Итог пакета.
+         */
+        BatchResult reject() {
+            int first = -1;
+            for (int i = 0; i < this.items.length && first < 0; i++) {
+                if (this.items[i].error != null) {
+                    first = i;
+                }
+            }
+
+            String[] errors = new String[this.items.length];
+            for (int i = 0; i < this.items.length; i++) {
+                errors[i] = this.items[i].error != null
+                        ? this.items[i].error
+                        : "Пакет отменен из-за ошибки в операции " + first + ".";
+            }
+
+            return new BatchResult(new Transaction[this.items.length], errors);
+        }
+
+
+        private int indexOf(Account account) {
+            return Arrays.binarySearch(this.accountIds, account.getId());
+        }
+
+    }
+
+
+    /**
+     * Операция с рассчитанными суммами.
+     */
+    static class Item {
+
+        private final String userEmail;
+        private final BatchCommand command;
+
+        // Счета списания и зачисления (для пополнения и снятия - один счет).
+        private Account from;
+        private Account to;
+
+        // Сумма в валюте счета списания.
+        private Money debit;
+
+        // Комиссия и сумма зачисления за вычетом комиссии в валюте счета зачисления.
+        private Money fee;
+        private Money net;
+
+        // Кросс-курс обмена.
+        private CrossRate rate;
+
+        // Ошибка операции или null.
+        private String error;
+
+
+        private Item(String userEmail, BatchCommand command) {
+            this.userEmail = userEmail;
+            this.command = command;
+        }
+
+
+        Account getFrom() {
+            return this.from;
+        }
+
+
+        Account getTo() {
+            return this.to;
+        }
+
+
+        /**
+         * Возвращает комиссию операции в валюте счета зачисления.
+         *
+         * @return Комиссия.
+         */
+        Money getFee() {
+            return this.fee;
+        }
+
+
+        /**
+         * Возвращает шаблон транзакции операции (как у одиночных операций сервиса).
+         */
+        private Transaction draft() {
+            TransactionType type = this.command.getType();
+
+            return new Transaction(
+                    0,
+                    type,
+                    this.userEmail,
+                    this.from.getId(),
+                    this.from.getCurrency(),
+                    this.userEmail,
+                    this.to.getId(),
+                    this.to.getCurrency(),
+                    this.net.toBigDecimal(),
+                    this.rate == null ? null : this.debit.toBigDecimal(),
+                    this.fee.toBigDecimal(),
+                    this.rate == null ? null : this.rate.getCourse(),
+                    this.rate == null ? 0 : this.rate.getVersion()
+            );
+        }
+
+    }
+
+}
@@ -0,0 +1,351 @@
+package service;
+
+import model.Money;
+import model.Transaction;
+import model.enums.CurrencyCode;
+import model.enums.TransactionType;
+
+import java.math.BigDecimal;
+import java.util.Collection;
+import java.util.EnumMap;
+import java.util.Map;
+
+/**
+ * Накопитель комиссий по валютам, разделенный на ячейки (в духе {@code LongAdder}).
+ *
+ * <p>Каждый поток добавляет комиссию в свою ячейку, поэтому операции с разными счетами не конкурируют за
+ * один системный счет. Накопленные суммы периодически списываются методом {@link #drain(CurrencyCode)} и
+ * зачисляются на системные счета одной проводкой.</p>
+ *
+ * <p>Отдельно накопитель не сохраняется: комиссия каждой операции записана в ее транзакции, а проводка
+ * зачисления - транзакция с комментарием {@link #COMMENT_PREFIX}, поэтому после перезапуска ожидающие
+ * комиссии восстанавливаются методом {@link #unsettled(Collection)}.</p>
+ */
+public class CommissionAccumulator {
+
+    private static final CurrencyCode[] CODES = CurrencyCode.values();
+
+    // Начало комментария проводки зачисления комиссий на системный счет.
+    static final String COMMENT_PREFIX = "Комиссия за ";
+
+    // Ячейки по валютам: [ordinal][stripe].
+    private final Cell[][] cells;
+
+    // Сумма комиссий в минимальных единицах валюты, уже списанных методом drain(), по ordinal().
+    private final long[] drained;
+
+
+    public CommissionAccumulator() {
+        this(Math.max(1, Runtime.getRuntime().availableProcessors()));
+    }
+
+
+    /**
+     * Конструктор для создания накопителя с указанным количеством ячеек на валюту.
+     *
+     * @param stripes Количество ячеек на валюту.
+     */
+    public CommissionAccumulator(int stripes) {
+        if (stripes <= 0) {
+            throw new IllegalArgumentException("Количество ячеек должно быть больше нуля!");
+        }
+
+        this.cells = new Cell[CODES.length][stripes];
+        this.drained = new long[CODES.length];
+
+        for (int i = 0; i < CODES.length; i++) {
+            for (int j = 0; j < stripes; j++) {
+                this.cells[i][j] = new Cell();
+            }
+        }
+    }
+
+
+    /**
+     * Добавляет комиссию.
+     *
+     * @param commission Сумма комиссии.
+     */
+    public void add(Money commission) {
+        this.add(commission, 1);
+    }
+
+
+    /**
+     * Добавляет комиссию нескольких операций (например, восстановленную после перезапуска).
+     *
+     * @param commission Сумма комиссии.
+     * @param count      Количество операций.
+     */
+    public void add(Money commission, long count) {
+        Cell[] row = this.cells[commission.getCurrency().ordinal()];
+        Cell cell = row[(Thread.currentThread().hashCode() & Integer.MAX_VALUE) % row.length];
+
+        synchronized (cell) {
+            cell.pending = Math.addExact(cell.pending, commission.getMinor());
+            cell.charged = Math.addExact(cell.charged, commission.getMinor());
+            cell.count += count;
+        }
+    }
+
+
+    /**
+     * Списывает накопленную по валюте комиссию.
+     *
+     * @param currencyCode Валюта.
+     * @return Списанная сумма и количество операций, или {@code null}, если списывать нечего.
+     */
+    public synchronized Batch drain(CurrencyCode currencyCode) {
+        long amount = 0;
+        long count = 0;
+
+        for (Cell cell : this.cells[currencyCode.ordinal()]) {
+            synchronized (cell) {
+                amount = Math.addExact(amount, cell.pending);
+                count += cell.count;
+                cell.pending = 0;
+                cell.count = 0;
+            }
+        }
+
+        if (count == 0) {
+            return null;
+        }
+
+        this.drained[currencyCode.ordinal()] = Math.addExact(this.drained[currencyCode.ordinal()], amount);
+
+        return new Batch(Money.ofMinor(currencyCode, amount), count);
+    }
+
+
+    /**
+     * Забирает накопленную по валюте комиссию для зачисления в обход накопителя (например, однопоточным
+     * исполнителем). В отличие от {@link #drain(CurrencyCode)} забранная сумма исключается и из начисленных.
+     *
+     * @param currencyCode Валюта.
+     * @return Забранная сумма и количество операций, или {@code null}, если забирать нечего.
+     */
+    public synchronized Batch take(CurrencyCode currencyCode) {
+        long amount = 0;
+        long count = 0;
+
+        for (Cell cell : this.cells[currencyCode.ordinal()]) {
+            synchronized (cell) {
+                amount = Math.addExact(amount, cell.pending);
+                count += cell.count;
+                cell.charged = Math.subtractExact(cell.charged, cell.pending);
+                cell.pending = 0;
+                cell.count = 0;
+            }
+        }
+
+        return count == 0 ? null : new Batch(Money.ofMinor(currencyCode, amount), count);
+    }
+
+
+    /**
+     * Возвращает в накопитель партию, которую не удалось зачислить.
+     *
+     * @param batch Партия.
+     */
+    public synchronized void restore(Batch batch) {
+        int ordinal = batch.amount.getCurrency().ordinal();
+        Cell cell = this.cells[ordinal][0];
+
+        synchronized (cell) {
+            cell.pending = Math.addExact(cell.pending, batch.amount.getMinor());
+            cell.count += batch.count;
+        }
+
+        this.drained[ordinal] = Math.subtractExact(this.drained[ordinal], batch.amount.getMinor());
+    }
+
+
+    /**
+     * Возвращает сумму комиссий, ожидающих зачисления, по валютам.
+     *
+     * @return Суммы по валютам (только ненулевые).
+     */
+    public Map<CurrencyCode, BigDecimal> getPending() {
+        Map<CurrencyCode, BigDecimal> result = new EnumMap<>(CurrencyCode.class);
+
+        for (CurrencyCode code : CODES) {
+            long amount = 0;
+
+            for (Cell cell : this.cells[code.ordinal()]) {
+                synchronized (cell) {
+                    amount = Math.addExact(amount, cell.pending);
+                }
+            }
+
+            if (amount != 0) {
+                result.put(code, Money.toBigDecimal(amount, code.getScale()));
+            }
+        }
+
+        return result;
+    }
+
+
+    /**
+     * Строго сверяет накопитель: по каждой валюте сумма всех начисленных комиссий должна быть равна сумме
+     * списанных и ожидающих зачисления.
+     *
+     * @param flushed Суммы, фактически зачисленные на системные счета, по валютам.
+     * @throws IllegalStateException Если суммы не сходятся.
+     */
+    public synchronized void reconcile(Map<CurrencyCode, BigDecimal> flushed) {
+        for (CurrencyCode code : CODES) {
+            long charged = 0;
+            long pending = 0;
+
+            for (Cell cell : this.cells[code.ordinal()]) {
+                synchronized (cell) {
+                    charged = Math.addExact(charged, cell.charged);
+                    pending = Math.addExact(pending, cell.pending);
+                }
+            }
+
+            BigDecimal drainedAmount = Money.toBigDecimal(this.drained[code.ordinal()], code.getScale());
+            BigDecimal flushedAmount = flushed.getOrDefault(code, BigDecimal.ZERO);
+
+            if (drainedAmount.compareTo(flushedAmount) != 0) {
+                throw new IllegalStateException(String.format(
+                        "Комиссия %s: списано %s, зачислено %s!",
+                        code,
+                        drainedAmount,
+                        flushedAmount
+                ));
+            }
+
+            if (charged != this.drained[code.ordinal()] + pending) {
+                throw new IllegalStateException(String.format(
+                        "Комиссия %s: начислено %s, зачислено %s, ожидает %s!",
+                        code,
+                        Money.toBigDecimal(charged, code.getScale()),
+                        drainedAmount,
+                        Money.toBigDecimal(pending, code.getScale())
+                ));
+            }
+        }
+    }
+
+
+    /**
+     * Вычисляет комиссии, начисленные, но еще не зачисленные на системные счета: по каждой валюте сумма
+     * комиссий транзакций (в валюте зачисления) минус сумма проводок зачисления комиссий. Количество операций
+     * берется из комментариев проводок и для проводок с измененным комментарием приблизительно.
+     *
+     * @param transactions Все транзакции.
+     * @return Незачисленные партии по валютам (только положительные).
+     */
+    static Map<CurrencyCode, Batch> unsettled(Collection<Transaction> transactions) {
+        long[] amounts = new long[CODES.length];
+        long[] counts = new long[CODES.length];
+
+        for (Transaction transaction : transactions) {
+            int ordinal = CurrencyCode.valueOf(transaction.getCurrencyTo()).ordinal();
+            String comment = transaction.getComment();
+
+            if (transaction.getFeeMinor() > 0) {
+                amounts[ordinal] = Math.addExact(amounts[ordinal], transaction.getFeeMinor());
+                counts[ordinal]++;
+            } else if (transaction.getType() == TransactionType.DEPOSIT
+                       && comment != null
+                       && comment.startsWith(COMMENT_PREFIX)) {
+                amounts[ordinal] = Math.subtractExact(amounts[ordinal], transaction.getAmountMinor());
+                counts[ordinal] -= settledCount(comment);
+            }
+        }
+
+        Map<CurrencyCode, Batch> result = new EnumMap<>(CurrencyCode.class);
+
+        for (CurrencyCode code : CODES) {
+            if (amounts[code.ordinal()] > 0) {
+                result.put(code, new Batch(Money.ofMinor(code, amounts[code.ordinal()]), Math.max(1, counts[code.ordinal()])));
+            }
+        }
+
+        return result;
+    }
+
+
+    /**
+     * Возвращает комментарий проводки зачисления комиссий.
+     *
+     * @param count Количество операций.
+     * @return Комментарий.
+     */
+    static String comment(long count) {
+        return COMMENT_PREFIX + count + " операций";
+    }
+
+
+    /**
+     * Извлекает количество операций из комментария проводки зачисления комиссий.
+     *
+     * @return Количество операций или 0, если комментарий изменен.
+     */
+    private static long settledCount(String comment) {
+        int end = comment.indexOf(' ', COMMENT_PREFIX.length());
+
+        try {
+            return Long.parseLong(comment.substring(COMMENT_PREFIX.length(), end < 0 ? comment.length() : end));
+        } catch (NumberFormatException e) {
+            return 0;
+        }
+    }
+
+
+    /**
+     * Партия комиссий одной валюты, списанная из накопителя.
+     */
+    public static class Batch {
+
+        // Сумма комиссий.
+        private final Money amount;
+
+        // Количество операций.
+        private final long count;
+
+
+        private Batch(Money amount, long count) {
+            this.amount = amount;
+            this.count = count;
+        }
+
+
+        public CurrencyCode getCurrencyCode() {
+            return this.amount.getCurrency();
+        }
+
+
+        public Money getAmount() {
+            return this.amount;
+        }
+
+
+        public long getCount() {
+            return this.count;
+        }
+
+    }
+
+
+    /**
+     * Ячейка накопителя.
+     */
+    private static class Cell {
+
+        // Сумма в минимальных единицах валюты, ожидающая зачисления.
+        private long pending;
+
+        // Сумма всех начисленных в ячейку комиссий в минимальных единицах валюты.
+        private long charged;
+
+        // Количество операций, ожидающих зачисления.
+        private long count;
+
+    }
+
+}
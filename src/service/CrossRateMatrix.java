@@ -0,0 +1,115 @@
+package service;
+
+import model.CrossRate;
+import model.Rate;
+import model.enums.CurrencyCode;
+import repository.interfaces.RateListener;
+
+import java.math.BigDecimal;
+import java.math.MathContext;
+
+/**
+ * Матрица кросс-курсов, индексированная по {@link CurrencyCode#ordinal()}.
+ *
+ * <p>Ячейка {@code [target][source]} содержит курс {@code target / source}. При публикации нового курса
+ * валюты пересчитываются только ее строка и столбец, после чего новая матрица публикуется целиком, поэтому
+ * чтение - это одно обращение к массиву без блокировок.</p>
+ */
+public class CrossRateMatrix implements RateListener {
+
+    private static final CurrencyCode[] CODES = CurrencyCode.values();
+
+    // Актуальные курсы валют к USD по ordinal().
+    private BigDecimal[] rates;
+
+    // Текущая опубликованная матрица.
+    private volatile CrossRate[][] matrix;
+
+    // Версия матрицы, увеличивается при каждом пересчете.
+    private long version;
+
+
+    public CrossRateMatrix() {
+        this.rates = new BigDecimal[CODES.length];
+        this.matrix = new CrossRate[CODES.length][CODES.length];
+
+        for (int i = 0; i < CODES.length; i++) {
+            this.matrix[i][i] = new CrossRate(BigDecimal.ONE, 0);
+        }
+    }
+
+
+    /**
+     * Обновляет курс валюты и пересчитывает ее строку и столбец.
+     *
+     * @param currencyCode Код валюты.
+     * @param course       Новый курс валюты к USD.
+     */
+    public synchronized void update(CurrencyCode currencyCode, BigDecimal course) {
+        if (currencyCode == null || course == null || course.signum() <= 0) {
+            throw new IllegalArgumentException("Курс валюты должен быть больше нуля!");
+        }
+
+        int index = currencyCode.ordinal();
+        long nextVersion = this.version + 1;
+
+        BigDecimal[] nextRates = this.rates.clone();
+        nextRates[index] = course;
+
+        CrossRate[][] current = this.matrix;
+        CrossRate[][] next = new CrossRate[CODES.length][];
+
+        for (int i = 0; i < CODES.length; i++) {
+            next[i] = (i == index ? new CrossRate[CODES.length] : current[i].clone());
+        }
+
+        for (int i = 0; i < CODES.length; i++) {
+            if (i == index) {
+                next[index][index] = new CrossRate(BigDecimal.ONE, nextVersion);
+                continue;
+            }
+
+            if (nextRates[i] == null) {
+                next[index][i] = null;
+                next[i][index] = null;
+                continue;
+            }
+
+            next[index][i] = new CrossRate(course.divide(nextRates[i], MathContext.DECIMAL64), nextVersion);
+            next[i][index] = new CrossRate(nextRates[i].divide(course, MathContext.DECIMAL64), nextVersion);
+        }
+
+        this.rates = nextRates;
+        this.version = nextVersion;
+        this.matrix = next;
+    }
+
+
+    /**
+     * Возвращает кросс-курс {@code target / source}.
+     *
+     * @param target Код целевой валюты.
+     * @param source Код исходной валюты.
+     * @return Кросс-курс или {@code null}, если курс одной из валют неизвестен.
+     */
+    public CrossRate get(CurrencyCode target, CurrencyCode source) {
+        return this.matrix[target.ordinal()][source.ordinal()];
+    }
+
+
+    /**
+     * Возвращает текущую версию матрицы.
+     *
+     * @return Версия.
+     */
+    public synchronized long getVersion() {
+        return this.version;
+    }
+
+
+    @Override
+    public void onRate(Rate rate) {
+        this.update(CurrencyCode.valueOf(rate.getCurrencyCode()), rate.getCourse());
+    }
+
+}
@@ -0,0 +1,254 @@
+package service;
+
+import model.Transaction;
+
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/**
+ * Ключи идемпотентности изменяющих операций: ключ запроса -> транзакция, созданная первым запросом с этим ключом.
+ *
+ * <p>Повтор запроса с тем же ключом (например, после тайм-аута на стороне клиента) не выполняет операцию
+ * второй раз, а возвращает исходную транзакцию. Одновременный повтор дожидается завершения первого запроса.
+ * Если операция завершилась ошибкой, ключ освобождается и запрос можно повторить.</p>
+ *
+ * <p>Ключи хранятся в {@link ConcurrentHashMap}, поэтому проверка ключа не блокирует другие запросы. Ключи
+ * разных пользователей независимы. Вместе с ключом хранится описание запроса (операция и ее аргументы); повтор
+ * ключа с другим описанием отклоняется. Ключ действует не дольше тайм-аута, а количество ключей ограничено:
+ * ключи удаляются в порядке добавления (у всех ключей одинаковый срок жизни, поэтому это и порядок истечения)
+ * при добавлении новых ключей. Ключ запроса, который еще выполняется, не удаляется.</p>
+ */
+public class IdempotencyCache {
+
+    /**
+     * Ключи.
+     * <p>key - Пользователь и ключ идемпотентности</p>
+     * <p>value - Запись с результатом первого запроса</p>
+     */
+    private final Map<Scope, Entry> entries;
+
+    // Записи в порядке добавления (для удаления старых и просроченных ключей).
+    private final Queue<Entry> order;
+
+    // Количество записей в очереди (включая ключи, освобожденные после ошибки).
+    private final AtomicInteger queued;
+
+    // Максимальное количество ключей.
+    private final int capacity;
+
+    // Срок жизни ключа в наносекундах.
+    private final long ttlNanos;
+
+
+    /**
+     * @param capacity  Максимальное количество ключей.
+     * @param ttlMillis Срок жизни ключа в миллисекундах.
+     */
+    public IdempotencyCache(int capacity, long ttlMillis) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("Размер кэша ключей должен быть больше нуля!");
+        }
+
+        if (ttlMillis <= 0) {
+            throw new IllegalArgumentException("Срок жизни ключа должен быть больше нуля!");
+        }
+
+        this.entries = new ConcurrentHashMap<>();
+        this.order = new ConcurrentLinkedQueue<>();
+        this.queued = new AtomicInteger();
+        this.capacity = capacity;
+        this.ttlNanos = TimeUnit.MILLISECONDS.toNanos(ttlMillis);
+    }
+
+
+    /**
+     * Выполняет операцию один раз для ключа пользователя.
+     *
+     * @param userEmail Email пользователя.
+     * @param key       Ключ идемпотентности или {@code null} (операция выполняется без проверки).
+     * @param request   Описание запроса: операция и ее аргументы.
+     * @param operation Операция.
+     * @return Транзакция операции или исходная транзакция, если ключ уже использован.
+     * @throws IllegalArgumentException Если ключ использован запросом с другим описанием.
+     */
+    public Transaction execute(String userEmail, String key, String request, Supplier<Transaction> operation) {
+        if (key == null) {
+            return operation.get();
+        }
+
+        if (key.isEmpty()) {
+            throw new IllegalArgumentException("Ключ идемпотентности не может быть пустым!");
+        }
+
+        if (userEmail == null) {
+            throw new IllegalArgumentException("Аргумент userEmail не может быть null!");
+        }
+
+        if (request == null) {
+            throw new IllegalArgumentException("Аргумент request не может быть null!");
+        }
+
+        Scope scope = new Scope(userEmail, key);
+
+        while (true) {
+            long now = System.nanoTime();
+            Entry entry = this.entries.get(scope);
+
+            if (entry != null && entry.result.isDone() && now - entry.created > this.ttlNanos) {
+                this.entries.remove(scope, entry);
+                entry = null;
+            }
+
+            if (entry != null) {
+                if (!entry.request.equals(request)) {
+                    throw new IllegalArgumentException("Ключ идемпотентности уже использован другим запросом!");
+                }
+
+                Transaction transaction = entry.await();
+
+                if (transaction != null) {
+                    return transaction;
+                }
+
+                // Первый запрос завершился ошибкой и освободил ключ.
+                continue;
+            }
+
+            Entry created = new Entry(scope, request, now);
+
+            if (this.entries.putIfAbsent(scope, created) != null) {
+                continue;
+            }
+
+            this.order.add(created);
+            this.queued.incrementAndGet();
+            this.evict(now);
+
+            Transaction transaction;
+            try {
+                transaction = operation.get();
+            } catch (RuntimeException | Error e) {
+                this.entries.remove(scope, created);
+                created.result.complete(null);
+                throw e;
+            }
+
+            created.result.complete(transaction);
+
+            return transaction;
+        }
+    }
+
+
+    /**
+     * Возвращает количество ключей (включая еще не удаленные просроченные).
+     *
+     * @return Количество ключей.
+     */
+    public int size() {
+        return this.entries.size();
+    }
+
+
+    /**
+     * Удаляет просроченные ключи и самые старые ключи сверх размера кэша. Ключи запросов, которые еще
+     * выполняются, переносятся в конец очереди: их удаление позволило бы повтору выполнить операцию второй раз.
+     */
+    private void evict(long now) {
+        // Каждая запись просматривается не больше одного раза, даже если все ключи еще выполняются.
+        int remaining = this.queued.get();
+        Entry oldest;
+
+        while (remaining-- > 0
+               && (oldest = this.order.peek()) != null
+               && (now - oldest.created > this.ttlNanos || this.queued.get() > this.capacity)) {
+            // Другой поток мог забрать эту запись раньше; тогда удаляется следующая по старшинству.
+            oldest = this.order.poll();
+
+            if (oldest == null) {
+                break;
+            }
+
+            if (!oldest.result.isDone()) {
+                this.order.add(oldest);
+                continue;
+            }
+
+            this.queued.decrementAndGet();
+            this.entries.remove(oldest.scope, oldest);
+        }
+    }
+
+
+    /**
+     * Ключ идемпотентности пользователя.
+     */
+    private static final class Scope {
+
+        private final String userEmail;
+        private final String key;
+
+
+        private Scope(String userEmail, String key) {
+            this.userEmail = userEmail;
+            this.key = key;
+        }
+
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof Scope)) return false;
+            Scope that = (Scope) o;
+            return userEmail.equals(that.userEmail) && key.equals(that.key);
+        }
+
+
+        @Override
+        public int hashCode() {
+            return 31 * userEmail.hashCode() + key.hashCode();
+        }
+
+    }
+
+
+    /**
+     * Ключ с результатом первого запроса.
+     */
+    private static class Entry {
+
+        private final Scope scope;
+
+        // Описание первого запроса.
+        private final String request;
+
+        // Время добавления ключа (System.nanoTime()).
+        private final long created;
+
+        // Транзакция первого запроса (null - запрос завершился ошибкой).
+        private final CompletableFuture<Transaction> result;
+
+
+        private Entry(Scope scope, String request, long created) {
+            this.scope = scope;
+            this.request = request;
+            this.created = created;
+            this.result = new CompletableFuture<>();
+        }
+
+
+        /**
+         * Дожидается результата первого запроса.
+         */
+        private Transaction await() {
+            return this.result.join();
+        }
+
+    }
+
+}
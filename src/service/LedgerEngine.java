@@ -0,0 +1,693 @@
+package service;
+
+import metrics.AccountOperationEvent;
+import model.Account;
+import model.BatchCommand;
+import model.BatchResult;
+import model.Money;
+import model.Transaction;
+import model.enums.CurrencyCode;
+import model.enums.TransactionType;
+import repository.interfaces.AccountRepository;
+import repository.interfaces.TransactionRepository;
+import repository.journal.Durability;
+import repository.journal.Journal;
+
+import java.math.BigDecimal;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Однопоточный исполнитель изменяющих операций со счетами (в духе LMAX Disruptor).
+ *
+ * <p>Операции (пополнение, снятие, обмен, пакет операций, создание и удаление счета) публикуются в заранее выделенный
+ * кольцевой буфер и выполняются по порядку одним потоком, который единолично изменяет балансы счетов. Поэтому
+ * в самой бизнес-логике нет блокировок, а потоки не конкурируют за системный счет.</p>
+ *
+ * <p>Операции выполняются пачками: все опубликованные на момент чтения операции применяются подряд, затем
+ * комиссии пачки зачисляются на системные счета (по одной проводке на валюту), журнал сбрасывается на диск
+ * одним {@link Journal#sync()}, и только после этого завершаются ответы ({@link CompletableFuture}). Чтобы
+ * сброс был общим для всей пачки, журнал должен быть открыт в режиме {@link Durability#PERIODIC}: в режиме
+ * {@link Durability#SYNC} каждая запись ждала бы своего сброса на диск в потоке исполнителя.</p>
+ *
+ * <p>Правила операций со счетами общие с {@link MainServiceImpl} и заданы в {@link BatchExecutor}.</p>
+ *
+ * <p>Ответы завершаются в потоке исполнителя, поэтому зависимые действия ({@code thenApply} и т.п.) не должны
+ * блокироваться.</p>
+ */
+public class LedgerEngine {
+
+    // Размер буфера по умолчанию.
+    public static final int DEFAULT_CAPACITY = 1 << 14;
+
+    // Признак остановки в счетчике выданных номеров.
+    private static final long CLOSED = 1L << 62;
+
+    // Количество попыток ожидания без засыпания.
+    private static final int SPIN_TRIES = 100;
+
+    // Время сна при ожидании (в наносекундах).
+    private static final long PARK_NANOS = 50_000;
+
+    private static final CurrencyCode[] CODES = CurrencyCode.values();
+
+    /**
+     * Тип операции.
+     */
+    private enum Op {
+        DEPOSIT,
+        WITHDRAWAL,
+        EXCHANGE,
+        CREATE_ACCOUNT,
+        REMOVE_ACCOUNT,
+        BATCH
+    }
+
+    private final AccountRepository repoAccount;
+    private final TransactionRepository repoTransaction;
+    private final BatchExecutor batchExecutor;
+
+    // Журнал изменений или null.
+    private final Journal journal;
+
+    // Кольцевой буфер операций (ячейки создаются один раз и переиспользуются).
+    private final Command[] ring;
+
+    // Маска номера ячейки.
+    private final int mask;
+
+    // Номер, под которым опубликована операция в ячейке (-1 - ячейка пуста).
+    private final AtomicLongArray published;
+
+    // Количество выданных номеров (и признак остановки CLOSED).
+    private final AtomicLong cursor;
+
+    // Количество выполненных операций, ячейки которых освобождены.
+    private volatile long released;
+
+    // Поток исполнителя спит и ждет публикации.
+    private volatile boolean sleeping;
+
+    // Поток исполнителя (null, если не запущен).
+    private volatile Thread thread;
+
+    // Количество пачек (пишет только поток исполнителя).
+    private volatile long batches;
+
+    // Комиссии текущей пачки в минимальных единицах валюты и количество операций по ordinal() (только поток
+    // исполнителя).
+    private final long[] pendingFees;
+    private final long[] pendingFeeCounts;
+
+
+    /**
+     * @param repoAccount     Репозиторий счетов.
+     * @param repoTransaction Репозиторий транзакций.
+     * @param crossRates      Матрица кросс-курсов.
+     * @param journal         Журнал изменений в режиме {@link Durability#PERIODIC} или {@code null}.
+     * @param capacity        Размер буфера (степень двойки).
+     * @throws IllegalArgumentException Если журнал открыт в режиме {@link Durability#SYNC}.
+     */
+    public LedgerEngine(
+            AccountRepository repoAccount,
+            TransactionRepository repoTransaction,
+            CrossRateMatrix crossRates,
+            Journal journal,
+            int capacity
+    ) {
+        if (repoAccount == null || repoTransaction == null || crossRates == null) {
+            throw new IllegalArgumentException("Аргументы repoAccount, repoTransaction и crossRates не могут быть null!");
+        }
+
+        if (capacity <= 0 || Integer.bitCount(capacity) != 1) {
+            throw new IllegalArgumentException("Размер буфера должен быть степенью двойки!");
+        }
+
+        if (journal != null && journal.getDurability() != Durability.PERIODIC) {
+            throw new IllegalArgumentException("Журнал однопоточного исполнителя должен быть в режиме PERIODIC!");
+        }
+
+        this.repoAccount = repoAccount;
+        this.repoTransaction = repoTransaction;
+        this.batchExecutor = new BatchExecutor(repoAccount, repoTransaction, crossRates, journal);
+        this.journal = journal;
+        this.ring = new Command[capacity];
+        this.mask = capacity - 1;
+        this.published = new AtomicLongArray(capacity);
+        this.cursor = new AtomicLong();
+        this.pendingFees = new long[CODES.length];
+        this.pendingFeeCounts = new long[CODES.length];
+
+        for (int i = 0; i < capacity; i++) {
+            this.ring[i] = new Command();
+            this.published.set(i, -1);
+        }
+    }
+
+
+    /**
+     * Запускает поток исполнителя. Операции принимаются только после запуска.
+     */
+    public synchronized void start() {
+        if (this.thread != null) {
+            return;
+        }
+
+        if ((this.cursor.get() & CLOSED) != 0) {
+            throw new IllegalStateException("Исполнитель остановлен!");
+        }
+
+        Thread thread = new Thread(this::run, "ledger-engine");
+        thread.setDaemon(true);
+        this.thread = thread;
+        thread.start();
+    }
+
+
+    /**
+     * Добавляет комиссии, которые исполнитель зачислит в конце первой пачки (например, восстановленные после
+     * перезапуска). Вызывается только до запуска.
+     *
+     * @param fee   Сумма комиссий.
+     * @param count Количество операций.
+     * @throws IllegalStateException Если исполнитель уже запущен.
+     */
+    synchronized void chargeFees(Money fee, long count) {
+        if (this.thread != null) {
+            throw new IllegalStateException("Исполнитель уже запущен!");
+        }
+
+        int ordinal = fee.getCurrency().ordinal();
+        this.pendingFees[ordinal] = Math.addExact(this.pendingFees[ordinal], fee.getMinor());
+        this.pendingFeeCounts[ordinal] += count;
+    }
+
+
+    /**
+     * Останавливает прием операций, дожидается выполнения уже принятых и останавливает поток исполнителя.
+     */
+    public synchronized void stop() {
+        long current;
+        do {
+            current = this.cursor.get();
+        } while ((current & CLOSED) == 0 && !this.cursor.compareAndSet(current, current | CLOSED));
+
+        Thread thread = this.thread;
+        if (thread == null) {
+            return;
+        }
+
+        LockSupport.unpark(thread);
+
+        boolean interrupted = false;
+        while (thread.isAlive()) {
+            try {
+                thread.join();
+            } catch (InterruptedException e) {
+                interrupted = true;
+            }
+        }
+
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+
+    /**
+     * Пополняет счет пользователя.
+     *
+     * @param userEmail Email пользователя (владельца счета).
+     * @param accountId Id счета.
+     * @param money     Сумма.
+     * @return Ответ: транзакция операции.
+     */
+    public CompletableFuture<Transaction> deposit(String userEmail, int accountId, BigDecimal money) {
+        return this.publish(Op.DEPOSIT, userEmail, accountId, accountId, money, null, null, null, false);
+    }
+
+
+    /**
+     * Снимает сумму со счета пользователя.
+     *
+     * @param userEmail Email пользователя (владельца счета).
+     * @param accountId Id счета.
+     * @param money     Сумма.
+     * @return Ответ: транзакция операции.
+     */
+    public CompletableFuture<Transaction> withdrawal(String userEmail, int accountId, BigDecimal money) {
+        return this.publish(Op.WITHDRAWAL, userEmail, accountId, accountId, money, null, null, null, false);
+    }
+
+
+    /**
+     * Переводит сумму между счетами с обменом валюты по кросс-курсу.
+     *
+     * @param userEmail  Email пользователя.
+     * @param accountId1 Id счета списания.
+     * @param accountId2 Id счета зачисления.
+     * @param money      Сумма в валюте счета списания.
+     * @return Ответ: транзакция операции.
+     */
+    public CompletableFuture<Transaction> exchange(String userEmail, int accountId1, int accountId2, BigDecimal money) {
+        return this.publish(Op.EXCHANGE, userEmail, accountId1, accountId2, money, null, null, null, false);
+    }
+
+
+    /**
+     * Создает счет пользователя.
+     *
+     * @param userEmail    Email пользователя.
+     * @param title        Название счета.
+     * @param currencyCode Код валюты.
+     * @return Ответ: созданный счет.
+     */
+    public CompletableFuture<Account> createAccount(String userEmail, String title, String currencyCode) {
+        return this.publish(Op.CREATE_ACCOUNT, userEmail, -1, -1, null, title, currencyCode, null, false);
+    }
+
+
+    /**
+     * Удаляет счет пользователя с нулевым балансом.
+     *
+     * @param userEmail Email пользователя (владельца счета).
+     * @param accountId Id счета.
+     * @return Ответ, завершающийся после удаления.
+     */
+    public CompletableFuture<Void> removeAccount(String userEmail, int accountId) {
+        return this.publish(Op.REMOVE_ACCOUNT, userEmail, accountId, accountId, null, null, null, null, false);
+    }
+
+
+    /**
+     * Выполняет пакет операций пользователя одной операцией исполнителя.
+     *
+     * @param userEmail Email пользователя.
+     * @param commands  Операции в порядке выполнения.
+     * @param atomic    {@code true} - все или ничего, {@code false} - каждая операция по отдельности.
+     * @return Ответ: итог пакета.
+     */
+    public CompletableFuture<BatchResult> executeBatch(String userEmail, List<BatchCommand> commands, boolean atomic) {
+        if (commands == null) {
+            throw new IllegalArgumentException("Аргумент commands не может быть null!");
+        }
+
+        return this.publish(Op.BATCH, userEmail, -1, -1, null, null, null, commands, atomic);
+    }
+
+
+    /**
+     * Возвращает количество выполненных операций.
+     *
+     * @return Количество операций.
+     */
+    public long getProcessedCount() {
+        return this.released;
+    }
+
+
+    /**
+     * Возвращает количество выполненных пачек операций.
+     *
+     * @return Количество пачек.
+     */
+    public long getBatchCount() {
+        return this.batches;
+    }
+
+
+    /**
+     * Возвращает размер буфера.
+     *
+     * @return Количество ячеек.
+     */
+    public int getCapacity() {
+        return this.ring.length;
+    }
+
+
+    /**
+     * Занимает ячейку буфера, заполняет ее и публикует. Если буфер заполнен, ждет, пока исполнитель освободит
+     * ячейку.
+     */
+    @SuppressWarnings("unchecked")
+    private <T> CompletableFuture<T> publish(
+            Op op,
+            String userEmail,
+            int accountId1,
+            int accountId2,
+            BigDecimal amount,
+            String title,
+            String currency,
+            List<BatchCommand> commands,
+            boolean atomic
+    ) {
+        if (this.thread == null) {
+            throw new IllegalStateException("Исполнитель не запущен!");
+        }
+
+        long sequence;
+        long current;
+        do {
+            current = this.cursor.get();
+
+            if ((current & CLOSED) != 0) {
+                throw new IllegalStateException("Исполнитель остановлен!");
+            }
+
+            sequence = current;
+        } while (!this.cursor.compareAndSet(current, current + 1));
+
+        // Ячейка свободна, когда исполнитель освободил операцию, опубликованную в ней кругом раньше.
+        for (int tries = 0; sequence - this.released >= this.ring.length; tries++) {
+            pause(tries);
+        }
+
+        CompletableFuture<Object> reply = new CompletableFuture<>();
+        int index = (int) (sequence & this.mask);
+
+        Command command = this.ring[index];
+        command.op = op;
+        command.userEmail = userEmail;
+        command.accountId1 = accountId1;
+        command.accountId2 = accountId2;
+        command.amount = amount;
+        command.title = title;
+        command.currency = currency;
+        command.commands = commands;
+        command.atomic = atomic;
+        command.reply = reply;
+
+        this.published.set(index, sequence);
+
+        if (this.sleeping) {
+            LockSupport.unpark(this.thread);
+        }
+
+        return (CompletableFuture<T>) (CompletableFuture<?>) reply;
+    }
+
+
+    /**
+     * Цикл потока исполнителя: выполняет операции пачками, пока исполнитель не остановлен и все принятые
+     * операции не выполнены.
+     */
+    private void run() {
+        long next = 0;
+
+        for (int tries = 0; ; ) {
+            long end = next;
+            while (end - next < this.ring.length && this.published.get((int) (end & this.mask)) == end) {
+                end++;
+            }
+
+            if (end == next) {
+                long current = this.cursor.get();
+
+                if ((current & CLOSED) != 0 && (current & ~CLOSED) == next) {
+                    return;
+                }
+
+                this.await(next, tries++);
+                continue;
+            }
+
+            tries = 0;
+            this.process(next, end);
+            next = end;
+        }
+    }
+
+
+    /**
+     * Выполняет пачку операций с номерами {@code [from, to)}.
+     */
+    private void process(long from, long to) {
+        for (long sequence = from; sequence < to; sequence++) {
+            this.apply(this.ring[(int) (sequence & this.mask)]);
+        }
+
+        Throwable failure = null;
+        try {
+            this.settleFees();
+
+            if (this.journal != null) {
+                this.journal.sync();
+            }
+        } catch (RuntimeException e) {
+            // Изменения в памяти уже применены, но их долговечность не подтверждена.
+            failure = e;
+        }
+
+        for (long sequence = from; sequence < to; sequence++) {
+            int index = (int) (sequence & this.mask);
+            Command command = this.ring[index];
+            CompletableFuture<Object> reply = command.reply;
+            Object result = command.result;
+            Throwable error = command.error != null ? command.error : failure;
+
+            command.clear();
+            this.published.set(index, -1);
+
+            if (error != null) {
+                reply.completeExceptionally(error);
+            } else {
+                reply.complete(result);
+            }
+        }
+
+        this.batches++;
+        this.released = to;
+    }
+
+
+    /**
+     * Выполняет одну операцию и сохраняет в ячейке результат или ошибку.
+     */
+    private void apply(Command command) {
+        AccountOperationEvent event = new AccountOperationEvent();
+        event.begin();
+
+        try {
+            switch (command.op) {
+                case DEPOSIT:
+                    command.result = this.execute(command, TransactionType.DEPOSIT, "DEPOSIT", event);
+                    break;
+
+                case WITHDRAWAL:
+                    command.result = this.execute(command, TransactionType.WITHDRAW, "WITHDRAWAL", event);
+                    break;
+
+                case EXCHANGE:
+                    command.result = this.execute(command, TransactionType.TRANSFER, "EXCHANGE", event);
+                    break;
+
+                case CREATE_ACCOUNT:
+                    command.result = this.repoAccount.createAccount(command.userEmail, command.title, command.currency);
+                    break;
+
+                case REMOVE_ACCOUNT:
+                    this.removeAccount(command);
+                    break;
+
+                case BATCH:
+                    command.result = this.batchExecutor.execute(
+                            this.batchExecutor.prepare(command.userEmail, command.commands),
+                            command.atomic,
+                            this::chargeFee
+                    );
+                    break;
+
+                default:
+                    throw new IllegalStateException("Неизвестная операция: " + command.op);
+            }
+        } catch (Throwable e) {
+            command.error = e;
+        }
+    }
+
+
+    /**
+     * Выполняет пополнение, снятие или обмен по общим с {@link MainServiceImpl} правилам {@link BatchExecutor}.
+     */
+    private Transaction execute(Command command, TransactionType type, String name, AccountOperationEvent event) {
+        BatchExecutor.Item operation = this.batchExecutor.prepare(
+                command.userEmail,
+                new BatchCommand(type, command.accountId1, command.accountId2, command.amount)
+        );
+        Transaction transaction = this.batchExecutor.execute(operation);
+        Account from = operation.getFrom();
+        Account to = operation.getTo();
+
+        this.chargeFee(operation.getFee());
+
+        event.record(name, from.getId(), to.getId(), from.getCurrency(), to.getCurrency(), command.amount, 0);
+
+        return transaction;
+    }
+
+
+    private void removeAccount(Command command) throws Exception {
+        Account account = this.ownAccount(command.userEmail, command.accountId1);
+
+        if (account.getBalance().compareTo(BigDecimal.ZERO) > 0) {
+            throw new Exception("Невозможно удалить счёт с положительным балансом. Пожалуйста, сначала обнулите баланс.");
+        }
+
+        this.repoAccount.removeAccount(account.getId());
+    }
+
+
+    /**
+     * Возвращает счет пользователя.
+     *
+     * @throws IllegalArgumentException Если счет не найден.
+     * @throws SecurityException        Если счет принадлежит другому пользователю.
+     */
+    private Account ownAccount(String userEmail, int accountId) {
+        Account account = this.repoAccount.getAccountById(accountId);
+
+        if (account == null) {
+            throw new IllegalArgumentException("Счет с таким ID не найден!");
+        }
+
+        if (!account.getUserEmail().equals(userEmail)) {
+            throw new SecurityException("Этот счет не принадлежит текущему пользователю!");
+        }
+
+        return account;
+    }
+
+
+    private void chargeFee(Money fee) {
+        if (fee.signum() <= 0) {
+            return;
+        }
+
+        int ordinal = fee.getCurrency().ordinal();
+        this.pendingFees[ordinal] = Math.addExact(this.pendingFees[ordinal], fee.getMinor());
+        this.pendingFeeCounts[ordinal]++;
+    }
+
+
+    /**
+     * Зачисляет комиссии пачки на системные счета, по одной проводке на валюту. Комиссии в валютах без
+     * системного счета переносятся в следующую пачку.
+     */
+    private void settleFees() {
+        for (CurrencyCode code : CODES) {
+            int ordinal = code.ordinal();
+
+            if (this.pendingFeeCounts[ordinal] == 0) {
+                continue;
+            }
+
+            Account systemAccount = this.repoAccount.getSystemAccount(code.name());
+
+            if (systemAccount == null) {
+                continue;
+            }
+
+            Money fee = Money.ofMinor(code, this.pendingFees[ordinal]);
+            long count = this.pendingFeeCounts[ordinal];
+
+            this.pendingFees[ordinal] = 0;
+            this.pendingFeeCounts[ordinal] = 0;
+
+            this.batchExecutor.atomic(() -> {
+                systemAccount.setBalanceMoney(systemAccount.getBalanceMoney().plus(fee));
+                this.repoAccount.updateBalance(systemAccount);
+
+                return this.repoTransaction.createTransaction(
+                        TransactionType.DEPOSIT,
+                        systemAccount.getUserEmail(),
+                        systemAccount.getId(),
+                        systemAccount.getCurrency(),
+                        systemAccount.getUserEmail(),
+                        systemAccount.getId(),
+                        systemAccount.getCurrency(),
+                        fee.toBigDecimal(),
+                        null,
+                        CommissionAccumulator.comment(count)
+                );
+            });
+        }
+    }
+
+
+    /**
+     * Ждет публикации операции с номером {@code sequence}: сначала активно, затем засыпает до сигнала
+     * производителя (или не дольше {@link #PARK_NANOS}).
+     */
+    private void await(long sequence, int tries) {
+        if (tries < SPIN_TRIES) {
+            Thread.onSpinWait();
+            return;
+        }
+
+        this.sleeping = true;
+
+        // Повторная проверка после установки флага: производитель либо увидит флаг, либо его публикация
+        // видна здесь.
+        if (this.published.get((int) (sequence & this.mask)) != sequence && (this.cursor.get() & CLOSED) == 0) {
+            LockSupport.parkNanos(this, PARK_NANOS);
+        }
+
+        this.sleeping = false;
+    }
+
+
+    /**
+     * Ожидание производителя при заполненном буфере.
+     */
+    private static void pause(int tries) {
+        if (tries < SPIN_TRIES) {
+            Thread.onSpinWait();
+        } else if (tries < 2 * SPIN_TRIES) {
+            Thread.yield();
+        } else {
+            LockSupport.parkNanos(PARK_NANOS);
+        }
+    }
+
+
+    /**
+     * Ячейка кольцевого буфера.
+     */
+    private static class Command {
+
+        private Op op;
+        private String userEmail;
+        private int accountId1;
+        private int accountId2;
+        private BigDecimal amount;
+        private String title;
+        private String currency;
+        private List<BatchCommand> commands;
+        private boolean atomic;
+
+        // Ответ операции.
+        private CompletableFuture<Object> reply;
+
+        // Результат или ошибка выполнения.
+        private Object result;
+        private Throwable error;
+
+
+        private void clear() {
+            this.userEmail = null;
+            this.amount = null;
+            this.title = null;
+            this.currency = null;
+            this.commands = null;
+            this.reply = null;
+            this.result = null;
+            this.error = null;
+        }
+
+    }
+
+}
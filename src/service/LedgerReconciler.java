@@ -0,0 +1,319 @@
+package service;
+
+import model.Account;
+import model.ReconciliationReport;
+import model.Transaction;
+import repository.interfaces.AccountRepository;
+import repository.interfaces.TransactionRepository;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * Сверка балансов счетов с журналом транзакций: баланс каждого счета (включая системные счета комиссий) должен
+ * быть равен сумме его проводок.
+ *
+ * <p>Проводки транзакций: {@code DEPOSIT} зачисляет сумму на счет "в", {@code WITHDRAW} списывает сумму со счета
+ * "из", {@code TRANSFER} списывает сумму списания со счета "из" и зачисляет сумму на счет "в". Комиссии
+ * записываются как {@code DEPOSIT} на системные счета, поэтому системные счета сверяются так же, как обычные.
+ * Обмены, записанные до появления суммы списания в журнале, не позволяют проверить счет списания; такие счета
+ * попадают в список непроверенных.</p>
+ *
+ * <p>Сверка выполняется в два этапа в {@link ForkJoinPool}. Сначала журнал делится на диапазоны id транзакций
+ * (не больше, чем потоков в пуле), и каждая задача суммирует проводки своего диапазона в массив
+ * {@code long[]}, индексированный id счета, без общих структур и блокировок. Затем диапазоны id счетов
+ * делятся между задачами, и каждая задача складывает частичные суммы своих счетов и сравнивает их с балансами.
+ * Память: количество диапазонов * (максимальный id счета + 1) * 8 байт.</p>
+ *
+ * <p>Сверку нужно выполнять, когда операции со счетами не выполняются (например, ночью): транзакция и изменение
+ * баланса записываются не атомарно для стороннего наблюдателя, и сверка во время операций может показать
+ * ложные расхождения.</p>
+ */
+public class LedgerReconciler {
+
+    // Минимальное количество транзакций в задаче первого этапа.
+    private static final int MIN_TRANSACTIONS_PER_TASK = 1 << 16;
+
+    // Минимальное количество счетов в задаче второго этапа.
+    private static final int MIN_ACCOUNTS_PER_TASK = 1 << 12;
+
+    private final AccountRepository repoAccount;
+    private final TransactionRepository repoTransaction;
+    private final ForkJoinPool pool;
+
+
+    /**
+     * Создает сверку, выполняемую в общем пуле {@link ForkJoinPool#commonPool()}.
+     *
+     * @param repoAccount     Репозиторий счетов.
+     * @param repoTransaction Репозиторий транзакций.
+     */
+    public LedgerReconciler(AccountRepository repoAccount, TransactionRepository repoTransaction) {
+        this(repoAccount, repoTransaction, ForkJoinPool.commonPool());
+    }
+
+
+    /**
+     * @param repoAccount     Репозиторий счетов.
+     * @param repoTransaction Репозиторий транзакций.
+     * @param pool            Пул потоков сверки.
+     */
+    public LedgerReconciler(AccountRepository repoAccount, TransactionRepository repoTransaction, ForkJoinPool pool) {
+        if (repoAccount == null) {
+            throw new IllegalArgumentException("Аргумент repoAccount не может быть null!");
+        }
+
+        if (repoTransaction == null) {
+            throw new IllegalArgumentException("Аргумент repoTransaction не может быть null!");
+        }
+
+        if (pool == null) {
+            throw new IllegalArgumentException("Аргумент pool не может быть null!");
+        }
+
+        this.repoAccount = repoAccount;
+        this.repoTransaction = repoTransaction;
+        this.pool = pool;
+    }
+
+
+    /**
+     * Проигрывает журнал транзакций и сравнивает рассчитанные балансы с балансами счетов.
+     *
+     * @return Итог сверки.
+     */
+    public ReconciliationReport reconcile() {
+        long start = System.nanoTime();
+
+        int transactions = this.repoTransaction.getTransactionCount();
+        int width = 0;
+
+        for (Account account : this.repoAccount.getAllAccounts()) {
+            width = Math.max(width, account.getId() + 1);
+        }
+
+        int leaves = Math.max(1, Math.min(
+                this.pool.getParallelism(),
+                (transactions + MIN_TRANSACTIONS_PER_TASK - 1) / MIN_TRANSACTIONS_PER_TASK
+        ));
+        int chunk = (transactions + leaves - 1) / leaves;
+
+        long[][] deltas = new long[leaves][];
+        Set<Integer> unverified = ConcurrentHashMap.newKeySet();
+
+        this.pool.invoke(new ReplayTask(deltas, 0, leaves, chunk, transactions, width, unverified));
+
+        // Журнал может ссылаться на удаленные счета с id больше максимального id существующих счетов.
+        for (long[] delta : deltas) {
+            width = Math.max(width, delta.length);
+        }
+
+        List<ReconciliationReport.Mismatch> mismatches = this.pool.invoke(
+                new MergeTask(deltas, 0, width, unverified)
+        );
+
+        List<Integer> unverifiedIds = new ArrayList<>(unverified);
+        Collections.sort(unverifiedIds);
+
+        return new ReconciliationReport(
+                transactions,
+                this.repoAccount.getAccountCount(),
+                mismatches,
+                unverifiedIds,
+                System.nanoTime() - start
+        );
+    }
+
+
+    /**
+     * Первый этап: суммирует проводки диапазонов транзакций {@code [leaf * chunk, (leaf + 1) * chunk)} для
+     * диапазонов {@code leaf} из {@code [from, to)}.
+     */
+    private class ReplayTask extends RecursiveAction {
+
+        private static final long serialVersionUID = 1L;
+
+        private final long[][] deltas;
+        private final int from;
+        private final int to;
+        private final int chunk;
+        private final int transactions;
+        private final int width;
+        private final Set<Integer> unverified;
+
+
+        private ReplayTask(
+                long[][] deltas,
+                int from,
+                int to,
+                int chunk,
+                int transactions,
+                int width,
+                Set<Integer> unverified
+        ) {
+            this.deltas = deltas;
+            this.from = from;
+            this.to = to;
+            this.chunk = chunk;
+            this.transactions = transactions;
+            this.width = width;
+            this.unverified = unverified;
+        }
+
+
+        @Override
+        protected void compute() {
+            if (this.to - this.from > 1) {
+                int middle = (this.from + this.to) >>> 1;
+
+                invokeAll(
+                        new ReplayTask(deltas, from, middle, chunk, transactions, width, unverified),
+                        new ReplayTask(deltas, middle, to, chunk, transactions, width, unverified)
+                );
+                return;
+            }
+
+            int first = this.from * this.chunk;
+            int last = Math.min(this.transactions, first + this.chunk);
+            long[] delta = new long[this.width];
+
+            for (int id = first; id < last; id++) {
+                Transaction transaction = repoTransaction.getTransactionById(id);
+
+                if (transaction == null) {
+                    continue;
+                }
+
+                switch (transaction.getType()) {
+                    case DEPOSIT:
+                        delta = add(delta, transaction.getAccountIdTo(), transaction.getAmountMinor());
+                        break;
+                    case WITHDRAW:
+                        delta = add(delta, transaction.getAccountIdFrom(), -transaction.getAmountMinor());
+                        break;
+                    case TRANSFER:
+                        if (transaction.hasAmountFrom()) {
+                            delta = add(delta, transaction.getAccountIdFrom(), -transaction.getAmountFromMinor());
+                        } else {
+                            this.unverified.add(transaction.getAccountIdFrom());
+                        }
+
+                        delta = add(delta, transaction.getAccountIdTo(), transaction.getAmountMinor());
+                        break;
+                }
+            }
+
+            this.deltas[this.from] = delta;
+        }
+
+
+        /**
+         * Добавляет проводку к сумме счета, расширяя массив для счетов с id за его пределами.
+         */
+        private long[] add(long[] delta, int accountId, long amount) {
+            if (accountId < 0) {
+                return delta;
+            }
+
+            if (accountId >= delta.length) {
+                delta = Arrays.copyOf(delta, Math.max(accountId + 1, delta.length * 2));
+            }
+
+            delta[accountId] += amount;
+
+            return delta;
+        }
+
+    }
+
+
+    /**
+     * Второй этап: складывает частичные суммы счетов с id из {@code [from, to)} и сравнивает их с балансами.
+     */
+    private class MergeTask extends RecursiveTask<List<ReconciliationReport.Mismatch>> {
+
+        private static final long serialVersionUID = 1L;
+
+        private final long[][] deltas;
+        private final int from;
+        private final int to;
+        private final Set<Integer> unverified;
+
+
+        private MergeTask(long[][] deltas, int from, int to, Set<Integer> unverified) {
+            this.deltas = deltas;
+            this.from = from;
+            this.to = to;
+            this.unverified = unverified;
+        }
+
+
+        @Override
+        protected List<ReconciliationReport.Mismatch> compute() {
+            if (this.to - this.from > MIN_ACCOUNTS_PER_TASK) {
+                int middle = (this.from + this.to) >>> 1;
+
+                MergeTask right = new MergeTask(deltas, middle, to, unverified);
+                right.fork();
+
+                List<ReconciliationReport.Mismatch> result =
+                        new MergeTask(deltas, from, middle, unverified).compute();
+                List<ReconciliationReport.Mismatch> tail = right.join();
+
+                if (result.isEmpty()) {
+                    return tail;
+                }
+
+                if (!tail.isEmpty()) {
+                    result = new ArrayList<>(result);
+                    result.addAll(tail);
+                }
+
+                return result;
+            }
+
+            List<ReconciliationReport.Mismatch> result = Collections.emptyList();
+
+            for (int id = this.from; id < this.to; id++) {
+                long expected = 0;
+
+                for (long[] delta : this.deltas) {
+                    if (id < delta.length) {
+                        expected += delta[id];
+                    }
+                }
+
+                Account account = repoAccount.getAccountById(id);
+
+                // Удаленный счет сходится, если сумма его проводок равна нулю.
+                long actual = account == null ? 0 : account.getBalanceMoney().getMinor();
+
+                if (expected == actual || this.unverified.contains(id)) {
+                    continue;
+                }
+
+                if (result.isEmpty()) {
+                    result = new ArrayList<>();
+                }
+
+                result.add(new ReconciliationReport.Mismatch(
+                        id,
+                        account == null ? null : account.getCurrency(),
+                        expected,
+                        actual
+                ));
+            }
+
+            return result;
+        }
+
+    }
+
+}
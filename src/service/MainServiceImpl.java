@@ -1,5 +1,6 @@
 package service;
 
+import metrics.AccountOperationEvent;
 import model.*;
 import model.enums.CurrencyCode;
 import model.enums.TransactionType;
@@ -8,22 +9,51 @@ import repository.interfaces.AccountRepository;
 import repository.interfaces.CurrencyRepository;
 import repository.interfaces.TransactionRepository;
 import repository.interfaces.UserRepository;
+import repository.journal.Journal;
 import service.interfaces.MainService;
 import utils.*;
 import utils.exceptions.*;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.math.BigDecimal;
-import java.math.MathContext;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.EnumMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
 
 public class MainServiceImpl implements MainService {
 
+    // Тайм-аут простоя сессии по умолчанию (30 минут).
+    private static final long DEFAULT_SESSION_IDLE_MILLIS = 30 * 60 * 1000;
+
+    // Количество и срок жизни ключей идемпотентности (24 часа).
+    private static final int IDEMPOTENCY_KEYS = 1_000_000;
+    private static final long IDEMPOTENCY_TTL_MILLIS = 24 * 60 * 60 * 1000;
+
     private final UserRepository repoUser;
     private final AccountRepository repoAccount;
     private final CurrencyRepository repoCurrency;
     private final TransactionRepository repoTransaction;
-    private User loggedInUser;
+    private final CrossRateMatrix crossRates;
+    private final AccountLocks accountLocks;
+    private final CommissionAccumulator commissions;
+    private final BatchExecutor batches;
+    private final Map<CurrencyCode, BigDecimal> flushedCommissions;
+    private ScheduledExecutorService commissionFlusher;
+    private final SessionManager sessions;
+    private final IdempotencyCache idempotency;
+
+    // Токен сессии активного пользователя консольного интерфейса (null, если никто не вошел).
+    private volatile String activeSession;
 
 
     public MainServiceImpl(
@@ -32,10 +62,86 @@ public class MainServiceImpl implements MainService {
             CurrencyRepository repoCurrency,
             TransactionRepository repoTransaction
     ) {
+        this(repoUser, repoAccount, repoCurrency, repoTransaction, new SessionManager(DEFAULT_SESSION_IDLE_MILLIS));
+    }
+
+
+    /**
+     * Конструктор для создания сервиса над журналируемыми репозиториями: балансы и транзакция одной операции
+     * записываются в журнал одной группой.
+     *
+     * @param journal Журнал репозиториев или {@code null}.
+     */
+    public MainServiceImpl(
+            UserRepository repoUser,
+            AccountRepository repoAccount,
+            CurrencyRepository repoCurrency,
+            TransactionRepository repoTransaction,
+            Journal journal
+    ) {
+        this(repoUser, repoAccount, repoCurrency, repoTransaction, new SessionManager(DEFAULT_SESSION_IDLE_MILLIS), journal);
+    }
+
+
+    /**
+     * Конструктор для создания сервиса с заданным хранилищем сессий.
+     */
+    public MainServiceImpl(
+            UserRepository repoUser,
+            AccountRepository repoAccount,
+            CurrencyRepository repoCurrency,
+            TransactionRepository repoTransaction,
+            SessionManager sessions
+    ) {
+        this(repoUser, repoAccount, repoCurrency, repoTransaction, sessions, null);
+    }
+
+
+    /**
+     * Конструктор для создания сервиса с заданным хранилищем сессий и журналом.
+     *
+     * @param sessions Хранилище сессий.
+     * @param journal  Журнал репозиториев или {@code null}.
+     */
+    public MainServiceImpl(
+            UserRepository repoUser,
+            AccountRepository repoAccount,
+            CurrencyRepository repoCurrency,
+            TransactionRepository repoTransaction,
+            SessionManager sessions,
+            Journal journal
+    ) {
+        if (sessions == null) {
+            throw new IllegalArgumentException("Аргумент sessions не может быть null!");
+        }
+
+        this.sessions = sessions;
         this.repoUser = repoUser;
         this.repoAccount = repoAccount;
         this.repoCurrency = repoCurrency;
         this.repoTransaction = repoTransaction;
+        this.crossRates = new CrossRateMatrix();
+        this.accountLocks = new AccountLocks();
+        this.commissions = new CommissionAccumulator();
+        this.flushedCommissions = new EnumMap<>(CurrencyCode.class);
+        this.batches = new BatchExecutor(repoAccount, repoTransaction, this.crossRates, journal);
+        this.idempotency = new IdempotencyCache(IDEMPOTENCY_KEYS, IDEMPOTENCY_TTL_MILLIS);
+
+        // Заполняем матрицу уже известными курсами и подписываемся на новые.
+        for (CurrencyCode code : CurrencyCode.values()) {
+            BigDecimal rate = this.repoCurrency.getActualRate(code);
+
+            if (rate != null) {
+                this.crossRates.update(code, rate);
+            }
+        }
+
+        this.repoCurrency.addRateListener(this.crossRates);
+
+        // Комиссии, начисленные до перезапуска, но не зачисленные на системные счета.
+        for (CommissionAccumulator.Batch batch : CommissionAccumulator.unsettled(repoTransaction.getAllTransactions()).values()) {
+            this.commissions.add(batch.getAmount(), batch.getCount());
+        }
     }
 
 
@@ -47,7 +153,9 @@ public class MainServiceImpl implements MainService {
      * @return Объект пользователя, или {@code null}.
      */
     public User getActiveUser() {
-        return this.loggedInUser;
+        Session session = this.sessions.get(this.activeSession);
+
+        return session == null ? null : session.getUser();
     }
 
 
@@ -61,7 +169,13 @@ public class MainServiceImpl implements MainService {
             throw new IllegalArgumentException("Аргумент userEmail не может быть null!");
         }
 
-        this.loggedInUser = this.repoUser.getUserByEmail(userEmail);
+        User user = this.repoUser.getUserByEmail(userEmail);
+
+        if (user == null) {
+            this.logout();
+        } else {
+            this.setActiveUser(user);
+        }
     }
 
 
@@ -75,7 +189,7 @@ public class MainServiceImpl implements MainService {
             throw new IllegalArgumentException("Аргумент user не может быть null!");
         }
 
-        this.loggedInUser = user;
+        this.activate(this.sessions.open(user));
     }
 
 
@@ -90,15 +204,7 @@ public class MainServiceImpl implements MainService {
     public boolean registerUser(String email, String password)
             throws UserIsExistsExeption {
 
-        this.validateEmailAndPassword(email, password);
-
-        if (repoUser.isEmailExists(email)) {
-            throw new UserIsExistsExeption("Пользователь с таким email уже существует!");
-        }
-
-        User user = repoUser.addUser(email, password);
-
-        this.setActiveUser(user);
+        this.setActiveUser(this.addUser(email, password, null));
 
         return true;
     }
@@ -116,17 +222,47 @@ public class MainServiceImpl implements MainService {
     public boolean registerUser(String email, String password, UserRole role)
             throws UserIsExistsExeption {
 
+        this.setActiveUser(this.addUser(email, password, role));
+
+        return true;
+    }
+
+
+    /**
+     * Добавляет пользователя без входа в систему: активный пользователь не меняется.
+     *
+     * @param email    Email пользователя.
+     * @param password Пароль.
+     * @return {@code true}, если пользователь добавлен.
+     */
+    @Override
+    public boolean addUser(String email, String password)
+            throws UserIsExistsExeption {
+
+        this.addUser(email, password, null);
+
+        return true;
+    }
+
+
+    /**
+     * Проверяет email и пароль и добавляет пользователя.
+     *
+     * @param email    Email пользователя.
+     * @param password Пароль.
+     * @param role     Роль пользователя ({@code null} - роль по умолчанию).
+     * @return Добавленный пользователь.
+     */
+    private User addUser(String email, String password, UserRole role)
+            throws UserIsExistsExeption {
+
         this.validateEmailAndPassword(email, password);
 
         if (repoUser.isEmailExists(email)) {
             throw new UserIsExistsExeption("Пользователь с таким email уже существует!");
         }
 
-        User user = repoUser.addUser(email, password, role);
-
-        this.setActiveUser(user);
-
-        return true;
+        return role == null ? repoUser.addUser(email, password) : repoUser.addUser(email, password, role);
     }
 
 
@@ -185,6 +321,23 @@ public class MainServiceImpl implements MainService {
      */
     @Override
     public boolean loginUser(String email, String password) {
+        this.activate(this.openSession(email, password));
+
+        return true;
+    }
+
+
+    /**
+     * Открывает сессию пользователя. Все операции от имени пользователя выполняются с токеном сессии, поэтому
+     * один сервис обслуживает любое количество пользователей одновременно.
+     *
+     * @param email    Email пользователя.
+     * @param password Пароль пользователя.
+     * @return Сессия.
+     * @throws SecurityException Неверный email или пароль.
+     */
+    @Override
+    public Session openSession(String email, String password) {
         if (email == null || password == null) {
             throw new SecurityException("Неверный email или пароль!");
         }
@@ -199,9 +352,42 @@ public class MainServiceImpl implements MainService {
             throw new SecurityException("Неверный email или пароль!");
         }
 
-        loggedInUser = user;
+        return this.sessions.open(user);
+    }
+
 
-        return true;
+    /**
+     * Закрывает сессию пользователя.
+     *
+     * @param token Токен сессии.
+     */
+    @Override
+    public void closeSession(String token) {
+        this.sessions.close(token);
+    }
+
+
+    /**
+     * Возвращает пользователя открытой сессии.
+     *
+     * @param token Токен сессии.
+     * @return Пользователь или {@code null}, если сессия не открыта.
+     */
+    @Override
+    public User getSessionUser(String token) {
+        Session session = this.sessions.get(token);
+
+        return session == null ? null : session.getUser();
+    }
+
+
+    /**
+     * Возвращает хранилище сессий.
+     *
+     * @return Хранилище сессий.
+     */
+    public SessionManager getSessions() {
+        return this.sessions;
     }
 
 
@@ -210,7 +396,24 @@ public class MainServiceImpl implements MainService {
      */
     @Override
     public void logout() {
-        loggedInUser = null;
+        String token = this.activeSession;
+        this.activeSession = null;
+        this.sessions.close(token);
+    }
+
+
+    /**
+     * Делает сессию активной для консольного интерфейса, закрывая предыдущую.
+     *
+     * @param session Сессия.
+     */
+    private void activate(Session session) {
+        String previous = this.activeSession;
+        this.activeSession = session.getToken();
+
+        if (previous != null && !previous.equals(session.getToken())) {
+            this.sessions.close(previous);
+        }
     }
 
 
@@ -223,18 +426,30 @@ public class MainServiceImpl implements MainService {
      */
     @Override
     public Account creatAccount(String title, String currencyCode) {
-        if (loggedInUser == null) {
-            throw new SecurityException("Пользователь не авторизован");
-        }
+        return this.creatAccount(this.activeSession, title, currencyCode);
+    }
+
+
+    /**
+     * Добавляет счет к пользователю сессии в определенной валюте.
+     *
+     * @param token        Токен сессии.
+     * @param title        Название счета.
+     * @param currencyCode Код валюты.
+     * @return Счет.
+     */
+    @Override
+    public Account creatAccount(String token, String title, String currencyCode) {
+        User user = this.sessions.require(token).getUser();
 
         if (!CurrencyValidator.isValidCurrencyCode(currencyCode)) {
             throw new CurrencyCodeValidateExeption("Недопустимый код валюты.");
         }
 
         return repoAccount.createAccount(
-                loggedInUser.getEmail(),
-                currencyCode,
-                title
+                user.getEmail(),
+                title,
+                currencyCode
         );
     }
 
@@ -246,11 +461,21 @@ public class MainServiceImpl implements MainService {
      */
     @Override
     public List<Account> getAllAccountsByActiveUser() {
-        if (loggedInUser == null) {
-            throw new SecurityException("Пользователь не авторизован");
-        }
+        return this.getAllAccountsByActiveUser(this.activeSession);
+    }
+
+
+    /**
+     * Возвращает список всех счетов пользователя сессии.
+     *
+     * @param token Токен сессии.
+     * @return Список всех счетов пользователя.
+     */
+    @Override
+    public List<Account> getAllAccountsByActiveUser(String token) {
+        User user = this.sessions.require(token).getUser();
 
-        return repoAccount.getAccountsByUserEmail(loggedInUser.getEmail());
+        return repoAccount.getAccountsByUserEmail(user.getEmail());
     }
 
 
@@ -274,9 +499,20 @@ public class MainServiceImpl implements MainService {
      */
     @Override
     public List<Account> getAccountsByCurrency(String currencyCode) {
-        if (loggedInUser == null) {
-            throw new SecurityException("Пользователь не авторизован");
-        }
+        return this.getAccountsByCurrency(this.activeSession, currencyCode);
+    }
+
+
+    /**
+     * Возвращает список счетов пользователя сессии по коду валюты.
+     *
+     * @param token        Токен сессии.
+     * @param currencyCode Код валюты.
+     * @return Список счетов.
+     */
+    @Override
+    public List<Account> getAccountsByCurrency(String token, String currencyCode) {
+        User user = this.sessions.require(token).getUser();
 
         if (currencyCode == null) {
             throw new IllegalArgumentException("Аргумент currencyCode не должен быть null!");
@@ -286,7 +522,7 @@ public class MainServiceImpl implements MainService {
             throw new CurrencyCodeValidateExeption("Недопустимый код валюты.");
         }
 
-        return repoAccount.getAccountsByCurrencyCode(loggedInUser.getEmail(), currencyCode);
+        return repoAccount.getAccountsByCurrencyCode(user.getEmail(), currencyCode);
     }
 
 
@@ -296,6 +532,7 @@ public class MainServiceImpl implements MainService {
      * @param userEmail Email пользователя.
      * @return Список счетов.
      */
+    @Override
     public List<Account> getAccountsByUser(String userEmail) {
         if (userEmail == null) {
             throw new IllegalArgumentException("Аргумент userEmail не должен быть null!");
@@ -319,47 +556,61 @@ public class MainServiceImpl implements MainService {
      */
     @Override
     public boolean deposit(int accountId, BigDecimal money) {
-        if (loggedInUser == null) {
-            throw new SecurityException("Пользователь не авторизован!");
-        }
-
-        if (money == null || money.compareTo(BigDecimal.ZERO) <= 0) {
-            throw new IllegalArgumentException("Сумма для депозита должна быть больше нуля!");
-        }
+        return this.deposit(this.activeSession, accountId, money);
+    }
 
-        Account account = repoAccount.getAccountById(accountId);
 
-        if (account == null) {
-            throw new IllegalArgumentException("Счет с таким ID не найден!");
-        }
+    /**
+     * Добавляет сумму к счету пользователя сессии.
+     *
+     * @param token     Токен сессии.
+     * @param accountId Id счета.
+     * @param money     Сумма.
+     * @return {@code true}, если операция выполнена.
+     */
+    @Override
+    public boolean deposit(String token, int accountId, BigDecimal money) {
+        return this.applyDeposit(this.sessions.require(token).getUser(), accountId, money) != null;
+    }
 
-        if (!account.getUserEmail().equals(loggedInUser.getEmail())) {
-            throw new SecurityException("Этот счет не принадлежит текущему пользователю!");
-        }
 
-        // Взять комиссию.
-        BigDecimal fee = BigDecimal.valueOf(0);
-        if (accountId > 0 ) {
-            BigDecimal feePercentage = new BigDecimal("0.02");
-            fee = money.multiply(feePercentage);
-            money = money.subtract(fee);
-            this.addCommissionToSystemAccount(0, fee);
-        }
+    /**
+     * Добавляет сумму к счету пользователя сессии не более одного раза для ключа идемпотентности. Повтор запроса
+     * с тем же ключом возвращает исходную транзакцию.
+     *
+     * @param token          Токен сессии.
+     * @param accountId      Id счета.
+     * @param money          Сумма.
+     * @param idempotencyKey Ключ идемпотентности или {@code null}.
+     * @return Транзакция операции.
+     */
+    @Override
+    public Transaction deposit(String token, int accountId, BigDecimal money, String idempotencyKey) {
+        User user = this.sessions.require(token).getUser();
+
+        return this.idempotency.execute(
+                user.getEmail(),
+                idempotencyKey,
+                idempotencyRequest("DEPOSIT", accountId, accountId, money),
+                () -> this.applyDeposit(user, accountId, money)
+        );
+    }
 
-        account.setBalance(account.getBalance().add(money));
 
-        Transaction transaction = this.repoTransaction.createTransaction(
-                TransactionType.DEPOSIT,
-                loggedInUser.getEmail(),
-                accountId,
-                account.getCurrency(),
-                loggedInUser.getEmail(),
-                accountId,
-                account.getCurrency(),
-                money
-        );
+    /**
+     * Пополняет счет пользователя. Все варианты {@code deposit} выполняют операцию через этот метод.
+     *
+     * @param user      Пользователь.
+     * @param accountId Id счета.
+     * @param money     Сумма.
+     * @return Транзакция операции.
+     */
+    protected Transaction applyDeposit(User user, int accountId, BigDecimal money) {
+        if (money == null || money.compareTo(BigDecimal.ZERO) <= 0) {
+            throw new IllegalArgumentException("Сумма для депозита должна быть больше нуля!");
+        }
 
-        return true;
+        return this.execute(user, BatchCommand.deposit(accountId, money), "DEPOSIT");
     }
 
 
@@ -371,51 +622,61 @@ public class MainServiceImpl implements MainService {
      */
     @Override
     public boolean withdrawal(int accountId, BigDecimal money) {
-        if (loggedInUser == null) {
-            throw new SecurityException("Пользователь не авторизован!");
-        }
+        return this.withdrawal(this.activeSession, accountId, money);
+    }
 
-        if (money == null || money.compareTo(BigDecimal.ZERO) <= 0) {
-            throw new IllegalArgumentException("Сумма для снятия должна быть больше нуля!");
-        }
 
-        Account account = repoAccount.getAccountById(accountId);
+    /**
+     * Снимает сумму со счета пользователя сессии.
+     *
+     * @param token     Токен сессии.
+     * @param accountId Id счета.
+     * @param money     Сумма.
+     * @return {@code true}, если операция выполнена.
+     */
+    @Override
+    public boolean withdrawal(String token, int accountId, BigDecimal money) {
+        return this.applyWithdrawal(this.sessions.require(token).getUser(), accountId, money) != null;
+    }
 
-        if (account == null) {
-            throw new IllegalArgumentException("Счет с таким ID не найден!");
-        }
 
-        if (!account.getUserEmail().equals(loggedInUser.getEmail())) {
-            throw new SecurityException("Этот счет не принадлежит текущему пользователю!");
-        }
+    /**
+     * Снимает сумму со счета пользователя сессии не более одного раза для ключа идемпотентности. Повтор запроса
+     * с тем же ключом возвращает исходную транзакцию.
+     *
+     * @param token          Токен сессии.
+     * @param accountId      Id счета.
+     * @param money          Сумма.
+     * @param idempotencyKey Ключ идемпотентности или {@code null}.
+     * @return Транзакция операции.
+     */
+    @Override
+    public Transaction withdrawal(String token, int accountId, BigDecimal money, String idempotencyKey) {
+        User user = this.sessions.require(token).getUser();
+
+        return this.idempotency.execute(
+                user.getEmail(),
+                idempotencyKey,
+                idempotencyRequest("WITHDRAW", accountId, accountId, money),
+                () -> this.applyWithdrawal(user, accountId, money)
+        );
+    }
 
-        if (account.getBalance().compareTo(money) < 0) {
-            throw new IllegalArgumentException("Недостаточно средств на счете!");
-        }
 
-        // Взять комиссию.
-        BigDecimal fee = BigDecimal.valueOf(0);
-        if (accountId > 0 ) {
-            BigDecimal feePercentage = new BigDecimal("0.02");
-            fee = money.multiply(feePercentage);
-            money = money.subtract(fee);
-            this.addCommissionToSystemAccount(0, fee);
+    /**
+     * Снимает сумму со счета пользователя. Все варианты {@code withdrawal} выполняют операцию через этот метод.
+     *
+     * @param user      Пользователь.
+     * @param accountId Id счета.
+     * @param money     Сумма.
+     * @return Транзакция операции.
+     */
+    protected Transaction applyWithdrawal(User user, int accountId, BigDecimal money) {
+        if (money == null || money.compareTo(BigDecimal.ZERO) <= 0) {
+            throw new IllegalArgumentException("Сумма для снятия должна быть больше нуля!");
         }
 
-        account.setBalance(account.getBalance().subtract(money));
-
-        Transaction transaction = this.repoTransaction.createTransaction(
-                TransactionType.WITHDRAW,
-                loggedInUser.getEmail(),
-                accountId,
-                account.getCurrency(),
-                loggedInUser.getEmail(),
-                accountId,
-                account.getCurrency(),
-                money
-        );
-
-        return true;
+        return this.execute(user, BatchCommand.withdrawal(accountId, money), "WITHDRAWAL");
     }
 
 
@@ -429,59 +690,159 @@ public class MainServiceImpl implements MainService {
      */
     @Override
     public boolean exchange(int accountId1, int accountId2, BigDecimal money) {
-        if (loggedInUser == null) {
-            throw new SecurityException("Пользователь не авторизован!");
-        }
+        return this.exchange(this.activeSession, accountId1, accountId2, money);
+    }
+
 
+    /**
+     * Переводит сумму между счетами от имени пользователя сессии.
+     *
+     * @param token      Токен сессии.
+     * @param accountId1 Id счета списания.
+     * @param accountId2 Id счета зачисления.
+     * @param money      Сумма.
+     * @return {@code true}, если операция выполнена.
+     */
+    @Override
+    public boolean exchange(String token, int accountId1, int accountId2, BigDecimal money) {
+        return this.applyExchange(this.sessions.require(token).getUser(), accountId1, accountId2, money) != null;
+    }
+
+
+    /**
+     * Переводит сумму между счетами от имени пользователя сессии не более одного раза для ключа идемпотентности. Повтор запроса
+     * с тем же ключом возвращает исходную транзакцию.
+     *
+     * @param token          Токен сессии.
+     * @param accountId1     Id счета списания.
+     * @param accountId2     Id счета зачисления.
+     * @param money          Сумма.
+     * @param idempotencyKey Ключ идемпотентности или {@code null}.
+     * @return Транзакция операции.
+     */
+    @Override
+    public Transaction exchange(String token, int accountId1, int accountId2, BigDecimal money, String idempotencyKey) {
+        User user = this.sessions.require(token).getUser();
+
+        return this.idempotency.execute(
+                user.getEmail(),
+                idempotencyKey,
+                idempotencyRequest("TRANSFER", accountId1, accountId2, money),
+                () -> this.applyExchange(user, accountId1, accountId2, money)
+        );
+    }
+
+
+    /**
+     * Переводит сумму между счетами пользователя. Все варианты {@code exchange} выполняют операцию через этот
+     * метод.
+     *
+     * @param user       Пользователь.
+     * @param accountId1 Id счета списания.
+     * @param accountId2 Id счета зачисления.
+     * @param money      Сумма.
+     * @return Транзакция операции.
+     */
+    protected Transaction applyExchange(User user, int accountId1, int accountId2, BigDecimal money) {
         if (money == null || money.compareTo(BigDecimal.ZERO) <= 0) {
             throw new IllegalArgumentException("Сумма для обмена должна быть больше нуля!");
         }
 
-        Account account1 = repoAccount.getAccountById(accountId1);
-        Account account2 = repoAccount.getAccountById(accountId2);
+        return this.execute(user, BatchCommand.exchange(accountId1, accountId2, money), "EXCHANGE");
+    }
 
-        if (account1 == null || account2 == null) {
-            throw new IllegalArgumentException("Один или оба счета не найдены!");
-        }
 
-        if (account1.getBalance().compareTo(money) < 0) {
-            throw new IllegalArgumentException("Недостаточно средств на счете для обмена!");
-        }
+    /**
+     * Выполняет одиночную операцию под блокировками ее счетов. Операция проверяется и рассчитывается до
+     * захвата блокировок, а после захвата {@link BatchExecutor} повторно проверяет, что счета не удалены.
+     *
+     * @param user    Пользователь.
+     * @param command Операция.
+     * @param name    Имя операции для события JFR.
+     * @return Транзакция операции.
+     */
+    private Transaction execute(User user, BatchCommand command, String name) {
+        AccountOperationEvent event = new AccountOperationEvent();
+        event.begin();
 
-        BigDecimal course = this.crossCourse(account1.getCurrency(), account2.getCurrency());
+        BatchExecutor.Item operation = this.batches.prepare(user.getEmail(), command);
+        Account from = operation.getFrom();
+        Account to = operation.getTo();
 
-        if (course == null) {
-            throw new IllegalArgumentException("Не удалось найти курс для обмена!");
+        // Блокировки обоих счетов захватываются в фиксированном порядке.
+        long lockWait = this.accountLocks.lock(from.getId(), to.getId());
+        Transaction transaction;
+        try {
+            transaction = this.batches.execute(operation);
+        } finally {
+            this.accountLocks.unlock(from.getId(), to.getId());
         }
 
-        account1.setBalance(account1.getBalance().subtract(money));
+        this.chargeCommission(operation.getFee());
+
+        event.record(
+                name,
+                from.getId(),
+                to.getId(),
+                from.getCurrency(),
+                to.getCurrency(),
+                command.getAmount(),
+                lockWait
+        );
+
+        return transaction;
+    }
+
+
+    /**
+     * Выполняет пакет операций активного пользователя.
+     *
+     * @param commands Операции в порядке выполнения.
+     * @param atomic   {@code true} - все или ничего, {@code false} - каждая операция по отдельности.
+     * @return Итог пакета по каждой операции.
+     */
+    @Override
+    public BatchResult executeBatch(List<BatchCommand> commands, boolean atomic) {
+        return this.executeBatch(this.activeSession, commands, atomic);
+    }
+
 
-        money = money.multiply(course);
+    /**
+     * Выполняет пакет операций пользователя сессии. Все операции проверяются до захвата блокировок; блокировки
+     * счетов пакета захватываются один раз в порядке возрастания, балансы сохраняются по одному разу на счет,
+     * а транзакции записываются одной пачкой.
+     *
+     * @param token    Токен сессии.
+     * @param commands Операции в порядке выполнения.
+     * @param atomic   {@code true} - все или ничего, {@code false} - каждая операция по отдельности.
+     * @return Итог пакета по каждой операции.
+     */
+    @Override
+    public BatchResult executeBatch(String token, List<BatchCommand> commands, boolean atomic) {
+        User user = this.sessions.require(token).getUser();
 
-        // Взять комиссию.
-        BigDecimal fee = BigDecimal.valueOf(0);
-        if (accountId1 > 0 ) {
-            BigDecimal feePercentage = new BigDecimal("0.02");
-            fee = money.multiply(feePercentage);
-            money = money.subtract(fee);
-            this.addCommissionToSystemAccount(0, fee);
+        BatchExecutor.Plan plan = this.batches.prepare(user.getEmail(), commands);
+
+        if (atomic && plan.hasErrors()) {
+            return plan.reject();
         }
 
-        account2.setBalance(account2.getBalance().add(money));
+        List<Money> fees = new ArrayList<>();
+        int[] accountIds = plan.getAccountIds();
+        BatchResult result;
 
-        Transaction transaction = this.repoTransaction.createTransaction(
-                TransactionType.TRANSFER,
-                loggedInUser.getEmail(),
-                accountId1,
-                account1.getCurrency(),
-                loggedInUser.getEmail(),
-                accountId2,
-                account2.getCurrency(),
-                money,
-                course
-        );
+        this.accountLocks.lockAll(accountIds);
+        try {
+            result = this.batches.execute(plan, atomic, fees::add);
+        } finally {
+            this.accountLocks.unlockAll(accountIds);
+        }
 
-        return true;
+        for (Money fee : fees) {
+            this.chargeCommission(fee);
+        }
+
+        return result;
     }
 
 
@@ -492,6 +853,19 @@ public class MainServiceImpl implements MainService {
      * @param commission
      */
     public Transaction addCommissionToSystemAccount(int systemAccountId, BigDecimal commission) {
+        return this.addCommissionToSystemAccount(systemAccountId, commission, null);
+    }
+
+
+    /**
+     * Отправляем комиссию в системный счет одной проводкой.
+     *
+     * @param systemAccountId Идентификатор системного счета.
+     * @param commission      Сумма комиссии.
+     * @param comment         Комментарий к проводке.
+     * @return Транзакция зачисления комиссии.
+     */
+    private Transaction addCommissionToSystemAccount(int systemAccountId, BigDecimal commission, String comment) {
         // Получение системного счёта
         Optional<Account> systemAccount = Optional.ofNullable(repoAccount.getAccountById(systemAccountId));
 
@@ -499,55 +873,271 @@ public class MainServiceImpl implements MainService {
             throw new IllegalStateException("Системный счёт не найден!");
         }
 
-        // Добавление комиссии
+        // Добавление комиссии. Вызывается без блокировок счетов пользователя,
+        // поэтому блокировка системного счета никогда не захватывается вложенно.
         Account account = systemAccount.get();
-        BigDecimal newBalance = account.getBalance().add(commission);
-        account.setBalance(newBalance);
-
-        return this.repoTransaction.createTransaction(
-                TransactionType.WITHDRAW,
-                loggedInUser.getEmail(),
-                systemAccountId,
-                account.getCurrency(),
-                loggedInUser.getEmail(),
-                systemAccountId,
-                account.getCurrency(),
-                commission
+
+        this.accountLocks.lock(systemAccountId);
+        try {
+            BigDecimal oldBalance = account.getBalance();
+
+            return this.batches.atomic(() -> {
+                account.setBalance(oldBalance.add(commission));
+                try {
+                    this.repoAccount.updateBalance(account);
+                } catch (RuntimeException e) {
+                    // Баланс не сохранен: комиссия вернется в накопитель и не должна остаться на счете.
+                    account.setBalance(oldBalance);
+                    throw e;
+                }
+
+                return this.repoTransaction.createTransaction(
+                        TransactionType.DEPOSIT,
+                        account.getUserEmail(),
+                        systemAccountId,
+                        account.getCurrency(),
+                        account.getUserEmail(),
+                        systemAccountId,
+                        account.getCurrency(),
+                        commission,
+                        null,
+                        comment
+                );
+            });
+        } finally {
+            this.accountLocks.unlock(systemAccountId);
+        }
+    }
+
+
+    /**
+     * Начисляет комиссию в накопитель. На системный счет она попадет при следующем {@link #flushCommissions()}.
+     *
+     * @param fee Сумма комиссии.
+     */
+    private void chargeCommission(Money fee) {
+        if (fee.signum() <= 0) {
+            return;
+        }
+
+        this.commissions.add(fee);
+    }
+
+
+    /**
+     * Переводит сумму операции в {@link Money} валюты счета.
+     *
+     * @param currencyCode Валюта счета.
+     * @param money        Сумма операции.
+     * @return Сумма.
+     * @throws IllegalArgumentException Если после округления до точности валюты сумма не больше нуля.
+     */
+    private Money toMoney(CurrencyCode currencyCode, BigDecimal money) {
+        Money amount = Money.of(currencyCode, money);
+
+        if (amount.signum() <= 0) {
+            throw new IllegalArgumentException("Сумма меньше минимальной единицы валюты " + currencyCode + "!");
+        }
+
+        return amount;
+    }
+
+
+    /**
+     * Описывает запрос для ключа идемпотентности: повтор ключа с другими аргументами отклоняется. Суммы,
+     * отличающиеся только незначащими нулями, считаются одинаковыми.
+     *
+     * @param operation  Операция.
+     * @param accountId1 Id счета списания.
+     * @param accountId2 Id счета зачисления.
+     * @param money      Сумма.
+     * @return Описание запроса.
+     */
+    private static String idempotencyRequest(String operation, int accountId1, int accountId2, BigDecimal money) {
+        return operation + ':' + accountId1 + ':' + accountId2 + ':'
+               + (money == null ? null : money.stripTrailingZeros().toPlainString());
+    }
+
+
+    /**
+     * Зачисляет накопленные комиссии на системные счета соответствующих валют, по одной проводке на валюту.
+     * Комиссии в валютах без системного счета остаются в накопителе.
+     *
+     * @return Зачисленные суммы по валютам.
+     * @throws RuntimeException Ошибка зачисления; незачисленная партия возвращается в накопитель.
+     */
+    public synchronized Map<CurrencyCode, BigDecimal> flushCommissions() {
+        Map<CurrencyCode, BigDecimal> result = new EnumMap<>(CurrencyCode.class);
+
+        for (CurrencyCode code : CurrencyCode.values()) {
+            CommissionAccumulator.Batch batch = this.commissions.drain(code);
+
+            if (batch == null) {
+                continue;
+            }
+
+            Account systemAccount = this.repoAccount.getSystemAccount(code.name());
+
+            if (systemAccount == null) {
+                this.commissions.restore(batch);
+                continue;
+            }
+
+            BigDecimal amount = batch.getAmount().toBigDecimal();
+
+            try {
+                this.addCommissionToSystemAccount(
+                        systemAccount.getId(),
+                        amount,
+                        CommissionAccumulator.comment(batch.getCount())
+                );
+            } catch (RuntimeException e) {
+                this.commissions.restore(batch);
+                throw e;
+            }
+
+            this.flushedCommissions.merge(code, amount, BigDecimal::add);
+            result.put(code, amount);
+        }
+
+        return result;
+    }
+
+
+    /**
+     * Строго сверяет комиссии: сумма начисленных должна быть равна сумме зачисленных на системные счета и
+     * ожидающих зачисления.
+     *
+     * @throws IllegalStateException Если суммы не сходятся.
+     */
+    public synchronized void reconcileCommissions() {
+        this.commissions.reconcile(this.flushedCommissions);
+    }
+
+
+    /**
+     * Возвращает комиссии, ожидающие зачисления на системные счета.
+     *
+     * @return Суммы по валютам.
+     */
+    public Map<CurrencyCode, BigDecimal> getPendingCommissions() {
+        return this.commissions.getPending();
+    }
+
+
+    /**
+     * Запускает периодическое зачисление комиссий в фоновом потоке. Ошибка зачисления выводится в
+     * {@code System.err} и не останавливает следующие попытки.
+     *
+     * @param periodMillis Период в миллисекундах.
+     */
+    public synchronized void startCommissionFlush(long periodMillis) {
+        if (this.commissionFlusher != null) {
+            return;
+        }
+
+        this.commissionFlusher = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "commission-flush");
+            thread.setDaemon(true);
+            return thread;
+        });
+
+        this.commissionFlusher.scheduleWithFixedDelay(
+                () -> {
+                    try {
+                        this.flushCommissions();
+                    } catch (RuntimeException e) {
+                        System.err.println("Не удалось зачислить комиссии: " + e.getMessage());
+                    }
+                },
+                periodMillis,
+                periodMillis,
+                TimeUnit.MILLISECONDS
         );
     }
 
 
+    /**
+     * Останавливает периодическое зачисление комиссий и зачисляет остаток.
+     */
+    public synchronized void stopCommissionFlush() {
+        if (this.commissionFlusher != null) {
+            this.commissionFlusher.shutdown();
+            this.commissionFlusher = null;
+        }
+
+        this.flushCommissions();
+    }
+
+
+    /**
+     * Забирает из накопителя комиссии, ожидающие зачисления, для зачисления в обход него.
+     *
+     * @return Партии по валютам.
+     */
+    protected final List<CommissionAccumulator.Batch> takePendingCommissions() {
+        List<CommissionAccumulator.Batch> result = new ArrayList<>();
+
+        for (CurrencyCode code : CurrencyCode.values()) {
+            CommissionAccumulator.Batch batch = this.commissions.take(code);
+
+            if (batch != null) {
+                result.add(batch);
+            }
+        }
+
+        return result;
+    }
+
+
+    /**
+     * Возвращает матрицу кросс-курсов, обновляемую при публикации курсов.
+     *
+     * @return Матрица кросс-курсов.
+     */
+    protected final CrossRateMatrix getCrossRates() {
+        return this.crossRates;
+    }
+
+
     /**
      * Вычисляет кросс-курс между двумя валютами.
      *
      * @param target Код целевой валюты (например, "USD").
      * @param source Код исходной валюты (например, "EUR").
-     * @return Кросс-курс между целевой и исходной валютами.
+     * @return Кросс-курс между целевой и исходной валютами, или {@code null}, если курс одной из валют неизвестен.
      *
      * @throws IllegalArgumentException Если один из кодов валют null, пуст, или не соответствует допустимому значению.
      */
     @Override
     public BigDecimal crossCourse(String target, String source) {
+        CrossRate crossRate = this.crossRate(target, source);
+
+        return crossRate == null ? null : crossRate.getCourse();
+    }
+
+
+    /**
+     * Возвращает кросс-курс между двумя валютами из матрицы кросс-курсов вместе с его версией.
+     *
+     * @param target Код целевой валюты (например, "USD").
+     * @param source Код исходной валюты (например, "EUR").
+     * @return Кросс-курс или {@code null}, если курс одной из валют неизвестен.
+     *
+     * @throws IllegalArgumentException Если один из кодов валют null, пуст, или не соответствует допустимому значению.
+     */
+    private CrossRate crossRate(String target, String source) {
         if (target == null || source == null || target.isEmpty() || source.isEmpty()) {
             throw new IllegalArgumentException("Коды валют не могут быть null или пустыми.");
         }
 
-        // Если валюты совпадают, курс равен 1.
-        if (target.equalsIgnoreCase(source)) {
-            return BigDecimal.ONE;
-        }
-
         try {
             // Преобразуем коды валют в enum.
             CurrencyCode targetEnum = CurrencyCode.valueOf(target.toUpperCase());
             CurrencyCode sourceEnum = CurrencyCode.valueOf(source.toUpperCase());
 
-            // Получаем курс валют к USD.
-            BigDecimal targetRate = this.repoCurrency.getActualRate(targetEnum);
-            BigDecimal sourceRate = this.repoCurrency.getActualRate(sourceEnum);
-
-            // Вычисляем кросс-курс: target к source через USD.
-            return targetRate.divide(sourceRate, MathContext.DECIMAL64);
+            // Кросс-курс target к source через USD уже рассчитан в матрице (для одной валюты - 1).
+            return this.crossRates.get(targetEnum, sourceEnum);
         } catch (IllegalArgumentException e) {
             throw new IllegalArgumentException("Некорректный код валюты: " + e.getMessage());
         }
@@ -579,9 +1169,20 @@ public class MainServiceImpl implements MainService {
     @Override
     public void removeAccount(int id)
             throws Exception {
-        if (loggedInUser == null) {
-            throw new SecurityException("Пользователь не авторизован!");
-        }
+        this.removeAccount(this.activeSession, id);
+    }
+
+
+    /**
+     * Удаляет счет пользователя сессии.
+     *
+     * @param token Токен сессии.
+     * @param id    Уникальный идентификатор счета.
+     */
+    @Override
+    public void removeAccount(String token, int id)
+            throws Exception {
+        User user = this.sessions.require(token).getUser();
 
         Account account = repoAccount.getAccountById(id);
 
@@ -589,16 +1190,21 @@ public class MainServiceImpl implements MainService {
             throw new IllegalArgumentException("Счет с таким ID не найден!");
         }
 
-        if (!account.getUserEmail().equals(loggedInUser.getEmail())) {
+        if (!account.getUserEmail().equals(user.getEmail())) {
             throw new SecurityException("Этот счет не принадлежит текущему пользователю!");
         }
 
-        // Проверяем, что на счёте нет денег
-        if (account.getBalance().compareTo(BigDecimal.ZERO) > 0) {
-            throw new Exception("Невозможно удалить счёт с положительным балансом. Пожалуйста, сначала обнулите баланс.");
+        this.accountLocks.lock(id);
+        try {
+            // Проверяем, что на счёте нет денег
+            if (account.getBalance().compareTo(BigDecimal.ZERO) > 0) {
+                throw new Exception("Невозможно удалить счёт с положительным балансом. Пожалуйста, сначала обнулите баланс.");
+            }
+
+            repoAccount.removeAccount(id);
+        } finally {
+            this.accountLocks.unlock(id);
         }
-
-        repoAccount.removeAccount(id);
     }
 
 
@@ -619,6 +1225,10 @@ public class MainServiceImpl implements MainService {
         }
 
         user.setRole(UserRole.BLOCKED);
+        this.repoUser.updateUser(user);
+
+        // Заблокированный пользователь теряет все открытые сессии.
+        this.sessions.closeAll(user.getEmail());
     }
 
 
@@ -639,6 +1249,7 @@ public class MainServiceImpl implements MainService {
         }
 
         user.setRole(UserRole.USER);
+        this.repoUser.updateUser(user);
     }
 
 
@@ -671,21 +1282,112 @@ public class MainServiceImpl implements MainService {
     }
 
     /**
-     * @param startDate
-     * @param endDate
+     * Экспортирует транзакции за период в CSV-файл {@code transactions_<начало>_<конец>.csv} в текущем каталоге.
+     *
+     * @param startDate Дата начала периода (формат: YYYY-MM-DD, включительно).
+     * @param endDate   Дата конца периода (формат: YYYY-MM-DD, включительно).
+     * @return Итог экспорта.
+     * @throws IOException Ошибка записи файла.
+     */
+    @Override
+    public ExportReport exportTransactions(String startDate, String endDate)
+            throws IOException {
+        LocalDate from = this.parseDate(startDate);
+        LocalDate to = this.parseDate(endDate);
+
+        return this.exportTransactions(from, to, Path.of("transactions_" + from + "_" + to + ".csv"));
+    }
+
+
+    /**
+     * Экспортирует транзакции за период в CSV-файл. Транзакции читаются из репозитория потоком в порядке дат и
+     * сразу записываются в файл, поэтому расход памяти не зависит от количества строк.
+     *
+     * @param from Первый день периода (включительно).
+     * @param to   Последний день периода (включительно).
+     * @param file Файл (перезаписывается).
+     * @return Итог экспорта.
+     * @throws IOException Ошибка записи файла.
+     */
+    public ExportReport exportTransactions(LocalDate from, LocalDate to, Path file)
+            throws IOException {
+        if (from == null || to == null || file == null) {
+            throw new IllegalArgumentException("Аргументы from, to и file не могут быть null!");
+        }
+
+        if (from.isAfter(to)) {
+            throw new IllegalArgumentException("Дата начала периода не может быть позже даты конца!");
+        }
+
+        long start = System.nanoTime();
+        long rows;
+
+        try (TransactionCsvWriter writer = new TransactionCsvWriter(file)) {
+            try {
+                this.repoTransaction.forEachTransaction(from, to, transaction -> {
+                    try {
+                        writer.write(transaction);
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                });
+            } catch (UncheckedIOException e) {
+                throw e.getCause();
+            }
+
+            rows = writer.getRows();
+        }
+
+        // Время считается после закрытия файла, чтобы включать запись буфера на диск.
+        return new ExportReport(file, rows, System.nanoTime() - start);
+    }
+
+
+    /**
+     * Импортирует курсы валют из CSV-файла формата {@code валюта,курс,время} (см. {@link RateImporter}).
+     *
+     * @param filePath Путь к файлу.
+     * @return Итог импорта.
+     * @throws IOException Ошибка чтения файла.
+     */
+    @Override
+    public ImportReport importCurrencyRates(String filePath)
+            throws IOException {
+        if (filePath == null || filePath.isBlank()) {
+            throw new IllegalArgumentException("Путь к файлу не может быть пустым!");
+        }
+
+        Path file = Path.of(filePath.trim());
+
+        if (!Files.isRegularFile(file)) {
+            throw new IllegalArgumentException("Файл " + file + " не найден!");
+        }
+
+        return new RateImporter(this.repoCurrency).importFile(file);
+    }
+
+
+    /**
+     * Сверяет балансы счетов с журналом транзакций (см. {@link LedgerReconciler}).
+     *
+     * @return Итог сверки.
      */
     @Override
-    public void exportTransactions(String startDate, String endDate) {
-        // TODO: exportTransactions()
+    public ReconciliationReport reconcileLedger() {
+        return new LedgerReconciler(this.repoAccount, this.repoTransaction).reconcile();
     }
 
 
     /**
-     * @param filePath
+     * Возвращает обороты за день по валютным парам и типам транзакций. Обороты ведет репозиторий транзакций
+     * при добавлении каждой транзакции, поэтому журнал не просматривается.
+     *
+     * @param date День (формат: YYYY-MM-DD).
+     * @return Обороты, упорядоченные по типу транзакции и валютам.
      */
     @Override
-    public void importCurrencyRates(String filePath) {
-        // TODO: importCurrencyRates()
+    public List<DailyVolume> getDailyVolumes(String date) {
+        return this.repoTransaction.getDailyVolumes(this.parseDate(date));
     }
 
 
@@ -693,11 +1395,49 @@ public class MainServiceImpl implements MainService {
      * @param accountId
      * @return
      */
+    @Override
     public List<Transaction> getTransactionsByAccountId(int accountId) {
         return this.repoTransaction.getTransactionsByAccountId(accountId);
     }
 
 
+    /**
+     * Возвращает историю операций счета пользователя сессии (транзакции, в которых счет является счетом "в").
+     *
+     * @param token     Токен сессии.
+     * @param accountId Id счета.
+     * @return Список транзакций в порядке создания.
+     */
+    @Override
+    public List<Transaction> getTransactionsByAccountId(String token, int accountId) {
+        User user = this.sessions.require(token).getUser();
+        Account account = repoAccount.getAccountById(accountId);
+
+        if (account == null) {
+            throw new IllegalArgumentException("Счет с таким ID не найден!");
+        }
+
+        if (!account.getUserEmail().equals(user.getEmail()) && !user.isAdmin()) {
+            throw new SecurityException("Этот счет не принадлежит текущему пользователю!");
+        }
+
+        return this.repoTransaction.getTransactionsByAccountId(accountId);
+    }
+
+
+    private LocalDate parseDate(String date) {
+        if (date == null) {
+            throw new IllegalArgumentException("Дата не может быть null!");
+        }
+
+        try {
+            return LocalDate.parse(date.trim());
+        } catch (DateTimeParseException e) {
+            throw new IllegalArgumentException("Неверный формат даты: " + date + " (ожидается YYYY-MM-DD)!");
+        }
+    }
+
+
     private void validateEmailAndPassword(String email, String password) {
         if (!EmailValidator.isValidEmail(email)) {
             throw new EmailValidateException("Email не прошел проверку!");
@@ -0,0 +1,480 @@
+package service;
+
+import model.ImportReport;
+import model.Rate;
+import model.enums.CurrencyCode;
+import repository.interfaces.CurrencyRepository;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.time.Month;
+import java.time.Year;
+import java.util.*;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+
+/**
+ * Массовый импорт курсов валют из CSV-файла формата {@code валюта,курс,время}, например
+ * {@code EUR,1.0852,2024-01-01T12:00:00.250}. Время - {@code yyyy-MM-dd[T| ]HH:mm[:ss[.fffffffff]]}.
+ * Первая строка может быть заголовком ({@code currency,...}), пустые строки и строки с {@code #} пропускаются.
+ *
+ * <p>Файл отображается в память кусками по границам строк; куски разбираются параллельно в
+ * {@link ForkJoinPool} прямо из байтов, без промежуточных строк и исключений: некорректная строка только
+ * увеличивает счетчик отклоненных. Затем курсы каждой валюты сортируются по времени и добавляются в
+ * репозиторий пачками через {@link CurrencyRepository#addRates(List)}.</p>
+ */
+public class RateImporter {
+
+    // Размер куска файла по умолчанию.
+    private static final int DEFAULT_CHUNK_SIZE = 16 * 1024 * 1024;
+
+    // Количество курсов в одной пачке вставки.
+    private static final int BATCH_SIZE = 16 * 1024;
+
+    // Максимальное количество цифр курса, которое помещается в long.
+    private static final int MAX_LONG_DIGITS = 18;
+
+    private static final CurrencyCode[] CODES = CurrencyCode.values();
+
+    // Коды валют в байтах ASCII (для сравнения без создания строк).
+    private static final byte[][] CODE_BYTES = new byte[CODES.length][];
+
+    private static final byte[] HEADER = "currency".getBytes(StandardCharsets.US_ASCII);
+
+    static {
+        for (int i = 0; i < CODES.length; i++) {
+            CODE_BYTES[i] = CODES[i].name().getBytes(StandardCharsets.US_ASCII);
+        }
+    }
+
+    private final CurrencyRepository repository;
+    private final ForkJoinPool pool;
+    private final int chunkSize;
+
+
+    public RateImporter(CurrencyRepository repository) {
+        this(repository, ForkJoinPool.commonPool(), DEFAULT_CHUNK_SIZE);
+    }
+
+
+    /**
+     * Конструктор для импорта в репозиторий с заданным пулом разбора.
+     *
+     * @param repository Репозиторий курсов.
+     * @param pool       Пул потоков разбора.
+     * @param chunkSize  Размер куска файла в байтах (строка не может быть длиннее куска).
+     */
+    public RateImporter(CurrencyRepository repository, ForkJoinPool pool, int chunkSize) {
+        if (repository == null || pool == null) {
+            throw new IllegalArgumentException("Аргументы repository и pool не могут быть null!");
+        }
+
+        if (chunkSize <= 0) {
+            throw new IllegalArgumentException("Размер куска должен быть больше нуля!");
+        }
+
+        this.repository = repository;
+        this.pool = pool;
+        this.chunkSize = chunkSize;
+    }
+
+
+    /**
+     * Импортирует курсы из файла.
+     *
+     * @param file Файл.
+     * @return Итог импорта.
+     * @throws IOException Ошибка чтения файла.
+     */
+    public ImportReport importFile(Path file) throws IOException {
+        if (file == null) {
+            throw new IllegalArgumentException("Аргумент file не может быть null!");
+        }
+
+        long start = System.nanoTime();
+        List<ForkJoinTask<Chunk>> tasks = new ArrayList<>();
+
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            List<Long> bounds = this.boundaries(channel);
+
+            for (int i = 0; i + 1 < bounds.size(); i++) {
+                long from = bounds.get(i);
+                MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, from, bounds.get(i + 1) - from);
+
+                tasks.add(this.pool.submit(() -> parse(buffer, from == 0)));
+            }
+        }
+
+        // Куски объединяются в порядке файла, поэтому уже упорядоченный файл сортируется за линейное время.
+        Map<CurrencyCode, List<Rate>> rates = new EnumMap<>(CurrencyCode.class);
+        long rejected = 0;
+
+        for (ForkJoinTask<Chunk> task : tasks) {
+            Chunk chunk = task.join();
+            rejected += chunk.rejected;
+
+            for (Map.Entry<CurrencyCode, List<Rate>> entry : chunk.rates.entrySet()) {
+                rates.computeIfAbsent(entry.getKey(), k -> new ArrayList<>()).addAll(entry.getValue());
+            }
+        }
+
+        long imported = 0;
+
+        for (List<Rate> currencyRates : rates.values()) {
+            currencyRates.sort(Comparator.comparing(Rate::getTime));
+
+            for (int i = 0; i < currencyRates.size(); i += BATCH_SIZE) {
+                imported += this.repository.addRates(
+                        currencyRates.subList(i, Math.min(currencyRates.size(), i + BATCH_SIZE))
+                );
+            }
+        }
+
+        return new ImportReport(file, imported, rejected, System.nanoTime() - start);
+    }
+
+
+    /**
+     * Делит файл на куски размером около {@link #chunkSize}, заканчивающиеся переводом строки.
+     *
+     * @return Границы кусков, от {@code 0} до размера файла.
+     */
+    private List<Long> boundaries(FileChannel channel) throws IOException {
+        long size = channel.size();
+        List<Long> bounds = new ArrayList<>();
+        ByteBuffer probe = ByteBuffer.allocate(4096);
+
+        bounds.add(0L);
+
+        long position = this.chunkSize;
+        while (position < size) {
+            long newline = -1;
+
+            for (long p = position; newline < 0 && p < size; p += probe.limit()) {
+                probe.clear();
+                if (channel.read(probe, p) <= 0) {
+                    break;
+                }
+
+                probe.flip();
+                for (int i = 0; i < probe.limit(); i++) {
+                    if (probe.get(i) == '\n') {
+                        newline = p + i;
+                        break;
+                    }
+                }
+            }
+
+            if (newline < 0 || newline + 1 >= size) {
+                break;
+            }
+
+            bounds.add(newline + 1);
+            position = newline + 1 + this.chunkSize;
+        }
+
+        if (size > 0) {
+            bounds.add(size);
+        }
+
+        return bounds;
+    }
+
+
+    /**
+     * Разбирает кусок файла.
+     *
+     * @param buffer Кусок (целые строки).
+     * @param first  Кусок начинается с начала файла (первая строка может быть заголовком).
+     * @return Курсы по валютам и количество отклоненных строк.
+     */
+    private static Chunk parse(ByteBuffer buffer, boolean first) {
+        Chunk chunk = new Chunk();
+        int limit = buffer.limit();
+        int position = 0;
+
+        while (position < limit) {
+            int end = position;
+            while (end < limit && buffer.get(end) != '\n') {
+                end++;
+            }
+
+            int next = end + 1;
+            if (end > position && buffer.get(end - 1) == '\r') {
+                end--;
+            }
+
+            boolean header = first && position == 0 && startsWithIgnoreCase(buffer, position, end, HEADER);
+            if (!header) {
+                parseLine(buffer, position, end, chunk);
+            }
+
+            position = next;
+        }
+
+        return chunk;
+    }
+
+
+    /**
+     * Разбирает строку {@code валюта,курс,время} и добавляет курс в кусок или увеличивает счетчик отклоненных.
+     */
+    private static void parseLine(ByteBuffer buffer, int from, int to, Chunk chunk) {
+        from = skipSpaces(buffer, from, to);
+        to = trimSpaces(buffer, from, to);
+
+        if (from == to || buffer.get(from) == '#') {
+            return;
+        }
+
+        int first = indexOf(buffer, from, to, (byte) ',');
+        int second = first < 0 ? -1 : indexOf(buffer, first + 1, to, (byte) ',');
+
+        if (second < 0 || indexOf(buffer, second + 1, to, (byte) ',') >= 0) {
+            chunk.rejected++;
+            return;
+        }
+
+        CurrencyCode code = parseCode(buffer, from, trimSpaces(buffer, from, first));
+        BigDecimal course = parseCourse(
+                buffer,
+                skipSpaces(buffer, first + 1, second),
+                trimSpaces(buffer, first + 1, second)
+        );
+        LocalDateTime time = parseTime(buffer, skipSpaces(buffer, second + 1, to), to);
+
+        if (code == null || course == null || time == null) {
+            chunk.rejected++;
+            return;
+        }
+
+        chunk.rates.computeIfAbsent(code, k -> new ArrayList<>()).add(new Rate(code.name(), course, time));
+    }
+
+
+    /**
+     * Находит код валюты без учета регистра.
+     *
+     * @return Код валюты или {@code null}.
+     */
+    private static CurrencyCode parseCode(ByteBuffer buffer, int from, int to) {
+        for (int i = 0; i < CODES.length; i++) {
+            byte[] name = CODE_BYTES[i];
+
+            if (name.length == to - from && startsWithIgnoreCase(buffer, from, to, name)) {
+                return CODES[i];
+            }
+        }
+
+        return null;
+    }
+
+
+    /**
+     * Разбирает положительный курс вида {@code 123.456}.
+     *
+     * @return Курс или {@code null}, если строка не является положительным числом.
+     */
+    private static BigDecimal parseCourse(ByteBuffer buffer, int from, int to) {
+        long unscaled = 0;
+        int digits = 0;
+        int scale = 0;
+        boolean point = false;
+
+        for (int i = from; i < to; i++) {
+            byte ch = buffer.get(i);
+
+            if (ch == '.' && !point) {
+                point = true;
+                continue;
+            }
+
+            if (ch < '0' || ch > '9') {
+                return null;
+            }
+
+            if (digits > 0 || ch != '0') {
+                digits++;
+            }
+
+            if (point) {
+                scale++;
+            }
+
+            unscaled = unscaled * 10 + (ch - '0');
+        }
+
+        if (digits == 0) {
+            return null;
+        }
+
+        if (digits <= MAX_LONG_DIGITS) {
+            return BigDecimal.valueOf(unscaled, scale);
+        }
+
+        // Длинное число: строка уже проверена, поэтому конструктор не выбросит исключение.
+        char[] chars = new char[to - from];
+        for (int i = from; i < to; i++) {
+            chars[i - from] = (char) buffer.get(i);
+        }
+
+        return new BigDecimal(chars);
+    }
+
+
+    /**
+     * Разбирает время {@code yyyy-MM-dd[T| ]HH:mm[:ss[.fffffffff]]} с проверкой диапазонов.
+     *
+     * @return Время или {@code null}, если строка не является корректным временем.
+     */
+    private static LocalDateTime parseTime(ByteBuffer buffer, int from, int to) {
+        int length = to - from;
+
+        if (length < 16
+            || buffer.get(from + 4) != '-'
+            || buffer.get(from + 7) != '-'
+            || (buffer.get(from + 10) != 'T' && buffer.get(from + 10) != ' ')
+            || buffer.get(from + 13) != ':') {
+            return null;
+        }
+
+        int year = number(buffer, from, 4);
+        int month = number(buffer, from + 5, 2);
+        int day = number(buffer, from + 8, 2);
+        int hour = number(buffer, from + 11, 2);
+        int minute = number(buffer, from + 14, 2);
+        int second = 0;
+        int nano = 0;
+
+        if (year < 0 || month < 1 || month > 12 || hour < 0 || hour > 23 || minute < 0 || minute > 59) {
+            return null;
+        }
+
+        if (day < 1 || day > Month.of(month).length(Year.isLeap(year))) {
+            return null;
+        }
+
+        if (length > 16) {
+            if (length < 19 || buffer.get(from + 16) != ':') {
+                return null;
+            }
+
+            second = number(buffer, from + 17, 2);
+            if (second < 0 || second > 59) {
+                return null;
+            }
+        }
+
+        if (length > 19) {
+            int fraction = length - 20;
+
+            if (buffer.get(from + 19) != '.' || fraction < 1 || fraction > 9) {
+                return null;
+            }
+
+            nano = number(buffer, from + 20, fraction);
+            if (nano < 0) {
+                return null;
+            }
+
+            for (int i = fraction; i < 9; i++) {
+                nano *= 10;
+            }
+        }
+
+        return LocalDateTime.of(year, month, day, hour, minute, second, nano);
+    }
+
+
+    /**
+     * Разбирает неотрицательное целое из {@code count} цифр.
+     *
+     * @return Число или {@code -1}, если встретилась не цифра.
+     */
+    private static int number(ByteBuffer buffer, int from, int count) {
+        int value = 0;
+
+        for (int i = from; i < from + count; i++) {
+            int digit = buffer.get(i) - '0';
+
+            if (digit < 0 || digit > 9) {
+                return -1;
+            }
+
+            value = value * 10 + digit;
+        }
+
+        return value;
+    }
+
+
+    private static boolean startsWithIgnoreCase(ByteBuffer buffer, int from, int to, byte[] prefix) {
+        if (to - from < prefix.length) {
+            return false;
+        }
+
+        for (int i = 0; i < prefix.length; i++) {
+            if (upper(buffer.get(from + i)) != upper(prefix[i])) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+
+    private static int upper(byte ch) {
+        return ch >= 'a' && ch <= 'z' ? ch - ('a' - 'A') : ch;
+    }
+
+
+    private static int indexOf(ByteBuffer buffer, int from, int to, byte value) {
+        for (int i = from; i < to; i++) {
+            if (buffer.get(i) == value) {
+                return i;
+            }
+        }
+
+        return -1;
+    }
+
+
+    private static int skipSpaces(ByteBuffer buffer, int from, int to) {
+        while (from < to && (buffer.get(from) == ' ' || buffer.get(from) == '\t')) {
+            from++;
+        }
+
+        return from;
+    }
+
+
+    private static int trimSpaces(ByteBuffer buffer, int from, int to) {
+        while (to > from && (buffer.get(to - 1) == ' ' || buffer.get(to - 1) == '\t')) {
+            to--;
+        }
+
+        return to;
+    }
+
+
+    /**
+     * Результат разбора куска файла.
+     */
+    private static class Chunk {
+
+        // Курсы по валютам в порядке файла.
+        private final Map<CurrencyCode, List<Rate>> rates = new EnumMap<>(CurrencyCode.class);
+
+        // Количество отклоненных строк.
+        private long rejected;
+
+    }
+
+}
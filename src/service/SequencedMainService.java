@@ -0,0 +1,183 @@
+package service;
+
+import model.Account;
+import model.BatchCommand;
+import model.BatchResult;
+import model.Transaction;
+import model.User;
+import repository.interfaces.AccountRepository;
+import repository.interfaces.CurrencyRepository;
+import repository.interfaces.TransactionRepository;
+import repository.interfaces.UserRepository;
+import repository.journal.Journal;
+import utils.CurrencyValidator;
+import utils.exceptions.CurrencyCodeValidateExeption;
+
+import java.math.BigDecimal;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+
+/**
+ * Сервис, выполняющий изменяющие операции со счетами через {@link LedgerEngine} вместо блокировок счетов.
+ *
+ * <p>Проверка сессии и аргументов выполняется в потоке вызова, сама операция - в потоке исполнителя; метод
+ * возвращает управление после того, как пачка с операцией записана в журнал. Комиссии зачисляются на
+ * системные счета в конце каждой пачки, поэтому {@link #flushCommissions()} здесь зачислять нечего.
+ * Остальные методы работают так же, как в {@link MainServiceImpl}.</p>
+ *
+ * <p>Исполнитель единолично изменяет балансы, поэтому при работе этого сервиса балансы счетов нельзя менять в
+ * обход него.</p>
+ *
+ * <p>Поток исполнителя запускается методом {@link #start()} после создания сервиса; до запуска операции со
+ * счетами не принимаются. Журнал должен быть открыт в режиме {@link repository.journal.Durability#PERIODIC}
+ * (см. {@link LedgerEngine}).</p>
+ */
+public class SequencedMainService extends MainServiceImpl {
+
+    private final LedgerEngine engine;
+
+
+    /**
+     * @param repoUser        Репозиторий пользователей.
+     * @param repoAccount     Репозиторий счетов.
+     * @param repoCurrency    Репозиторий курсов.
+     * @param repoTransaction Репозиторий транзакций.
+     * @param journal         Журнал изменений в режиме PERIODIC или {@code null}.
+     * @param capacity        Размер буфера исполнителя (степень двойки).
+     * @throws IllegalArgumentException Если журнал открыт в режиме SYNC.
+     */
+    public SequencedMainService(
+            UserRepository repoUser,
+            AccountRepository repoAccount,
+            CurrencyRepository repoCurrency,
+            TransactionRepository repoTransaction,
+            Journal journal,
+            int capacity
+    ) {
+        super(repoUser, repoAccount, repoCurrency, repoTransaction, journal);
+
+        this.engine = new LedgerEngine(repoAccount, repoTransaction, this.getCrossRates(), journal, capacity);
+
+        // Незачисленные комиссии, восстановленные после перезапуска, зачисляет исполнитель.
+        for (CommissionAccumulator.Batch batch : this.takePendingCommissions()) {
+            this.engine.chargeFees(batch.getAmount(), batch.getCount());
+        }
+    }
+
+
+    /**
+     * Запускает поток исполнителя.
+     */
+    public void start() {
+        this.engine.start();
+    }
+
+
+    /**
+     * Возвращает исполнитель операций (например, для асинхронных вызовов).
+     *
+     * @return Исполнитель.
+     */
+    public LedgerEngine getEngine() {
+        return this.engine;
+    }
+
+
+    /**
+     * Дожидается выполнения принятых операций и останавливает исполнитель.
+     */
+    public void shutdown() {
+        this.engine.stop();
+    }
+
+
+    @Override
+    public Account creatAccount(String token, String title, String currencyCode) {
+        User user = this.getSessions().require(token).getUser();
+
+        if (!CurrencyValidator.isValidCurrencyCode(currencyCode)) {
+            throw new CurrencyCodeValidateExeption("Недопустимый код валюты.");
+        }
+
+        return join(this.engine.createAccount(user.getEmail(), title, currencyCode));
+    }
+
+
+    @Override
+    protected Transaction applyDeposit(User user, int accountId, BigDecimal money) {
+        if (money == null || money.compareTo(BigDecimal.ZERO) <= 0) {
+            throw new IllegalArgumentException("Сумма для депозита должна быть больше нуля!");
+        }
+
+        return join(this.engine.deposit(user.getEmail(), accountId, money));
+    }
+
+
+    @Override
+    protected Transaction applyWithdrawal(User user, int accountId, BigDecimal money) {
+        if (money == null || money.compareTo(BigDecimal.ZERO) <= 0) {
+            throw new IllegalArgumentException("Сумма для снятия должна быть больше нуля!");
+        }
+
+        return join(this.engine.withdrawal(user.getEmail(), accountId, money));
+    }
+
+
+    @Override
+    protected Transaction applyExchange(User user, int accountId1, int accountId2, BigDecimal money) {
+        if (money == null || money.compareTo(BigDecimal.ZERO) <= 0) {
+            throw new IllegalArgumentException("Сумма для обмена должна быть больше нуля!");
+        }
+
+        return join(this.engine.exchange(user.getEmail(), accountId1, accountId2, money));
+    }
+
+
+    @Override
+    public BatchResult executeBatch(String token, List<BatchCommand> commands, boolean atomic) {
+        User user = this.getSessions().require(token).getUser();
+
+        return join(this.engine.executeBatch(user.getEmail(), commands, atomic));
+    }
+
+
+    @Override
+    public void removeAccount(String token, int id)
+            throws Exception {
+        User user = this.getSessions().require(token).getUser();
+
+        try {
+            this.engine.removeAccount(user.getEmail(), id).join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof Exception) {
+                throw (Exception) e.getCause();
+            }
+
+            throw e;
+        }
+    }
+
+
+    /**
+     * Дожидается ответа исполнителя и пробрасывает исключение операции как есть.
+     */
+    private static <T> T join(CompletableFuture<T> reply) {
+        try {
+            return reply.join();
+        } catch (CompletionException e) {
+            Throwable cause = e.getCause();
+
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+
+            if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+
+            throw e;
+        }
+    }
+
+}
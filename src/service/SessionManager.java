@@ -0,0 +1,225 @@
+package service;
+
+import model.Session;
+import model.User;
+
+import java.security.SecureRandom;
+import java.util.Base64;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Сессии пользователей: токен сессии -> пользователь.
+ *
+ * <p>Сессии хранятся в {@link ConcurrentHashMap}, поэтому поиск сессии не блокирует другие запросы. Сессия,
+ * к которой не обращались дольше тайм-аута, считается закрытой: она не находится по токену и удаляется при
+ * обращении или периодической очисткой ({@link #start(long)}).</p>
+ */
+public class SessionManager {
+
+    // Длина токена в байтах (до кодирования в Base64).
+    private static final int TOKEN_BYTES = 24;
+
+    // Точность отметки обращения: чаще время последнего обращения не обновляется.
+    private static final long TOUCH_GRANULARITY_NANOS = TimeUnit.SECONDS.toNanos(1);
+
+    /**
+     * Открытые сессии.
+     * <p>key - Токен сессии</p>
+     * <p>value - Сессия</p>
+     */
+    private final Map<String, Session> sessions;
+
+    // Генератор токенов.
+    private final SecureRandom random;
+
+    // Тайм-аут простоя сессии в наносекундах.
+    private final long idleTimeoutNanos;
+
+    // Планировщик очистки сессий (null, если не запущен).
+    private ScheduledExecutorService evictor;
+
+
+    /**
+     * @param idleTimeoutMillis Тайм-аут простоя сессии в миллисекундах.
+     */
+    public SessionManager(long idleTimeoutMillis) {
+        if (idleTimeoutMillis <= 0) {
+            throw new IllegalArgumentException("Тайм-аут сессии должен быть больше нуля!");
+        }
+
+        this.sessions = new ConcurrentHashMap<>();
+        this.random = new SecureRandom();
+        this.idleTimeoutNanos = TimeUnit.MILLISECONDS.toNanos(idleTimeoutMillis);
+    }
+
+
+    /**
+     * Открывает сессию пользователя.
+     *
+     * @param user Пользователь.
+     * @return Сессия.
+     */
+    public Session open(User user) {
+        if (user == null) {
+            throw new IllegalArgumentException("Аргумент user не может быть null!");
+        }
+
+        byte[] bytes = new byte[TOKEN_BYTES];
+        this.random.nextBytes(bytes);
+
+        Session session = new Session(
+                Base64.getUrlEncoder().withoutPadding().encodeToString(bytes),
+                user,
+                System.nanoTime()
+        );
+        this.sessions.put(session.getToken(), session);
+
+        return session;
+    }
+
+
+    /**
+     * Возвращает открытую сессию и отмечает обращение к ней.
+     *
+     * @param token Токен сессии.
+     * @return Сессия или {@code null}, если сессии нет или она закрыта по тайм-ауту.
+     */
+    public Session get(String token) {
+        if (token == null) {
+            return null;
+        }
+
+        Session session = this.sessions.get(token);
+        if (session == null) {
+            return null;
+        }
+
+        long now = System.nanoTime();
+        long idle = now - session.getLastAccess();
+
+        if (idle > this.idleTimeoutNanos) {
+            this.sessions.remove(token, session);
+            return null;
+        }
+
+        if (idle > TOUCH_GRANULARITY_NANOS) {
+            session.touch(now);
+        }
+
+        return session;
+    }
+
+
+    /**
+     * Возвращает открытую сессию и отмечает обращение к ней.
+     *
+     * @param token Токен сессии.
+     * @return Сессия.
+     * @throws SecurityException Если сессии нет или она закрыта по тайм-ауту.
+     */
+    public Session require(String token) {
+        Session session = this.get(token);
+
+        if (session == null) {
+            throw new SecurityException("Пользователь не авторизован!");
+        }
+
+        return session;
+    }
+
+
+    /**
+     * Закрывает сессию.
+     *
+     * @param token Токен сессии.
+     * @return {@code true}, если сессия была открыта.
+     */
+    public boolean close(String token) {
+        return token != null && this.sessions.remove(token) != null;
+    }
+
+
+    /**
+     * Закрывает все сессии пользователя (например, при блокировке).
+     *
+     * @param userEmail Email пользователя.
+     * @return Количество закрытых сессий.
+     */
+    public int closeAll(String userEmail) {
+        int closed = 0;
+
+        for (Session session : this.sessions.values()) {
+            if (session.getUser().getEmail().equals(userEmail) && this.sessions.remove(session.getToken(), session)) {
+                closed++;
+            }
+        }
+
+        return closed;
+    }
+
+
+    /**
+     * Удаляет сессии, к которым не обращались дольше тайм-аута.
+     *
+     * @return Количество удаленных сессий.
+     */
+    public int evictIdle() {
+        long now = System.nanoTime();
+        int evicted = 0;
+
+        for (Session session : this.sessions.values()) {
+            if (now - session.getLastAccess() > this.idleTimeoutNanos
+                && this.sessions.remove(session.getToken(), session)) {
+                evicted++;
+            }
+        }
+
+        return evicted;
+    }
+
+
+    /**
+     * Возвращает количество открытых сессий (включая еще не удаленные просроченные).
+     *
+     * @return Количество сессий.
+     */
+    public int size() {
+        return this.sessions.size();
+    }
+
+
+    /**
+     * Запускает периодическую очистку просроченных сессий в фоновом потоке.
+     *
+     * @param periodMillis Период в миллисекундах.
+     */
+    public synchronized void start(long periodMillis) {
+        if (this.evictor != null) {
+            return;
+        }
+
+        this.evictor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "session-evictor");
+            thread.setDaemon(true);
+            return thread;
+        });
+
+        this.evictor.scheduleWithFixedDelay(this::evictIdle, periodMillis, periodMillis, TimeUnit.MILLISECONDS);
+    }
+
+
+    /**
+     * Останавливает периодическую очистку сессий.
+     */
+    public synchronized void stop() {
+        if (this.evictor != null) {
+            this.evictor.shutdown();
+            this.evictor = null;
+        }
+    }
+
+}
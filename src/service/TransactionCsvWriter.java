@@ -0,0 +1,193 @@
+package service;
+
+import model.Transaction;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Записывает транзакции в CSV-файл построчно с постоянным расходом памяти: строка собирается в переиспользуемый
+ * буфер символов, кодируется в прямой буфер байтов и сбрасывается в {@link FileChannel} целыми блоками.
+ */
+public class TransactionCsvWriter implements Closeable {
+
+    // Заголовок файла.
+    private static final String HEADER = "id,date,type,user_from,account_from,currency_from,"
+                                         + "user_to,account_to,currency_to,amount,amount_from,fee,course,rate_version,comment";
+
+    // Размер буфера записи в байтах.
+    private static final int BUFFER_SIZE = 256 * 1024;
+
+    private final FileChannel channel;
+    private final CharsetEncoder encoder;
+    private final ByteBuffer buffer;
+
+    // Текущая строка.
+    private final StringBuilder row;
+
+    // Количество записанных строк (без заголовка).
+    private long rows;
+
+
+    /**
+     * Конструктор для создания (или перезаписи) CSV-файла. Заголовок записывается сразу.
+     *
+     * @param file Файл.
+     * @throws IOException Ошибка открытия файла.
+     */
+    public TransactionCsvWriter(Path file) throws IOException {
+        if (file == null) {
+            throw new IllegalArgumentException("Аргумент file не может быть null!");
+        }
+
+        this.channel = FileChannel.open(
+                file,
+                StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING,
+                StandardOpenOption.WRITE
+        );
+        this.encoder = StandardCharsets.UTF_8.newEncoder();
+        this.buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+        this.row = new StringBuilder(256);
+
+        this.row.append(HEADER).append('\n');
+        this.flushRow();
+    }
+
+
+    /**
+     * Записывает транзакцию строкой CSV.
+     *
+     * @param transaction Транзакция.
+     * @throws IOException Ошибка записи.
+     */
+    public void write(Transaction transaction) throws IOException {
+        BigDecimal amountFrom = transaction.getAmountFrom();
+        BigDecimal course = transaction.getCourse();
+
+        this.row.append(transaction.getId()).append(',');
+        this.row.append(transaction.getDate()).append(',');
+        this.row.append(transaction.getType()).append(',');
+        this.appendText(transaction.getUserEmailFrom()).append(',');
+        this.row.append(transaction.getAccountIdFrom()).append(',');
+        this.appendText(transaction.getCurrencyFrom()).append(',');
+        this.appendText(transaction.getUserEmailTo()).append(',');
+        this.row.append(transaction.getAccountIdTo()).append(',');
+        this.appendText(transaction.getCurrencyTo()).append(',');
+        this.row.append(transaction.getAmount().toPlainString()).append(',');
+        this.row.append(amountFrom == null ? "" : amountFrom.toPlainString()).append(',');
+        this.row.append(transaction.getFee().toPlainString()).append(',');
+        this.row.append(course == null ? "" : course.toPlainString()).append(',');
+        this.row.append(transaction.getRateVersion()).append(',');
+        this.appendText(transaction.getComment()).append('\n');
+
+        this.flushRow();
+        this.rows++;
+    }
+
+
+    /**
+     * Возвращает количество записанных строк (без заголовка).
+     *
+     * @return Количество строк.
+     */
+    public long getRows() {
+        return this.rows;
+    }
+
+
+    /**
+     * Сбрасывает буфер в файл и закрывает его.
+     *
+     * @throws IOException Ошибка записи.
+     */
+    @Override
+    public void close() throws IOException {
+        try {
+            this.drain();
+        } finally {
+            this.channel.close();
+        }
+    }
+
+
+    /**
+     * Добавляет текстовое поле, экранируя его по правилам CSV, если оно содержит запятую, кавычку или перевод
+     * строки. {@code null} записывается пустым полем.
+     */
+    private StringBuilder appendText(String value) {
+        if (value == null) {
+            return this.row;
+        }
+
+        boolean quote = false;
+        for (int i = 0; i < value.length() && !quote; i++) {
+            char ch = value.charAt(i);
+            quote = ch == ',' || ch == '"' || ch == '\n' || ch == '\r';
+        }
+
+        if (!quote) {
+            return this.row.append(value);
+        }
+
+        this.row.append('"');
+        for (int i = 0; i < value.length(); i++) {
+            char ch = value.charAt(i);
+
+            if (ch == '"') {
+                this.row.append('"');
+            }
+
+            this.row.append(ch);
+        }
+
+        return this.row.append('"');
+    }
+
+
+    /**
+     * Кодирует текущую строку в буфер, сбрасывая буфер в файл при переполнении.
+     */
+    private void flushRow() throws IOException {
+        CharBuffer chars = CharBuffer.wrap(this.row);
+
+        while (true) {
+            CoderResult result = this.encoder.encode(chars, this.buffer, true);
+
+            if (result.isOverflow()) {
+                this.drain();
+            } else if (result.isUnderflow()) {
+                break;
+            } else {
+                result.throwException();
+            }
+        }
+
+        this.encoder.reset();
+        this.row.setLength(0);
+    }
+
+
+    /**
+     * Записывает накопленные байты в файл.
+     */
+    private void drain() throws IOException {
+        this.buffer.flip();
+
+        while (this.buffer.hasRemaining()) {
+            this.channel.write(this.buffer);
+        }
+
+        this.buffer.clear();
+    }
+
+}
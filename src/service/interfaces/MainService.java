@@ -4,6 +4,7 @@ import model.*;
 import model.enums.UserRole;
 import utils.exceptions.UserIsExistsExeption;
 
+import java.io.IOException;
 import java.math.BigDecimal;
 import java.util.HashMap;
 import java.util.List;
@@ -67,6 +68,17 @@ public interface MainService {
             throws UserIsExistsExeption;
 
 
+    /**
+     * Добавляет пользователя без входа в систему: активный пользователь не меняется.
+     *
+     * @param email    Email пользователя.
+     * @param password Пароль.
+     * @return {@code true}, если пользователь добавлен.
+     */
+    boolean addUser(String email, String password)
+            throws UserIsExistsExeption;
+
+
     /**
      * Возвращает пользователя по его email.
      *
@@ -115,6 +127,171 @@ public interface MainService {
      */
     void logout();
 
+
+    /**
+     * Открывает сессию пользователя. Операции с токеном сессии выполняются от имени ее пользователя, поэтому
+     * один сервис обслуживает любое количество пользователей одновременно.
+     *
+     * @param email    Email пользователя.
+     * @param password Пароль пользователя.
+     * @return Сессия.
+     */
+    Session openSession(String email, String password);
+
+
+    /**
+     * Закрывает сессию пользователя.
+     *
+     * @param token Токен сессии.
+     */
+    void closeSession(String token);
+
+
+    /**
+     * Возвращает пользователя открытой сессии.
+     *
+     * @param token Токен сессии.
+     * @return Пользователь или {@code null}, если сессия не открыта.
+     */
+    User getSessionUser(String token);
+
+
+    /**
+     * Добавляет счет к пользователю сессии в определенной валюте.
+     *
+     * @param token        Токен сессии.
+     * @param title        Название счета.
+     * @param currencyCode Код валюты.
+     * @return Счет.
+     */
+    Account creatAccount(String token, String title, String currencyCode);
+
+
+    /**
+     * Возвращает список всех счетов пользователя сессии.
+     *
+     * @param token Токен сессии.
+     * @return Список всех счетов пользователя.
+     */
+    List<Account> getAllAccountsByActiveUser(String token);
+
+
+    /**
+     * Возвращает список счетов пользователя сессии по коду валюты.
+     *
+     * @param token        Токен сессии.
+     * @param currencyCode Код валюты.
+     * @return Список счетов.
+     */
+    List<Account> getAccountsByCurrency(String token, String currencyCode);
+
+
+    /**
+     * Добавляет сумму к счету пользователя сессии.
+     *
+     * @param token     Токен сессии.
+     * @param accountId Id счета.
+     * @param money     Сумма.
+     * @return {@code true}, если операция выполнена.
+     */
+    boolean deposit(String token, int accountId, BigDecimal money);
+
+
+    /**
+     * Добавляет сумму к счету пользователя сессии не более одного раза для ключа идемпотентности: повтор
+     * запроса с тем же ключом возвращает исходную транзакцию.
+     *
+     * @param token          Токен сессии.
+     * @param accountId      Id счета.
+     * @param money          Сумма.
+     * @param idempotencyKey Ключ идемпотентности или {@code null}.
+     * @return Транзакция операции.
+     */
+    Transaction deposit(String token, int accountId, BigDecimal money, String idempotencyKey);
+
+
+    /**
+     * Снимает сумму со счета пользователя сессии.
+     *
+     * @param token     Токен сессии.
+     * @param accountId Id счета.
+     * @param money     Сумма.
+     * @return {@code true}, если операция выполнена.
+     */
+    boolean withdrawal(String token, int accountId, BigDecimal money);
+
+
+    /**
+     * Снимает сумму со счета пользователя сессии не более одного раза для ключа идемпотентности: повтор
+     * запроса с тем же ключом возвращает исходную транзакцию.
+     *
+     * @param token          Токен сессии.
+     * @param accountId      Id счета.
+     * @param money          Сумма.
+     * @param idempotencyKey Ключ идемпотентности или {@code null}.
+     * @return Транзакция операции.
+     */
+    Transaction withdrawal(String token, int accountId, BigDecimal money, String idempotencyKey);
+
+
+    /**
+     * Переводит сумму между счетами от имени пользователя сессии.
+     *
+     * @param token      Токен сессии.
+     * @param accountId1 Id счета списания.
+     * @param accountId2 Id счета зачисления.
+     * @param money      Сумма.
+     * @return {@code true}, если операция выполнена.
+     */
+    boolean exchange(String token, int accountId1, int accountId2, BigDecimal money);
+
+
+    /**
+     * Переводит сумму между счетами от имени пользователя сессии не более одного раза для ключа
+     * идемпотентности: повтор запроса с тем же ключом возвращает исходную транзакцию.
+     *
+     * @param token          Токен сессии.
+     * @param accountId1     Id счета списания.
+     * @param accountId2     Id счета зачисления.
+     * @param money          Сумма.
+     * @param idempotencyKey Ключ идемпотентности или {@code null}.
+     * @return Транзакция операции.
+     */
+    Transaction exchange(String token, int accountId1, int accountId2, BigDecimal money, String idempotencyKey);
+
+
+    /**
+     * Выполняет пакет операций (пополнение, снятие, обмен) пользователя сессии за один вызов: операции
+     * проверяются заранее, блокировки счетов пакета захватываются один раз, транзакции записываются одной
+     * пачкой.
+     *
+     * @param token    Токен сессии.
+     * @param commands Операции в порядке выполнения.
+     * @param atomic   {@code true} - все или ничего, {@code false} - каждая операция по отдельности.
+     * @return Итог пакета по каждой операции.
+     */
+    BatchResult executeBatch(String token, List<BatchCommand> commands, boolean atomic);
+
+
+    /**
+     * Удаляет счет пользователя сессии.
+     *
+     * @param token Токен сессии.
+     * @param id    Уникальный идентификатор счета.
+     */
+    void removeAccount(String token, int id)
+            throws Exception;
+
+
+    /**
+     * Возвращает историю операций счета пользователя сессии.
+     *
+     * @param token     Токен сессии.
+     * @param accountId Id счета.
+     * @return Список транзакций в порядке создания.
+     */
+    List<Transaction> getTransactionsByAccountId(String token, int accountId);
+
     /**
      * Добавляет счет к пользователю в определенной валюте.
      *
@@ -132,6 +309,15 @@ public interface MainService {
     List<Account> getAllAccountsByActiveUser();
 
 
+    /**
+     * Возвращает список счетов пользователя (для администратора).
+     *
+     * @param userEmail Email пользователя.
+     * @return Список счетов.
+     */
+    List<Account> getAccountsByUser(String userEmail);
+
+
     /**
      * Возвращает счет пользователя по его уникальному идентификатору.
      *
@@ -168,6 +354,16 @@ public interface MainService {
      */
     boolean exchange(int accountId1, int accountId2, BigDecimal money);
 
+
+    /**
+     * Выполняет пакет операций активного пользователя.
+     *
+     * @param commands Операции в порядке выполнения.
+     * @param atomic   {@code true} - все или ничего, {@code false} - каждая операция по отдельности.
+     * @return Итог пакета по каждой операции.
+     */
+    BatchResult executeBatch(List<BatchCommand> commands, boolean atomic);
+
     /**
      * Возвращает кросс-курс валюты.
      *
@@ -188,6 +384,15 @@ public interface MainService {
             throws Exception;
 
 
+    /**
+     * Возвращает список транзакций по id счета (для администратора).
+     *
+     * @param accountId Id счета.
+     * @return Список транзакций.
+     */
+    List<Transaction> getTransactionsByAccountId(int accountId);
+
+
     /**
      * Добавляет сумму к счету. Этот метод должен вернуть Ошибку если пользователь не залогинен.
      *
@@ -220,8 +425,40 @@ public interface MainService {
 
     void updateCurrencyRate(String currency, BigDecimal newRate);
 
-    void exportTransactions(String startDate, String endDate);
+    /**
+     * Экспортирует транзакции за период в CSV-файл {@code transactions_<начало>_<конец>.csv} в текущем каталоге.
+     *
+     * @param startDate Дата начала периода (формат: YYYY-MM-DD, включительно).
+     * @param endDate   Дата конца периода (формат: YYYY-MM-DD, включительно).
+     * @return Итог экспорта.
+     * @throws IOException Ошибка записи файла.
+     */
+    ExportReport exportTransactions(String startDate, String endDate)
+            throws IOException;
+
+    /**
+     * Импортирует курсы валют из CSV-файла формата {@code валюта,курс,время}.
+     *
+     * @param filePath Путь к файлу.
+     * @return Итог импорта.
+     * @throws IOException Ошибка чтения файла.
+     */
+    ImportReport importCurrencyRates(String filePath)
+            throws IOException;
 
-    void importCurrencyRates(String filePath);
+    /**
+     * Сверяет балансы всех счетов (включая системные) с суммами их проводок в журнале транзакций.
+     *
+     * @return Итог сверки.
+     */
+    ReconciliationReport reconcileLedger();
+
+    /**
+     * Возвращает обороты за день по валютным парам и типам транзакций.
+     *
+     * @param date День (формат: YYYY-MM-DD).
+     * @return Обороты, упорядоченные по типу транзакции и валютам.
+     */
+    List<DailyVolume> getDailyVolumes(String date);
 
 }
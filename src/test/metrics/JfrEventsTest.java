@@ -0,0 +1,66 @@
+package test.metrics;
+
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+import metrics.AccountOperationEvent;
+import model.Account;
+import org.junit.jupiter.api.Test;
+import service.MainServiceImpl;
+import test.service.ServiceFixture;
+
+import java.math.BigDecimal;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Проверяет события JFR операций со счетами и записи в журнал операций.
+ */
+class JfrEventsTest {
+
+    @Test
+    void depositEmitsEvents() throws Exception {
+        MainServiceImpl service = new ServiceFixture("user@example.com").newService();
+
+        String token = service.openSession("user@example.com", "123_Pass!0").getToken();
+        Account account = service.creatAccount(token, "Main", "USD");
+        Path file = Files.createTempFile("exchange", ".jfr");
+
+        try (Recording recording = new Recording()) {
+            recording.enable("exchange.AccountOperation");
+            recording.enable("exchange.LedgerWrite");
+            recording.start();
+
+            service.deposit(token, account.getId(), new BigDecimal("250.00"));
+
+            recording.stop();
+            recording.dump(file);
+        }
+
+        List<RecordedEvent> events = RecordingFile.readAllEvents(file);
+        Files.delete(file);
+
+        RecordedEvent operation = events.stream()
+                .filter(event -> event.getEventType().getName().equals("exchange.AccountOperation"))
+                .findFirst()
+                .orElseThrow();
+
+        assertEquals("DEPOSIT", operation.getString("operation"));
+        assertEquals(account.getId(), operation.getInt("accountFrom"));
+        assertEquals("USD/USD", operation.getString("currencyPair"));
+        assertEquals("100-1000", operation.getString("amountBucket"));
+
+        assertTrue(events.stream().anyMatch(event -> event.getEventType().getName().equals("exchange.LedgerWrite")));
+    }
+
+    @Test
+    void amountBucket() {
+        assertEquals("<1", AccountOperationEvent.amountBucket(new BigDecimal("0.50")));
+        assertEquals("1-10", AccountOperationEvent.amountBucket(new BigDecimal("1.00")));
+        assertEquals("10-100", AccountOperationEvent.amountBucket(new BigDecimal("99.99")));
+        assertEquals("1000-10000", AccountOperationEvent.amountBucket(new BigDecimal("1E+3")));
+    }
+}
@@ -0,0 +1,69 @@
+package test.metrics;
+
+import metrics.OperationMetrics;
+import metrics.RepositoryGauges;
+import metrics.ServiceMetrics;
+import model.Account;
+import org.junit.jupiter.api.Test;
+import service.MainServiceImpl;
+import service.interfaces.MainService;
+import test.service.ServiceFixture;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.math.BigDecimal;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Проверяет сбор метрик вызовов сервиса.
+ */
+class ServiceMetricsTest {
+
+    @Test
+    void recordsCallsAndErrors() throws Exception {
+        ServiceFixture fixture = new ServiceFixture("user@example.com");
+        MainServiceImpl service = fixture.newService();
+
+        ServiceMetrics metrics = new ServiceMetrics(new RepositoryGauges(
+                fixture.getTransactions(),
+                fixture.getAccounts(),
+                fixture.getCurrencies(),
+                service.getSessions()
+        ));
+        MainService instrumented = metrics.instrument(service);
+
+        String token = instrumented.openSession("user@example.com", "123_Pass!0").getToken();
+        Account account = instrumented.creatAccount(token, "Main", "USD");
+
+        for (int i = 0; i < 10; i++) {
+            assertTrue(instrumented.deposit(token, account.getId(), new BigDecimal("5")));
+        }
+
+        assertThrows(IllegalArgumentException.class, () ->
+                instrumented.deposit(token, account.getId(), new BigDecimal("-1"))
+        );
+
+        OperationMetrics deposit = metrics.getOperation("deposit");
+        assertEquals(11, deposit.getCount());
+        assertEquals(1, deposit.getErrorCount());
+        assertTrue(deposit.getMaxMicros() >= deposit.getP50Micros());
+        assertEquals(0, metrics.getOperation("exchange").getCount());
+
+        String dump = metrics.dump();
+        assertTrue(dump.contains("deposit"), dump);
+        assertFalse(dump.contains("exchange"), dump);
+        assertTrue(dump.contains("transactions=10"), dump);
+
+        metrics.registerMBeans();
+        try {
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+
+            assertEquals(11L, server.getAttribute(new ObjectName("exchange:type=Operation,name=deposit"), "Count"));
+            assertEquals(2, server.getAttribute(new ObjectName("exchange:type=Repository"), "AccountCount"));
+        } finally {
+            metrics.unregisterMBeans();
+        }
+    }
+}
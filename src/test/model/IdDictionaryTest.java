@@ -0,0 +1,102 @@
+package test.model;
+
+import model.IdDictionary;
+import model.Transaction;
+import model.enums.CurrencyCode;
+import model.enums.TransactionType;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class IdDictionaryTest {
+
+    /**
+     * Проверяет плотные идентификаторы и обратное преобразование.
+     */
+    @Test
+    void intern() {
+        IdDictionary dictionary = new IdDictionary();
+
+        assertEquals(0, dictionary.intern("a@example.com"));
+        assertEquals(1, dictionary.intern("b@example.com"));
+        assertEquals(0, dictionary.intern(new String("a@example.com")));
+        assertEquals(IdDictionary.NONE, dictionary.intern(null));
+        assertEquals(IdDictionary.NONE, dictionary.idOf("c@example.com"));
+        assertEquals("b@example.com", dictionary.valueOf(1));
+        assertNull(dictionary.valueOf(IdDictionary.NONE));
+        assertEquals(2, dictionary.size());
+    }
+
+    /**
+     * Проверяет, что известные валюты получают идентификатор, равный порядковому номеру.
+     */
+    @Test
+    void currencies() {
+        for (CurrencyCode code : CurrencyCode.values()) {
+            assertEquals(code.ordinal(), IdDictionary.CURRENCIES.idOf(code.name()));
+        }
+    }
+
+    /**
+     * Проверяет, что параллельное добавление выдает каждой строке ровно один идентификатор.
+     */
+    @Test
+    void concurrentIntern() throws Exception {
+        IdDictionary dictionary = new IdDictionary();
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        List<Future<int[]>> futures = new ArrayList<>();
+
+        for (int t = 0; t < 4; t++) {
+            futures.add(executor.submit(() -> {
+                int[] ids = new int[1_000];
+                for (int i = 0; i < ids.length; i++) {
+                    ids[i] = dictionary.intern("user" + i + "@example.com");
+                }
+                return ids;
+            }));
+        }
+
+        int[] first = futures.get(0).get();
+        for (Future<int[]> future : futures) {
+            assertArrayEquals(first, future.get());
+        }
+        executor.shutdown();
+
+        assertEquals(1_000, dictionary.size());
+        for (int i = 0; i < first.length; i++) {
+            assertEquals("user" + i + "@example.com", dictionary.valueOf(first[i]));
+        }
+    }
+
+    /**
+     * Проверяет, что транзакция возвращает исходные строки.
+     */
+    @Test
+    void transaction() {
+        Transaction transaction = new Transaction(
+                1,
+                TransactionType.TRANSFER,
+                "from@example.com",
+                1,
+                "USD",
+                "to@example.com",
+                2,
+                "XYZ",
+                new BigDecimal("10.00")
+        );
+
+        assertEquals("from@example.com", transaction.getUserEmailFrom());
+        assertEquals("to@example.com", transaction.getUserEmailTo());
+        assertEquals("USD", transaction.getCurrencyFrom());
+        assertEquals("XYZ", transaction.getCurrencyTo());
+        assertEquals(CurrencyCode.USD.ordinal(), transaction.getCurrencyIdFrom());
+        assertEquals(IdDictionary.EMAILS.idOf("from@example.com"), transaction.getUserIdFrom());
+    }
+}
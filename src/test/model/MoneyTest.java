@@ -0,0 +1,41 @@
+package test.model;
+
+import model.Money;
+import model.enums.CurrencyCode;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class MoneyTest {
+
+    /**
+     * Проверяет перевод в минимальные единицы с банковским округлением и точностью валюты.
+     */
+    @Test
+    void of() {
+        assertEquals(1234, Money.of(CurrencyCode.USD, new BigDecimal("12.345")).getMinor());
+        assertEquals(1236, Money.of(CurrencyCode.USD, new BigDecimal("12.355")).getMinor());
+        assertEquals(100_000_000, Money.of(CurrencyCode.BTC, BigDecimal.ONE).getMinor());
+        assertEquals(1_000_000_000_000L, Money.of(CurrencyCode.XMR, BigDecimal.ONE).getMinor());
+        assertEquals(new BigDecimal("12.5"), Money.ofMinor(CurrencyCode.USD, 1250).toBigDecimal());
+    }
+
+    /**
+     * Проверяет арифметику: комиссию, конвертацию и переполнение.
+     */
+    @Test
+    void arithmetic() {
+        Money amount = Money.of(CurrencyCode.USD, new BigDecimal("100.25"));
+
+        assertEquals(Money.ofMinor(CurrencyCode.USD, 200), amount.percentage(200));
+        assertEquals(Money.ofMinor(CurrencyCode.USD, 9825), amount.minus(amount.percentage(200)));
+        assertEquals(Money.ofMinor(CurrencyCode.EUR, 9223), amount.convert(CurrencyCode.EUR, new BigDecimal("0.92")));
+
+        Money max = Money.ofMinor(CurrencyCode.USD, Long.MAX_VALUE);
+        assertThrows(ArithmeticException.class, () -> max.plus(Money.ofMinor(CurrencyCode.USD, 1)));
+        assertThrows(IllegalArgumentException.class, () -> amount.plus(Money.zero(CurrencyCode.EUR)));
+    }
+
+}
@@ -186,6 +186,28 @@ public class AccountRepositoryImplTest {
         }
     }
 
+    @Test
+    public void removeAccountUpdatesUserIndex() throws Exception {
+        List<Account> before = accoutRepository.getAccountsByCurrencyCode("angelika@gmail.com", "EUR");
+        assertEquals(2, before.size());
+
+        accoutRepository.removeAccount(before.get(0).getId());
+
+        List<Account> after = accoutRepository.getAccountsByCurrencyCode("angelika@gmail.com", "EUR");
+        assertEquals(1, after.size());
+        assertEquals(before.get(1).getId(), after.get(0).getId());
+        assertEquals(3, accoutRepository.getAccountsByUserEmail("angelika@gmail.com").size());
+        assertEquals(0, accoutRepository.getAccountsByUserEmail("nobody@gmail.com").size());
+    }
+
+    @Test
+    public void getSystemAccount() {
+        Account system = accoutRepository.createSystemAccount("admin@example.com", "USD", "SYSTEM_USD");
+
+        assertEquals(system.getId(), accoutRepository.getSystemAccount("usd").getId());
+        assertNull(accoutRepository.getSystemAccount("EUR"));
+    }
+
     @Test
     public void removeAccountByIDNegative(){
         try {
@@ -0,0 +1,64 @@
+package test.repository;
+
+import model.Rate;
+import model.enums.CurrencyCode;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import repository.CurrencyRepositoryImpl;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CurrencyRepositoryImplTest {
+
+    private static final LocalDateTime START = LocalDateTime.of(2024, 1, 1, 12, 0);
+
+    private CurrencyRepositoryImpl currencyRepository;
+
+    @BeforeEach
+    void setUp() {
+        currencyRepository = new CurrencyRepositoryImpl();
+
+        // Курсы добавляются не по порядку.
+        currencyRepository.addRate("EUR", new BigDecimal("1.10"), START.plusDays(2));
+        currencyRepository.addRate("EUR", new BigDecimal("1.05"), START);
+        currencyRepository.addRate("EUR", new BigDecimal("1.08"), START.plusDays(1));
+    }
+
+    /**
+     * Проверяет, что актуальный курс - курс с последней датой, а не последний добавленный.
+     */
+    @Test
+    void getActualRate() {
+        assertEquals(new BigDecimal("1.10"), currencyRepository.getActualRate(CurrencyCode.EUR));
+        assertNull(currencyRepository.getActualRate(CurrencyCode.GBP));
+    }
+
+    /**
+     * Проверяет получение курса на момент времени.
+     */
+    @Test
+    void getRateAt() {
+        assertNull(currencyRepository.getRateAt(CurrencyCode.EUR, START.minusSeconds(1)));
+        assertEquals(new BigDecimal("1.05"), currencyRepository.getRateAt(CurrencyCode.EUR, START).getCourse());
+        assertEquals(new BigDecimal("1.08"), currencyRepository.getRateAt(CurrencyCode.EUR, START.plusHours(36)).getCourse());
+        assertEquals(new BigDecimal("1.10"), currencyRepository.getRateAt(CurrencyCode.EUR, START.plusYears(1)).getCourse());
+    }
+
+    /**
+     * Проверяет получение курсов за период в порядке времени.
+     */
+    @Test
+    void getRatesBetween() {
+        List<Rate> rates = currencyRepository.getRatesBetween(CurrencyCode.EUR, START, START.plusDays(1));
+
+        assertEquals(2, rates.size());
+        assertEquals(START, rates.get(0).getTime());
+        assertEquals(START.plusDays(1), rates.get(1).getTime());
+        assertTrue(currencyRepository.getRatesBetween(CurrencyCode.EUR, START.plusDays(1), START).isEmpty());
+    }
+
+}
@@ -0,0 +1,101 @@
+package test.repository;
+
+import org.junit.jupiter.api.Test;
+import repository.IdTable;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class IdTableTest {
+
+    @Test
+    void putGetRemove() {
+        IdTable<String> table = new IdTable<>();
+
+        assertNull(table.put(5, "a"));
+        assertEquals("a", table.put(5, "b"));
+        assertEquals("b", table.get(5));
+        assertNull(table.get(4));
+        assertNull(table.get(-1));
+        assertNull(table.get(Integer.MAX_VALUE));
+        assertEquals(1, table.size());
+
+        assertEquals("b", table.remove(5));
+        assertNull(table.remove(5));
+        assertFalse(table.containsKey(5));
+        assertEquals(0, table.size());
+    }
+
+
+    @Test
+    void putIfAbsent() {
+        IdTable<String> table = new IdTable<>();
+
+        assertNull(table.putIfAbsent(3, "a"));
+        assertEquals("a", table.putIfAbsent(3, "b"));
+        assertEquals("a", table.get(3));
+        assertEquals(1, table.size());
+    }
+
+
+    @Test
+    void negativeIdOrNullValue() {
+        IdTable<String> table = new IdTable<>();
+
+        assertThrows(IllegalArgumentException.class, () -> table.put(-1, "a"));
+        assertThrows(IllegalArgumentException.class, () -> table.put(1, null));
+    }
+
+
+    @Test
+    void valuesInIdOrderAcrossChunks() {
+        IdTable<Integer> table = new IdTable<>();
+
+        for (int id = 100_000; id >= 0; id -= 7) {
+            table.put(id, id);
+        }
+
+        List<Integer> values = table.values();
+        assertEquals(table.size(), values.size());
+
+        for (int i = 1; i < values.size(); i++) {
+            assertTrue(values.get(i - 1) < values.get(i));
+        }
+    }
+
+
+    @Test
+    void concurrentPuts() throws Exception {
+        IdTable<Integer> table = new IdTable<>();
+        int threads = 4;
+        int perThread = 50_000;
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        List<Future<?>> futures = new ArrayList<>();
+
+        for (int t = 0; t < threads; t++) {
+            int offset = t;
+            futures.add(executor.submit(() -> {
+                for (int i = 0; i < perThread; i++) {
+                    int id = i * threads + offset;
+                    table.put(id, id);
+                }
+            }));
+        }
+
+        for (Future<?> future : futures) {
+            future.get();
+        }
+        executor.shutdown();
+
+        assertEquals(threads * perThread, table.size());
+        for (int id = 0; id < threads * perThread; id++) {
+            assertEquals(Integer.valueOf(id), table.get(id));
+        }
+    }
+
+}
@@ -0,0 +1,303 @@
+package test.repository;
+
+import model.Account;
+import model.Transaction;
+import model.User;
+import model.enums.CurrencyCode;
+import model.enums.TransactionType;
+import model.enums.UserRole;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import repository.AccountRepositoryImpl;
+import repository.CurrencyRepositoryImpl;
+import repository.TransactionRepositoryImpl;
+import repository.UserRepositoryImpl;
+import repository.journal.Durability;
+import repository.journal.Journal;
+import repository.journal.JournalReplayer;
+import repository.journal.Snapshotter;
+import service.MainServiceImpl;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.util.Comparator;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class JournalTest {
+
+    private Path directory;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        directory = Files.createTempDirectory("exchange-journal");
+    }
+
+    @AfterEach
+    void tearDown() throws IOException {
+        try (Stream<Path> files = Files.walk(directory)) {
+            files.sorted(Comparator.reverseOrder()).forEach(path -> path.toFile().delete());
+        }
+    }
+
+    /**
+     * Проверяет, что после проигрывания журнала состояние репозиториев совпадает с записанным.
+     */
+    @Test
+    void replay() throws IOException {
+        LocalDateTime time = LocalDateTime.of(2024, 1, 1, 12, 0);
+
+        try (Journal journal = new Journal(directory, Durability.PERIODIC, 5)) {
+            UserRepositoryImpl users = new UserRepositoryImpl(journal);
+            AccountRepositoryImpl accounts = new AccountRepositoryImpl(journal);
+            CurrencyRepositoryImpl currencies = new CurrencyRepositoryImpl(journal);
+            TransactionRepositoryImpl transactions = new TransactionRepositoryImpl(journal);
+
+            User user = users.addUser("max@example.com", "123_Pass!5", UserRole.USER);
+            user.setRole(UserRole.BLOCKED);
+            users.updateUser(user);
+
+            Account account = accounts.createAccount("max@example.com", "Main", "EUR");
+            account.setBalance(new BigDecimal("12.34"));
+            accounts.updateBalance(account);
+            accounts.createAccount("max@example.com", "Removed", "USD");
+            accounts.removeAccount(1);
+
+            currencies.addRate("EUR", new BigDecimal("1.08"), time);
+            transactions.createTransaction(
+                    TransactionType.DEPOSIT,
+                    "max@example.com",
+                    0,
+                    "EUR",
+                    "max@example.com",
+                    0,
+                    "EUR",
+                    new BigDecimal("12.34"),
+                    new BigDecimal("1.08"),
+                    "Пополнение"
+            );
+            transactions.createTransaction(
+                    TransactionType.TRANSFER,
+                    "max@example.com",
+                    2,
+                    "USD",
+                    "max@example.com",
+                    0,
+                    "EUR",
+                    new BigDecimal("9.07"),
+                    new BigDecimal("10"),
+                    new BigDecimal("0.18"),
+                    new BigDecimal("0.925925925926"),
+                    3
+            );
+        } catch (Exception e) {
+            fail(e.getMessage());
+        }
+
+        UserRepositoryImpl users = new UserRepositoryImpl();
+        AccountRepositoryImpl accounts = new AccountRepositoryImpl();
+        CurrencyRepositoryImpl currencies = new CurrencyRepositoryImpl();
+        TransactionRepositoryImpl transactions = new TransactionRepositoryImpl();
+
+        try (Journal journal = new Journal(directory)) {
+            assertEquals(9, journal.replay(new JournalReplayer(users, accounts, currencies, transactions)));
+        }
+
+        assertEquals(UserRole.BLOCKED, users.getUserByEmail("max@example.com").getRole());
+        assertEquals(1, accounts.getAllAccounts().size());
+        assertEquals(new BigDecimal("12.34"), accounts.getAccountById(0).getBalance());
+        assertEquals("Main", accounts.getAccountById(0).getTitle());
+        assertEquals(new BigDecimal("1.08"), currencies.getActualRate(CurrencyCode.EUR));
+
+        Transaction transaction = transactions.getTransactionById(0);
+        assertEquals(new BigDecimal("12.34"), transaction.getAmount());
+        assertEquals("Пополнение", transaction.getComment());
+
+        // Сумма списания, комиссия и обороты по дням восстанавливаются вместе с транзакцией.
+        Transaction exchange = transactions.getTransactionById(1);
+        assertEquals(new BigDecimal("10"), exchange.getAmountFrom());
+        assertEquals(new BigDecimal("0.18"), exchange.getFee());
+        assertEquals(
+                new BigDecimal("0.18"),
+                transactions.getDailyVolume(exchange.getDate().toLocalDate(), "USD", "EUR", TransactionType.TRANSFER).getFees()
+        );
+
+        // Счетчики идентификаторов продолжаются после восстановленных записей.
+        assertEquals(2, accounts.createAccount("max@example.com", "New", "EUR").getId());
+    }
+
+    /**
+     * Проверяет, что недописанная запись в конце журнала отбрасывается, а журнал остается пригодным для записи.
+     */
+    @Test
+    void replayTornTail() throws IOException {
+        try (Journal journal = new Journal(directory)) {
+            UserRepositoryImpl users = new UserRepositoryImpl(journal);
+            users.addUser("max@example.com", "123_Pass!5");
+            users.addUser("igor@example.com", "123_Pass!4");
+        }
+
+        Path segment = directory.resolve("journal-0000000000000001.log");
+        long size = Files.size(segment);
+        try (FileChannel channel = FileChannel.open(segment, StandardOpenOption.WRITE)) {
+            channel.truncate(size - 3);
+        }
+
+        UserRepositoryImpl users = new UserRepositoryImpl();
+        try (Journal journal = new Journal(directory)) {
+            assertEquals(1, journal.replay(new JournalReplayer(
+                    users,
+                    new AccountRepositoryImpl(),
+                    new CurrencyRepositoryImpl(),
+                    new TransactionRepositoryImpl()
+            )));
+
+            new UserRepositoryImpl(journal).addUser("igor@example.com", "123_Pass!4");
+        }
+
+        assertTrue(users.isEmailExists("max@example.com"));
+        assertFalse(users.isEmailExists("igor@example.com"));
+
+        UserRepositoryImpl restored = new UserRepositoryImpl();
+        try (Journal journal = new Journal(directory)) {
+            assertEquals(2, journal.replay(new JournalReplayer(
+                    restored,
+                    new AccountRepositoryImpl(),
+                    new CurrencyRepositoryImpl(),
+                    new TransactionRepositoryImpl()
+            )));
+        }
+
+        assertTrue(restored.isEmailExists("igor@example.com"));
+    }
+
+    /**
+     * Проверяет, что записи одного обмена (балансы двух счетов и транзакция) проигрываются только вместе: журнал,
+     * оборванный между ними, восстанавливает состояние до обмена.
+     */
+    @Test
+    void replayTornExchange() throws IOException {
+        long before;
+        long after;
+        long records;
+
+        try (Journal journal = new Journal(directory)) {
+            UserRepositoryImpl users = new UserRepositoryImpl(journal);
+            AccountRepositoryImpl accounts = new AccountRepositoryImpl(journal);
+            CurrencyRepositoryImpl currencies = new CurrencyRepositoryImpl(journal);
+            TransactionRepositoryImpl transactions = new TransactionRepositoryImpl(journal);
+
+            users.addUser("max@example.com", "123_Pass!5", UserRole.USER);
+            currencies.addRate("USD", BigDecimal.ONE, LocalDateTime.now());
+            currencies.addRate("EUR", new BigDecimal("1.08"), LocalDateTime.now());
+            Account usd = accounts.createAccount("max@example.com", "Main", "USD");
+            accounts.createAccount("max@example.com", "Euro", "EUR");
+            usd.setBalance(new BigDecimal("100"));
+            accounts.updateBalance(usd);
+
+            MainServiceImpl service = new MainServiceImpl(users, accounts, currencies, transactions, journal);
+            service.setActiveUser("max@example.com");
+
+            journal.sync();
+            before = Files.size(directory.resolve("journal-0000000000000001.log"));
+
+            assertTrue(service.exchange(0, 1, new BigDecimal("50")));
+            journal.sync();
+            after = Files.size(directory.resolve("journal-0000000000000001.log"));
+        }
+
+        AccountRepositoryImpl accounts = new AccountRepositoryImpl();
+        TransactionRepositoryImpl transactions = new TransactionRepositoryImpl();
+
+        try (Journal journal = new Journal(directory)) {
+            records = journal.replay(new JournalReplayer(new UserRepositoryImpl(), accounts, new CurrencyRepositoryImpl(), transactions));
+        }
+
+        // Целиком записанный обмен проигрывается тремя записями: два баланса и транзакция.
+        assertEquals(new BigDecimal("50"), accounts.getAccountById(0).getBalance());
+        assertEquals(1, transactions.getAllTransactions().size());
+
+        Path segment = directory.resolve("journal-0000000000000001.log");
+        try (FileChannel channel = FileChannel.open(segment, StandardOpenOption.WRITE)) {
+            channel.truncate(before + (after - before) / 2);
+        }
+
+        accounts = new AccountRepositoryImpl();
+        transactions = new TransactionRepositoryImpl();
+
+        try (Journal journal = new Journal(directory)) {
+            assertEquals(records - 3, journal.replay(new JournalReplayer(
+                    new UserRepositoryImpl(),
+                    accounts,
+                    new CurrencyRepositoryImpl(),
+                    transactions
+            )));
+        }
+
+        assertEquals(0, new BigDecimal("100").compareTo(accounts.getAccountById(0).getBalance()));
+        assertEquals(0, BigDecimal.ZERO.compareTo(accounts.getAccountById(1).getBalance()));
+        assertTrue(transactions.getAllTransactions().isEmpty());
+    }
+
+    /**
+     * Проверяет восстановление из снимка и хвоста журнала и удаление покрытых снимком сегментов.
+     */
+    @Test
+    void snapshot() throws Exception {
+        try (Journal journal = new Journal(directory)) {
+            UserRepositoryImpl users = new UserRepositoryImpl(journal);
+            AccountRepositoryImpl accounts = new AccountRepositoryImpl(journal);
+            CurrencyRepositoryImpl currencies = new CurrencyRepositoryImpl(journal);
+            TransactionRepositoryImpl transactions = new TransactionRepositoryImpl(journal);
+            Snapshotter snapshotter = new Snapshotter(journal, users, accounts, currencies, transactions);
+
+            users.addUser("max@example.com", "123_Pass!5");
+            Account account = accounts.createAccount("max@example.com", "Main", "USD");
+            accounts.createAccount("max@example.com", "Removed", "USD");
+            accounts.removeAccount(1);
+
+            assertEquals(3, snapshotter.snapshot());
+
+            // Изменения после снимка попадают в хвост журнала.
+            account.setBalance(new BigDecimal("5"));
+            accounts.updateBalance(account);
+            transactions.createTransaction(
+                    TransactionType.DEPOSIT,
+                    "max@example.com",
+                    0,
+                    "USD",
+                    "max@example.com",
+                    0,
+                    "USD",
+                    new BigDecimal("5")
+            );
+
+            assertEquals(4, snapshotter.snapshot());
+            assertFalse(Files.exists(directory.resolve("journal-0000000000000001.log")));
+        }
+
+        try (Journal journal = new Journal(directory)) {
+            UserRepositoryImpl users = new UserRepositoryImpl(journal);
+            AccountRepositoryImpl accounts = new AccountRepositoryImpl(journal);
+            TransactionRepositoryImpl transactions = new TransactionRepositoryImpl(journal);
+            Snapshotter snapshotter = new Snapshotter(journal, users, accounts, new CurrencyRepositoryImpl(journal), transactions);
+
+            assertEquals(4, snapshotter.restore());
+            assertTrue(users.isEmailExists("max@example.com"));
+            assertEquals(new BigDecimal("5"), accounts.getAccountById(0).getBalance());
+            assertNull(accounts.getAccountById(1));
+            assertEquals(1, transactions.getAllTransactions().size());
+
+            // Идентификатор удаленного счета не выдается повторно.
+            assertEquals(2, accounts.createAccount("max@example.com", "New", "USD").getId());
+        }
+    }
+
+}
@@ -0,0 +1,178 @@
+package test.repository;
+
+import model.DailyVolume;
+import model.Transaction;
+import model.enums.TransactionType;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import repository.MappedTransactionRepository;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class MappedTransactionRepositoryTest {
+
+    private Path directory;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        directory = Files.createTempDirectory("exchange-transactions");
+    }
+
+    @AfterEach
+    void tearDown() throws IOException {
+        try (Stream<Path> files = Files.walk(directory)) {
+            files.sorted(Comparator.reverseOrder()).forEach(path -> path.toFile().delete());
+        }
+    }
+
+    /**
+     * Проверяет создание и чтение транзакций, выборку по счету и по дню.
+     */
+    @Test
+    void createAndRead() throws IOException {
+        try (MappedTransactionRepository repository = new MappedTransactionRepository(directory)) {
+            repository.createTransaction(
+                    TransactionType.DEPOSIT,
+                    null,
+                    -1,
+                    null,
+                    "max@example.com",
+                    0,
+                    "USD",
+                    new BigDecimal("100.50")
+            );
+            repository.createTransaction(
+                    TransactionType.TRANSFER,
+                    "max@example.com",
+                    0,
+                    "USD",
+                    "max@example.com",
+                    1,
+                    "BTC",
+                    new BigDecimal("0.00012345"),
+                    new BigDecimal("0.000015"),
+                    "Обмен"
+            );
+            repository.createTransaction(
+                    TransactionType.WITHDRAW,
+                    "max@example.com",
+                    0,
+                    "USD",
+                    null,
+                    0,
+                    "USD",
+                    new BigDecimal("20")
+            );
+
+            Transaction exchange = repository.getTransactionById(1);
+            assertEquals(TransactionType.TRANSFER, exchange.getType());
+            assertEquals(new BigDecimal("0.00012345"), exchange.getAmount());
+            assertEquals(new BigDecimal("0.000015"), exchange.getCourse());
+            assertEquals("Обмен", exchange.getComment());
+            assertNull(repository.getTransactionById(3));
+
+            List<Transaction> byAccount = repository.getTransactionsByAccountId(0);
+            assertEquals(2, byAccount.size());
+            assertEquals(0, byAccount.get(0).getId());
+            assertEquals(2, byAccount.get(1).getId());
+
+            assertEquals(3, repository.getTransactionsByDate(LocalDate.now()).size());
+            assertTrue(repository.getTransactionsByDate(LocalDate.now().minusDays(1)).isEmpty());
+
+            List<Integer> ids = new ArrayList<>();
+            repository.forEachTransaction(LocalDate.now(), LocalDate.now(), transaction -> ids.add(transaction.getId()));
+            assertEquals(List.of(0, 1, 2), ids);
+
+            ids.clear();
+            repository.forEachTransaction(LocalDate.now().plusDays(1), LocalDate.now().plusDays(2), transaction -> ids.add(transaction.getId()));
+            assertTrue(ids.isEmpty());
+        }
+    }
+
+    /**
+     * Проверяет, что транзакции и индексы сохраняются после повторного открытия хранилища.
+     */
+    @Test
+    void reopen() throws IOException {
+        try (MappedTransactionRepository repository = new MappedTransactionRepository(directory)) {
+            for (int i = 0; i < 10; i++) {
+                repository.createTransaction(
+                        TransactionType.DEPOSIT,
+                        null,
+                        -1,
+                        null,
+                        "max@example.com",
+                        i % 2,
+                        "EUR",
+                        new BigDecimal(i + 1),
+                        null,
+                        i == 5 ? "Пятая" : null
+                );
+            }
+        }
+
+        try (MappedTransactionRepository repository = new MappedTransactionRepository(directory)) {
+            assertEquals(10, repository.getTransactionCount());
+            assertEquals(5, repository.getTransactionsByAccountId(1).size());
+            assertEquals("Пятая", repository.getTransactionById(5).getComment());
+            assertEquals("max@example.com", repository.getTransactionById(9).getUserEmailTo());
+
+            // Обороты по дням восстанавливаются проходом по записям при открытии.
+            DailyVolume deposits = repository.getDailyVolume(LocalDate.now(), null, "EUR", TransactionType.DEPOSIT);
+            assertEquals(10, deposits.getCount());
+            assertEquals(new BigDecimal("55"), deposits.getAmount());
+
+            Transaction next = repository.createTransaction(
+                    TransactionType.DEPOSIT,
+                    null,
+                    -1,
+                    null,
+                    "igor@example.com",
+                    1,
+                    "EUR",
+                    new BigDecimal("7")
+            );
+            assertEquals(10, next.getId());
+            assertEquals(6, repository.getTransactionsByAccountId(1).size());
+
+            long sum = 0;
+            MappedTransactionRepository.Cursor cursor = repository.cursor(8);
+            while (cursor.next()) {
+                sum += cursor.getAmountMinor();
+            }
+            assertEquals(900 + 1000 + 700, sum);
+
+            // Сумма списания и комиссия обмена сохраняются рядом с суммой зачисления.
+            Transaction exchange = repository.createTransaction(
+                    TransactionType.TRANSFER,
+                    "max@example.com",
+                    0,
+                    "USD",
+                    "max@example.com",
+                    1,
+                    "EUR",
+                    new BigDecimal("9.07"),
+                    new BigDecimal("10"),
+                    new BigDecimal("0.18"),
+                    new BigDecimal("0.925925925926"),
+                    3
+            );
+            assertEquals(new BigDecimal("10"), repository.getTransactionById(exchange.getId()).getAmountFrom());
+            assertEquals(1000, repository.getTransactionById(exchange.getId()).getAmountFromMinor());
+            assertFalse(repository.getTransactionById(10).hasAmountFrom());
+            assertEquals(new BigDecimal("0.18"), repository.getTransactionById(exchange.getId()).getFee());
+        }
+    }
+
+}
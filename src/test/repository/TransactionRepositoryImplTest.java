@@ -1,5 +1,6 @@
 package test.repository;
 
+import model.DailyVolume;
 import model.Transaction;
 import model.enums.TransactionType;
 import org.junit.jupiter.api.BeforeEach;
@@ -152,4 +153,122 @@ class TransactionRepositoryImplTest {
     }
 
 
+    /**
+     * Проверяет фильтрацию транзакций по получателю и счету "в".
+     */
+    @Test
+    void getTransactionsByUserTo() {
+        transactionRepository.createTransaction(
+                TransactionType.TRANSFER,
+                "user1@example.com",
+                1,
+                "USD",
+                "user2@example.com",
+                2,
+                "USD",
+                BigDecimal.valueOf(100)
+        );
+
+        transactionRepository.createTransaction(
+                TransactionType.DEPOSIT,
+                "user2@example.com",
+                5,
+                "EUR",
+                "user2@example.com",
+                5,
+                "EUR",
+                BigDecimal.valueOf(300)
+        );
+
+        assertEquals(2, transactionRepository.getTransactionsByUserTo("user2@example.com").size());
+        assertEquals(1, transactionRepository.getTransactionsByUserTo("user2@example.com", 2).size());
+        assertEquals(1, transactionRepository.getTransactionsByUserTo("user2@example.com", 5, LocalDate.now()).size());
+        assertEquals(0, transactionRepository.getTransactionsByUserTo("user1@example.com", 2).size());
+        assertEquals(0, transactionRepository.getTransactionsByUserTo("user2@example.com", LocalDate.now().minusDays(1)).size());
+    }
+
+    /**
+     * Проверяет получение транзакций по id счета "в".
+     */
+    @Test
+    void getTransactionsByAccountId() {
+        transactionRepository.createTransaction(
+                TransactionType.TRANSFER,
+                "user1@example.com",
+                1,
+                "USD",
+                "user1@example.com",
+                2,
+                "EUR",
+                BigDecimal.valueOf(100),
+                BigDecimal.valueOf(0.9)
+        );
+
+        assertEquals(1, transactionRepository.getTransactionsByAccountId(2).size());
+        assertEquals(0, transactionRepository.getTransactionsByAccountId(1).size());
+        assertEquals(1, transactionRepository.getTransactionsByUserFrom("user1@example.com", 1).size());
+
+        // Возвращаемый список - копия, изменение не затрагивает индекс.
+        transactionRepository.getTransactionsByAccountId(2).clear();
+        assertEquals(1, transactionRepository.getTransactionsByAccountId(2).size());
+    }
+
+    /**
+     * Проверяет обороты за день: количество, сумму, комиссии и диапазон курсов по валютной паре и типу.
+     */
+    @Test
+    void dailyVolumes() {
+        for (String course : new String[]{"0.91", "0.9", "0.925"}) {
+            transactionRepository.createTransaction(
+                    TransactionType.TRANSFER,
+                    "user1@example.com",
+                    1,
+                    "USD",
+                    "user1@example.com",
+                    2,
+                    "EUR",
+                    new BigDecimal("9.80"),
+                    new BigDecimal("10.89"),
+                    new BigDecimal("0.20"),
+                    new BigDecimal(course),
+                    1
+            );
+        }
+        transactionRepository.createTransaction(
+                TransactionType.DEPOSIT,
+                "user1@example.com",
+                1,
+                "USD",
+                "user1@example.com",
+                1,
+                "USD",
+                new BigDecimal("98"),
+                null,
+                new BigDecimal("2"),
+                null,
+                0
+        );
+
+        LocalDate today = LocalDate.now();
+        DailyVolume exchanges = transactionRepository.getDailyVolume(today, "USD", "EUR", TransactionType.TRANSFER);
+
+        assertEquals(3, exchanges.getCount());
+        assertEquals(new BigDecimal("29.4"), exchanges.getAmount());
+        assertEquals(new BigDecimal("0.6"), exchanges.getFees());
+        assertEquals(new BigDecimal("0.9"), exchanges.getMinCourse());
+        assertEquals(new BigDecimal("0.925"), exchanges.getMaxCourse());
+
+        DailyVolume deposits = transactionRepository.getDailyVolume(today, "USD", "USD", TransactionType.DEPOSIT);
+        assertEquals(1, deposits.getCount());
+        assertEquals(new BigDecimal("2"), deposits.getFees());
+        assertNull(deposits.getMinCourse());
+
+        List<DailyVolume> volumes = transactionRepository.getDailyVolumes(today);
+        assertEquals(2, volumes.size());
+        assertEquals(TransactionType.DEPOSIT, volumes.get(0).getType());
+
+        assertNull(transactionRepository.getDailyVolume(today, "EUR", "USD", TransactionType.TRANSFER));
+        assertTrue(transactionRepository.getDailyVolumes(today.minusDays(1)).isEmpty());
+    }
+
 }
\ No newline at end of file
@@ -0,0 +1,126 @@
+package test.service;
+
+import model.Account;
+import model.BatchCommand;
+import model.BatchResult;
+import model.DailyVolume;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import service.MainServiceImpl;
+import service.SequencedMainService;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Тесты пакетного выполнения операций {@code executeBatch}: режим «все или ничего», выполнение по отдельности,
+ * проверка владельца и порядок транзакций пакета.
+ */
+class BatchTest {
+
+    private ServiceFixture fixture;
+    private MainServiceImpl service;
+
+    @BeforeEach
+    void setUp() {
+        fixture = new ServiceFixture("batch@example.com", "other@example.com");
+        service = fixture.newService("batch@example.com");
+    }
+
+    /**
+     * Проверяет, что ошибка любой операции отменяет пакет целиком.
+     */
+    @Test
+    void atomicBatchIsRolledBack() throws Exception {
+        Account a = service.creatAccount("A", "USD");
+        Account b = service.creatAccount("B", "USD");
+        service.deposit(a.getId(), new BigDecimal("100"));
+        int before = fixture.getTransactions().getTransactionCount();
+
+        BatchResult result = service.executeBatch(List.of(
+                BatchCommand.exchange(a.getId(), b.getId(), new BigDecimal("50")),
+                BatchCommand.withdrawal(a.getId(), new BigDecimal("60"))
+        ), true);
+
+        assertEquals(0, result.getAppliedCount());
+        assertTrue(result.getError(0).contains("операции 1"));
+        assertNotNull(result.getError(1));
+        assertEquals(0, new BigDecimal("98").compareTo(a.getBalance()));
+        assertEquals(0, BigDecimal.ZERO.compareTo(b.getBalance()));
+        assertEquals(before, fixture.getTransactions().getTransactionCount());
+    }
+
+    /**
+     * Проверяет, что без режима «все или ничего» выполняются только корректные операции.
+     */
+    @Test
+    void itemsAreAppliedIndependently() throws Exception {
+        Account a = service.creatAccount("A", "USD");
+        Account b = service.creatAccount("B", "USD");
+        Account foreign = fixture.getAccounts().createAccount("other@example.com", "Other", "USD");
+
+        BatchResult result = service.executeBatch(Arrays.asList(
+                BatchCommand.deposit(a.getId(), new BigDecimal("100")),
+                BatchCommand.withdrawal(b.getId(), new BigDecimal("1")),
+                BatchCommand.exchange(a.getId(), b.getId(), new BigDecimal("50")),
+                BatchCommand.exchange(foreign.getId(), b.getId(), new BigDecimal("1")),
+                null
+        ), false);
+
+        assertEquals(2, result.getAppliedCount());
+        assertTrue(result.isApplied(0));
+        assertFalse(result.isApplied(1));
+        assertTrue(result.isApplied(2));
+        assertTrue(result.getError(3).contains("не принадлежит"));
+        assertNotNull(result.getError(4));
+
+        // 100 - 2 (комиссия) - 50 и 50 - 1 (комиссия обмена).
+        assertEquals(0, new BigDecimal("48").compareTo(a.getBalance()));
+        assertEquals(0, new BigDecimal("49").compareTo(b.getBalance()));
+
+        // Транзакции пакета получают id подряд в порядке операций.
+        assertEquals(result.getTransaction(0).getId() + 1, result.getTransaction(2).getId());
+
+        service.flushCommissions();
+        assertEquals(0, new BigDecimal("3").compareTo(fixture.getAccounts().getSystemAccount("USD").getBalance()));
+
+        // Комиссии пакета записаны в транзакциях и попадают в обороты дня.
+        BigDecimal fees = service.getDailyVolumes(LocalDate.now().toString()).stream()
+                .map(DailyVolume::getFees)
+                .reduce(BigDecimal.ZERO, BigDecimal::add);
+        assertEquals(0, new BigDecimal("3").compareTo(fees));
+    }
+
+    /**
+     * Проверяет пакет, выполняемый через однопоточный исполнитель.
+     */
+    @Test
+    void sequencedBatch() throws Exception {
+        SequencedMainService sequenced = fixture.newSequencedService(64);
+        sequenced.setActiveUser("batch@example.com");
+
+        try {
+            Account a = sequenced.creatAccount("A", "USD");
+            Account b = sequenced.creatAccount("B", "EUR");
+
+            BatchResult result = sequenced.executeBatch(List.of(
+                    BatchCommand.deposit(a.getId(), new BigDecimal("100")),
+                    BatchCommand.exchange(a.getId(), b.getId(), new BigDecimal("10"))
+            ), true);
+
+            assertTrue(result.isAllApplied());
+            assertEquals(0, new BigDecimal("88").compareTo(a.getBalance()));
+            assertTrue(b.getBalance().signum() > 0);
+            assertEquals(0, new BigDecimal("2").compareTo(fixture.getAccounts().getSystemAccount("USD").getBalance()));
+
+            assertThrows(IllegalArgumentException.class, () -> sequenced.executeBatch(null, true));
+        } finally {
+            sequenced.shutdown();
+        }
+    }
+
+}
@@ -0,0 +1,133 @@
+package test.service;
+
+import model.Account;
+import model.enums.CurrencyCode;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import repository.AccountRepositoryImpl;
+import service.MainServiceImpl;
+import service.SequencedMainService;
+
+import java.math.BigDecimal;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Тесты зачисления комиссий на системные счета.
+ */
+class CommissionTest {
+
+    private FailingAccountRepository accountRepository;
+    private ServiceFixture fixture;
+
+    @BeforeEach
+    void setUp() {
+        accountRepository = new FailingAccountRepository();
+        fixture = new ServiceFixture(accountRepository, "fee@example.com");
+    }
+
+    /**
+     * Проверяет, что незачисленные комиссии восстанавливаются из транзакций новым сервисом (как после
+     * перезапуска), а зачисленные - нет.
+     */
+    @Test
+    void pendingCommissionsSurviveRestart() {
+        MainServiceImpl service = fixture.newService("fee@example.com");
+        Account account = service.creatAccount("Euro", "EUR");
+
+        assertTrue(service.deposit(account.getId(), new BigDecimal("100")));
+        assertTrue(service.deposit(account.getId(), new BigDecimal("50")));
+
+        // Системного счета EUR нет: комиссия остается в накопителе.
+        assertTrue(service.flushCommissions().isEmpty());
+
+        MainServiceImpl restarted = fixture.newService("fee@example.com");
+        assertEquals(0, new BigDecimal("3").compareTo(restarted.getPendingCommissions().get(CurrencyCode.EUR)));
+
+        Account system = accountRepository.createSystemAccount("admin@example.com", "EUR", "SYSTEM_EUR");
+        assertEquals(0, new BigDecimal("3").compareTo(restarted.flushCommissions().get(CurrencyCode.EUR)));
+        restarted.reconcileCommissions();
+
+        assertEquals(0, new BigDecimal("3").compareTo(system.getBalance()));
+        assertTrue(fixture.newService("fee@example.com").getPendingCommissions().isEmpty());
+    }
+
+    /**
+     * Проверяет, что восстановленные комиссии однопоточный исполнитель зачисляет в конце первой пачки.
+     */
+    @Test
+    void sequencedServiceSettlesRecoveredCommissions() {
+        MainServiceImpl service = fixture.newService("fee@example.com");
+        Account account = service.creatAccount("Euro", "EUR");
+
+        assertTrue(service.deposit(account.getId(), new BigDecimal("100")));
+
+        Account system = accountRepository.createSystemAccount("admin@example.com", "EUR", "SYSTEM_EUR");
+        SequencedMainService sequenced = fixture.newSequencedService(1024);
+        sequenced.setActiveUser("fee@example.com");
+
+        try {
+            assertTrue(sequenced.deposit(account.getId(), new BigDecimal("50")));
+        } finally {
+            sequenced.getEngine().stop();
+        }
+
+        assertEquals(0, new BigDecimal("3").compareTo(system.getBalance()));
+        assertTrue(fixture.newService("fee@example.com").getPendingCommissions().isEmpty());
+    }
+
+    /**
+     * Проверяет, что партия, которую не удалось зачислить, возвращается в накопитель, а периодическое
+     * зачисление продолжается после ошибки.
+     */
+    @Test
+    void failedFlushRestoresBatch() throws Exception {
+        MainServiceImpl service = fixture.newService("fee@example.com");
+        Account system = accountRepository.createSystemAccount("admin@example.com", "EUR", "SYSTEM_EUR");
+        Account account = service.creatAccount("Euro", "EUR");
+
+        assertTrue(service.deposit(account.getId(), new BigDecimal("100")));
+
+        accountRepository.failingId = system.getId();
+        assertThrows(IllegalStateException.class, service::flushCommissions);
+        assertEquals(0, new BigDecimal("2").compareTo(service.getPendingCommissions().get(CurrencyCode.EUR)));
+        service.reconcileCommissions();
+
+        service.startCommissionFlush(10);
+        try {
+            Thread.sleep(50);
+            accountRepository.failingId = -1;
+
+            long deadline = System.currentTimeMillis() + 5_000;
+            while (!service.getPendingCommissions().isEmpty() && System.currentTimeMillis() < deadline) {
+                Thread.sleep(10);
+            }
+        } finally {
+            service.stopCommissionFlush();
+        }
+
+        assertTrue(service.getPendingCommissions().isEmpty());
+        assertEquals(0, new BigDecimal("2").compareTo(system.getBalance()));
+        service.reconcileCommissions();
+    }
+
+
+    /**
+     * Репозиторий счетов, отказывающий в сохранении баланса заданного счета.
+     */
+    private static class FailingAccountRepository extends AccountRepositoryImpl {
+
+        private volatile int failingId = -1;
+
+        @Override
+        public void updateBalance(Account account) {
+            if (account.getId() == this.failingId) {
+                throw new IllegalStateException("Не удалось сохранить баланс!");
+            }
+
+            super.updateBalance(account);
+        }
+
+    }
+
+}
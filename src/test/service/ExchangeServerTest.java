@@ -0,0 +1,174 @@
+package test.service;
+
+import model.enums.UserRole;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import server.ExchangeServer;
+import service.MainServiceImpl;
+import service.SessionManager;
+
+import java.math.BigDecimal;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Проверяет HTTP-интерфейс сервиса.
+ */
+class ExchangeServerTest {
+
+    private MainServiceImpl service;
+    private ExchangeServer server;
+    private HttpClient client;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        ServiceFixture fixture = new ServiceFixture();
+        fixture.getAccounts().createSystemAccount("admin@example.com", "EUR", "SYSTEM_EUR");
+        fixture.getUsers().addUser("admin@example.com", ServiceFixture.PASSWORD, UserRole.ADMIN);
+
+        service = fixture.newService(new SessionManager(60_000));
+
+        server = new ExchangeServer(service, 0, 4);
+        server.start();
+        client = HttpClient.newHttpClient();
+    }
+
+    @AfterEach
+    void tearDown() {
+        server.stop(0);
+    }
+
+    /**
+     * Проверяет, что регистрация по HTTP не заменяет активного пользователя консоли.
+     */
+    @Test
+    void registerKeepsConsoleSession() throws Exception {
+        service.setActiveUser("admin@example.com");
+
+        assertEquals(200, post("/register", null, "email=client%40example.com&password=123_Pass!0").statusCode());
+
+        assertEquals("admin@example.com", service.getActiveUser().getEmail());
+        assertEquals(200, post("/login", null, "email=client%40example.com&password=123_Pass!0").statusCode());
+        assertEquals("admin@example.com", service.getActiveUser().getEmail());
+    }
+
+    /**
+     * Проверяет регистрацию, вход, операции со счетом и историю.
+     */
+    @Test
+    void userFlow() throws Exception {
+        assertEquals(200, post("/register", null, "email=client%40example.com&password=123_Pass!0").statusCode());
+        assertEquals(409, post("/register", null, "email=client%40example.com&password=123_Pass!0").statusCode());
+
+        HttpResponse<String> login = post("/login", null, "email=client%40example.com&password=123_Pass!0");
+        assertEquals(200, login.statusCode());
+        String token = field(login.body(), "token");
+
+        HttpResponse<String> account = post("/accounts", token, "title=Main&currency=USD");
+        assertEquals(200, account.statusCode());
+        String id = field(account.body(), "id");
+
+        assertEquals(200, post("/deposit", token, "account=" + id + "&amount=100").statusCode());
+        assertEquals(200, post("/withdrawal", token, "account=" + id + "&amount=40").statusCode());
+
+        HttpResponse<String> accounts = get("/accounts", token);
+        assertEquals(200, accounts.statusCode());
+        // Снятие учитывает комиссию.
+        BigDecimal balance = new BigDecimal(field(accounts.body(), "balance"));
+        assertTrue(balance.compareTo(new BigDecimal("60")) <= 0 && balance.signum() > 0, accounts.body());
+
+        HttpResponse<String> history = get("/history?account=" + id, token);
+        assertEquals(200, history.statusCode());
+        assertEquals(2, history.body().split("\"type\"").length - 1, history.body());
+
+        assertEquals(200, post("/logout", token, "").statusCode());
+        assertEquals(401, get("/accounts", token).statusCode());
+    }
+
+    /**
+     * Проверяет коды ошибок.
+     */
+    @Test
+    void errors() throws Exception {
+        assertEquals(401, get("/accounts", "unknown").statusCode());
+        assertEquals(401, post("/login", null, "email=admin%40example.com&password=wrong").statusCode());
+        assertEquals(404, get("/unknown", null).statusCode());
+
+        String token = field(post("/login", null, "email=admin%40example.com&password=123_Pass!0").body(), "token");
+        assertEquals(400, post("/deposit", token, "account=abc&amount=1").statusCode());
+    }
+
+    /**
+     * Проверяет, что обмен со счета другого пользователя отклоняется с кодом 403 и не меняет баланс.
+     */
+    @Test
+    void foreignExchange() throws Exception {
+        post("/register", null, "email=victim%40example.com&password=123_Pass!0");
+        post("/register", null, "email=thief%40example.com&password=123_Pass!1");
+
+        String victim = field(post("/login", null, "email=victim%40example.com&password=123_Pass!0").body(), "token");
+        String thief = field(post("/login", null, "email=thief%40example.com&password=123_Pass!1").body(), "token");
+
+        String from = field(post("/accounts", victim, "title=Main&currency=USD").body(), "id");
+        String to = field(post("/accounts", thief, "title=Main&currency=USD").body(), "id");
+        assertEquals(200, post("/deposit", victim, "account=" + from + "&amount=1000").statusCode());
+
+        assertEquals(403, post("/exchange", thief, "from=" + from + "&to=" + to + "&amount=500").statusCode());
+        assertEquals(
+                0,
+                new BigDecimal("980").compareTo(new BigDecimal(field(get("/accounts", victim).body(), "balance")))
+        );
+    }
+
+    /**
+     * Проверяет курсы валют.
+     */
+    @Test
+    void rates() throws Exception {
+        HttpResponse<String> rates = get("/rates?base=USD", null);
+
+        assertEquals(200, rates.statusCode());
+        assertTrue(rates.body().contains("\"base\":\"USD\""), rates.body());
+        assertTrue(rates.body().contains("\"EUR\":"), rates.body());
+    }
+
+
+    private HttpResponse<String> get(String path, String token) throws Exception {
+        HttpRequest.Builder request = HttpRequest.newBuilder(uri(path)).GET();
+
+        if (token != null) {
+            request.header("Authorization", "Bearer " + token);
+        }
+
+        return client.send(request.build(), HttpResponse.BodyHandlers.ofString());
+    }
+
+    private HttpResponse<String> post(String path, String token, String form) throws Exception {
+        HttpRequest.Builder request = HttpRequest.newBuilder(uri(path))
+                .header("Content-Type", "application/x-www-form-urlencoded")
+                .POST(HttpRequest.BodyPublishers.ofString(form));
+
+        if (token != null) {
+            request.header("Authorization", "Bearer " + token);
+        }
+
+        return client.send(request.build(), HttpResponse.BodyHandlers.ofString());
+    }
+
+    private URI uri(String path) {
+        return URI.create("http://127.0.0.1:" + server.getPort() + path);
+    }
+
+    private static String field(String json, String name) {
+        Matcher matcher = Pattern.compile("\"" + name + "\":\"?([^\",}]+)").matcher(json);
+        assertTrue(matcher.find(), json);
+        return matcher.group(1);
+    }
+}
@@ -0,0 +1,202 @@
+package test.service;
+
+import model.Account;
+import model.Transaction;
+import model.enums.TransactionType;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import service.IdempotencyCache;
+import service.MainServiceImpl;
+import service.SequencedMainService;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Тесты ключей идемпотентности: повтор запроса с тем же ключом не выполняет операцию второй раз.
+ */
+class IdempotencyTest {
+
+    private ServiceFixture fixture;
+
+    @BeforeEach
+    void setUp() {
+        fixture = new ServiceFixture("client@example.com");
+    }
+
+    /**
+     * Проверяет повтор ключа, освобождение ключа после ошибки, повтор ключа с другим запросом и ключ другого
+     * пользователя.
+     */
+    @Test
+    void cache() {
+        IdempotencyCache cache = new IdempotencyCache(16, 60_000);
+        AtomicInteger calls = new AtomicInteger();
+
+        Transaction first = cache.execute("client@example.com", "k1", "r1", () -> transaction(calls.incrementAndGet()));
+        Transaction second = cache.execute("client@example.com", "k1", "r1", () -> transaction(calls.incrementAndGet()));
+
+        assertSame(first, second);
+        assertEquals(1, calls.get());
+
+        assertThrows(IllegalArgumentException.class, () ->
+                cache.execute("client@example.com", "k1", "r2", () -> transaction(calls.incrementAndGet()))
+        );
+
+        // Ключи разных пользователей независимы.
+        assertNotSame(first, cache.execute("other@example.com", "k1", "r2", () -> transaction(calls.incrementAndGet())));
+        assertSame(first, cache.execute("client@example.com", "k1", "r1", () -> transaction(calls.incrementAndGet())));
+        assertEquals(2, calls.get());
+
+        assertThrows(IllegalStateException.class, () -> cache.execute("client@example.com", "k2", "r1", () -> {
+            throw new IllegalStateException("Ошибка операции");
+        }));
+        assertEquals(3, cache.execute("client@example.com", "k2", "r1", () -> transaction(calls.incrementAndGet())).getId());
+
+        // Без ключа операция выполняется каждый раз.
+        cache.execute("client@example.com", null, "r1", () -> transaction(calls.incrementAndGet()));
+        cache.execute("client@example.com", null, "r1", () -> transaction(calls.incrementAndGet()));
+        assertEquals(5, calls.get());
+    }
+
+    /**
+     * Проверяет удаление старых ключей сверх размера кэша и просроченных ключей.
+     */
+    @Test
+    void eviction() throws Exception {
+        IdempotencyCache bounded = new IdempotencyCache(100, 60_000);
+        for (int i = 0; i < 1_000; i++) {
+            int id = i;
+            bounded.execute("client@example.com", "k" + i, "r", () -> transaction(id));
+        }
+
+        assertEquals(100, bounded.size());
+        assertEquals(999, bounded.execute("client@example.com", "k999", "r", () -> transaction(-1)).getId());
+        assertEquals(-1, bounded.execute("client@example.com", "k0", "r", () -> transaction(-1)).getId());
+
+        IdempotencyCache expiring = new IdempotencyCache(100, 20);
+        expiring.execute("client@example.com", "k", "r", () -> transaction(1));
+        Thread.sleep(50);
+
+        assertEquals(2, expiring.execute("client@example.com", "k", "r", () -> transaction(2)).getId());
+
+        // Ключ запроса, который еще выполняется, не удаляется ни по размеру кэша, ни по сроку жизни.
+        IdempotencyCache busy = new IdempotencyCache(1, 20);
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        Future<Transaction> slow = executor.submit(() -> busy.execute("client@example.com", "slow", "r", () -> {
+            started.countDown();
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                throw new IllegalStateException(e);
+            }
+            return transaction(1);
+        }));
+
+        started.await();
+        Thread.sleep(50);
+        for (int i = 0; i < 10; i++) {
+            int id = i;
+            busy.execute("client@example.com", "k" + i, "r", () -> transaction(id));
+        }
+
+        // Остались выполняющийся ключ и последний добавленный.
+        assertEquals(2, busy.size());
+
+        release.countDown();
+        assertEquals(1, slow.get().getId());
+        executor.shutdown();
+    }
+
+    /**
+     * Проверяет, что одновременные повторы обмена с одним ключом списывают деньги один раз.
+     */
+    @Test
+    void concurrentRetries() throws Exception {
+        MainServiceImpl service = fixture.newService();
+        String token = service.openSession("client@example.com", "123_Pass!0").getToken();
+
+        Account from = service.creatAccount(token, "From", "USD");
+        Account to = service.creatAccount(token, "To", "EUR");
+        service.deposit(token, from.getId(), new BigDecimal("100"));
+
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        List<Future<Transaction>> futures = new ArrayList<>();
+        for (int i = 0; i < 32; i++) {
+            futures.add(executor.submit(() ->
+                    service.exchange(token, from.getId(), to.getId(), new BigDecimal("10"), "transfer-1")
+            ));
+        }
+
+        Transaction original = futures.get(0).get();
+        for (Future<Transaction> future : futures) {
+            assertSame(original, future.get());
+        }
+        executor.shutdown();
+
+        assertEquals(0, new BigDecimal("88").compareTo(from.getBalance()));
+        assertEquals(2, fixture.getTransactions().getTransactionCount());
+
+        // Тот же ключ с другой суммой отклоняется, а сумма с незначащими нулями считается той же.
+        assertThrows(IllegalArgumentException.class, () ->
+                service.exchange(token, from.getId(), to.getId(), new BigDecimal("11"), "transfer-1")
+        );
+        assertSame(original, service.exchange(token, from.getId(), to.getId(), new BigDecimal("10.00"), "transfer-1"));
+
+        // Другой ключ - новая операция.
+        assertNotSame(original, service.exchange(token, from.getId(), to.getId(), new BigDecimal("10"), "transfer-2"));
+        assertEquals(0, new BigDecimal("78").compareTo(from.getBalance()));
+    }
+
+    /**
+     * Проверяет ключи идемпотентности при выполнении операций через однопоточный исполнитель.
+     */
+    @Test
+    void sequenced() throws Exception {
+        SequencedMainService service = fixture.newSequencedService(64);
+
+        try {
+            String token = service.openSession("client@example.com", "123_Pass!0").getToken();
+            Account account = service.creatAccount(token, "Main", "USD");
+
+            Transaction deposit = service.deposit(token, account.getId(), new BigDecimal("100"), "deposit-1");
+            assertSame(deposit, service.deposit(token, account.getId(), new BigDecimal("100"), "deposit-1"));
+            assertEquals(TransactionType.DEPOSIT, deposit.getType());
+
+            Transaction withdrawal = service.withdrawal(token, account.getId(), new BigDecimal("50"), "withdrawal-1");
+            assertSame(withdrawal, service.withdrawal(token, account.getId(), new BigDecimal("50"), "withdrawal-1"));
+
+            // 100 - 2 (комиссия) - 49 (снятие за вычетом комиссии).
+            assertEquals(0, new BigDecimal("49").compareTo(account.getBalance()));
+        } finally {
+            service.shutdown();
+        }
+    }
+
+
+    private static Transaction transaction(int id) {
+        return new Transaction(
+                id,
+                TransactionType.DEPOSIT,
+                "client@example.com",
+                1,
+                "USD",
+                "client@example.com",
+                1,
+                "USD",
+                BigDecimal.ONE
+        );
+    }
+
+}
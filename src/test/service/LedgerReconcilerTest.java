@@ -0,0 +1,127 @@
+package test.service;
+
+import model.Account;
+import model.Money;
+import model.ReconciliationReport;
+import model.enums.TransactionType;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import service.LedgerReconciler;
+import service.MainServiceImpl;
+
+import java.math.BigDecimal;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Тесты сверки балансов счетов с журналом транзакций {@link LedgerReconciler}.
+ */
+class LedgerReconcilerTest {
+
+    private ServiceFixture fixture;
+    private MainServiceImpl service;
+
+    @BeforeEach
+    void setUp() {
+        fixture = new ServiceFixture("client@example.com");
+        fixture.getAccounts().createSystemAccount("admin@example.com", "EUR", "SYSTEM_EUR");
+
+        service = fixture.newService("client@example.com");
+    }
+
+    /**
+     * Проверяет, что после депозитов, снятий, обменов и зачисления комиссий все счета сходятся, а измененный в
+     * обход журнала баланс обнаруживается.
+     */
+    @Test
+    void balancesMatchLedger() throws Exception {
+        Account usd = service.creatAccount("USD", "USD");
+        Account eur = service.creatAccount("EUR", "EUR");
+
+        service.deposit(usd.getId(), new BigDecimal("1000"));
+        service.withdrawal(usd.getId(), new BigDecimal("100"));
+        service.exchange(usd.getId(), eur.getId(), new BigDecimal("333.33"));
+        service.exchange(eur.getId(), usd.getId(), new BigDecimal("10"));
+        service.flushCommissions();
+
+        ReconciliationReport report = service.reconcileLedger();
+
+        assertTrue(report.isConsistent(), report.getMismatches().toString());
+        assertTrue(report.getUnverified().isEmpty());
+        assertEquals(fixture.getTransactions().getTransactionCount(), report.getTransactions());
+        assertTrue(fixture.getAccounts().getSystemAccount("USD").getBalance().signum() > 0);
+
+        eur.setBalanceMoney(Money.ofMinor(eur.getCurrencyCode(), eur.getBalanceMoney().getMinor() + 1));
+
+        report = service.reconcileLedger();
+
+        assertEquals(1, report.getMismatches().size());
+        ReconciliationReport.Mismatch mismatch = report.getMismatches().get(0);
+        assertEquals(eur.getId(), mismatch.getAccountId());
+        assertEquals("EUR", mismatch.getCurrency());
+        assertEquals(0, new BigDecimal("0.01").compareTo(mismatch.getDifference()));
+    }
+
+    /**
+     * Проверяет сверку журнала, разбитого на несколько задач, в отдельном пуле.
+     */
+    @Test
+    void parallelReplay() throws Exception {
+        Account a = service.creatAccount("A", "USD");
+        Account b = service.creatAccount("B", "USD");
+        service.deposit(a.getId(), new BigDecimal("1000000"));
+
+        for (int i = 0; i < 200_000; i++) {
+            if (i % 2 == 0) {
+                service.exchange(a.getId(), b.getId(), new BigDecimal("1.37"));
+            } else {
+                service.exchange(b.getId(), a.getId(), new BigDecimal("1"));
+            }
+        }
+        service.flushCommissions();
+
+        ForkJoinPool pool = new ForkJoinPool(4);
+        try {
+            ReconciliationReport report = new LedgerReconciler(fixture.getAccounts(), fixture.getTransactions(), pool).reconcile();
+
+            assertTrue(report.isConsistent(), report.getMismatches().toString());
+            assertEquals(fixture.getTransactions().getTransactionCount(), report.getTransactions());
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    /**
+     * Проверяет, что счет списания обмена без суммы списания (запись старого формата) не проверяется, а счет
+     * зачисления проверяется.
+     */
+    @Test
+    void legacyTransferIsUnverified() throws Exception {
+        Account from = service.creatAccount("From", "USD");
+        Account to = service.creatAccount("To", "USD");
+
+        fixture.getTransactions().createTransaction(
+                TransactionType.TRANSFER,
+                "client@example.com",
+                from.getId(),
+                "USD",
+                "client@example.com",
+                to.getId(),
+                "USD",
+                new BigDecimal("5"),
+                BigDecimal.ONE,
+                null
+        );
+        from.setBalance(new BigDecimal("-5"));
+
+        ReconciliationReport report = service.reconcileLedger();
+
+        assertEquals(List.of(from.getId()), report.getUnverified());
+        assertEquals(1, report.getMismatches().size());
+        assertEquals(to.getId(), report.getMismatches().get(0).getAccountId());
+        assertEquals(0, new BigDecimal("5").compareTo(report.getMismatches().get(0).getExpected()));
+    }
+
+}
@@ -0,0 +1,96 @@
+package test.service;
+
+import model.Account;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import service.MainServiceImpl;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Нагрузочный тест {@link MainServiceImpl}: параллельные пополнения и переводы не должны терять или создавать
+ * деньги.
+ *
+ * <p>Количество операций и потоков задается свойствами {@code stress.operations} и {@code stress.threads}.</p>
+ */
+class MainServiceImplConcurrencyTest {
+
+    private static final int OPERATIONS = Integer.getInteger("stress.operations", 1_000_000);
+    private static final int THREADS = Integer.getInteger("stress.threads", 8);
+    private static final int ACCOUNTS = 32;
+
+    private ServiceFixture fixture;
+    private MainServiceImpl service;
+    private List<Account> accounts;
+
+    @BeforeEach
+    void setUp() {
+        fixture = new ServiceFixture("stress@example.com");
+        service = fixture.newService("stress@example.com");
+
+        accounts = new ArrayList<>();
+        for (int i = 0; i < ACCOUNTS; i++) {
+            accounts.add(service.creatAccount("Stress " + i, "USD"));
+        }
+    }
+
+    /**
+     * Проверяет, что после зачисления комиссий сумма балансов всех счетов (включая системный) равна сумме
+     * пополнений.
+     */
+    @Test
+    void balancesAreConserved() throws Exception {
+        AtomicLong deposited = new AtomicLong();
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        List<Future<?>> futures = new ArrayList<>();
+
+        for (int t = 0; t < THREADS; t++) {
+            futures.add(executor.submit(() -> {
+                ThreadLocalRandom random = ThreadLocalRandom.current();
+
+                for (int i = 0; i < OPERATIONS / THREADS; i++) {
+                    Account from = accounts.get(random.nextInt(ACCOUNTS));
+                    Account to = accounts.get(random.nextInt(ACCOUNTS));
+                    int amount = 1 + random.nextInt(100);
+
+                    if (random.nextInt(4) == 0) {
+                        service.deposit(from.getId(), BigDecimal.valueOf(amount));
+                        deposited.addAndGet(amount);
+                        continue;
+                    }
+
+                    try {
+                        service.exchange(from.getId(), to.getId(), BigDecimal.valueOf(amount));
+                    } catch (IllegalArgumentException e) {
+                        // Недостаточно средств - допустимый исход.
+                    }
+                }
+                return null;
+            }));
+        }
+
+        for (Future<?> future : futures) {
+            future.get();
+        }
+        executor.shutdown();
+
+        service.flushCommissions();
+        service.reconcileCommissions();
+        assertTrue(service.getPendingCommissions().isEmpty());
+
+        BigDecimal total = BigDecimal.ZERO;
+        for (Account account : fixture.getAccounts().getAllAccounts()) {
+            assertTrue(account.getBalance().signum() >= 0, "Отрицательный баланс счета " + account.getId());
+            total = total.add(account.getBalance());
+        }
+
+        assertEquals(0, BigDecimal.valueOf(deposited.get()).compareTo(total));
+    }
+
+}
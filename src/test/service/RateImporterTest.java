@@ -0,0 +1,103 @@
+package test.service;
+
+import model.ImportReport;
+import model.Rate;
+import model.enums.CurrencyCode;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import repository.CurrencyRepositoryImpl;
+import service.RateImporter;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Проверяет массовый импорт курсов валют.
+ */
+class RateImporterTest {
+
+    private Path file;
+    private CurrencyRepositoryImpl repository;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        file = Files.createTempFile("rates", ".csv");
+        repository = new CurrencyRepositoryImpl();
+    }
+
+    @AfterEach
+    void tearDown() throws IOException {
+        Files.deleteIfExists(file);
+    }
+
+    /**
+     * Проверяет разбор корректных и отклонение некорректных строк.
+     */
+    @Test
+    void importLines() throws IOException {
+        Files.writeString(file, String.join("\n",
+                "currency,course,time",
+                "EUR,1.0852,2024-01-01T12:00:00.25",
+                "eur , 1.09 , 2024-01-02 12:00",
+                "# комментарий",
+                "",
+                "BTC,0.000015,2024-01-01T12:00:00\r",
+                "XMR,123456789012345678901.5,2024-01-01T12:00:00",
+                "ABC,1.0,2024-01-01T12:00:00",
+                "EUR,0,2024-01-01T12:00:00",
+                "EUR,1.0,2023-02-29T12:00:00",
+                "EUR,1.0,2024-01-01T24:00:00",
+                "EUR,-1.0,2024-01-01T12:00:00",
+                "EUR,1.0",
+                "EUR,1.0,2024-01-01T12:00:00,extra"
+        ), StandardCharsets.UTF_8);
+
+        ImportReport report = new RateImporter(repository).importFile(file);
+
+        assertEquals(4, report.getImported());
+        assertEquals(7, report.getRejected());
+
+        List<Rate> euro = repository.getRatesBetween(CurrencyCode.EUR, LocalDateTime.MIN, LocalDateTime.MAX);
+        assertEquals(2, euro.size());
+        assertEquals(LocalDateTime.of(2024, 1, 1, 12, 0, 0, 250_000_000), euro.get(0).getTime());
+        assertEquals(new BigDecimal("1.09"), repository.getActualRate(CurrencyCode.EUR));
+        assertEquals(new BigDecimal("0.000015"), repository.getActualRate(CurrencyCode.BTC));
+        assertEquals(new BigDecimal("123456789012345678901.5"), repository.getActualRate(CurrencyCode.XMR));
+    }
+
+    /**
+     * Проверяет, что при разбиении файла на много кусков не теряются строки на границах и курсы вставляются
+     * по времени, даже если файл не упорядочен.
+     */
+    @Test
+    void importChunks() throws IOException {
+        StringBuilder lines = new StringBuilder();
+        LocalDateTime start = LocalDateTime.of(2024, 1, 1, 0, 0);
+        int count = 10_000;
+
+        for (int i = count - 1; i >= 0; i--) {
+            lines.append(i % 2 == 0 ? "USD" : "GBP").append(',')
+                    .append(BigDecimal.valueOf(1000 + i, 3)).append(',')
+                    .append(start.plusSeconds(i)).append('\n');
+        }
+
+        Files.writeString(file, lines, StandardCharsets.UTF_8);
+
+        ImportReport report = new RateImporter(repository, ForkJoinPool.commonPool(), 997).importFile(file);
+
+        assertEquals(count, report.getImported());
+        assertEquals(0, report.getRejected());
+        assertEquals(count / 2, repository.getCursesByRate("USD").size());
+        assertEquals(BigDecimal.valueOf(1000 + count - 1, 3), repository.getActualRate(CurrencyCode.GBP));
+    }
+
+}
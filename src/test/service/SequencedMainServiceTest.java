@@ -0,0 +1,229 @@
+package test.service;
+
+import model.Account;
+import model.Transaction;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import repository.AccountRepositoryImpl;
+import repository.CurrencyRepositoryImpl;
+import repository.TransactionRepositoryImpl;
+import repository.UserRepositoryImpl;
+import repository.journal.Durability;
+import repository.journal.Journal;
+import repository.journal.JournalReplayer;
+import service.LedgerEngine;
+import service.SequencedMainService;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Тесты {@link SequencedMainService}: операции через однопоточный исполнитель не теряют и не создают деньги,
+ * ошибки операций доходят до вызывающего потока, а пачки операций попадают в журнал.
+ */
+class SequencedMainServiceTest {
+
+    private static final int OPERATIONS = Integer.getInteger("stress.operations", 200_000);
+    private static final int THREADS = Integer.getInteger("stress.threads", 8);
+    private static final int ACCOUNTS = 32;
+
+    private ServiceFixture fixture;
+    private SequencedMainService service;
+    private Path directory;
+
+    @BeforeEach
+    void setUp() {
+        fixture = new ServiceFixture("stress@example.com", "other@example.com");
+        service = fixture.newSequencedService(1024);
+        service.setActiveUser("stress@example.com");
+    }
+
+    @AfterEach
+    void tearDown() throws IOException {
+        service.shutdown();
+
+        if (directory != null) {
+            try (Stream<Path> files = Files.walk(directory)) {
+                files.sorted(Comparator.reverseOrder()).forEach(path -> path.toFile().delete());
+            }
+        }
+    }
+
+    /**
+     * Проверяет, что сумма балансов всех счетов (включая системный) равна сумме пополнений.
+     */
+    @Test
+    void balancesAreConserved() throws Exception {
+        List<Account> accounts = new ArrayList<>();
+        for (int i = 0; i < ACCOUNTS; i++) {
+            accounts.add(service.creatAccount("Stress " + i, "USD"));
+        }
+
+        AtomicLong deposited = new AtomicLong();
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        List<Future<?>> futures = new ArrayList<>();
+
+        for (int t = 0; t < THREADS; t++) {
+            futures.add(executor.submit(() -> {
+                ThreadLocalRandom random = ThreadLocalRandom.current();
+
+                for (int i = 0; i < OPERATIONS / THREADS; i++) {
+                    Account from = accounts.get(random.nextInt(ACCOUNTS));
+                    Account to = accounts.get(random.nextInt(ACCOUNTS));
+                    int amount = 1 + random.nextInt(100);
+
+                    if (random.nextInt(4) == 0) {
+                        service.deposit(from.getId(), BigDecimal.valueOf(amount));
+                        deposited.addAndGet(amount);
+                        continue;
+                    }
+
+                    try {
+                        service.exchange(from.getId(), to.getId(), BigDecimal.valueOf(amount));
+                    } catch (IllegalArgumentException e) {
+                        // Недостаточно средств - допустимый исход.
+                    }
+                }
+                return null;
+            }));
+        }
+
+        for (Future<?> future : futures) {
+            future.get();
+        }
+        executor.shutdown();
+
+        BigDecimal total = BigDecimal.ZERO;
+        for (Account account : fixture.getAccounts().getAllAccounts()) {
+            assertTrue(account.getBalance().signum() >= 0, "Отрицательный баланс счета " + account.getId());
+            total = total.add(account.getBalance());
+        }
+
+        assertEquals(0, BigDecimal.valueOf(deposited.get()).compareTo(total));
+        assertTrue(service.getEngine().getBatchCount() <= service.getEngine().getProcessedCount());
+    }
+
+    /**
+     * Проверяет, что исключения операций пробрасываются вызывающему потоку без обертки.
+     */
+    @Test
+    void errorsReachCaller() throws Exception {
+        Account account = service.creatAccount("Main", "USD");
+        Account foreign = fixture.getAccounts().createAccount("other@example.com", "Other", "USD");
+
+        assertThrows(IllegalArgumentException.class, () -> service.withdrawal(account.getId(), BigDecimal.TEN));
+        assertThrows(IllegalArgumentException.class, () -> service.deposit(9_999, BigDecimal.TEN));
+        assertThrows(SecurityException.class, () -> service.deposit(foreign.getId(), BigDecimal.TEN));
+        assertThrows(SecurityException.class, () -> service.exchange(foreign.getId(), account.getId(), BigDecimal.TEN));
+
+        service.deposit(account.getId(), new BigDecimal("100"));
+        assertEquals(0, new BigDecimal("98").compareTo(account.getBalance()));
+
+        Exception e = assertThrows(Exception.class, () -> service.removeAccount(account.getId()));
+        assertTrue(e.getMessage().contains("положительным балансом"));
+
+        Account empty = service.creatAccount("Empty", "USD");
+        service.removeAccount(empty.getId());
+        assertNull(fixture.getAccounts().getAccountById(empty.getId()));
+
+        // Комиссия пополнения зачислена на системный счет в конце пачки.
+        assertEquals(0, new BigDecimal("2").compareTo(fixture.getAccounts().getSystemAccount("USD").getBalance()));
+    }
+
+    /**
+     * Проверяет асинхронные вызовы исполнителя и отказ в приеме операций после остановки.
+     */
+    @Test
+    void asyncPipeline() throws Exception {
+        Account account = service.creatAccount("Main", "USD");
+        LedgerEngine engine = service.getEngine();
+
+        List<CompletableFuture<Transaction>> replies = new ArrayList<>();
+        for (int i = 0; i < 10_000; i++) {
+            replies.add(engine.deposit("stress@example.com", account.getId(), BigDecimal.ONE));
+        }
+
+        for (CompletableFuture<Transaction> reply : replies) {
+            assertNotNull(reply.get(10, TimeUnit.SECONDS));
+        }
+
+        assertEquals(0, new BigDecimal("9800").compareTo(account.getBalance()));
+
+        service.shutdown();
+        assertThrows(IllegalStateException.class, () -> engine.deposit("stress@example.com", account.getId(), BigDecimal.ONE));
+    }
+
+    /**
+     * Проверяет, что исполнитель не принимает журнал в режиме SYNC: каждая запись ждала бы своего сброса на диск.
+     */
+    @Test
+    void rejectsSyncJournal() throws Exception {
+        directory = Files.createTempDirectory("exchange-engine");
+
+        try (Journal journal = new Journal(directory)) {
+            assertThrows(IllegalArgumentException.class, () -> new SequencedMainService(
+                    fixture.getUsers(),
+                    fixture.getAccounts(),
+                    fixture.getCurrencies(),
+                    new TransactionRepositoryImpl(journal),
+                    journal,
+                    64
+            ));
+        }
+    }
+
+    /**
+     * Проверяет, что операции исполнителя записываются в журнал и восстанавливаются при проигрывании.
+     */
+    @Test
+    void journaledBatches() throws Exception {
+        service.shutdown();
+        directory = Files.createTempDirectory("exchange-engine");
+
+        int accountId;
+        try (Journal journal = new Journal(directory, Durability.PERIODIC, 1_000)) {
+            AccountRepositoryImpl accounts = new AccountRepositoryImpl(journal);
+            accounts.createSystemAccount("admin@example.com", "USD", "SYSTEM_USD");
+
+            service = new SequencedMainService(
+                    fixture.getUsers(),
+                    accounts,
+                    fixture.getCurrencies(),
+                    new TransactionRepositoryImpl(journal),
+                    journal,
+                    64
+            );
+            service.start();
+            service.setActiveUser("stress@example.com");
+
+            accountId = service.creatAccount("Main", "USD").getId();
+            service.deposit(accountId, new BigDecimal("50"));
+            service.exchange(accountId, accountId, new BigDecimal("10"));
+            service.shutdown();
+        }
+
+        AccountRepositoryImpl accounts = new AccountRepositoryImpl();
+        TransactionRepositoryImpl transactions = new TransactionRepositoryImpl();
+
+        try (Journal journal = new Journal(directory)) {
+            journal.replay(new JournalReplayer(new UserRepositoryImpl(), accounts, new CurrencyRepositoryImpl(), transactions));
+        }
+
+        // 50 - 1 (комиссия пополнения) - 10 + 9.8 (перевод за вычетом комиссии).
+        assertEquals(0, new BigDecimal("48.8").compareTo(accounts.getAccountById(accountId).getBalance()));
+        assertEquals(0, new BigDecimal("1.2").compareTo(accounts.getSystemAccount("USD").getBalance()));
+        assertEquals(4, transactions.getTransactionCount());
+    }
+
+}
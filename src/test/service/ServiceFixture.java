@@ -0,0 +1,135 @@
+package test.service;
+
+import model.enums.UserRole;
+import repository.AccountRepositoryImpl;
+import repository.CurrencyRepositoryImpl;
+import repository.TransactionRepositoryImpl;
+import repository.UserRepositoryImpl;
+import service.MainServiceImpl;
+import service.SequencedMainService;
+import service.SessionManager;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+/**
+ * Общее окружение тестов сервиса: репозитории в памяти, курсы USD = 1 и EUR = 1.08, системный счет USD и
+ * пользователи с ролью {@link UserRole#USER} и паролем {@link #PASSWORD}.
+ */
+public class ServiceFixture {
+
+    // Пароль пользователей окружения.
+    public static final String PASSWORD = "123_Pass!0";
+
+    private final UserRepositoryImpl users;
+    private final AccountRepositoryImpl accounts;
+    private final CurrencyRepositoryImpl currencies;
+    private final TransactionRepositoryImpl transactions;
+
+
+    /**
+     * @param userEmails Email пользователей окружения.
+     */
+    public ServiceFixture(String... userEmails) {
+        this(new AccountRepositoryImpl(), userEmails);
+    }
+
+
+    /**
+     * Конструктор для окружения с заданным репозиторием счетов (например, подменяющим сохранение балансов).
+     *
+     * @param accounts   Репозиторий счетов.
+     * @param userEmails Email пользователей окружения.
+     */
+    public ServiceFixture(AccountRepositoryImpl accounts, String... userEmails) {
+        this.users = new UserRepositoryImpl();
+        this.accounts = accounts;
+        this.currencies = new CurrencyRepositoryImpl();
+        this.transactions = new TransactionRepositoryImpl();
+
+        for (String email : userEmails) {
+            this.users.addUser(email, PASSWORD, UserRole.USER);
+        }
+
+        this.currencies.addRate("USD", BigDecimal.ONE, LocalDateTime.now());
+        this.currencies.addRate("EUR", new BigDecimal("1.08"), LocalDateTime.now());
+        this.accounts.createSystemAccount("admin@example.com", "USD", "SYSTEM_USD");
+    }
+
+
+    public UserRepositoryImpl getUsers() {
+        return this.users;
+    }
+
+
+    public AccountRepositoryImpl getAccounts() {
+        return this.accounts;
+    }
+
+
+    public CurrencyRepositoryImpl getCurrencies() {
+        return this.currencies;
+    }
+
+
+    public TransactionRepositoryImpl getTransactions() {
+        return this.transactions;
+    }
+
+
+    /**
+     * Создает сервис над репозиториями окружения без активного пользователя.
+     *
+     * @return Сервис.
+     */
+    public MainServiceImpl newService() {
+        return new MainServiceImpl(this.users, this.accounts, this.currencies, this.transactions);
+    }
+
+
+    /**
+     * Создает сервис над репозиториями окружения.
+     *
+     * @param activeUser Email активного пользователя консольного интерфейса.
+     * @return Сервис.
+     */
+    public MainServiceImpl newService(String activeUser) {
+        MainServiceImpl service = this.newService();
+        service.setActiveUser(activeUser);
+
+        return service;
+    }
+
+
+    /**
+     * Создает сервис над репозиториями окружения с заданным хранилищем сессий.
+     *
+     * @param sessions Хранилище сессий.
+     * @return Сервис.
+     */
+    public MainServiceImpl newService(SessionManager sessions) {
+        return new MainServiceImpl(this.users, this.accounts, this.currencies, this.transactions, sessions);
+    }
+
+
+    /**
+     * Создает и запускает сервис с однопоточным исполнителем без журнала.
+     *
+     * @param capacity Размер буфера исполнителя.
+     * @return Запущенный сервис без активного пользователя.
+     */
+    public SequencedMainService newSequencedService(int capacity) {
+        SequencedMainService service = new SequencedMainService(
+                this.users,
+                this.accounts,
+                this.currencies,
+                this.transactions,
+                null,
+                capacity
+        );
+        service.start();
+
+        return service;
+    }
+
+}
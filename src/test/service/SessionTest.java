@@ -0,0 +1,105 @@
+package test.service;
+
+import model.Account;
+import model.Session;
+import model.enums.UserRole;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import service.MainServiceImpl;
+import service.SessionManager;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Проверяет работу сервиса с несколькими сессиями пользователей.
+ */
+class SessionTest {
+
+    private static final int USERS = 200;
+
+    private ServiceFixture fixture;
+    private MainServiceImpl service;
+
+    @BeforeEach
+    void setUp() {
+        fixture = new ServiceFixture();
+
+        for (int i = 0; i < USERS; i++) {
+            fixture.getUsers().addUser("user" + i + "@example.com", ServiceFixture.PASSWORD, UserRole.USER);
+        }
+
+        service = fixture.newService(new SessionManager(60_000));
+    }
+
+    /**
+     * Проверяет, что пользователи параллельно работают каждый в своей сессии и не видят чужие счета.
+     */
+    @Test
+    void concurrentSessions() throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        List<Future<Account>> futures = new ArrayList<>();
+
+        for (int i = 0; i < USERS; i++) {
+            String email = "user" + i + "@example.com";
+
+            futures.add(executor.submit(() -> {
+                String token = service.openSession(email, "123_Pass!0").getToken();
+                Account account = service.creatAccount(token, "Main", "USD");
+
+                for (int j = 0; j < 10; j++) {
+                    service.deposit(token, account.getId(), BigDecimal.TEN);
+                }
+
+                assertEquals(email, service.getSessionUser(token).getEmail());
+                assertEquals(1, service.getAllAccountsByActiveUser(token).size());
+                return account;
+            }));
+        }
+
+        for (Future<Account> future : futures) {
+            assertEquals(new BigDecimal("98"), future.get().getBalance());
+        }
+        executor.shutdown();
+
+        assertEquals(USERS, service.getSessions().size());
+
+        // Чужой счет недоступен.
+        String token = service.openSession("user0@example.com", "123_Pass!0").getToken();
+        int foreign = futures.get(1).get().getId();
+        assertThrows(SecurityException.class, () -> service.deposit(token, foreign, BigDecimal.ONE));
+
+        service.closeSession(token);
+        assertNull(service.getSessionUser(token));
+        assertThrows(SecurityException.class, () -> service.getAllAccountsByActiveUser(token));
+    }
+
+    /**
+     * Проверяет закрытие сессий по тайм-ауту и при блокировке пользователя.
+     */
+    @Test
+    void eviction() throws Exception {
+        SessionManager sessions = new SessionManager(50);
+        Session idle = sessions.open(fixture.getUsers().getUserByEmail("user0@example.com"));
+        Thread.sleep(100);
+
+        assertEquals(1, sessions.evictIdle());
+        assertNull(sessions.get(idle.getToken()));
+
+        String first = service.openSession("user1@example.com", "123_Pass!0").getToken();
+        String second = service.openSession("user1@example.com", "123_Pass!0").getToken();
+        assertNotEquals(first, second);
+
+        service.blockUser("user1@example.com");
+        assertNull(service.getSessionUser(first));
+        assertNull(service.getSessionUser(second));
+        assertThrows(SecurityException.class, () -> service.openSession("user1@example.com", "wrong"));
+    }
+
+}
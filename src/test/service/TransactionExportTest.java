@@ -0,0 +1,148 @@
+package test.service;
+
+import model.ExportReport;
+import model.enums.TransactionType;
+import model.enums.UserRole;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import repository.AccountRepositoryImpl;
+import repository.CurrencyRepositoryImpl;
+import repository.TransactionRepositoryImpl;
+import repository.UserRepositoryImpl;
+import service.MainServiceImpl;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Проверяет потоковый экспорт транзакций в CSV.
+ */
+class TransactionExportTest {
+
+    private Path file;
+    private TransactionRepositoryImpl transactions;
+    private MainServiceImpl service;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        file = Files.createTempFile("transactions", ".csv");
+        transactions = new TransactionRepositoryImpl();
+
+        UserRepositoryImpl users = new UserRepositoryImpl();
+        users.addUser("max@example.com", "123_Pass!5", UserRole.ADMIN);
+
+        service = new MainServiceImpl(users, new AccountRepositoryImpl(), new CurrencyRepositoryImpl(), transactions);
+    }
+
+    @AfterEach
+    void tearDown() throws IOException {
+        Files.deleteIfExists(file);
+    }
+
+    /**
+     * Проверяет, что все строки периода записаны (в том числе через несколько сбросов буфера), а текстовые поля
+     * экранированы.
+     */
+    @Test
+    void export() throws IOException {
+        int count = 20_000;
+
+        for (int i = 0; i < count; i++) {
+            transactions.createTransaction(
+                    TransactionType.DEPOSIT,
+                    "max@example.com",
+                    i,
+                    "USD",
+                    "max@example.com",
+                    i,
+                    "USD",
+                    new BigDecimal("10.25"),
+                    null,
+                    i == 1 ? "Комментарий, с \"кавычками\"" : null
+            );
+        }
+
+        LocalDate today = LocalDate.now();
+        ExportReport report = service.exportTransactions(today, today, file);
+        List<String> lines = Files.readAllLines(file, StandardCharsets.UTF_8);
+
+        assertEquals(count, report.getRows());
+        assertEquals(count + 1, lines.size());
+        assertTrue(lines.get(0).startsWith("id,date,type"));
+        assertTrue(lines.get(1).startsWith("0,"));
+        assertTrue(lines.get(2).endsWith(",\"Комментарий, с \"\"кавычками\"\"\""));
+        assertTrue(lines.get(count).startsWith((count - 1) + ","));
+
+        // Период без транзакций дает файл только с заголовком.
+        assertEquals(0, service.exportTransactions(today.minusDays(7), today.minusDays(1), file).getRows());
+        assertEquals(1, Files.readAllLines(file, StandardCharsets.UTF_8).size());
+    }
+
+    /**
+     * Проверяет, что сумма списания и комиссия обмена выгружаются отдельными колонками, а у транзакции без
+     * записанной суммы списания колонка пуста.
+     */
+    @Test
+    void exportAmountFromAndFee() throws IOException {
+        transactions.createTransaction(
+                TransactionType.TRANSFER,
+                "max@example.com",
+                1,
+                "USD",
+                "max@example.com",
+                2,
+                "EUR",
+                new BigDecimal("9.07"),
+                new BigDecimal("10"),
+                new BigDecimal("0.18"),
+                new BigDecimal("0.925925925926"),
+                3
+        );
+        transactions.createTransaction(
+                TransactionType.DEPOSIT,
+                "max@example.com",
+                1,
+                "USD",
+                "max@example.com",
+                1,
+                "USD",
+                new BigDecimal("10.25"),
+                null,
+                null
+        );
+
+        LocalDate today = LocalDate.now();
+        service.exportTransactions(today, today, file);
+        List<String> lines = Files.readAllLines(file, StandardCharsets.UTF_8);
+
+        List<String> header = List.of(lines.get(0).split(",", -1));
+        String[] exchange = lines.get(1).split(",", -1);
+        String[] deposit = lines.get(2).split(",", -1);
+
+        assertEquals(header.size(), exchange.length);
+        assertEquals("9.07", exchange[header.indexOf("amount")]);
+        assertEquals(0, new BigDecimal("10").compareTo(new BigDecimal(exchange[header.indexOf("amount_from")])));
+        assertEquals("0.18", exchange[header.indexOf("fee")]);
+        assertEquals("3", exchange[header.indexOf("rate_version")]);
+        assertEquals("", deposit[header.indexOf("amount_from")]);
+        assertEquals(0, BigDecimal.ZERO.compareTo(new BigDecimal(deposit[header.indexOf("fee")])));
+    }
+
+    /**
+     * Проверяет разбор дат периода.
+     */
+    @Test
+    void invalidDates() {
+        assertThrows(IllegalArgumentException.class, () -> service.exportTransactions("2024-13-01", "2024-12-31"));
+        assertThrows(IllegalArgumentException.class, () -> service.exportTransactions("2024-12-31", "2024-01-01"));
+    }
+
+}
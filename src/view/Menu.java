@@ -1,10 +1,13 @@
 package view;
 
 import model.Account;
+import model.DailyVolume;
+import model.ExportReport;
+import model.ImportReport;
+import model.ReconciliationReport;
 import model.Transaction;
 import model.User;
 import service.interfaces.MainService;
-import service.MainServiceImpl;
 import utils.exceptions.EmailValidateException;
 import utils.exceptions.PasswordValidateException;
 import utils.exceptions.UserIsExistsExeption;
@@ -35,11 +38,11 @@ public class Menu {
     /**
      * Сервис.
      */
-    private final MainServiceImpl service;
+    private final MainService service;
 
 
     public Menu(MainService service) {
-        this.service = (MainServiceImpl) service;
+        this.service = service;
     }
 
 
@@ -340,6 +343,8 @@ public class Menu {
         adminMenu.put(6, "Посмотреть список всех пользователей");
         adminMenu.put(7, "Посмотреть список заблокированных пользователей");
         adminMenu.put(8, "~ ⏷ Экспорт транзакций пользователей");
+        adminMenu.put(9, "Сверка балансов счетов с журналом транзакций");
+        adminMenu.put(10, "Оборот по валютным парам за день");
 
         adminMenu.put(101, "~ Изменить курс валюты");
         adminMenu.put(102, "~ История изменения курса валюты");
@@ -584,14 +589,98 @@ public class Menu {
                 String endDate = this.scanner.nextLine();
 
                 try {
-                    //                    service.exportTransactions(startDate, endDate);
+                    ExportReport report = this.service.exportTransactions(startDate, endDate);
                     System.out.println("Транзакции успешно экспортированы.");
+                    System.out.printf(
+                            "Файл: %s, строк: %d, время: %d мс (%d строк/с).%n",
+                            report.getFile().toAbsolutePath(),
+                            report.getRows(),
+                            report.getElapsedMillis(),
+                            report.getRowsPerSecond()
+                    );
                 } catch (Exception e) {
                     System.out.println("Не удалось экспортировать транзакции.");
                     System.out.println(e.getMessage());
                 }
                 break;
 
+            // Сверка балансов счетов с журналом транзакций
+            case 9:
+                try {
+                    ReconciliationReport report = this.service.reconcileLedger();
+
+                    if (report.isConsistent()) {
+                        System.out.println("Балансы всех счетов совпадают с журналом транзакций.");
+                    } else {
+                        System.out.println("Найдены расхождения балансов:");
+
+                        for (ReconciliationReport.Mismatch mismatch : report.getMismatches()) {
+                            System.out.printf(
+                                    "Счет %d (%s): по журналу %s, баланс %s, разница %s.%n",
+                                    mismatch.getAccountId(),
+                                    mismatch.getCurrency() == null ? "удален" : mismatch.getCurrency(),
+                                    mismatch.getExpected(),
+                                    mismatch.getActual(),
+                                    mismatch.getDifference()
+                            );
+                        }
+                    }
+
+                    if (!report.getUnverified().isEmpty()) {
+                        System.out.println("Не удалось проверить счета (обмены без суммы списания): "
+                                           + report.getUnverified());
+                    }
+
+                    System.out.printf(
+                            "Транзакций: %d, счетов: %d, время: %d мс (%d транзакций/с).%n",
+                            report.getTransactions(),
+                            report.getAccounts(),
+                            report.getElapsedMillis(),
+                            report.getTransactionsPerSecond()
+                    );
+                } catch (Exception e) {
+                    System.out.println("Не удалось выполнить сверку балансов.");
+                    System.out.println(e.getMessage());
+                }
+                break;
+
+            // Оборот по валютным парам за день
+            case 10:
+                System.out.println("Введите дату (формат: YYYY-MM-DD):");
+                String volumeDate = this.scanner.nextLine();
+
+                try {
+                    List<DailyVolume> volumes = this.service.getDailyVolumes(volumeDate);
+
+                    if (volumes.isEmpty()) {
+                        System.out.println("За этот день транзакций нет.");
+                        break;
+                    }
+
+                    System.out.printf(
+                            "%-9s %-5s %-5s %10s %20s %16s %16s %16s%n",
+                            "Тип", "Из", "В", "Кол-во", "Сумма", "Комиссии", "Мин. курс", "Макс. курс"
+                    );
+
+                    for (DailyVolume volume : volumes) {
+                        System.out.printf(
+                                "%-9s %-5s %-5s %10d %20s %16s %16s %16s%n",
+                                volume.getType(),
+                                volume.getCurrencyFrom() == null ? "-" : volume.getCurrencyFrom(),
+                                volume.getCurrencyTo() == null ? "-" : volume.getCurrencyTo(),
+                                volume.getCount(),
+                                volume.getAmount().toPlainString(),
+                                volume.getFees().toPlainString(),
+                                volume.getMinCourse() == null ? "-" : volume.getMinCourse().toPlainString(),
+                                volume.getMaxCourse() == null ? "-" : volume.getMaxCourse().toPlainString()
+                        );
+                    }
+                } catch (Exception e) {
+                    System.out.println("Не удалось показать оборот.");
+                    System.out.println(e.getMessage());
+                }
+                break;
+
             // Изменить курс валюты
             case 101:
                 System.out.println("Введите новую валюту:");
@@ -626,8 +715,15 @@ public class Menu {
                 String filePath = this.scanner.nextLine();
 
                 try {
-                    //                    service.importCurrencyRates(filePath);
+                    ImportReport report = this.service.importCurrencyRates(filePath);
                     System.out.println("Курсы валют успешно импортированы.");
+                    System.out.printf(
+                            "Импортировано: %d, отклонено: %d, время: %d мс (%d строк/с).%n",
+                            report.getImported(),
+                            report.getRejected(),
+                            report.getElapsedMillis(),
+                            report.getRowsPerSecond()
+                    );
                 } catch (Exception e) {
                     System.out.println("Не удалось импортировать курсы валют.");
                     System.out.println(e.getMessage());